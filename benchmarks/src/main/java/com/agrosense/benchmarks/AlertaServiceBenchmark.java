@@ -0,0 +1,96 @@
+package com.agrosense.benchmarks;
+
+import com.agrosense.model.Medicion;
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.TipoSensor;
+import com.agrosense.service.AlertaService;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Verificación de umbrales: una medición sin alerta (el caso común), una que
+ * genera alerta, y un ciclo de 1.000 lecturas con 1 % de alertas recorrido
+ * como lote por columnas o medición por medición.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlertaServiceBenchmark {
+
+    private static final int LECTURAS_POR_CICLO = 1000;
+    // Se vacía el historial al llegar a este tamaño para que la memoria no crezca sin límite
+    private static final int LIMITE_HISTORIAL = 100_000;
+
+    private final Medicion normal = new Medicion(65.0, "S0", TipoSensor.HUMEDAD);
+    private final Medicion conAlerta = new Medicion(45.0, "S0", TipoSensor.HUMEDAD);
+    private final MedicionBatch ciclo = new MedicionBatch(LECTURAS_POR_CICLO);
+    private Medicion[] cicloMediciones;
+    private String[] cicloLotes;
+    private AlertaService alertaService;
+
+    @Setup(Level.Trial)
+    public void prepararCiclo() {
+        DatosBenchmark.llenarCiclo(ciclo, LECTURAS_POR_CICLO, 10, 0L, 0.01,
+                new SplittableRandom(DatosBenchmark.SEMILLA));
+        cicloMediciones = new Medicion[LECTURAS_POR_CICLO];
+        cicloLotes = new String[LECTURAS_POR_CICLO];
+        for (int i = 0; i < LECTURAS_POR_CICLO; i++) {
+            cicloMediciones[i] = ciclo.getMedicion(i);
+            cicloLotes[i] = cicloMediciones[i].getLoteId();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void prepararServicio() {
+        alertaService = new AlertaService();
+        alertaService.setMostrarEnConsola(false);
+    }
+
+    @Benchmark
+    public void verificarMedicionNormal() {
+        alertaService.verificarMedicion(normal, "L0");
+    }
+
+    @Benchmark
+    public void verificarMedicionConAlerta() {
+        if (alertaService.getHistorialAlertas().size() >= LIMITE_HISTORIAL) {
+            alertaService.getHistorialAlertas().clear();
+        }
+        alertaService.verificarMedicion(conAlerta, "L0");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LECTURAS_POR_CICLO)
+    public void verificarCicloPorLote() {
+        if (alertaService.getHistorialAlertas().size() >= LIMITE_HISTORIAL) {
+            alertaService.getHistorialAlertas().clear();
+        }
+        alertaService.verificarLote(ciclo);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LECTURAS_POR_CICLO)
+    public void verificarCicloPorMedicion() {
+        if (alertaService.getHistorialAlertas().size() >= LIMITE_HISTORIAL) {
+            alertaService.getHistorialAlertas().clear();
+        }
+        for (int i = 0; i < LECTURAS_POR_CICLO; i++) {
+            alertaService.verificarMedicion(cicloMediciones[i], cicloLotes[i]);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.agrosense.benchmarks;
+
+import com.agrosense.service.AnaliticaLotesService;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Correlación y agregados entre lotes sobre una matriz [lote][intervalo] de
+ * 1.000 intervalos (un día a resolución de minuto, aproximadamente)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnaliticaLotesBenchmark {
+
+    private static final int INTERVALOS = 1000;
+
+    @Param({ "100", "1000" })
+    public int lotes;
+
+    private final AnaliticaLotesService analitica = new AnaliticaLotesService();
+    private double[][] series;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        SplittableRandom azar = new SplittableRandom(DatosBenchmark.SEMILLA);
+        series = new double[lotes][INTERVALOS];
+        for (int i = 0; i < lotes; i++) {
+            double fase = azar.nextDouble() * Math.PI;
+            for (int j = 0; j < INTERVALOS; j++) {
+                series[i][j] = 60 + 10 * Math.sin(j / 60.0 + fase) + azar.nextDouble();
+            }
+        }
+    }
+
+    @Benchmark
+    public double[][] matrizCorrelacion() {
+        return analitica.matrizCorrelacion(series);
+    }
+
+    @Benchmark
+    public AnaliticaLotesService.AgregadosSeries agregadosPorFila() {
+        return analitica.agregadosPorFila(series);
+    }
+}
@@ -0,0 +1,90 @@
+package com.agrosense.benchmarks;
+
+import com.agrosense.model.Alerta;
+import com.agrosense.model.Lote;
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.SensorHumedad;
+import com.agrosense.model.SensorTemperatura;
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Datos sintéticos y deterministas compartidos por los benchmarks
+ */
+final class DatosBenchmark {
+
+    static final long SEMILLA = 42L;
+
+    private DatosBenchmark() {
+    }
+
+    static String idLote(int i) {
+        return "L" + i;
+    }
+
+    static String idSensor(int i) {
+        return "S" + i;
+    }
+
+    /**
+     * Lotes con la mitad de sus sensores de humedad y la otra mitad de temperatura
+     */
+    static List<Lote> lotes(int cantidad, int sensoresPorLote) {
+        List<Lote> lotes = new ArrayList<>(cantidad);
+        int sensor = 0;
+        for (int i = 0; i < cantidad; i++) {
+            Lote lote = new Lote(idLote(i), "Lote " + i, i % 2 == 0 ? "Maíz" : "Café", 1.5 + i % 10);
+            for (int s = 0; s < sensoresPorLote; s++, sensor++) {
+                lote.agregarSensor(s % 2 == 0 ? new SensorHumedad(idSensor(sensor), "Zona " + s)
+                        : new SensorTemperatura(idSensor(sensor), "Zona " + s));
+            }
+            lotes.add(lote);
+        }
+        return lotes;
+    }
+
+    /**
+     * Alertas de humedad y temperatura, críticas y de advertencia, repartidas
+     * entre los lotes
+     */
+    static List<Alerta> alertas(int cantidad, int lotes) {
+        String[] mensajes = { "Humedad crítica baja (25.00%)", "Humedad baja (45.00%)",
+                "Temperatura crítica alta (37.00°C)", "Temperatura alta (31.00°C)" };
+        Alerta.Nivel[] niveles = { Alerta.Nivel.CRITICAL, Alerta.Nivel.WARNING, Alerta.Nivel.CRITICAL,
+                Alerta.Nivel.WARNING };
+        LocalDateTime inicio = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Alerta> alertas = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            int k = i % mensajes.length;
+            alertas.add(new Alerta(mensajes[k], niveles[k], idLote(i % lotes), inicio.plusSeconds(i)));
+        }
+        return alertas;
+    }
+
+    /**
+     * Un ciclo de lecturas: una por sensor, alternando humedad y temperatura,
+     * con valores dentro del rango normal salvo una fracción que supera los
+     * umbrales de alerta
+     */
+    static void llenarCiclo(MedicionBatch batch, int sensores, int sensoresPorLote, long epochMillis,
+            double fraccionAlertas, SplittableRandom azar) {
+        batch.limpiar();
+        batch.reservar(sensores);
+        for (int s = 0; s < sensores; s++) {
+            TipoSensor tipo = s % 2 == 0 ? TipoSensor.HUMEDAD : TipoSensor.TEMPERATURA;
+            boolean alerta = azar.nextDouble() < fraccionAlertas;
+            double valor;
+            if (tipo == TipoSensor.HUMEDAD) {
+                valor = alerta ? 40 + azar.nextDouble() * 5 : 60 + azar.nextDouble() * 5;
+            } else {
+                valor = alerta ? 31 + azar.nextDouble() : 22 + azar.nextDouble() * 2;
+            }
+            batch.agregar(TablaIds.SENSORES.numero(idSensor(s)), TablaIds.LOTES.numero(idLote(s / sensoresPorLote)),
+                    tipo, valor, epochMillis);
+        }
+    }
+}
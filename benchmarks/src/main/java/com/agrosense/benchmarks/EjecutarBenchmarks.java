@@ -0,0 +1,47 @@
+package com.agrosense.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto de entrada del JAR de benchmarks. Acepta las mismas opciones que JMH
+ * (filtro por nombre, -f, -wi, -i, -p, ...) y agrega por defecto el
+ * perfilador de GC y la salida JSON en {@code target/jmh-result.json}, para
+ * comparar bytes reservados por operación entre ejecuciones. Las opciones de
+ * la línea de comandos tienen prioridad ({@code -rf}, {@code -rff}).
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar                   # todos
+ * java -jar benchmarks/target/benchmarks.jar GestorLotes -p lotes=100000
+ * </pre>
+ */
+public class EjecutarBenchmarks {
+
+    private static final String RESULTADOS = "target/jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions lineaComandos = new CommandLineOptions(args);
+        if (lineaComandos.shouldHelp() || lineaComandos.shouldList() || lineaComandos.shouldListProfilers()
+                || lineaComandos.shouldListResultFormats() || lineaComandos.shouldListWithParams()) {
+            // Listados y ayuda los resuelve el Main de JMH
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        OptionsBuilder opciones = new OptionsBuilder();
+        opciones.parent(lineaComandos);
+        opciones.addProfiler(GCProfiler.class);
+        if (!lineaComandos.getResultFormat().hasValue()) {
+            opciones.resultFormat(ResultFormatType.JSON);
+        }
+        if (!lineaComandos.getResult().hasValue()) {
+            Files.createDirectories(Paths.get(RESULTADOS).toAbsolutePath().getParent());
+            opciones.result(RESULTADOS);
+        }
+        new Runner(opciones.build()).run();
+    }
+}
@@ -0,0 +1,114 @@
+package com.agrosense.benchmarks;
+
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.ResultadoTendencia;
+import com.agrosense.model.TipoSensor;
+import com.agrosense.service.EstadisticasService;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Registro de mediciones y consultas de {@link EstadisticasService}: inserción
+ * individual y por lote, promedio y tendencia sobre un lote con un día de
+ * histórico a una lectura por minuto, y varios hilos escribiendo a la vez en
+ * lotes distintos.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EstadisticasBenchmark {
+
+    private static final int LOTES = 10;
+    private static final int MINUTOS_HISTORICO = 24 * 60;
+    private static final int LECTURAS_POR_CICLO = 1000;
+    private static final long MINUTO = 60_000L;
+
+    @State(Scope.Thread)
+    public static class Servicio {
+        EstadisticasService estadisticas;
+        final MedicionBatch ciclo = new MedicionBatch(LECTURAS_POR_CICLO);
+        final SplittableRandom azar = new SplittableRandom(DatosBenchmark.SEMILLA);
+        long reloj;
+
+        @Setup(Level.Iteration)
+        public void preparar() {
+            estadisticas = new EstadisticasService();
+            reloj = 0;
+            for (int m = 0; m < MINUTOS_HISTORICO; m++, reloj += MINUTO) {
+                for (int l = 0; l < LOTES; l++) {
+                    estadisticas.registrarMedicion(DatosBenchmark.idLote(l), TipoSensor.HUMEDAD,
+                            60 + 10 * Math.sin(m / 60.0), reloj);
+                    estadisticas.registrarMedicion(DatosBenchmark.idLote(l), TipoSensor.TEMPERATURA,
+                            22 + 4 * Math.sin(m / 90.0), reloj);
+                }
+            }
+        }
+    }
+
+    /**
+     * Un servicio compartido por todos los hilos; cada hilo escribe en su propio lote
+     */
+    @State(Scope.Benchmark)
+    public static class Compartido {
+        final EstadisticasService estadisticas = new EstadisticasService();
+        final AtomicInteger hilos = new AtomicInteger();
+    }
+
+    @State(Scope.Thread)
+    public static class Escritor {
+        String loteId;
+        long reloj;
+
+        @Setup(Level.Trial)
+        public void preparar(Compartido compartido) {
+            loteId = "H" + compartido.hilos.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    public void registrarMedicion(Servicio s) {
+        s.reloj += 1000;
+        s.estadisticas.registrarMedicion("L0", TipoSensor.HUMEDAD, 60 + s.azar.nextDouble(), s.reloj);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LECTURAS_POR_CICLO)
+    public void registrarLote(Servicio s) {
+        s.reloj += 1000;
+        DatosBenchmark.llenarCiclo(s.ciclo, LECTURAS_POR_CICLO, LECTURAS_POR_CICLO / LOTES, s.reloj, 0, s.azar);
+        s.estadisticas.registrarLote(s.ciclo);
+    }
+
+    @Benchmark
+    public double calcularPromedio(Servicio s) {
+        return s.estadisticas.calcularPromedioHumedad("L0");
+    }
+
+    @Benchmark
+    public ResultadoTendencia calcularTendencia(Servicio s) {
+        return s.estadisticas.calcularTendencia("L0", TipoSensor.HUMEDAD);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void registrarMedicionConcurrente(Compartido compartido, Escritor escritor) {
+        escritor.reloj += 1000;
+        compartido.estadisticas.registrarMedicion(escritor.loteId, TipoSensor.HUMEDAD, 60.0, escritor.reloj);
+    }
+}
@@ -0,0 +1,71 @@
+package com.agrosense.benchmarks;
+
+import com.agrosense.model.Lote;
+import com.agrosense.service.GestorLotes;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Búsqueda y registro de lotes con 10 a 100.000 lotes registrados. El
+ * registro se mide junto con la eliminación del mismo lote para que el
+ * tamaño no cambie entre invocaciones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GestorLotesBenchmark {
+
+    @Param({ "10", "1000", "10000", "100000" })
+    public int lotes;
+
+    private GestorLotes gestor;
+    private String[] ids;
+    private int siguiente;
+    private final Lote nuevo = new Lote("NUEVO", "Lote nuevo", "Maíz", 2.0);
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        gestor = new GestorLotes();
+        for (Lote lote : DatosBenchmark.lotes(lotes, 0)) {
+            gestor.registrarLote(lote);
+        }
+        ids = new String[lotes];
+        for (int i = 0; i < lotes; i++) {
+            ids[i] = DatosBenchmark.idLote(i);
+        }
+    }
+
+    @Benchmark
+    public Optional<Lote> buscarPorId() {
+        // Recorre los ids en orden para no repetir siempre el mismo
+        String id = ids[siguiente];
+        siguiente = siguiente + 1 == ids.length ? 0 : siguiente + 1;
+        return gestor.buscarPorId(id);
+    }
+
+    @Benchmark
+    public Optional<Lote> buscarPorIdInexistente() {
+        return gestor.buscarPorId("NO-EXISTE");
+    }
+
+    @Benchmark
+    public boolean registrarYEliminarLote() {
+        gestor.registrarLote(nuevo);
+        return gestor.eliminarLote(nuevo.getId());
+    }
+}
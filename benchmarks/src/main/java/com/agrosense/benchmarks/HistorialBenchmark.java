@@ -0,0 +1,82 @@
+package com.agrosense.benchmarks;
+
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.service.HistorialFueraDelHeap;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Histórico crudo fuera del heap ({@link HistorialFueraDelHeap}) con 10.000
+ * sensores: agregar un ciclo completo (tiempo por lectura) y leer la última
+ * hora de un sensor. El almacén de 512 MB (unas 3.200 lecturas por sensor) se
+ * llena en la preparación y desde ahí cada sensor reutiliza sus bloques más
+ * viejos. Con
+ * {@code -prof gc} la asignación por operación debería ser cero.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=1g")
+public class HistorialBenchmark {
+
+    private static final int SENSORES = 10_000;
+    private static final int SENSORES_POR_LOTE = 10;
+    private static final long CAPACIDAD = 512L << 20;
+    private static final int LECTURAS_HORA = 3600;
+
+    private final MedicionBatch ciclo = new MedicionBatch(SENSORES);
+    private final long[] tiempos = new long[LECTURAS_HORA];
+    private final double[] valores = new double[LECTURAS_HORA];
+    private SplittableRandom azar;
+    private HistorialFueraDelHeap historial;
+    private long reloj;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        azar = new SplittableRandom(DatosBenchmark.SEMILLA);
+        historial = new HistorialFueraDelHeap(CAPACIDAD);
+        // Los valores se generan una vez; cada ciclo solo avanza el instante
+        DatosBenchmark.llenarCiclo(ciclo, SENSORES, SENSORES_POR_LOTE, reloj, 0.001, azar);
+        // Una hora de historia para la consulta
+        for (int i = 0; i < LECTURAS_HORA; i++) {
+            registrarCiclo();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void terminar() throws IOException {
+        historial.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SENSORES)
+    public long registrarCiclo() {
+        reloj += 1000;
+        Arrays.fill(ciclo.getTiempos(), 0, SENSORES, reloj);
+        historial.registrarLote(ciclo);
+        return historial.getTotalLecturas();
+    }
+
+    @Benchmark
+    public int leerUltimaHora() {
+        int sensor = ciclo.getSensor(azar.nextInt(SENSORES));
+        return historial.leer(sensor, reloj - LECTURAS_HORA * 1000L, reloj + 1, tiempos, valores);
+    }
+}
@@ -0,0 +1,84 @@
+package com.agrosense.benchmarks;
+
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.service.AlertaService;
+import com.agrosense.service.DetectorAnomalias;
+import com.agrosense.service.EstadisticasService;
+import com.agrosense.service.IngestaService;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ingesta completa (detector, alertas y estadísticas) de un ciclo de 1.000
+ * sensores en 100 lotes: por lote de mediciones en columnas o una
+ * {@link com.agrosense.model.Medicion} por lectura. Los tiempos son por
+ * lectura; con el perfilador de GC se comparan también los bytes reservados.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IngestaBenchmark {
+
+    private static final int SENSORES = 1000;
+    private static final int SENSORES_POR_LOTE = 10;
+
+    private final MedicionBatch ciclo = new MedicionBatch(SENSORES);
+    private SplittableRandom azar;
+    private AlertaService alertaService;
+    private IngestaService ingesta;
+    private long reloj;
+
+    @Setup(Level.Iteration)
+    public void preparar() {
+        azar = new SplittableRandom(DatosBenchmark.SEMILLA);
+        alertaService = new AlertaService();
+        alertaService.setMostrarEnConsola(false);
+        ingesta = new IngestaService(alertaService, new EstadisticasService());
+        reloj = 0;
+    }
+
+    private void siguienteCiclo() {
+        reloj += 1000;
+        DatosBenchmark.llenarCiclo(ciclo, SENSORES, SENSORES_POR_LOTE, reloj, 0.001, azar);
+        if (alertaService.getHistorialAlertas().size() >= 100_000) {
+            alertaService.getHistorialAlertas().clear();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SENSORES)
+    public int procesarPorLote() {
+        siguienteCiclo();
+        return ingesta.procesarLote(ciclo);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SENSORES)
+    public int procesarPorMedicion() {
+        siguienteCiclo();
+        int aceptadas = 0;
+        for (int i = 0; i < ciclo.getTamano(); i++) {
+            // Cada lectura viaja como un objeto Medicion, como antes de MedicionBatch
+            var medicion = ciclo.getMedicion(i);
+            if (ingesta.procesar(medicion, medicion.getLoteId()) == DetectorAnomalias.TipoAnomalia.NINGUNA) {
+                aceptadas++;
+            }
+        }
+        return aceptadas;
+    }
+}
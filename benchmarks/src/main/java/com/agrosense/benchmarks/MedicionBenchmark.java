@@ -0,0 +1,60 @@
+package com.agrosense.benchmarks;
+
+import com.agrosense.model.Medicion;
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Costo de representar 1.000 lecturas: como objetos {@link Medicion} o en un
+ * {@link MedicionBatch} reutilizado. El dato principal es
+ * {@code gc.alloc.rate.norm} del perfilador de GC (bytes por lectura).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MedicionBenchmark {
+
+    private static final int LECTURAS = 1000;
+
+    private final int sensor = TablaIds.SENSORES.numero("S0");
+    private final int lote = TablaIds.LOTES.numero("L0");
+    private final Medicion[] mediciones = new Medicion[LECTURAS];
+    private final MedicionBatch batch = new MedicionBatch(LECTURAS);
+    private long reloj;
+
+    @Benchmark
+    @OperationsPerInvocation(LECTURAS)
+    public Medicion[] crearMediciones() {
+        reloj += 1000;
+        for (int i = 0; i < LECTURAS; i++) {
+            mediciones[i] = new Medicion(sensor, lote, TipoSensor.HUMEDAD, 60.0 + i, reloj + i);
+        }
+        return mediciones;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LECTURAS)
+    public MedicionBatch llenarBatch() {
+        reloj += 1000;
+        batch.limpiar();
+        for (int i = 0; i < LECTURAS; i++) {
+            batch.agregar(sensor, lote, TipoSensor.HUMEDAD, 60.0 + i, reloj + i);
+        }
+        return batch;
+    }
+}
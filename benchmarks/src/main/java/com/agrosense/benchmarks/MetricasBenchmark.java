@@ -0,0 +1,57 @@
+package com.agrosense.benchmarks;
+
+import com.agrosense.service.Contador;
+import com.agrosense.service.HistogramaLatencia;
+import com.agrosense.service.RegistroMetricas;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Costo de registrar un evento en las métricas, con uno y con varios hilos
+ * sobre la misma métrica. El objetivo es menos de 50 ns por evento.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricasBenchmark {
+
+    private final RegistroMetricas registro = new RegistroMetricas("com.agrosense.benchmarks");
+    private final Contador contador = registro.contador("eventos");
+    private final HistogramaLatencia histograma = registro.histograma("latencia");
+    private long valor = 1;
+
+    @Benchmark
+    public void incrementarContador() {
+        contador.incrementar();
+    }
+
+    @Benchmark
+    public void registrarLatencia() {
+        // Valores de 1 ns a ~1 ms para recorrer distintas cubetas
+        valor = (valor * 31 + 7) & 0xFFFFF;
+        histograma.registrar(valor);
+    }
+
+    @Benchmark
+    public void registrarLatenciaDesde() {
+        histograma.registrarDesde(System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void registrarLatenciaConcurrente() {
+        histograma.registrar(System.nanoTime() & 0xFFFFF);
+    }
+}
@@ -0,0 +1,76 @@
+package com.agrosense.benchmarks;
+
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.service.ProcesadorParticionado;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ingesta de un ciclo de 10.000 sensores en 1.000 lotes repartida en
+ * particiones ({@link ProcesadorParticionado}), esperando a que todas
+ * terminen. El tiempo es por lectura; comparar con
+ * {@link IngestaBenchmark#procesarPorLote} (un solo hilo, sin reparto) y
+ * entre cantidades de particiones en una máquina con varios núcleos.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParticionadoBenchmark {
+
+    private static final int SENSORES = 10_000;
+    private static final int SENSORES_POR_LOTE = 10;
+    private static final int MAX_ALERTAS = 100_000;
+
+    @Param({ "1", "2", "4", "8" })
+    public int particiones;
+
+    private final MedicionBatch ciclo = new MedicionBatch(SENSORES);
+    private SplittableRandom azar;
+    private ProcesadorParticionado procesador;
+    private long reloj;
+
+    @Setup(Level.Iteration)
+    public void preparar() {
+        azar = new SplittableRandom(DatosBenchmark.SEMILLA);
+        procesador = new ProcesadorParticionado(particiones);
+        procesador.setMostrarAlertasEnConsola(false);
+        procesador.iniciar();
+        reloj = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void terminar() {
+        procesador.detener();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SENSORES)
+    public long procesarParticionado() {
+        reloj += 1000;
+        DatosBenchmark.llenarCiclo(ciclo, SENSORES, SENSORES_POR_LOTE, reloj, 0.001, azar);
+        if (reloj % 100_000 == 0 && procesador.contarAlertas() >= MAX_ALERTAS) {
+            procesador.consultarTodas(p -> {
+                p.getAlertaService().getHistorialAlertas().clear();
+                return null;
+            });
+        }
+        return procesador.procesarLote(ciclo);
+    }
+}
@@ -0,0 +1,48 @@
+package com.agrosense.benchmarks;
+
+import com.agrosense.model.Alerta;
+import com.agrosense.model.Recomendacion;
+import com.agrosense.service.RecomendacionService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generación de recomendaciones sobre historiales de distinto tamaño (la UI
+ * usa las últimas 200 alertas)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecomendacionBenchmark {
+
+    @Param({ "200", "10000", "100000" })
+    public int alertas;
+
+    private final RecomendacionService servicio = new RecomendacionService();
+    private List<Alerta> historial;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        historial = DatosBenchmark.alertas(alertas, 50);
+    }
+
+    @Benchmark
+    public List<Recomendacion> generarRecomendaciones() {
+        return servicio.generarRecomendaciones(historial);
+    }
+}
@@ -0,0 +1,81 @@
+package com.agrosense.benchmarks;
+
+import com.agrosense.model.Lote;
+import com.agrosense.service.AlertaService;
+import com.agrosense.service.GestorLotes;
+import com.agrosense.service.ToonPersistenceService;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Exportación e importación del archivo TOON completo. Cada lote tiene 10
+ * sensores y 20 alertas; los archivos se escriben en un directorio temporal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ToonPersistenceBenchmark {
+
+    private static final int SENSORES_POR_LOTE = 10;
+    private static final int ALERTAS_POR_LOTE = 20;
+
+    @Param({ "10", "100", "1000" })
+    public int lotes;
+
+    private Path directorio;
+    private ToonPersistenceService toon;
+    private GestorLotes gestor;
+    private AlertaService alertaService;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        directorio = Files.createTempDirectory("agrosense-jmh");
+        toon = new ToonPersistenceService(directorio);
+        gestor = new GestorLotes();
+        for (Lote lote : DatosBenchmark.lotes(lotes, SENSORES_POR_LOTE)) {
+            gestor.registrarLote(lote);
+        }
+        alertaService = new AlertaService();
+        alertaService.setMostrarEnConsola(false);
+        alertaService.getHistorialAlertas().addAll(DatosBenchmark.alertas(lotes * ALERTAS_POR_LOTE, lotes));
+        // Archivo que lee importar
+        toon.exportarDatos(gestor, alertaService);
+    }
+
+    @TearDown(Level.Trial)
+    public void borrar() throws IOException {
+        try (Stream<Path> archivos = Files.walk(directorio)) {
+            archivos.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void exportar() throws IOException {
+        toon.exportarDatos(gestor, alertaService);
+    }
+
+    @Benchmark
+    public ToonPersistenceService.AgroSenseData importar() throws IOException {
+        return toon.importarDatos();
+    }
+}
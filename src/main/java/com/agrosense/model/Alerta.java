@@ -1,6 +1,7 @@
 package com.agrosense.model;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 
 public class Alerta {
     public enum Nivel {
@@ -12,6 +13,10 @@ public class Alerta {
     private LocalDateTime fechaHora;
     private String loteId;
 
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // Se formatea la primera vez que se muestra y se reutiliza en cada repintado
+    private String fechaTexto;
+
     public Alerta(String mensaje, Nivel nivel, String loteId) {
         this(mensaje, nivel, loteId, LocalDateTime.now());
     }
@@ -35,6 +40,18 @@ public class Alerta {
         return fechaHora;
     }
 
+    /**
+     * Fecha lista para mostrar en tablas ("yyyy-MM-dd HH:mm:ss")
+     */
+    public String getFechaTexto() {
+        String texto = fechaTexto;
+        if (texto == null) {
+            texto = FORMATO_FECHA.format(fechaHora);
+            fechaTexto = texto;
+        }
+        return texto;
+    }
+
     public String getLoteId() {
         return loteId;
     }
@@ -2,11 +2,13 @@ package com.agrosense.model;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Lote {
     private String id;
+    private final int numero; // número del id en TablaIds.LOTES
     private String nombre;
     private String tipoCultivo;
     private double area; // en hectáreas o m2
@@ -17,6 +19,11 @@ public class Lote {
     private String etapaCrecimiento; // "GERMINACION", "PLANTULA", "VEGETATIVO", "FLORACION", "FRUCTIFICACION"
     private String notas;
 
+    // Se incrementa con cada cambio de metadatos o sensores, después de
+    // escribirlo: quien lee una versión nueva ve también el cambio. La
+    // modifican la UI, la API y la replicación; la leen los índices y cachés.
+    private final AtomicLong version = new AtomicLong();
+
     public Lote(String id, String nombre, String tipoCultivo, double area) {
         if (id == null || id.trim().isEmpty()) {
             throw new IllegalArgumentException("El ID del lote no puede estar vacío");
@@ -29,16 +36,32 @@ public class Lote {
         }
 
         this.id = id;
+        this.numero = TablaIds.LOTES.numero(id);
         this.nombre = nombre;
         this.tipoCultivo = tipoCultivo;
         this.area = area;
-        this.sensores = new ArrayList<>();
+        // Copia en escritura: los hilos de monitoreo recorren los sensores mientras la UI agrega otros
+        this.sensores = new CopyOnWriteArrayList<>();
         this.etapaCrecimiento = "GERMINACION"; // Etapa inicial por defecto
         this.notas = "";
     }
 
     public void agregarSensor(Sensor sensor) {
         sensores.add(sensor);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Quita el sensor con el ID dado
+     *
+     * @return true si el lote tenía ese sensor
+     */
+    public boolean eliminarSensor(String sensorId) {
+        boolean eliminado = sensores.removeIf(s -> s.getId().equals(sensorId));
+        if (eliminado) {
+            version.incrementAndGet();
+        }
+        return eliminado;
     }
 
     public List<Sensor> getSensores() {
@@ -49,6 +72,10 @@ public class Lote {
         return id;
     }
 
+    public int getNumero() {
+        return numero;
+    }
+
     public String getNombre() {
         return nombre;
     }
@@ -68,6 +95,7 @@ public class Lote {
 
     public void setFechaSiembra(LocalDate fechaSiembra) {
         this.fechaSiembra = fechaSiembra;
+        version.incrementAndGet();
     }
 
     public String getEtapaCrecimiento() {
@@ -76,6 +104,7 @@ public class Lote {
 
     public void setEtapaCrecimiento(String etapaCrecimiento) {
         this.etapaCrecimiento = etapaCrecimiento;
+        version.incrementAndGet();
     }
 
     public String getNotas() {
@@ -84,6 +113,15 @@ public class Lote {
 
     public void setNotas(String notas) {
         this.notas = notas != null ? notas : "";
+        version.incrementAndGet();
+    }
+
+    /**
+     * Versión de los datos del lote; cambia cada vez que se modifican sus
+     * metadatos o se le agrega un sensor
+     */
+    public long getVersion() {
+        return version.get();
     }
 
     /**
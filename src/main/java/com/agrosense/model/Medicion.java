@@ -1,42 +1,78 @@
 package com.agrosense.model;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
+/**
+ * Lectura de un sensor. Se guarda de forma plana (instante en epoch
+ * milisegundos y números de {@link TablaIds} para sensor y lote) para que cada
+ * medición ocupe un solo objeto pequeño.
+ */
 public class Medicion {
-    private LocalDateTime fechaHora;
-    private double valor;
-    private String sensorId;
-    private String tipoSensor;
+    public static final int SIN_LOTE = -1;
 
-    public Medicion(double valor, String sensorId, String tipoSensor) {
-        this.fechaHora = LocalDateTime.now();
+    private final long epochMillis;
+    private final double valor;
+    private final int sensor;
+    private final int lote;
+    private final TipoSensor tipoSensor;
+
+    public Medicion(double valor, String sensorId, TipoSensor tipoSensor) {
+        this(TablaIds.SENSORES.numero(sensorId), SIN_LOTE, tipoSensor, valor, System.currentTimeMillis());
+    }
+
+    /**
+     * @param sensor número del sensor en {@link TablaIds#SENSORES}
+     * @param lote   número del lote en {@link TablaIds#LOTES}, o SIN_LOTE
+     */
+    public Medicion(int sensor, int lote, TipoSensor tipoSensor, double valor, long epochMillis) {
+        this.epochMillis = epochMillis;
         this.valor = valor;
-        this.sensorId = sensorId;
+        this.sensor = sensor;
+        this.lote = lote;
         this.tipoSensor = tipoSensor;
     }
 
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    // Se calcula al pedirla; no se guarda en cada medición
     public LocalDateTime getFechaHora() {
-        return fechaHora;
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
     }
 
     public double getValor() {
         return valor;
     }
 
+    public int getSensor() {
+        return sensor;
+    }
+
+    public int getLote() {
+        return lote;
+    }
+
     public String getSensorId() {
-        return sensorId;
+        return TablaIds.SENSORES.texto(sensor);
+    }
+
+    public String getLoteId() {
+        return lote == SIN_LOTE ? null : TablaIds.LOTES.texto(lote);
     }
 
-    public String getTipoSensor() {
+    public TipoSensor getTipoSensor() {
         return tipoSensor;
     }
 
     @Override
     public String toString() {
         return "Medicion{" +
-                "fechaHora=" + fechaHora +
+                "fechaHora=" + getFechaHora() +
                 ", valor=" + valor +
-                ", sensorId='" + sensorId + '\'' +
+                ", sensorId='" + getSensorId() + '\'' +
                 ", tipoSensor='" + tipoSensor + '\'' +
                 '}';
     }
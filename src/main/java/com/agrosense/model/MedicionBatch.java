@@ -0,0 +1,149 @@
+package com.agrosense.model;
+
+import java.util.Arrays;
+
+/**
+ * Lote de mediciones en columnas: un arreglo primitivo por campo (instante,
+ * sensor, lote, tipo y valor) en lugar de un objeto {@link Medicion} por
+ * lectura. Sensor y lote son números de {@link TablaIds} y el tipo es el
+ * ordinal de {@link TipoSensor}. Se reutiliza entre ciclos y solo reserva
+ * memoria cuando necesita crecer.
+ */
+public class MedicionBatch {
+
+    private static final TipoSensor[] TIPOS = TipoSensor.values();
+
+    private long[] tiempos;
+    private int[] sensores;
+    private int[] lotes;
+    private byte[] tipos;
+    private double[] valores;
+    private int tamano;
+
+    public MedicionBatch() {
+        this(64);
+    }
+
+    public MedicionBatch(int capacidadInicial) {
+        int capacidad = Math.max(1, capacidadInicial);
+        this.tiempos = new long[capacidad];
+        this.sensores = new int[capacidad];
+        this.lotes = new int[capacidad];
+        this.tipos = new byte[capacidad];
+        this.valores = new double[capacidad];
+    }
+
+    public void limpiar() {
+        tamano = 0;
+    }
+
+    /**
+     * Garantiza espacio para {@code adicionales} mediciones más
+     */
+    public void reservar(int adicionales) {
+        int requerido = tamano + adicionales;
+        if (requerido <= valores.length) {
+            return;
+        }
+        int capacidad = Math.max(requerido, valores.length * 2);
+        tiempos = Arrays.copyOf(tiempos, capacidad);
+        sensores = Arrays.copyOf(sensores, capacidad);
+        lotes = Arrays.copyOf(lotes, capacidad);
+        tipos = Arrays.copyOf(tipos, capacidad);
+        valores = Arrays.copyOf(valores, capacidad);
+    }
+
+    public void agregar(int sensor, int lote, TipoSensor tipo, double valor, long epochMillis) {
+        if (tamano == valores.length) {
+            reservar(1);
+        }
+        tiempos[tamano] = epochMillis;
+        sensores[tamano] = sensor;
+        lotes[tamano] = lote;
+        tipos[tamano] = (byte) tipo.ordinal();
+        valores[tamano] = valor;
+        tamano++;
+    }
+
+    public void agregar(Medicion medicion) {
+        agregar(medicion.getSensor(), medicion.getLote(), medicion.getTipoSensor(), medicion.getValor(),
+                medicion.getEpochMillis());
+    }
+
+    /**
+     * Deja solo las primeras {@code cantidad} mediciones
+     */
+    public void truncar(int cantidad) {
+        tamano = Math.min(tamano, Math.max(0, cantidad));
+    }
+
+    /**
+     * Copia la medición {@code desde} sobre la posición {@code hacia}; sirve
+     * para compactar el lote en el lugar
+     */
+    public void mover(int desde, int hacia) {
+        tiempos[hacia] = tiempos[desde];
+        sensores[hacia] = sensores[desde];
+        lotes[hacia] = lotes[desde];
+        tipos[hacia] = tipos[desde];
+        valores[hacia] = valores[desde];
+    }
+
+    public int getTamano() {
+        return tamano;
+    }
+
+    public long getTiempo(int i) {
+        return tiempos[i];
+    }
+
+    public int getSensor(int i) {
+        return sensores[i];
+    }
+
+    public int getLote(int i) {
+        return lotes[i];
+    }
+
+    public byte getCodigoTipo(int i) {
+        return tipos[i];
+    }
+
+    public TipoSensor getTipo(int i) {
+        return TIPOS[tipos[i]];
+    }
+
+    public double getValor(int i) {
+        return valores[i];
+    }
+
+    /**
+     * Crea el objeto {@link Medicion} de una fila (solo para mostrar o
+     * guardar una lectura suelta)
+     */
+    public Medicion getMedicion(int i) {
+        return new Medicion(sensores[i], lotes[i], TIPOS[tipos[i]], valores[i], tiempos[i]);
+    }
+
+    // Acceso directo a las columnas para recorridos en bucles ajustados
+
+    public long[] getTiempos() {
+        return tiempos;
+    }
+
+    public int[] getSensores() {
+        return sensores;
+    }
+
+    public int[] getLotes() {
+        return lotes;
+    }
+
+    public byte[] getTipos() {
+        return tipos;
+    }
+
+    public double[] getValores() {
+        return valores;
+    }
+}
@@ -0,0 +1,61 @@
+package com.agrosense.model;
+
+/**
+ * Resultado del análisis de tendencia de una serie de mediciones: pendiente
+ * por regresión lineal, media móvil exponencial y confianza del ajuste.
+ */
+public class ResultadoTendencia {
+    private final double pendientePorHora;
+    private final double confianza; // 0 a 1
+    private final double mediaExponencial;
+    private final double valorEstimado; // valor de la recta en la última medición
+    private final int muestras;
+
+    public ResultadoTendencia(double pendientePorHora, double confianza, double mediaExponencial,
+            double valorEstimado, int muestras) {
+        this.pendientePorHora = pendientePorHora;
+        this.confianza = confianza;
+        this.mediaExponencial = mediaExponencial;
+        this.valorEstimado = valorEstimado;
+        this.muestras = muestras;
+    }
+
+    public double getPendientePorHora() {
+        return pendientePorHora;
+    }
+
+    public double getConfianza() {
+        return confianza;
+    }
+
+    public double getMediaExponencial() {
+        return mediaExponencial;
+    }
+
+    public double getValorEstimado() {
+        return valorEstimado;
+    }
+
+    public int getMuestras() {
+        return muestras;
+    }
+
+    /**
+     * Horas que faltan para alcanzar el umbral siguiendo la pendiente actual
+     * 
+     * @return horas estimadas, o -1 si la serie no se dirige hacia el umbral
+     */
+    public double horasHasta(double umbral) {
+        if (muestras < 2 || pendientePorHora == 0) {
+            return -1;
+        }
+        double horas = (umbral - valorEstimado) / pendientePorHora;
+        return horas >= 0 ? horas : -1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResultadoTendencia{pendiente=%.3f/h, confianza=%.2f, ewma=%.2f, n=%d}",
+                pendientePorHora, confianza, mediaExponencial, muestras);
+    }
+}
@@ -0,0 +1,60 @@
+package com.agrosense.model;
+
+/**
+ * Resumen agregado (mínimo, máximo, promedio y cantidad) de las mediciones
+ * registradas dentro de un intervalo de tiempo.
+ */
+public class ResumenIntervalo {
+    private final long inicioMillis;
+    private final long duracionMillis;
+    private final double minimo;
+    private final double maximo;
+    private final double promedio;
+    private final long conteo;
+
+    public ResumenIntervalo(long inicioMillis, long duracionMillis, double minimo, double maximo, double promedio,
+            long conteo) {
+        this.inicioMillis = inicioMillis;
+        this.duracionMillis = duracionMillis;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.promedio = promedio;
+        this.conteo = conteo;
+    }
+
+    public long getInicioMillis() {
+        return inicioMillis;
+    }
+
+    public long getDuracionMillis() {
+        return duracionMillis;
+    }
+
+    public double getMinimo() {
+        return minimo;
+    }
+
+    public double getMaximo() {
+        return maximo;
+    }
+
+    public double getPromedio() {
+        return promedio;
+    }
+
+    public long getConteo() {
+        return conteo;
+    }
+
+    @Override
+    public String toString() {
+        return "ResumenIntervalo{" +
+                "inicio=" + inicioMillis +
+                ", duracion=" + duracionMillis +
+                ", min=" + minimo +
+                ", max=" + maximo +
+                ", prom=" + promedio +
+                ", n=" + conteo +
+                '}';
+    }
+}
@@ -2,12 +2,15 @@ package com.agrosense.model;
 
 public abstract class Sensor {
     protected String id;
-    protected String tipo; // HUMEDAD, TEMPERATURA
+    protected TipoSensor tipo;
+    protected final int numero; // número del id en TablaIds.SENSORES
     protected String ubicacion;
+    protected long intervaloMuestreoMs = 5000; // cada cuánto se lee en el monitoreo continuo
 
-    public Sensor(String id, String tipo, String ubicacion) {
+    public Sensor(String id, TipoSensor tipo, String ubicacion) {
         this.id = id;
         this.tipo = tipo;
+        this.numero = TablaIds.SENSORES.numero(id);
         this.ubicacion = ubicacion;
     }
 
@@ -15,14 +18,29 @@ public abstract class Sensor {
         return id;
     }
 
-    public String getTipo() {
+    public TipoSensor getTipo() {
         return tipo;
     }
 
+    public int getNumero() {
+        return numero;
+    }
+
     public String getUbicacion() {
         return ubicacion;
     }
 
+    public long getIntervaloMuestreoMs() {
+        return intervaloMuestreoMs;
+    }
+
+    public void setIntervaloMuestreoMs(long intervaloMuestreoMs) {
+        if (intervaloMuestreoMs <= 0) {
+            throw new IllegalArgumentException("El intervalo de muestreo debe ser mayor a 0");
+        }
+        this.intervaloMuestreoMs = intervaloMuestreoMs;
+    }
+
     // Método abstracto para simular la lectura de datos
     public abstract double leerDato();
     
@@ -1,16 +1,16 @@
 package com.agrosense.model;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class SensorHumedad extends Sensor {
 
     public SensorHumedad(String id, String ubicacion) {
-        super(id, "HUMEDAD", ubicacion);
+        super(id, TipoSensor.HUMEDAD, ubicacion);
     }
 
     @Override
     public double leerDato() {
         // Simulación interna si se usa directamente
-        return new Random().nextDouble() * 100;
+        return ThreadLocalRandom.current().nextDouble() * 100;
     }
 }
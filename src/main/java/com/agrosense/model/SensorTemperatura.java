@@ -1,16 +1,16 @@
 package com.agrosense.model;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class SensorTemperatura extends Sensor {
 
     public SensorTemperatura(String id, String ubicacion) {
-        super(id, "TEMPERATURA", ubicacion);
+        super(id, TipoSensor.TEMPERATURA, ubicacion);
     }
 
     @Override
     public double leerDato() {
         // Simulación interna si se usa directamente
-        return 10 + (new Random().nextDouble() * 30);
+        return 10 + (ThreadLocalRandom.current().nextDouble() * 30);
     }
 }
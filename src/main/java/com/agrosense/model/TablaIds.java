@@ -0,0 +1,64 @@
+package com.agrosense.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Asigna a cada id de texto un número entero consecutivo que no cambia durante
+ * la ejecución, para que las lecturas guarden un int en lugar de una
+ * referencia a String. Hay una tabla para sensores y otra para lotes.
+ */
+public final class TablaIds {
+
+    public static final TablaIds SENSORES = new TablaIds();
+    public static final TablaIds LOTES = new TablaIds();
+
+    private final Map<String, Integer> numeros = new ConcurrentHashMap<>();
+    private volatile String[] textos = new String[64];
+    private int cantidad;
+
+    private TablaIds() {
+    }
+
+    /**
+     * Devuelve el número del id, asignando uno nuevo si es la primera vez
+     */
+    public int numero(String id) {
+        Integer numero = numeros.get(id);
+        if (numero != null) {
+            return numero;
+        }
+        synchronized (this) {
+            numero = numeros.get(id);
+            if (numero != null) {
+                return numero;
+            }
+            if (cantidad == textos.length) {
+                textos = Arrays.copyOf(textos, cantidad * 2);
+            }
+            textos[cantidad] = id;
+            numeros.put(id, cantidad);
+            return cantidad++;
+        }
+    }
+
+    /**
+     * Número del id sin asignar uno nuevo; -1 si el id nunca se registró
+     */
+    public int buscar(String id) {
+        Integer numero = numeros.get(id);
+        return numero == null ? -1 : numero;
+    }
+
+    /**
+     * Id de texto de un número asignado por {@link #numero(String)}
+     */
+    public String texto(int numero) {
+        return textos[numero];
+    }
+
+    public int getCantidad() {
+        return numeros.size();
+    }
+}
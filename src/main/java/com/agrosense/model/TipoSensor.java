@@ -0,0 +1,32 @@
+package com.agrosense.model;
+
+/**
+ * Tipos de sensor soportados, con la unidad en que se expresan sus lecturas
+ */
+public enum TipoSensor {
+    HUMEDAD("%"),
+    TEMPERATURA("°C");
+
+    private final String unidad;
+
+    TipoSensor(String unidad) {
+        this.unidad = unidad;
+    }
+
+    public String getUnidad() {
+        return unidad;
+    }
+
+    /**
+     * Convierte el texto guardado o ingresado por el usuario, sin distinguir
+     * mayúsculas
+     */
+    public static TipoSensor desdeTexto(String texto) {
+        for (TipoSensor tipo : values()) {
+            if (tipo.name().equalsIgnoreCase(texto.trim())) {
+                return tipo;
+            }
+        }
+        throw new IllegalArgumentException("Tipo de sensor no válido: " + texto);
+    }
+}
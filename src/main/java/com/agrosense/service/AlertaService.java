@@ -2,55 +2,129 @@ package com.agrosense.service;
 
 import com.agrosense.model.Alerta;
 import com.agrosense.model.Medicion;
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
 import java.util.ArrayList;
 import java.util.List;
 
 public class AlertaService {
-    private List<Alerta> historialAlertas;
+    public static final double HUMEDAD_CRITICA = 30.0;
+    public static final double HUMEDAD_BAJA = 50.0;
+    public static final double TEMPERATURA_CRITICA = 35.0;
+    public static final double TEMPERATURA_ALTA = 30.0;
+
+    private AlmacenAlertas historialAlertas;
+    private volatile boolean mostrarEnConsola = true;
 
     public AlertaService() {
-        this.historialAlertas = new ArrayList<>();
+        // Sincronizado e indexado: las alertas pueden generarse desde los hilos de
+        // sondeo y la UI las consulta por páginas
+        this.historialAlertas = new AlmacenAlertas();
     }
 
     public void verificarMedicion(Medicion medicion, String loteId) {
-        double valor = medicion.getValor();
-        String tipo = medicion.getTipoSensor();
+        verificarLectura(medicion.getTipoSensor(), medicion.getValor(), loteId);
+    }
 
-        if (tipo.equalsIgnoreCase("HUMEDAD")) {
-            if (valor < 30.0) {
+    /**
+     * Verifica un valor leído sin necesidad de construir una {@link Medicion};
+     * solo se reserva memoria si se genera una alerta
+     */
+    public void verificarLectura(TipoSensor tipo, double valor, String loteId) {
+        if (tipo == TipoSensor.HUMEDAD) {
+            if (valor < HUMEDAD_CRITICA) {
                 generarAlerta("Humedad crítica baja (" + String.format("%.2f", valor) + "%)", Alerta.Nivel.CRITICAL,
                         loteId);
-            } else if (valor < 50.0) {
+            } else if (valor < HUMEDAD_BAJA) {
                 generarAlerta("Humedad baja (" + String.format("%.2f", valor) + "%)", Alerta.Nivel.WARNING, loteId);
             }
-        } else if (tipo.equalsIgnoreCase("TEMPERATURA")) {
-            if (valor > 35.0) {
+        } else if (tipo == TipoSensor.TEMPERATURA) {
+            if (valor > TEMPERATURA_CRITICA) {
                 generarAlerta("Temperatura crítica alta (" + String.format("%.2f", valor) + "°C)",
                         Alerta.Nivel.CRITICAL, loteId);
-            } else if (valor > 30.0) {
+            } else if (valor > TEMPERATURA_ALTA) {
                 generarAlerta("Temperatura alta (" + String.format("%.2f", valor) + "°C)", Alerta.Nivel.WARNING,
                         loteId);
             }
         }
     }
 
+    /**
+     * Verifica todas las lecturas de un lote de mediciones. El recorrido solo
+     * compara valores contra los umbrales de cada tipo; las lecturas que
+     * superan alguno pasan a {@link #verificarLectura}.
+     */
+    public void verificarLote(MedicionBatch batch) {
+        int n = batch.getTamano();
+        byte[] tipos = batch.getTipos();
+        double[] valores = batch.getValores();
+        byte humedad = (byte) TipoSensor.HUMEDAD.ordinal();
+        for (int i = 0; i < n; i++) {
+            double valor = valores[i];
+            boolean fueraDeRango = tipos[i] == humedad ? valor < HUMEDAD_BAJA : valor > TEMPERATURA_ALTA;
+            if (fueraDeRango) {
+                verificarLectura(batch.getTipo(i), valor, TablaIds.LOTES.texto(batch.getLote(i)));
+            }
+        }
+    }
+
+    /**
+     * Indica si el valor está en el rango que genera una alerta crítica
+     */
+    public static boolean esCritica(TipoSensor tipo, double valor) {
+        return tipo == TipoSensor.HUMEDAD ? valor < HUMEDAD_CRITICA : valor > TEMPERATURA_CRITICA;
+    }
+
+    /**
+     * Registra una alerta por posible falla de un sensor detectada en la
+     * ingesta
+     */
+    public void reportarFallaSensor(String sensorId, String motivo, String loteId) {
+        generarAlerta("Posible falla del sensor " + sensorId + " (" + motivo + ")", Alerta.Nivel.WARNING, loteId);
+    }
+
     private void generarAlerta(String mensaje, Alerta.Nivel nivel, String loteId) {
         Alerta alerta = new Alerta(mensaje, nivel, loteId);
         historialAlertas.add(alerta);
-        System.out.println(">>> ALERTA GENERADA: " + alerta);
+        Metricas.alertas(nivel).incrementar();
+        if (mostrarEnConsola) {
+            System.out.println(">>> ALERTA GENERADA: " + alerta);
+        }
+    }
+
+    /**
+     * Si es false las alertas solo se registran en el historial, sin imprimir
+     * una línea por alerta (modo servidor)
+     */
+    public void setMostrarEnConsola(boolean mostrarEnConsola) {
+        this.mostrarEnConsola = mostrarEnConsola;
     }
 
     public List<Alerta> getHistorialAlertas() {
         return historialAlertas;
     }
 
-    public List<Alerta> getAlertasPorLote(String loteId) {
-        List<Alerta> result = new ArrayList<>();
-        for (Alerta a : historialAlertas) {
-            if (a.getLoteId().equals(loteId)) {
-                result.add(a);
-            }
+    /**
+     * El historial con sus índices, para consultas filtradas y paginadas
+     */
+    public AlmacenAlertas getAlmacen() {
+        return historialAlertas;
+    }
+
+    /**
+     * Copia del historial tomada de forma segura aunque otros hilos estén
+     * generando alertas
+     */
+    public List<Alerta> obtenerCopiaHistorial() {
+        synchronized (historialAlertas) {
+            return new ArrayList<>(historialAlertas);
         }
-        return result;
+    }
+
+    public List<Alerta> getAlertasPorLote(String loteId) {
+        AlmacenAlertas.Resultado resultado = historialAlertas.consultar(
+                new AlmacenAlertas.Filtro(null, loteId, null, null), AlmacenAlertas.Orden.FECHA, false);
+        return historialAlertas.obtener(resultado, 0, resultado.getTamano());
     }
 }
@@ -0,0 +1,492 @@
+package com.agrosense.service;
+
+import com.agrosense.model.Alerta;
+import com.agrosense.model.TablaIds;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Historial de alertas indexado, pensado para millones de alertas. Solo se
+ * agregan alertas al final. Junto a cada alerta se guardan su fecha, nivel y
+ * lote en arreglos primitivos, y hay un índice de posiciones por nivel y otro
+ * por lote.
+ * <p>
+ * {@link #consultar} filtra por nivel, lote y rango de fechas, y ordena por
+ * fecha, nivel o lote sin copiar las alertas. El resultado es una lista de
+ * posiciones; la UI pide solo la página visible con {@link #obtener}. Cuando
+ * las alertas llegan en orden de fecha (lo normal), filtrar solo por fecha
+ * u ordenar por fecha no recorre el historial: se resuelve con búsqueda
+ * binaria sobre el índice que corresponda.
+ * <p>
+ * Sigue funcionando como {@code List<Alerta>} para el código existente. Todos
+ * los métodos sincronizan sobre el propio almacén, y los iteradores recorren
+ * las alertas que había al crearlos, por lo que se puede recorrer el historial
+ * mientras otros hilos agregan alertas.
+ */
+public class AlmacenAlertas extends AbstractList<Alerta> implements RandomAccess {
+
+    private static final Alerta.Nivel[] NIVELES = Alerta.Nivel.values();
+
+    public enum Orden {
+        FECHA, NIVEL, LOTE
+    }
+
+    private Alerta[] alertas = new Alerta[256];
+    private long[] tiempos = new long[256];
+    private byte[] niveles = new byte[256];
+    private int[] lotes = new int[256];
+    private int tamano;
+    private long version;
+    private int generacion;
+
+    // true mientras las alertas se hayan agregado en orden de fecha
+    private boolean ordenadas = true;
+    // Si no lo están: posiciones ordenadas por fecha, o null si hay que
+    // recalcularlas. Las alertas posteriores a todas las demás se agregan al final.
+    private int[] porFecha;
+    private int cantidadPorFecha;
+
+    private final Posiciones[] porNivel = new Posiciones[NIVELES.length];
+    private final Map<Integer, Posiciones> porLote = new HashMap<>();
+
+    public AlmacenAlertas() {
+        for (int i = 0; i < porNivel.length; i++) {
+            porNivel[i] = new Posiciones();
+        }
+    }
+
+    @Override
+    public synchronized boolean add(Alerta alerta) {
+        if (tamano == alertas.length) {
+            int n = tamano * 2;
+            alertas = Arrays.copyOf(alertas, n);
+            tiempos = Arrays.copyOf(tiempos, n);
+            niveles = Arrays.copyOf(niveles, n);
+            lotes = Arrays.copyOf(lotes, n);
+        }
+        long tiempo = clave(alerta.getFechaHora());
+        int lote = alerta.getLoteId() == null ? -1 : TablaIds.LOTES.numero(alerta.getLoteId());
+        if (ordenadas && tamano > 0 && tiempo < tiempos[tamano - 1]) {
+            ordenadas = false;
+            porFecha = null;
+        } else if (!ordenadas && porFecha != null) {
+            if (tiempo >= tiempos[porFecha[cantidadPorFecha - 1]]) {
+                if (cantidadPorFecha == porFecha.length) {
+                    porFecha = Arrays.copyOf(porFecha, cantidadPorFecha * 2);
+                }
+                porFecha[cantidadPorFecha++] = tamano;
+            } else {
+                porFecha = null;
+            }
+        }
+        alertas[tamano] = alerta;
+        tiempos[tamano] = tiempo;
+        niveles[tamano] = (byte) alerta.getNivel().ordinal();
+        lotes[tamano] = lote;
+        porNivel[alerta.getNivel().ordinal()].agregar(tamano);
+        porLote.computeIfAbsent(lote, k -> new Posiciones()).agregar(tamano);
+        tamano++;
+        version++;
+        return true;
+    }
+
+    @Override
+    public void add(int indice, Alerta alerta) {
+        if (indice != size()) {
+            throw new UnsupportedOperationException("Las alertas solo se agregan al final");
+        }
+        add(alerta);
+    }
+
+    @Override
+    public synchronized Alerta get(int indice) {
+        if (indice < 0 || indice >= tamano) {
+            throw new IndexOutOfBoundsException("Índice: " + indice + ", tamaño: " + tamano);
+        }
+        return alertas[indice];
+    }
+
+    @Override
+    public synchronized int size() {
+        return tamano;
+    }
+
+    @Override
+    public synchronized void clear() {
+        Arrays.fill(alertas, 0, tamano, null);
+        tamano = 0;
+        ordenadas = true;
+        porFecha = null;
+        // Índices nuevos: los resultados anteriores pueden compartir los arreglos viejos
+        for (int i = 0; i < porNivel.length; i++) {
+            porNivel[i] = new Posiciones();
+        }
+        porLote.clear();
+        version++;
+        generacion++;
+    }
+
+    @Override
+    public Iterator<Alerta> iterator() {
+        int fin = size();
+        return new Iterator<Alerta>() {
+            private int siguiente;
+
+            @Override
+            public boolean hasNext() {
+                return siguiente < fin;
+            }
+
+            @Override
+            public Alerta next() {
+                if (siguiente >= fin) {
+                    throw new NoSuchElementException();
+                }
+                return get(siguiente++);
+            }
+        };
+    }
+
+    /**
+     * Cambia cada vez que se agregan alertas o se vacía el historial
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Veces que se vació el almacén. Las posiciones solo se pueden comparar
+     * entre lecturas de la misma generación.
+     */
+    public synchronized int getGeneracion() {
+        return generacion;
+    }
+
+    /**
+     * Agrega a {@code destino} las alertas desde la posición dada hasta la última
+     */
+    public synchronized void copiarDesde(int desde, List<Alerta> destino) {
+        for (int i = Math.max(0, desde); i < tamano; i++) {
+            destino.add(alertas[i]);
+        }
+    }
+
+    /**
+     * Las últimas alertas registradas, de la más antigua a la más reciente
+     */
+    public synchronized List<Alerta> ultimas(int cantidad) {
+        int desde = Math.max(0, tamano - cantidad);
+        return new ArrayList<>(Arrays.asList(alertas).subList(desde, tamano));
+    }
+
+    /**
+     * Posiciones de las alertas que cumplen el filtro, en el orden pedido. Con
+     * el mismo criterio, las alertas de igual nivel o lote quedan en orden de
+     * fecha.
+     */
+    public synchronized Resultado consultar(Filtro filtro, Orden orden, boolean descendente) {
+        Resultado base = ordenadas ? filtrar(filtro) : filtrarDesordenadas(filtro);
+        if (orden == Orden.NIVEL) {
+            base = ordenarPorNivel(base);
+        } else if (orden == Orden.LOTE) {
+            base = ordenarPorLote(base);
+        }
+        return descendente ? new Resultado(base.posiciones, base.inicio, base.fin, true) : base;
+    }
+
+    /**
+     * Copia las alertas de una página del resultado
+     */
+    public synchronized List<Alerta> obtener(Resultado resultado, int desde, int cantidad) {
+        int hasta = Math.min(resultado.getTamano(), desde + cantidad);
+        List<Alerta> pagina = new ArrayList<>(Math.max(0, hasta - desde));
+        for (int i = desde; i < hasta; i++) {
+            int posicion = resultado.posicion(i);
+            if (posicion < tamano) { // el historial pudo vaciarse después de consultar
+                pagina.add(alertas[posicion]);
+            }
+        }
+        return pagina;
+    }
+
+    // Alertas en orden de fecha: las posiciones de cada índice también lo están
+    private Resultado filtrar(Filtro filtro) {
+        // Se parte del índice más selectivo disponible
+        int[] posiciones = null;
+        int fin = tamano;
+        int lote = filtro.loteId == null ? 0 : TablaIds.LOTES.buscar(filtro.loteId);
+        if (filtro.loteId != null) {
+            Posiciones p = lote < 0 ? null : porLote.get(lote);
+            if (p == null) {
+                return new Resultado(new int[0], 0, 0, false);
+            }
+            posiciones = p.valores;
+            fin = p.cantidad;
+        }
+        if (filtro.nivel != null) {
+            Posiciones p = porNivel[filtro.nivel.ordinal()];
+            if (posiciones == null || p.cantidad < fin) {
+                posiciones = p.valores;
+                fin = p.cantidad;
+            }
+        }
+
+        // Con alertas en orden de fecha, el rango de fechas es un tramo contiguo
+        int inicio = 0;
+        long desde = filtro.desde == null ? Long.MIN_VALUE : clave(filtro.desde);
+        long hasta = filtro.hasta == null ? Long.MAX_VALUE : clave(filtro.hasta);
+        boolean porFecha = filtro.desde != null || filtro.hasta != null;
+        if (porFecha && ordenadas) {
+            inicio = primeraConTiempo(posiciones, 0, fin, desde);
+            fin = primeraConTiempo(posiciones, inicio, fin, hasta);
+            porFecha = false;
+        }
+
+        int nivel = filtro.nivel == null ? 0 : filtro.nivel.ordinal();
+        boolean revisarLote = filtro.loteId != null && posiciones != porLote.get(lote).valores;
+        boolean revisarNivel = filtro.nivel != null && posiciones != porNivel[nivel].valores;
+        if (!revisarLote && !revisarNivel && !porFecha) {
+            // El tramo del índice es el resultado; el arreglo solo crece al
+            // final, así que se comparte sin copiarlo
+            return new Resultado(posiciones, inicio, fin, false);
+        }
+
+        int[] seleccion = new int[fin - inicio];
+        int n = 0;
+        for (int k = inicio; k < fin; k++) {
+            int i = posiciones == null ? k : posiciones[k];
+            if ((revisarLote && lotes[i] != lote) || (revisarNivel && niveles[i] != nivel)
+                    || (porFecha && (tiempos[i] < desde || tiempos[i] >= hasta))) {
+                continue;
+            }
+            seleccion[n++] = i;
+        }
+        return new Resultado(seleccion, 0, n, false);
+    }
+
+    // Primera posición del tramo [desde, hasta) con tiempo >= t
+    private int primeraConTiempo(int[] posiciones, int desde, int hasta, long t) {
+        int bajo = desde;
+        int alto = hasta;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            int i = posiciones == null ? medio : posiciones[medio];
+            if (tiempos[i] < t) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    // Alertas importadas fuera de orden: se recorren en orden de fecha y el
+    // rango de fechas se busca sobre esa permutación
+    private Resultado filtrarDesordenadas(Filtro filtro) {
+        if (porFecha == null) {
+            porFecha = ordenarPorTiempo();
+            cantidadPorFecha = tamano;
+        }
+        int inicio = filtro.desde == null ? 0 : primeraConTiempo(porFecha, 0, cantidadPorFecha, clave(filtro.desde));
+        int fin = filtro.hasta == null ? cantidadPorFecha
+                : primeraConTiempo(porFecha, inicio, cantidadPorFecha, clave(filtro.hasta));
+        if (filtro.loteId == null && filtro.nivel == null) {
+            return new Resultado(porFecha, inicio, fin, false);
+        }
+        int lote = filtro.loteId == null ? 0 : TablaIds.LOTES.buscar(filtro.loteId);
+        if (filtro.loteId != null && (lote < 0 || !porLote.containsKey(lote))) {
+            return new Resultado(new int[0], 0, 0, false);
+        }
+        int nivel = filtro.nivel == null ? 0 : filtro.nivel.ordinal();
+        int[] seleccion = new int[fin - inicio];
+        int n = 0;
+        for (int k = inicio; k < fin; k++) {
+            int i = porFecha[k];
+            if ((filtro.loteId != null && lotes[i] != lote) || (filtro.nivel != null && niveles[i] != nivel)) {
+                continue;
+            }
+            seleccion[n++] = i;
+        }
+        return new Resultado(seleccion, 0, n, false);
+    }
+
+    // Posiciones de todas las alertas ordenadas por fecha (mergesort estable
+    // sobre enteros, sin crear objetos por alerta)
+    private int[] ordenarPorTiempo() {
+        int[] a = new int[Math.max(16, tamano)];
+        int[] b = new int[a.length];
+        for (int i = 0; i < tamano; i++) {
+            a[i] = i;
+        }
+        for (int ancho = 1; ancho < tamano; ancho *= 2) {
+            for (int izq = 0; izq < tamano; izq += 2 * ancho) {
+                int medio = Math.min(izq + ancho, tamano);
+                int der = Math.min(izq + 2 * ancho, tamano);
+                int i = izq;
+                int j = medio;
+                int k = izq;
+                while (i < medio && j < der) {
+                    b[k++] = tiempos[a[j]] < tiempos[a[i]] ? a[j++] : a[i++];
+                }
+                while (i < medio) {
+                    b[k++] = a[i++];
+                }
+                while (j < der) {
+                    b[k++] = a[j++];
+                }
+            }
+            int[] t = a;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private Resultado ordenarPorNivel(Resultado base) {
+        int[] claves = new int[base.getTamano()];
+        for (int i = 0; i < claves.length; i++) {
+            claves[i] = niveles[base.posicion(i)];
+        }
+        return ordenarPorClave(base, claves, NIVELES.length);
+    }
+
+    private Resultado ordenarPorLote(Resultado base) {
+        // Los lotes distintos son pocos: se ordenan sus ids y cada alerta toma
+        // el rango de su lote como clave
+        List<Integer> distintos = new ArrayList<>(porLote.keySet());
+        distintos.sort((a, b) -> textoLote(a).compareTo(textoLote(b)));
+        Map<Integer, Integer> rango = new HashMap<>();
+        for (int r = 0; r < distintos.size(); r++) {
+            rango.put(distintos.get(r), r);
+        }
+        int[] claves = new int[base.getTamano()];
+        int ultimoLote = Integer.MIN_VALUE;
+        int ultimoRango = 0;
+        for (int i = 0; i < claves.length; i++) {
+            int lote = lotes[base.posicion(i)];
+            if (lote != ultimoLote) {
+                ultimoLote = lote;
+                ultimoRango = rango.get(lote);
+            }
+            claves[i] = ultimoRango;
+        }
+        return ordenarPorClave(base, claves, distintos.size());
+    }
+
+    private static String textoLote(int lote) {
+        return lote < 0 ? "" : TablaIds.LOTES.texto(lote);
+    }
+
+    // Ordenamiento por conteo, estable: se conserva el orden de fecha de la base
+    private static Resultado ordenarPorClave(Resultado base, int[] claves, int cantidadClaves) {
+        int[] inicios = new int[cantidadClaves + 1];
+        for (int clave : claves) {
+            inicios[clave + 1]++;
+        }
+        for (int c = 0; c < cantidadClaves; c++) {
+            inicios[c + 1] += inicios[c];
+        }
+        int[] posiciones = new int[claves.length];
+        for (int i = 0; i < claves.length; i++) {
+            posiciones[inicios[claves[i]]++] = base.posicion(i);
+        }
+        return new Resultado(posiciones, 0, posiciones.length, false);
+    }
+
+    // Clave de orden de una fecha; solo se compara, no importa la zona horaria
+    private static long clave(LocalDateTime fecha) {
+        return fecha.toEpochSecond(ZoneOffset.UTC) * 1000 + fecha.getNano() / 1_000_000;
+    }
+
+    /**
+     * Criterios de búsqueda; un criterio null no filtra. El rango de fechas
+     * incluye {@code desde} y excluye {@code hasta}.
+     */
+    public static class Filtro {
+        public static final Filtro TODAS = new Filtro(null, null, null, null);
+
+        private final Alerta.Nivel nivel;
+        private final String loteId;
+        private final LocalDateTime desde;
+        private final LocalDateTime hasta;
+
+        public Filtro(Alerta.Nivel nivel, String loteId, LocalDateTime desde, LocalDateTime hasta) {
+            if (desde != null && hasta != null && hasta.isBefore(desde)) {
+                throw new IllegalArgumentException("La fecha final no puede ser anterior a la inicial");
+            }
+            this.nivel = nivel;
+            this.loteId = loteId;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        public Alerta.Nivel getNivel() {
+            return nivel;
+        }
+
+        public String getLoteId() {
+            return loteId;
+        }
+
+        public LocalDateTime getDesde() {
+            return desde;
+        }
+
+        public LocalDateTime getHasta() {
+            return hasta;
+        }
+    }
+
+    /**
+     * Posiciones de las alertas que cumplen una consulta. Puede compartir el
+     * arreglo de un índice (o no tener arreglo cuando son todas las alertas),
+     * por eso se guarda como tramo [inicio, fin).
+     */
+    public static class Resultado {
+        private final int[] posiciones;
+        private final int inicio;
+        private final int fin;
+        private final boolean descendente;
+
+        private Resultado(int[] posiciones, int inicio, int fin, boolean descendente) {
+            this.posiciones = posiciones;
+            this.inicio = inicio;
+            this.fin = fin;
+            this.descendente = descendente;
+        }
+
+        public int getTamano() {
+            return fin - inicio;
+        }
+
+        /**
+         * Posición en el almacén del i-ésimo elemento del resultado
+         */
+        public int posicion(int i) {
+            int k = descendente ? fin - 1 - i : inicio + i;
+            return posiciones == null ? k : posiciones[k];
+        }
+    }
+
+    // Lista de posiciones que solo crece
+    private static class Posiciones {
+        private int[] valores = new int[16];
+        private int cantidad;
+
+        void agregar(int posicion) {
+            if (cantidad == valores.length) {
+                valores = Arrays.copyOf(valores, cantidad * 2);
+            }
+            valores[cantidad++] = posicion;
+        }
+    }
+}
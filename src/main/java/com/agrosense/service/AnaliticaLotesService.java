@@ -0,0 +1,240 @@
+package com.agrosense.service;
+
+import com.agrosense.model.ResumenIntervalo;
+import com.agrosense.model.TipoSensor;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Análisis por lotes (batch) de las series de muchos lotes a la vez:
+ * correlación, covarianza y agregados sobre arreglos primitivos alineados en
+ * el tiempo. Los recorridos internos usan varios acumuladores independientes
+ * para que el JIT pueda vectorizar y encadenar operaciones, y las filas se
+ * reparten por bloques en el pool fork-join.
+ */
+public class AnaliticaLotesService {
+
+    // Filas por bloque al repartir el trabajo entre hilos
+    private static final int BLOQUE_FILAS = 16;
+
+    /**
+     * Construye una matriz [lote][intervalo] con los promedios por intervalo
+     * de cada lote en el rango [desde, hasta). Los intervalos sin datos toman
+     * el último valor conocido del lote (o el primero disponible si el hueco
+     * está al inicio); un lote sin datos queda con NaN.
+     */
+    public double[][] construirMatriz(EstadisticasService estadisticas, List<String> loteIds, TipoSensor tipoSensor,
+            long desdeMillis, long hastaMillis, long resolucionMillis) {
+        int columnas = (int) Math.max(1, (hastaMillis - desdeMillis + resolucionMillis - 1) / resolucionMillis);
+        double[][] matriz = new double[loteIds.size()][];
+
+        IntStream.range(0, loteIds.size()).parallel().forEach(i -> {
+            double[] fila = new double[columnas];
+            Arrays.fill(fila, Double.NaN);
+            List<ResumenIntervalo> intervalos = estadisticas.consultarHistorico(loteIds.get(i), tipoSensor,
+                    desdeMillis, hastaMillis, resolucionMillis);
+            for (ResumenIntervalo intervalo : intervalos) {
+                // Los intervalos vienen alineados a desdeMillis
+                long col = Math.floorDiv(intervalo.getInicioMillis() - desdeMillis, resolucionMillis);
+                if (col >= 0 && col < columnas) {
+                    fila[(int) col] = intervalo.getPromedio();
+                }
+            }
+            rellenarHuecos(fila);
+            matriz[i] = fila;
+        });
+        return matriz;
+    }
+
+    private void rellenarHuecos(double[] fila) {
+        double ultimo = Double.NaN;
+        for (double v : fila) {
+            if (!Double.isNaN(v)) {
+                ultimo = v;
+                break;
+            }
+        }
+        for (int j = 0; j < fila.length; j++) {
+            if (Double.isNaN(fila[j])) {
+                fila[j] = ultimo;
+            } else {
+                ultimo = fila[j];
+            }
+        }
+    }
+
+    /**
+     * Matriz de correlación de Pearson entre todas las filas. Filas constantes
+     * o sin datos producen NaN.
+     */
+    public double[][] matrizCorrelacion(double[][] series) {
+        int n = series.length;
+        double[][] normalizadas = new double[n][];
+        IntStream.range(0, n).parallel().forEach(i -> normalizadas[i] = normalizar(series[i]));
+        return productoGram(normalizadas, 1.0);
+    }
+
+    /**
+     * Matriz de covarianza muestral entre todas las filas
+     */
+    public double[][] matrizCovarianza(double[][] series) {
+        int n = series.length;
+        double[][] centradas = new double[n][];
+        IntStream.range(0, n).parallel().forEach(i -> centradas[i] = centrar(series[i]));
+        int m = n == 0 ? 0 : series[0].length;
+        return productoGram(centradas, m > 1 ? 1.0 / (m - 1) : Double.NaN);
+    }
+
+    /**
+     * Media, desviación estándar, mínimo y máximo de cada fila
+     */
+    public AgregadosSeries agregadosPorFila(double[][] series) {
+        int n = series.length;
+        AgregadosSeries agregados = new AgregadosSeries(n);
+        IntStream.range(0, n).parallel().forEach(i -> {
+            double[] fila = series[i];
+            double media = suma(fila) / fila.length;
+            double mn = Double.POSITIVE_INFINITY;
+            double mx = Double.NEGATIVE_INFINITY;
+            for (double v : fila) {
+                mn = Math.min(mn, v);
+                mx = Math.max(mx, v);
+            }
+            double[] centrada = centrar(fila);
+            agregados.media[i] = media;
+            agregados.desviacion[i] = fila.length > 1 ? Math.sqrt(producto(centrada, centrada) / (fila.length - 1))
+                    : 0.0;
+            agregados.minimo[i] = mn;
+            agregados.maximo[i] = mx;
+        });
+        return agregados;
+    }
+
+    /**
+     * Promedio entre filas para cada columna (por ejemplo, el promedio de todos
+     * los lotes en cada intervalo)
+     */
+    public double[] promedioPorColumna(double[][] series) {
+        if (series.length == 0) {
+            return new double[0];
+        }
+        int m = series[0].length;
+        double[] resultado = new double[m];
+        for (double[] fila : series) {
+            for (int j = 0; j < m; j++) {
+                resultado[j] += fila[j];
+            }
+        }
+        for (int j = 0; j < m; j++) {
+            resultado[j] /= series.length;
+        }
+        return resultado;
+    }
+
+    // G[i][j] = escala * <a_i, a_j>, calculando solo el triángulo superior por bloques
+    private double[][] productoGram(double[][] filas, double escala) {
+        int n = filas.length;
+        double[][] resultado = new double[n][n];
+        int bloques = (n + BLOQUE_FILAS - 1) / BLOQUE_FILAS;
+
+        IntStream.range(0, bloques).parallel().forEach(b -> {
+            int inicio = b * BLOQUE_FILAS;
+            int fin = Math.min(n, inicio + BLOQUE_FILAS);
+            for (int jb = inicio; jb < n; jb += BLOQUE_FILAS) {
+                int finJ = Math.min(n, jb + BLOQUE_FILAS);
+                for (int i = inicio; i < fin; i++) {
+                    for (int j = Math.max(i, jb); j < finJ; j++) {
+                        double valor = producto(filas[i], filas[j]) * escala;
+                        resultado[i][j] = valor;
+                        resultado[j][i] = valor;
+                    }
+                }
+            }
+        });
+        return resultado;
+    }
+
+    private static double[] centrar(double[] fila) {
+        double media = suma(fila) / fila.length;
+        double[] resultado = new double[fila.length];
+        for (int j = 0; j < fila.length; j++) {
+            resultado[j] = fila[j] - media;
+        }
+        return resultado;
+    }
+
+    // Centra la fila y la escala a norma 1 (NaN si la fila es constante)
+    private static double[] normalizar(double[] fila) {
+        double[] resultado = centrar(fila);
+        double norma = Math.sqrt(producto(resultado, resultado));
+        double inverso = norma > 0 ? 1.0 / norma : Double.NaN;
+        for (int j = 0; j < resultado.length; j++) {
+            resultado[j] *= inverso;
+        }
+        return resultado;
+    }
+
+    static double suma(double[] a) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int j = 0;
+        int limite = a.length & ~3;
+        for (; j < limite; j += 4) {
+            s0 += a[j];
+            s1 += a[j + 1];
+            s2 += a[j + 2];
+            s3 += a[j + 3];
+        }
+        for (; j < a.length; j++) {
+            s0 += a[j];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static double producto(double[] a, double[] b) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int j = 0;
+        int limite = a.length & ~3;
+        for (; j < limite; j += 4) {
+            s0 += a[j] * b[j];
+            s1 += a[j + 1] * b[j + 1];
+            s2 += a[j + 2] * b[j + 2];
+            s3 += a[j + 3] * b[j + 3];
+        }
+        for (; j < a.length; j++) {
+            s0 += a[j] * b[j];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    // Resultado de agregadosPorFila
+    public static class AgregadosSeries {
+        private final double[] media;
+        private final double[] desviacion;
+        private final double[] minimo;
+        private final double[] maximo;
+
+        AgregadosSeries(int filas) {
+            this.media = new double[filas];
+            this.desviacion = new double[filas];
+            this.minimo = new double[filas];
+            this.maximo = new double[filas];
+        }
+
+        public double[] getMedia() {
+            return media;
+        }
+
+        public double[] getDesviacion() {
+            return desviacion;
+        }
+
+        public double[] getMinimo() {
+            return minimo;
+        }
+
+        public double[] getMaximo() {
+            return maximo;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.agrosense.service;
+
+import com.agrosense.model.TipoSensor;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Anillo de tamaño fijo (potencia de 2) con ranuras {@link EventoLectura}
+ * creadas de antemano. Varios productores reclaman secuencias con una
+ * operación CAS, escriben su ranura y la publican; los consumidores avanzan
+ * con sus propias {@link Secuencia}s. Un productor solo espera si el anillo
+ * está lleno, es decir, si el consumidor más lento va una vuelta atrás.
+ */
+public class AnilloLecturas {
+
+    private static final VarHandle DISPONIBLE = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final EventoLectura[] eventos;
+    private final int mascara;
+    private final int desplazamiento;
+    private final EstrategiaEspera espera;
+
+    // Última secuencia reclamada por algún productor
+    private final Secuencia cursor = new Secuencia(-1);
+    // Vuelta del anillo publicada en cada ranura (-1 = nunca)
+    private final int[] disponibles;
+
+    // Secuencias de los consumidores finales; limitan cuánto pueden avanzar los productores
+    private volatile Secuencia[] consumidores = new Secuencia[0];
+    private final Secuencia minimoConsumidores = new Secuencia(-1);
+
+    public AnilloLecturas(int tamano, EstrategiaEspera espera) {
+        if (tamano <= 0 || Integer.bitCount(tamano) != 1) {
+            throw new IllegalArgumentException("El tamaño del anillo debe ser una potencia de 2");
+        }
+        this.eventos = new EventoLectura[tamano];
+        for (int i = 0; i < tamano; i++) {
+            eventos[i] = new EventoLectura();
+        }
+        this.mascara = tamano - 1;
+        this.desplazamiento = Integer.numberOfTrailingZeros(tamano);
+        this.espera = espera;
+        this.disponibles = new int[tamano];
+        Arrays.fill(disponibles, -1);
+    }
+
+    public int getTamano() {
+        return eventos.length;
+    }
+
+    void setConsumidores(Secuencia... finales) {
+        consumidores = finales.clone();
+    }
+
+    /**
+     * Reclama la siguiente secuencia, esperando si el anillo está lleno
+     */
+    public long reclamar() {
+        while (true) {
+            long actual = cursor.get();
+            long siguiente = actual + 1;
+            long vueltaAtras = siguiente - eventos.length;
+            long minimo = minimoConsumidores.get();
+
+            if (vueltaAtras > minimo || minimo > actual) {
+                minimo = Secuencia.minimo(consumidores, actual);
+                if (vueltaAtras > minimo) {
+                    LockSupport.parkNanos(1); // anillo lleno
+                    continue;
+                }
+                minimoConsumidores.set(minimo);
+            } else if (cursor.compararYAsignar(actual, siguiente)) {
+                return siguiente;
+            }
+        }
+    }
+
+    /**
+     * Reclama la siguiente secuencia sin esperar
+     *
+     * @return la secuencia, o -1 si el anillo está lleno
+     */
+    public long intentarReclamar() {
+        while (true) {
+            long actual = cursor.get();
+            long siguiente = actual + 1;
+            long vueltaAtras = siguiente - eventos.length;
+            long minimo = minimoConsumidores.get();
+
+            if (vueltaAtras > minimo || minimo > actual) {
+                minimo = Secuencia.minimo(consumidores, actual);
+                minimoConsumidores.set(minimo);
+                if (vueltaAtras > minimo) {
+                    return -1;
+                }
+            } else if (cursor.compararYAsignar(actual, siguiente)) {
+                return siguiente;
+            }
+        }
+    }
+
+    public EventoLectura obtener(long secuencia) {
+        return eventos[(int) secuencia & mascara];
+    }
+
+    /**
+     * Hace visible el evento de la secuencia a los consumidores
+     */
+    public void publicar(long secuencia) {
+        DISPONIBLE.setRelease(disponibles, (int) secuencia & mascara, (int) (secuencia >>> desplazamiento));
+        espera.notificarPublicacion();
+    }
+
+    /**
+     * Reclama una ranura, la llena y la publica
+     */
+    public long publicar(int sensor, int lote, TipoSensor tipo, double valor, long epochMillis) {
+        long secuencia = reclamar();
+        obtener(secuencia).asignar(sensor, lote, tipo, valor, epochMillis);
+        publicar(secuencia);
+        return secuencia;
+    }
+
+    boolean estaPublicada(long secuencia) {
+        int vuelta = (int) DISPONIBLE.getAcquire(disponibles, (int) secuencia & mascara);
+        return vuelta == (int) (secuencia >>> desplazamiento);
+    }
+
+    /**
+     * Mayor secuencia publicada sin huecos en [desde, hasta]. Con varios
+     * productores una secuencia puede reclamarse antes que otra y publicarse
+     * después.
+     */
+    long ultimaPublicada(long desde, long hasta) {
+        for (long s = desde; s <= hasta; s++) {
+            if (!estaPublicada(s)) {
+                return s - 1;
+            }
+        }
+        return hasta;
+    }
+
+    Secuencia getCursor() {
+        return cursor;
+    }
+
+    EstrategiaEspera getEspera() {
+        return espera;
+    }
+
+    /**
+     * Eventos publicados o reclamados que algún consumidor final aún no procesó
+     */
+    public long getPendientes() {
+        long actual = cursor.get();
+        return actual - Secuencia.minimo(consumidores, actual);
+    }
+
+    /**
+     * Cantidad total de secuencias reclamadas desde la creación
+     */
+    public long getPublicados() {
+        return cursor.get() + 1;
+    }
+}
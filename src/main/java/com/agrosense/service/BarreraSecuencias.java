@@ -0,0 +1,56 @@
+package com.agrosense.service;
+
+/**
+ * Punto de espera de un consumidor: indica hasta qué secuencia puede leer. Si
+ * no tiene dependencias lee lo que publican los productores; si las tiene,
+ * solo avanza hasta donde llegaron los consumidores de los que depende.
+ */
+class BarreraSecuencias {
+
+    private final AnilloLecturas anillo;
+    private final Secuencia[] dependencias;
+    private volatile boolean detenida;
+
+    BarreraSecuencias(AnilloLecturas anillo, Secuencia... dependencias) {
+        this.anillo = anillo;
+        this.dependencias = dependencias;
+    }
+
+    /**
+     * Espera a que la secuencia esté disponible y devuelve la mayor secuencia
+     * que se puede leer, que puede ser menor a la pedida si un productor aún
+     * no terminó de publicar
+     *
+     * @throws InterruptedException si la barrera se detuvo
+     */
+    long esperar(long secuencia) throws InterruptedException {
+        long disponible = anillo.getEspera().esperar(secuencia, this);
+        if (disponible < secuencia || dependencias.length > 0) {
+            return disponible;
+        }
+        return anillo.ultimaPublicada(secuencia, disponible);
+    }
+
+    /**
+     * Secuencia alcanzada por lo que precede a este consumidor
+     */
+    long disponible() {
+        return dependencias.length == 0 ? anillo.getCursor().get()
+                : Secuencia.minimo(dependencias, Long.MAX_VALUE);
+    }
+
+    boolean dependeDeProductores() {
+        return dependencias.length == 0;
+    }
+
+    void verificar() throws InterruptedException {
+        if (detenida) {
+            throw new InterruptedException("Barrera detenida");
+        }
+    }
+
+    void detener() {
+        detenida = true;
+        anillo.getEspera().notificarPublicacion();
+    }
+}
@@ -0,0 +1,202 @@
+package com.agrosense.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generador de carga para {@link ServidorApi}. Varios hilos repiten una mezcla
+ * de solicitudes (envío de lecturas, lotes, alertas y estadísticas) durante el
+ * tiempo indicado, con conexiones persistentes y respuestas en gzip, y al
+ * final informa solicitudes por segundo y latencias por ruta.
+ *
+ * <pre>
+ * Uso: ClienteCargaApi [--local | http://host:puerto] [segundos] [hilos] [lecturasPorSolicitud]
+ * </pre>
+ *
+ * Con {@code --local} (o sin argumentos) levanta un servidor en loopback con
+ * los datos de demostración.
+ */
+public class ClienteCargaApi {
+
+    private static final String[] RUTAS = { "POST /api/lecturas", "GET /api/lotes", "GET /api/alertas",
+            "GET /api/estadisticas" };
+    // Proporción de cada ruta en la mezcla, sobre 10
+    private static final int[] PESOS = { 5, 2, 2, 1 };
+
+    public static void main(String[] args) throws Exception {
+        boolean local = args.length == 0 || args[0].equals("--local");
+        int base = args.length == 0 ? 0 : 1;
+        int segundos = args.length > base ? Integer.parseInt(args[base]) : 10;
+        int hilos = args.length > base + 1 ? Integer.parseInt(args[base + 1]) : 4;
+        int lecturasPorSolicitud = args.length > base + 2 ? Integer.parseInt(args[base + 2]) : 100;
+
+        ServidorApi servidor = null;
+        String url;
+        if (local) {
+            GestorLotes gestorLotes = new GestorLotes();
+            AlertaService alertaService = new AlertaService();
+            alertaService.setMostrarEnConsola(false);
+            EstadisticasService estadisticasService = new EstadisticasService();
+            new DatosDemoService().cargarDatosDemo(gestorLotes, alertaService);
+            servidor = new ServidorApi(gestorLotes, alertaService, estadisticasService,
+                    new IngestaService(alertaService, estadisticasService), 0, ServidorApi.HILOS_POR_DEFECTO);
+            servidor.iniciar();
+            url = "http://127.0.0.1:" + servidor.getPuerto();
+        } else {
+            url = args[0];
+        }
+
+        HttpClient cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5)).build();
+        List<String> sensores = sensores(cliente, url);
+        if (sensores.isEmpty()) {
+            System.err.println("El servidor no tiene sensores registrados");
+            return;
+        }
+
+        RegistroMetricas registro = new RegistroMetricas("com.agrosense.carga");
+        HistogramaLatencia[] latencias = new HistogramaLatencia[RUTAS.length];
+        for (int i = 0; i < RUTAS.length; i++) {
+            latencias[i] = registro.histograma(RUTAS[i]);
+        }
+        LongAdder errores = new LongAdder();
+
+        // Calentamiento corto para que las mediciones no incluyan la compilación
+        ejecutar(cliente, url, sensores, lecturasPorSolicitud, hilos, System.nanoTime() + 2_000_000_000L,
+                new RegistroMetricas("com.agrosense.calentamiento"), new LongAdder());
+
+        long inicio = System.nanoTime();
+        ejecutar(cliente, url, sensores, lecturasPorSolicitud, hilos, inicio + segundos * 1_000_000_000L, registro,
+                errores);
+        double duracion = (System.nanoTime() - inicio) / 1e9;
+
+        long total = 0;
+        System.out.printf("%-24s %10s %10s %10s %10s %10s %10s%n", "Ruta", "Solicitudes", "Sol/s", "p50 µs",
+                "p99 µs", "p99.9 µs", "máx µs");
+        for (int i = 0; i < RUTAS.length; i++) {
+            HistogramaLatencia.Instantanea h = latencias[i].instantanea();
+            total += h.getCantidad();
+            System.out.printf("%-24s %,10d %,10.0f %,10.0f %,10.0f %,10.0f %,10.0f%n", RUTAS[i], h.getCantidad(),
+                    h.getCantidad() / duracion, h.percentil(50) / 1e3, h.percentil(99) / 1e3,
+                    h.percentil(99.9) / 1e3, h.getMaximo() / 1e3);
+        }
+        System.out.printf("Total: %,d solicitudes en %.1f s (%,.0f sol/s, %,.0f lecturas/s), %d errores%n", total,
+                duracion, total / duracion,
+                latencias[0].instantanea().getCantidad() * (double) lecturasPorSolicitud / duracion, errores.sum());
+
+        if (servidor != null) {
+            servidor.detener();
+        }
+    }
+
+    private static void ejecutar(HttpClient cliente, String url, List<String> sensores, int lecturasPorSolicitud,
+            int hilos, long fin, RegistroMetricas registro, LongAdder errores) throws InterruptedException {
+        HistogramaLatencia[] latencias = new HistogramaLatencia[RUTAS.length];
+        for (int i = 0; i < RUTAS.length; i++) {
+            latencias[i] = registro.histograma(RUTAS[i]);
+        }
+        Thread[] trabajadores = new Thread[hilos];
+        for (int h = 0; h < hilos; h++) {
+            trabajadores[h] = new Thread(
+                    () -> trabajar(cliente, url, sensores, lecturasPorSolicitud, fin, latencias, errores),
+                    "carga-api-" + h);
+            trabajadores[h].start();
+        }
+        for (Thread trabajador : trabajadores) {
+            trabajador.join();
+        }
+    }
+
+    private static void trabajar(HttpClient cliente, String url, List<String> sensores, int lecturasPorSolicitud,
+            long fin, HistogramaLatencia[] latencias, LongAdder errores) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] mezcla = new int[10];
+        for (int ruta = 0, k = 0; ruta < PESOS.length; ruta++) {
+            for (int p = 0; p < PESOS[ruta]; p++) {
+                mezcla[k++] = ruta;
+            }
+        }
+        StringBuilder cuerpo = new StringBuilder(lecturasPorSolicitud * 64);
+        byte[] descarte = new byte[8192];
+        int paso = random.nextInt(mezcla.length);
+
+        while (System.nanoTime() < fin) {
+            int ruta = mezcla[paso++ % mezcla.length];
+            HttpRequest.Builder solicitud = HttpRequest.newBuilder().header("Accept-Encoding", "gzip")
+                    .timeout(Duration.ofSeconds(30));
+            switch (ruta) {
+                case 0:
+                    cuerpo.setLength(0);
+                    long ahora = System.currentTimeMillis();
+                    for (int i = 0; i < lecturasPorSolicitud; i++) {
+                        cuerpo.append("{\"sensor\":\"").append(sensores.get(random.nextInt(sensores.size())))
+                                .append("\",\"valor\":").append(20 + random.nextInt(600) / 10.0)
+                                .append(",\"fecha\":").append(ahora).append("}\n");
+                    }
+                    solicitud.uri(URI.create(url + "/api/lecturas")).header("Content-Type", "application/x-ndjson")
+                            .POST(HttpRequest.BodyPublishers.ofString(cuerpo.toString()));
+                    break;
+                case 1:
+                    solicitud.uri(URI.create(url + "/api/lotes")).GET();
+                    break;
+                case 2:
+                    solicitud.uri(URI.create(url + "/api/alertas?limite=100")).GET();
+                    break;
+                default:
+                    solicitud.uri(URI.create(url + "/api/estadisticas")).GET();
+                    break;
+            }
+
+            long inicio = System.nanoTime();
+            try {
+                HttpResponse<InputStream> respuesta = cliente.send(solicitud.build(),
+                        HttpResponse.BodyHandlers.ofInputStream());
+                try (InputStream entrada = respuesta.body()) {
+                    while (entrada.read(descarte) >= 0) {
+                        // solo se mide hasta recibir el cuerpo completo
+                    }
+                }
+                latencias[ruta].registrarDesde(inicio);
+                if (respuesta.statusCode() >= 400) {
+                    errores.increment();
+                }
+            } catch (IOException e) {
+                errores.increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * IDs de todos los sensores del servidor, tomados de cada lote
+     */
+    private static List<String> sensores(HttpClient cliente, String url) throws IOException, InterruptedException {
+        HttpResponse<String> lotes = cliente.send(HttpRequest.newBuilder(URI.create(url + "/api/lotes")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        List<String> sensores = new ArrayList<>();
+        Matcher ids = Pattern.compile("\\{\"id\":\"((?:[^\"\\\\]|\\\\.)*)\"").matcher(lotes.body());
+        while (ids.find()) {
+            HttpResponse<String> lote = cliente.send(
+                    HttpRequest.newBuilder(URI.create(url + "/api/lotes/" + ids.group(1) + "/sensores")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Matcher sensor = Pattern.compile("\\{\"id\":\"((?:[^\"\\\\]|\\\\.)*)\"").matcher(lote.body());
+            while (sensor.find()) {
+                sensores.add(sensor.group(1));
+            }
+        }
+        return sensores;
+    }
+}
@@ -0,0 +1,102 @@
+package com.agrosense.service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generador de carga para {@link ServidorIngesta}. Abre varias conexiones TCP
+ * y envía tramas de lecturas tan rápido como puede durante el tiempo indicado.
+ *
+ * <pre>
+ * Uso: ClienteCargaIngesta [--local | host puerto] [sensores] [segundos] [conexiones]
+ * </pre>
+ *
+ * Con {@code --local} (o sin argumentos) levanta un servidor en loopback que
+ * solo cuenta las lecturas recibidas, para medir el rendimiento de la
+ * recepción. Contra un servidor real se envían los números de sensor 0 a
+ * sensores - 1; en modo sin interfaz con {@code --sensores N} son los de los
+ * sensores sintéticos.
+ */
+public class ClienteCargaIngesta {
+
+    private static final int LECTURAS_POR_TRAMA = 1024;
+    private static final int TRAMAS_POR_ENVIO = 8;
+
+    public static void main(String[] args) throws Exception {
+        boolean local = args.length == 0 || args[0].equals("--local");
+        int base = args.length == 0 ? 0 : (local ? 1 : 2);
+        int sensores = args.length > base ? Integer.parseInt(args[base]) : 100_000;
+        int segundos = args.length > base + 1 ? Integer.parseInt(args[base + 1]) : 10;
+        int conexiones = args.length > base + 2 ? Integer.parseInt(args[base + 2]) : 2;
+
+        ServidorIngesta servidor = null;
+        String host;
+        int puerto;
+        LongAdder recibidas = new LongAdder();
+        if (local) {
+            servidor = new ServidorIngesta((sensor, ts, valor) -> recibidas.increment(), 0, -1);
+            servidor.iniciar();
+            host = "127.0.0.1";
+            puerto = servidor.getPuertoTcp();
+        } else {
+            host = args[0];
+            puerto = Integer.parseInt(args[1]);
+        }
+
+        LongAdder enviadas = new LongAdder();
+        long fin = System.nanoTime() + segundos * 1_000_000_000L;
+        Thread[] hilos = new Thread[conexiones];
+        for (int c = 0; c < conexiones; c++) {
+            hilos[c] = new Thread(() -> enviar(host, puerto, sensores, fin, enviadas), "carga-" + c);
+            hilos[c].start();
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+
+        System.out.printf("Enviadas: %,d lecturas en %d s (%,.0f lecturas/s)%n", enviadas.sum(), segundos,
+                enviadas.sum() / (double) segundos);
+        if (servidor != null) {
+            Thread.sleep(500); // dejar que el servidor termine de leer
+            System.out.printf("Recibidas por el servidor: %,d (%,.0f lecturas/s)%n", recibidas.sum(),
+                    recibidas.sum() / (double) segundos);
+            servidor.detener();
+        }
+    }
+
+    private static void enviar(String host, int puerto, int sensores, long fin, LongAdder enviadas) {
+        int bytesTrama = ServidorIngesta.BYTES_CABECERA + LECTURAS_POR_TRAMA * ServidorIngesta.BYTES_LECTURA;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytesTrama * TRAMAS_POR_ENVIO);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int siguienteSensor = random.nextInt(sensores);
+
+        try (SocketChannel canal = SocketChannel.open(new InetSocketAddress(host, puerto))) {
+            while (System.nanoTime() < fin) {
+                buffer.clear();
+                long ahora = System.currentTimeMillis();
+                for (int t = 0; t < TRAMAS_POR_ENVIO; t++) {
+                    buffer.putInt(LECTURAS_POR_TRAMA);
+                    for (int i = 0; i < LECTURAS_POR_TRAMA; i++) {
+                        buffer.putInt(siguienteSensor);
+                        buffer.putLong(ahora);
+                        buffer.putDouble(20 + 60 * random.nextDouble());
+                        if (++siguienteSensor == sensores) {
+                            siguienteSensor = 0;
+                        }
+                    }
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    canal.write(buffer);
+                }
+                enviadas.add((long) LECTURAS_POR_TRAMA * TRAMAS_POR_ENVIO);
+            }
+        } catch (IOException e) {
+            System.err.println("Error enviando carga: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.agrosense.service;
+
+/**
+ * Destino de lecturas expresadas con valores primitivos: número del sensor,
+ * instante en milisegundos y valor. Qué identifica el número depende de quien
+ * produce las lecturas: el sensor dentro de {@link SimuladorSensores}, o su
+ * número de {@link com.agrosense.model.TablaIds#SENSORES} en la ingesta de red.
+ */
+@FunctionalInterface
+public interface ConsumidorLecturas {
+
+    void aceptar(int sensor, long epochMillis, double valor);
+
+    /**
+     * Se llama después de entregar todas las lecturas de una trama, para
+     * quien las junta y las procesa por lotes
+     */
+    default void finTrama() {
+    }
+}
@@ -0,0 +1,44 @@
+package com.agrosense.service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contador monotónico para métricas. Incrementar no usa candados y escala con
+ * varios hilos escribiendo a la vez ({@link LongAdder}).
+ */
+public class Contador implements ContadorMXBean {
+
+    private final String nombre;
+    private final LongAdder valor = new LongAdder();
+    private volatile double porSegundo;
+
+    Contador(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public void incrementar() {
+        valor.increment();
+    }
+
+    public void agregar(long cantidad) {
+        valor.add(cantidad);
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    @Override
+    public long getValor() {
+        return valor.sum();
+    }
+
+    @Override
+    public double getPorSegundo() {
+        return porSegundo;
+    }
+
+    void setPorSegundo(double porSegundo) {
+        this.porSegundo = porSegundo;
+    }
+}
@@ -0,0 +1,14 @@
+package com.agrosense.service;
+
+/**
+ * Vista JMX de un {@link Contador}
+ */
+public interface ContadorMXBean {
+
+    long getValor();
+
+    /**
+     * Ritmo del contador entre los dos últimos volcados de métricas
+     */
+    double getPorSegundo();
+}
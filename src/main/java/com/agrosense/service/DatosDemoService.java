@@ -35,8 +35,8 @@ public class DatosDemoService {
         gestorLotes.registrarLote(loteTomate);
 
         // Simular lectura normal para tomate (55% humedad, 22°C)
-        Medicion medH1 = new Medicion(55.0, "H001", "HUMEDAD");
-        Medicion medT1 = new Medicion(22.0, "T001", "TEMPERATURA");
+        Medicion medH1 = new Medicion(55.0, "H001", TipoSensor.HUMEDAD);
+        Medicion medT1 = new Medicion(22.0, "T001", TipoSensor.TEMPERATURA);
         alertaService.verificarMedicion(medH1, "L001");
         alertaService.verificarMedicion(medT1, "L001");
 
@@ -54,8 +54,8 @@ public class DatosDemoService {
         gestorLotes.registrarLote(loteLechuga);
 
         // Simular lectura CRÍTICA para lechuga (28% humedad - muy baja, 19°C normal)
-        Medicion medH2 = new Medicion(28.0, "H002", "HUMEDAD");
-        Medicion medT2 = new Medicion(19.0, "T002", "TEMPERATURA");
+        Medicion medH2 = new Medicion(28.0, "H002", TipoSensor.HUMEDAD);
+        Medicion medT2 = new Medicion(19.0, "T002", TipoSensor.TEMPERATURA);
         alertaService.verificarMedicion(medH2, "L002");
         alertaService.verificarMedicion(medT2, "L002");
 
@@ -73,8 +73,8 @@ public class DatosDemoService {
         gestorLotes.registrarLote(loteFresa);
 
         // Simular lectura CRÍTICA para fresa (65% humedad normal, 36°C - muy alta)
-        Medicion medH3 = new Medicion(65.0, "H003", "HUMEDAD");
-        Medicion medT3 = new Medicion(36.0, "T003", "TEMPERATURA");
+        Medicion medH3 = new Medicion(65.0, "H003", TipoSensor.HUMEDAD);
+        Medicion medT3 = new Medicion(36.0, "T003", TipoSensor.TEMPERATURA);
         alertaService.verificarMedicion(medH3, "L003");
         alertaService.verificarMedicion(medT3, "L003");
 
@@ -92,8 +92,8 @@ public class DatosDemoService {
         gestorLotes.registrarLote(loteMaiz);
 
         // Simular lectura normal para maíz (52% humedad, 28°C)
-        Medicion medH4 = new Medicion(52.0, "H004", "HUMEDAD");
-        Medicion medT4 = new Medicion(28.0, "T004", "TEMPERATURA");
+        Medicion medH4 = new Medicion(52.0, "H004", TipoSensor.HUMEDAD);
+        Medicion medT4 = new Medicion(28.0, "T004", TipoSensor.TEMPERATURA);
         alertaService.verificarMedicion(medH4, "L004");
         alertaService.verificarMedicion(medT4, "L004");
 
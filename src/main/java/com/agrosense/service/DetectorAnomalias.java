@@ -0,0 +1,167 @@
+package com.agrosense.service;
+
+import com.agrosense.model.TipoSensor;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detector de lecturas anómalas por sensor. Mantiene un estado de tamaño fijo
+ * por sensor y revisa cada lectura contra tres criterios:
+ * <ul>
+ * <li>Valor atípico: puntaje z robusto (mediana y MAD de las últimas
+ * lecturas aceptadas)</li>
+ * <li>Valor congelado: el sensor repite exactamente el mismo valor</li>
+ * <li>Cambio brusco: la variación supera la tasa máxima por minuto del tipo de
+ * sensor</li>
+ * </ul>
+ */
+public class DetectorAnomalias {
+
+    public enum TipoAnomalia {
+        NINGUNA, VALOR_ATIPICO, VALOR_CONGELADO, CAMBIO_BRUSCO
+    }
+
+    static final int TAMANO_VENTANA = 15;
+    private static final int LECTURAS_MINIMAS = 8; // antes de aplicar el puntaje z
+    private static final double UMBRAL_Z = 6.0;
+    private static final double MAD_MINIMA = 0.5; // evita dividir por cero con series muy estables
+    private static final int REPETICIONES_CONGELADO = 20;
+
+    // Variación máxima aceptada por minuto
+    private static final double TASA_MAX_HUMEDAD = 10.0; // % por minuto
+    private static final double TASA_MAX_TEMPERATURA = 5.0; // °C por minuto
+
+    private final Map<String, EstadoSensor> estados = new ConcurrentHashMap<>();
+
+    /**
+     * Evalúa una lectura y actualiza el estado del sensor. Las lecturas
+     * anómalas no entran en la ventana de referencia.
+     */
+    public TipoAnomalia evaluar(String sensorId, TipoSensor tipoSensor, double valor, long epochMillis) {
+        EstadoSensor estado = estados.computeIfAbsent(sensorId, k -> new EstadoSensor());
+        double tasaMaxima = tipoSensor == TipoSensor.HUMEDAD ? TASA_MAX_HUMEDAD : TASA_MAX_TEMPERATURA;
+        synchronized (estado) {
+            return estado.evaluar(valor, epochMillis, tasaMaxima);
+        }
+    }
+
+    /**
+     * Indica si el sensor está actualmente marcado como sospechoso
+     */
+    public boolean estaEnCuarentena(String sensorId) {
+        EstadoSensor estado = estados.get(sensorId);
+        return estado != null && estado.enCuarentena;
+    }
+
+    public void olvidarSensor(String sensorId) {
+        estados.remove(sensorId);
+    }
+
+    public void limpiar() {
+        estados.clear();
+    }
+
+    // Estado de tamaño constante de un sensor
+    private static class EstadoSensor {
+        private final double[] ventana = new double[TAMANO_VENTANA];
+        private final double[] auxiliar = new double[TAMANO_VENTANA];
+        private int siguiente;
+        private int tamano;
+
+        private boolean hayAceptada;
+        private double ultimoAceptado;
+        private long tiempoUltimoAceptado;
+
+        private boolean hayAnterior;
+        private double anterior;
+        private int repeticiones;
+
+        // Se escribe con el candado del estado y se lee sin él en estaEnCuarentena
+        private volatile boolean enCuarentena;
+        private int normalesSeguidas;
+        private int rechazadasSeguidas;
+
+        TipoAnomalia evaluar(double valor, long epochMillis, double tasaMaxima) {
+            TipoAnomalia resultado = clasificar(valor, epochMillis, tasaMaxima);
+
+            hayAnterior = true;
+            anterior = valor;
+
+            if (resultado == TipoAnomalia.NINGUNA) {
+                ventana[siguiente] = valor;
+                siguiente = (siguiente + 1) % TAMANO_VENTANA;
+                if (tamano < TAMANO_VENTANA) {
+                    tamano++;
+                }
+                hayAceptada = true;
+                rechazadasSeguidas = 0;
+                ultimoAceptado = valor;
+                tiempoUltimoAceptado = epochMillis;
+
+                // Sale de cuarentena tras varias lecturas normales seguidas
+                if (enCuarentena && ++normalesSeguidas >= TAMANO_VENTANA) {
+                    enCuarentena = false;
+                }
+            } else {
+                enCuarentena = true;
+                normalesSeguidas = 0;
+                // Si el nuevo nivel persiste se reinicia la referencia para
+                // volver a aprenderlo (un valor congelado nunca se acepta)
+                if (resultado != TipoAnomalia.VALOR_CONGELADO && ++rechazadasSeguidas >= TAMANO_VENTANA) {
+                    tamano = 0;
+                    siguiente = 0;
+                    hayAceptada = false;
+                    rechazadasSeguidas = 0;
+                }
+            }
+            return resultado;
+        }
+
+        private TipoAnomalia clasificar(double valor, long epochMillis, double tasaMaxima) {
+            if (Double.isNaN(valor) || Double.isInfinite(valor)) {
+                return TipoAnomalia.VALOR_ATIPICO;
+            }
+
+            if (hayAnterior && valor == anterior) {
+                if (++repeticiones >= REPETICIONES_CONGELADO) {
+                    return TipoAnomalia.VALOR_CONGELADO;
+                }
+            } else {
+                repeticiones = 0;
+            }
+
+            if (hayAceptada) {
+                // Se compara con la última lectura aceptada: un cambio real de
+                // nivel termina aceptándose a medida que pasa el tiempo
+                double minutos = Math.max(1.0, (epochMillis - tiempoUltimoAceptado) / 60_000.0);
+                if (Math.abs(valor - ultimoAceptado) > tasaMaxima * minutos) {
+                    return TipoAnomalia.CAMBIO_BRUSCO;
+                }
+            }
+
+            if (tamano >= LECTURAS_MINIMAS) {
+                double mediana = mediana(tamano);
+                for (int i = 0; i < tamano; i++) {
+                    auxiliar[i] = Math.abs(ventana[i] - mediana);
+                }
+                double mad = Math.max(MAD_MINIMA, medianaAuxiliar(tamano));
+                double z = Math.abs(valor - mediana) / (1.4826 * mad);
+                if (z > UMBRAL_Z) {
+                    return TipoAnomalia.VALOR_ATIPICO;
+                }
+            }
+            return TipoAnomalia.NINGUNA;
+        }
+
+        private double mediana(int n) {
+            System.arraycopy(ventana, 0, auxiliar, 0, n);
+            return medianaAuxiliar(n);
+        }
+
+        private double medianaAuxiliar(int n) {
+            Arrays.sort(auxiliar, 0, n);
+            return (n & 1) == 1 ? auxiliar[n / 2] : (auxiliar[n / 2 - 1] + auxiliar[n / 2]) / 2;
+        }
+    }
+}
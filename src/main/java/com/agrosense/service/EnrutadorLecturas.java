@@ -0,0 +1,62 @@
+package com.agrosense.service;
+
+import com.agrosense.model.Sensor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Entrega lecturas identificadas por número de sensor
+ * ({@link com.agrosense.model.TablaIds#SENSORES}) a un {@link ReceptorLecturas},
+ * resolviendo sensor y lote con un {@link IndiceSensores} que se actualiza como
+ * máximo cada cierto tiempo. Los números de sensores desconocidos o ya
+ * eliminados solo se cuentan.
+ */
+public class EnrutadorLecturas implements ConsumidorLecturas {
+
+    private static final long PERIODO_ACTUALIZACION_MS = 100;
+
+    private final GestorLotes gestorLotes;
+    private final ReceptorLecturas receptor;
+    private volatile IndiceSensores indice;
+    private volatile long ultimaRevision;
+    private final LongAdder sensoresDesconocidos = new LongAdder();
+
+    public EnrutadorLecturas(GestorLotes gestorLotes, ReceptorLecturas receptor) {
+        this.gestorLotes = gestorLotes;
+        this.receptor = receptor;
+        this.indice = new IndiceSensores(gestorLotes);
+        this.ultimaRevision = System.currentTimeMillis();
+    }
+
+    @Override
+    public void aceptar(int numeroSensor, long epochMillis, double valor) {
+        IndiceSensores actual = obtenerIndice();
+        int posicion = actual.buscarPorNumero(numeroSensor);
+        if (posicion < 0) {
+            sensoresDesconocidos.increment();
+            return;
+        }
+        Sensor sensor = actual.getSensor(posicion);
+        String loteId = actual.getLote(actual.getLoteDeSensor(posicion)).getId();
+        receptor.recibir(sensor, loteId, valor, epochMillis);
+    }
+
+    /**
+     * Índice vigente; se revisa contra el gestor como máximo cada 100 ms
+     */
+    public IndiceSensores obtenerIndice() {
+        long ahora = System.currentTimeMillis();
+        if (ahora - ultimaRevision >= PERIODO_ACTUALIZACION_MS) {
+            synchronized (this) {
+                if (ahora - ultimaRevision >= PERIODO_ACTUALIZACION_MS) {
+                    indice = IndiceSensores.actualizar(indice, gestorLotes);
+                    ultimaRevision = ahora;
+                }
+            }
+        }
+        return indice;
+    }
+
+    public long getSensoresDesconocidos() {
+        return sensoresDesconocidos.sum();
+    }
+}
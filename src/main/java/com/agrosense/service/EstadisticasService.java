@@ -1,96 +1,226 @@
 package com.agrosense.service;
 
 import com.agrosense.model.*;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * Servicio para análisis estadístico de datos de sensores
+ * Servicio para análisis estadístico de datos de sensores. Es seguro para uso
+ * concurrente: cada lote tiene su propia serie por tipo de sensor, de modo que
+ * varios hilos pueden registrar mediciones de lotes distintos sin competir por
+ * un candado global.
  */
 public class EstadisticasService {
 
-    private Map<String, List<Double>> historicoHumedad;
-    private Map<String, List<Double>> historicoTemperatura;
+    private Map<String, SerieEstadistica> seriesHumedad;
+    private Map<String, SerieEstadistica> seriesTemperatura;
+
+    // Fragmentos del resumen general por lote y lotes con mediciones nuevas
+    private Map<String, FragmentoResumen> cacheResumen;
+    private Set<String> lotesModificados;
+
+    private LongAdder medicionesRegistradas;
+
+    // Lecturas crudas por sensor, fuera del heap; null si no se conservan
+    private volatile HistorialFueraDelHeap historial;
+
+    // Parámetros del análisis de tendencia (aplican a las series nuevas)
+    private volatile long ventanaTendenciaMillis = 6 * SerieMultiResolucion.HORA;
+    private volatile long suavizadoMillis = 15 * SerieMultiResolucion.MINUTO;
+
+    private static final TipoSensor[] TIPOS = TipoSensor.values();
+
+    // Por debajo de esta pendiente (unidades/hora) la serie se considera estable
+    private static final double PENDIENTE_ESTABLE = 0.5;
+    private static final double CONFIANZA_MINIMA = 0.5;
+
+    // Intervalos consultados por cada punto de una gráfica antes de reducirla
+    private static final int SOBREMUESTREO_GRAFICA = 8;
 
     public EstadisticasService() {
-        this.historicoHumedad = new HashMap<>();
-        this.historicoTemperatura = new HashMap<>();
+        this.seriesHumedad = new ConcurrentHashMap<>();
+        this.seriesTemperatura = new ConcurrentHashMap<>();
+        this.cacheResumen = new ConcurrentHashMap<>();
+        this.lotesModificados = ConcurrentHashMap.newKeySet();
+        this.medicionesRegistradas = new LongAdder();
     }
 
     /**
      * Registra una medición en el histórico
      */
-    public void registrarMedicion(String loteId, String tipoSensor, double valor) {
-        if (tipoSensor.equalsIgnoreCase("HUMEDAD")) {
-            historicoHumedad.computeIfAbsent(loteId, k -> new ArrayList<>()).add(valor);
-        } else if (tipoSensor.equalsIgnoreCase("TEMPERATURA")) {
-            historicoTemperatura.computeIfAbsent(loteId, k -> new ArrayList<>()).add(valor);
+    public void registrarMedicion(String loteId, TipoSensor tipoSensor, double valor) {
+        registrarMedicion(loteId, tipoSensor, valor, System.currentTimeMillis());
+    }
+
+    /**
+     * Registra una medición tomada en el instante indicado (epoch en
+     * milisegundos). Se conservan las últimas 100 mediciones por lote además de
+     * los agregados por minuto, hora y día.
+     */
+    public void registrarMedicion(String loteId, TipoSensor tipoSensor, double valor, long epochMillis) {
+        obtenerOCrearSerie(loteId, tipoSensor).registrar(epochMillis, valor);
+        lotesModificados.add(loteId);
+        medicionesRegistradas.increment();
+    }
+
+    /**
+     * Igual que {@link #registrarMedicion(String, TipoSensor, double, long)},
+     * y además guarda la lectura cruda del sensor (número de
+     * {@code TablaIds.SENSORES}) si se conserva el histórico
+     */
+    public void registrarMedicion(int sensor, String loteId, TipoSensor tipoSensor, double valor,
+            long epochMillis) {
+        registrarMedicion(loteId, tipoSensor, valor, epochMillis);
+        HistorialFueraDelHeap crudo = historial;
+        if (crudo != null) {
+            crudo.registrar(sensor, epochMillis, valor);
         }
+    }
 
-        // Mantener solo las últimas 100 mediciones por lote
-        limitarHistorico(historicoHumedad.get(loteId));
-        limitarHistorico(historicoTemperatura.get(loteId));
+    /**
+     * Registra todas las mediciones de un lote de mediciones. Las filas
+     * consecutivas de un mismo lote se agrupan: la serie de cada tipo se busca
+     * y se bloquea una sola vez por grupo.
+     */
+    public void registrarLote(MedicionBatch batch) {
+        int n = batch.getTamano();
+        int[] lotes = batch.getLotes();
+        int i = 0;
+        while (i < n) {
+            int lote = lotes[i];
+            int fin = i + 1;
+            while (fin < n && lotes[fin] == lote) {
+                fin++;
+            }
+            String loteId = TablaIds.LOTES.texto(lote);
+            for (TipoSensor tipo : TIPOS) {
+                if (contieneTipo(batch, i, fin, (byte) tipo.ordinal())) {
+                    obtenerOCrearSerie(loteId, tipo).registrarLote(batch, i, fin, (byte) tipo.ordinal());
+                }
+            }
+            lotesModificados.add(loteId);
+            i = fin;
+        }
+        medicionesRegistradas.add(n);
+        HistorialFueraDelHeap crudo = historial;
+        if (crudo != null) {
+            crudo.registrarLote(batch);
+        }
     }
 
-    private void limitarHistorico(List<Double> lista) {
-        if (lista != null && lista.size() > 100) {
-            lista.remove(0);
+    private static boolean contieneTipo(MedicionBatch batch, int desde, int hasta, byte tipo) {
+        byte[] tipos = batch.getTipos();
+        for (int i = desde; i < hasta; i++) {
+            if (tipos[i] == tipo) {
+                return true;
+            }
         }
+        return false;
+    }
+
+    private SerieEstadistica obtenerOCrearSerie(String loteId, TipoSensor tipoSensor) {
+        return seriesPorTipo(tipoSensor).computeIfAbsent(loteId,
+                k -> new SerieEstadistica(ventanaTendenciaMillis, suavizadoMillis));
+    }
+
+    private Map<String, SerieEstadistica> seriesPorTipo(TipoSensor tipoSensor) {
+        return tipoSensor == TipoSensor.HUMEDAD ? seriesHumedad : seriesTemperatura;
+    }
+
+    private SerieEstadistica serie(String loteId, TipoSensor tipoSensor) {
+        return seriesPorTipo(tipoSensor).get(loteId);
     }
 
     /**
      * Calcula el promedio de humedad de un lote
      */
     public double calcularPromedioHumedad(String loteId) {
-        List<Double> valores = historicoHumedad.get(loteId);
-        if (valores == null || valores.isEmpty()) {
-            return 0.0;
-        }
-        return valores.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+        SerieEstadistica serie = seriesHumedad.get(loteId);
+        return serie == null ? 0.0 : serie.promedioVentana();
     }
 
     /**
      * Calcula el promedio de temperatura de un lote
      */
     public double calcularPromedioTemperatura(String loteId) {
-        List<Double> valores = historicoTemperatura.get(loteId);
-        if (valores == null || valores.isEmpty()) {
-            return 0.0;
-        }
-        return valores.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+        SerieEstadistica serie = seriesTemperatura.get(loteId);
+        return serie == null ? 0.0 : serie.promedioVentana();
     }
 
     /**
-     * Obtiene la tendencia de un sensor (SUBIENDO, BAJANDO, ESTABLE)
+     * Promedio de todas las mediciones registradas para el lote y tipo, no solo
+     * de la ventana reciente
      */
-    public String obtenerTendencia(String loteId, String tipoSensor) {
-        List<Double> valores;
+    public double calcularPromedioTotal(String loteId, TipoSensor tipoSensor) {
+        SerieEstadistica serie = serie(loteId, tipoSensor);
+        return serie == null ? 0.0 : serie.promedioTotal();
+    }
 
-        if (tipoSensor.equalsIgnoreCase("HUMEDAD")) {
-            valores = historicoHumedad.get(loteId);
-        } else if (tipoSensor.equalsIgnoreCase("TEMPERATURA")) {
-            valores = historicoTemperatura.get(loteId);
-        } else {
-            return "DESCONOCIDO";
-        }
+    /**
+     * Valor mínimo registrado para el lote y tipo (NaN si no hay mediciones)
+     */
+    public double obtenerMinimo(String loteId, TipoSensor tipoSensor) {
+        SerieEstadistica serie = serie(loteId, tipoSensor);
+        return serie == null || serie.conteoTotal() == 0 ? Double.NaN : serie.minimo();
+    }
 
-        if (valores == null || valores.size() < 3) {
-            return "INSUFICIENTE";
-        }
+    /**
+     * Valor máximo registrado para el lote y tipo (NaN si no hay mediciones)
+     */
+    public double obtenerMaximo(String loteId, TipoSensor tipoSensor) {
+        SerieEstadistica serie = serie(loteId, tipoSensor);
+        return serie == null || serie.conteoTotal() == 0 ? Double.NaN : serie.maximo();
+    }
 
-        // Comparar últimas 3 mediciones
-        int size = valores.size();
-        double ultima = valores.get(size - 1);
-        double penultima = valores.get(size - 2);
-        double antepenultima = valores.get(size - 3);
+    /**
+     * Total de mediciones registradas desde el inicio
+     */
+    public long getTotalMediciones() {
+        return medicionesRegistradas.sum();
+    }
 
-        double promReciente = (ultima + penultima) / 2;
-        double promAnterior = (penultima + antepenultima) / 2;
+    /**
+     * Configura la ventana de tiempo de la regresión y la constante de tiempo de
+     * la media móvil exponencial para las series que se creen a partir de ahora
+     */
+    public void configurarTendencia(long ventanaMillis, long suavizadoMillis) {
+        if (ventanaMillis <= 0 || suavizadoMillis <= 0) {
+            throw new IllegalArgumentException("La ventana y el suavizado deben ser mayores a 0");
+        }
+        this.ventanaTendenciaMillis = ventanaMillis;
+        this.suavizadoMillis = suavizadoMillis;
+    }
 
-        double diferencia = promReciente - promAnterior;
+    /**
+     * Calcula la tendencia de un lote: pendiente en unidades por hora dentro de
+     * la ventana configurada, media móvil exponencial y confianza del ajuste
+     */
+    public ResultadoTendencia calcularTendencia(String loteId, TipoSensor tipoSensor) {
+        SerieEstadistica serie = serie(loteId, tipoSensor);
+        if (serie == null) {
+            return new ResultadoTendencia(0, 0, Double.NaN, Double.NaN, 0);
+        }
+        return serie.tendencia();
+    }
+
+    /**
+     * Obtiene la tendencia de un sensor (SUBIENDO, BAJANDO, ESTABLE). Una
+     * pendiente pequeña o con poca confianza se considera estable.
+     */
+    public String obtenerTendencia(String loteId, TipoSensor tipoSensor) {
+        ResultadoTendencia tendencia = calcularTendencia(loteId, tipoSensor);
+        if (tendencia.getMuestras() < 3) {
+            return "INSUFICIENTE";
+        }
 
-        if (Math.abs(diferencia) < 2.0) {
+        double pendiente = tendencia.getPendientePorHora();
+        if (Math.abs(pendiente) < PENDIENTE_ESTABLE || tendencia.getConfianza() < CONFIANZA_MINIMA) {
             return "ESTABLE";
-        } else if (diferencia > 0) {
+        } else if (pendiente > 0) {
             return "SUBIENDO";
         } else {
             return "BAJANDO";
@@ -98,13 +228,75 @@ public class EstadisticasService {
     }
 
     /**
-     * Genera un resumen general de todos los lotes
+     * Proyecta en cuántas horas el lote alcanzará el umbral indicado
+     * 
+     * @return horas estimadas, o -1 si no se dirige hacia el umbral o la
+     *         tendencia no es confiable
+     */
+    public double proyectarHorasHasta(String loteId, TipoSensor tipoSensor, double umbral) {
+        ResultadoTendencia tendencia = calcularTendencia(loteId, tipoSensor);
+        if (tendencia.getConfianza() < CONFIANZA_MINIMA) {
+            return -1;
+        }
+        return tendencia.horasHasta(umbral);
+    }
+
+    /**
+     * Estima para cada lote las horas que faltan para que la humedad llegue al
+     * nivel crítico, usando solo el estado incremental (sin recorrer
+     * históricos). Solo incluye lotes con humedad descendente y confiable.
+     */
+    public Map<String, Double> proyectarHumedadCritica(GestorLotes gestorLotes) {
+        Map<String, Double> proyeccion = new LinkedHashMap<>();
+        for (Lote lote : gestorLotes.obtenerTodos()) {
+            double horas = proyectarHorasHasta(lote.getId(), TipoSensor.HUMEDAD, AlertaService.HUMEDAD_CRITICA);
+            if (horas >= 0) {
+                proyeccion.put(lote.getId(), horas);
+            }
+        }
+        return proyeccion;
+    }
+
+    /**
+     * Genera un resumen general de todos los lotes. El texto de cada lote se
+     * conserva en caché y solo se vuelve a generar cuando el lote recibe
+     * mediciones, cambian sus datos o cambia el día; los fragmentos pendientes
+     * se calculan en paralelo.
      */
     public String generarResumenGeneral(GestorLotes gestorLotes) {
+        List<Lote> lotes = gestorLotes.obtenerTodos();
+        LocalDate hoy = LocalDate.now();
+
+        // Se quita la marca antes de generar el texto: una medición que llegue
+        // mientras tanto vuelve a marcar el lote para la próxima llamada
+        List<Lote> pendientes = new ArrayList<>();
+        for (Lote lote : lotes) {
+            FragmentoResumen fragmento = cacheResumen.get(lote.getId());
+            boolean modificado = lotesModificados.remove(lote.getId());
+            if (modificado || fragmento == null || !fragmento.vigente(lote, hoy)) {
+                pendientes.add(lote);
+            }
+        }
+
+        if (!pendientes.isEmpty()) {
+            Stream<Lote> flujo = pendientes.size() > 1 ? pendientes.parallelStream() : pendientes.stream();
+            List<FragmentoResumen> nuevos = flujo
+                    .map(lote -> new FragmentoResumen(lote, hoy, generarResumenLote(lote)))
+                    .collect(Collectors.toList());
+            for (FragmentoResumen fragmento : nuevos) {
+                cacheResumen.put(fragmento.lote.getId(), fragmento);
+            }
+        }
+        if (cacheResumen.size() > lotes.size()) {
+            Set<String> vigentes = new HashSet<>();
+            for (Lote lote : lotes) {
+                vigentes.add(lote.getId());
+            }
+            cacheResumen.keySet().retainAll(vigentes);
+        }
+
         StringBuilder resumen = new StringBuilder();
         resumen.append("=== RESUMEN GENERAL DEL SISTEMA ===\n\n");
-
-        List<Lote> lotes = gestorLotes.obtenerTodos();
         resumen.append("Total de lotes: ").append(lotes.size()).append("\n");
 
         int totalSensores = lotes.stream()
@@ -113,52 +305,183 @@ public class EstadisticasService {
         resumen.append("Total de sensores: ").append(totalSensores).append("\n\n");
 
         for (Lote lote : lotes) {
-            resumen.append("Lote ").append(lote.getId()).append(" - ").append(lote.getNombre()).append("\n");
-            resumen.append("  Cultivo: ").append(lote.getTipoCultivo()).append("\n");
+            resumen.append(cacheResumen.get(lote.getId()).texto);
+        }
 
-            if (lote.getFechaSiembra() != null) {
-                resumen.append("  Días desde siembra: ").append(lote.calcularDiasDesdeSiembra()).append("\n");
-                resumen.append("  Etapa: ").append(lote.getEtapaCrecimiento()).append("\n");
-            }
+        return resumen.toString();
+    }
+
+    private String generarResumenLote(Lote lote) {
+        StringBuilder resumen = new StringBuilder();
+        resumen.append("Lote ").append(lote.getId()).append(" - ").append(lote.getNombre()).append("\n");
+        resumen.append("  Cultivo: ").append(lote.getTipoCultivo()).append("\n");
 
-            double promHum = calcularPromedioHumedad(lote.getId());
-            double promTemp = calcularPromedioTemperatura(lote.getId());
+        if (lote.getFechaSiembra() != null) {
+            resumen.append("  Días desde siembra: ").append(lote.calcularDiasDesdeSiembra()).append("\n");
+            resumen.append("  Etapa: ").append(lote.getEtapaCrecimiento()).append("\n");
+        }
 
-            if (promHum > 0) {
-                resumen.append("  Humedad promedio: ").append(String.format("%.1f%%", promHum));
-                resumen.append(" (").append(obtenerTendencia(lote.getId(), "HUMEDAD")).append(")\n");
-            }
+        double promHum = calcularPromedioHumedad(lote.getId());
+        double promTemp = calcularPromedioTemperatura(lote.getId());
 
-            if (promTemp > 0) {
-                resumen.append("  Temperatura promedio: ").append(String.format("%.1f°C", promTemp));
-                resumen.append(" (").append(obtenerTendencia(lote.getId(), "TEMPERATURA")).append(")\n");
-            }
+        if (promHum > 0) {
+            resumen.append("  Humedad promedio: ").append(String.format("%.1f%%", promHum));
+            resumen.append(" (").append(obtenerTendencia(lote.getId(), TipoSensor.HUMEDAD)).append(")\n");
+        }
 
-            resumen.append("\n");
+        if (promTemp > 0) {
+            resumen.append("  Temperatura promedio: ").append(String.format("%.1f°C", promTemp));
+            resumen.append(" (").append(obtenerTendencia(lote.getId(), TipoSensor.TEMPERATURA)).append(")\n");
         }
 
+        resumen.append("\n");
         return resumen.toString();
     }
 
+    /**
+     * Consulta el histórico agregado de un lote en el rango [desde, hasta) con
+     * la resolución indicada. Se usa automáticamente el nivel de agregación
+     * (minuto, hora o día) más grueso que satisface la resolución.
+     */
+    public List<ResumenIntervalo> consultarHistorico(String loteId, TipoSensor tipoSensor, long desdeMillis,
+            long hastaMillis, long resolucionMillis) {
+        SerieEstadistica serie = serie(loteId, tipoSensor);
+        if (serie == null) {
+            return new ArrayList<>();
+        }
+        return serie.consultar(desdeMillis, hastaMillis, resolucionMillis);
+    }
+
+    /**
+     * Consulta el histórico agregado limitando el resultado a aproximadamente
+     * {@code maxPuntos} intervalos (por ejemplo, el ancho en píxeles de una
+     * gráfica)
+     */
+    public List<ResumenIntervalo> consultarHistoricoParaGrafica(String loteId, TipoSensor tipoSensor, long desdeMillis,
+            long hastaMillis, int maxPuntos) {
+        long rango = Math.max(1, hastaMillis - desdeMillis);
+        long resolucion = Math.max(1, (rango + maxPuntos - 1) / Math.max(1, maxPuntos));
+        return consultarHistorico(loteId, tipoSensor, desdeMillis, hastaMillis, resolucion);
+    }
+
+    /**
+     * Histórico para una gráfica de {@code maxPuntos} de ancho (en píxeles)
+     * reducido con {@link Lttb}. Se consulta con una resolución unas 8 veces
+     * más fina que la pedida y de esos intervalos se eligen los que conservan
+     * mejor la forma de la curva, en lugar de promediarlos.
+     */
+    public List<ResumenIntervalo> consultarHistoricoReducido(String loteId, TipoSensor tipoSensor, long desdeMillis,
+            long hastaMillis, int maxPuntos) {
+        List<ResumenIntervalo> intervalos = consultarHistoricoParaGrafica(loteId, tipoSensor, desdeMillis,
+                hastaMillis, maxPuntos * SOBREMUESTREO_GRAFICA);
+        int n = intervalos.size();
+        if (n <= maxPuntos) {
+            return intervalos;
+        }
+        long[] x = new long[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = intervalos.get(i).getInicioMillis();
+            y[i] = intervalos.get(i).getPromedio();
+        }
+        int[] elegidos = new int[maxPuntos];
+        int cantidad = Lttb.seleccionar(x, y, n, maxPuntos, elegidos);
+        List<ResumenIntervalo> resultado = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            resultado.add(intervalos.get(elegidos[i]));
+        }
+        return resultado;
+    }
+
+    /**
+     * Conserva las lecturas crudas de cada sensor que lleguen por
+     * {@link #registrarLote} o por {@code registrarMedicion} con el sensor en
+     * el histórico indicado; null deja de conservarlas
+     */
+    public void setHistorial(HistorialFueraDelHeap historial) {
+        this.historial = historial;
+    }
+
+    public HistorialFueraDelHeap getHistorial() {
+        return historial;
+    }
+
+    /**
+     * Copia las lecturas crudas del sensor en [desde, hasta) en orden
+     * cronológico, hasta llenar los arreglos
+     *
+     * @return cantidad de lecturas copiadas; 0 si no se conserva el histórico
+     *         crudo o el sensor no tiene lecturas
+     */
+    public int consultarLecturas(String sensorId, long desdeMillis, long hastaMillis, long[] tiempos,
+            double[] valores) {
+        HistorialFueraDelHeap crudo = historial;
+        int sensor = TablaIds.SENSORES.buscar(sensorId);
+        if (crudo == null || sensor < 0) {
+            return 0;
+        }
+        return crudo.leer(sensor, desdeMillis, hastaMillis, tiempos, valores);
+    }
+
+    /**
+     * Descarta las lecturas crudas del sensor, por ejemplo al quitarlo de su
+     * lote
+     */
+    public void eliminarLecturas(String sensorId) {
+        HistorialFueraDelHeap crudo = historial;
+        int sensor = TablaIds.SENSORES.buscar(sensorId);
+        if (crudo != null && sensor >= 0) {
+            crudo.eliminarSensor(sensor);
+        }
+    }
+
     /**
      * Obtiene el histórico de humedad de un lote
      */
     public List<Double> getHistoricoHumedad(String loteId) {
-        return new ArrayList<>(historicoHumedad.getOrDefault(loteId, new ArrayList<>()));
+        SerieEstadistica serie = seriesHumedad.get(loteId);
+        return serie == null ? new ArrayList<>() : serie.historico();
     }
 
     /**
      * Obtiene el histórico de temperatura de un lote
      */
     public List<Double> getHistoricoTemperatura(String loteId) {
-        return new ArrayList<>(historicoTemperatura.getOrDefault(loteId, new ArrayList<>()));
+        SerieEstadistica serie = seriesTemperatura.get(loteId);
+        return serie == null ? new ArrayList<>() : serie.historico();
     }
 
     /**
-     * Limpia todo el histórico
+     * Limpia todo el histórico: series, conteo de mediciones y lecturas crudas
      */
     public void limpiarHistorico() {
-        historicoHumedad.clear();
-        historicoTemperatura.clear();
+        seriesHumedad.clear();
+        seriesTemperatura.clear();
+        cacheResumen.clear();
+        lotesModificados.clear();
+        medicionesRegistradas.reset();
+        HistorialFueraDelHeap crudo = historial;
+        if (crudo != null) {
+            crudo.vaciar();
+        }
+    }
+
+    // Texto ya generado del resumen de un lote
+    private static class FragmentoResumen {
+        final Lote lote;
+        final long version;
+        final LocalDate fecha;
+        final String texto;
+
+        FragmentoResumen(Lote lote, LocalDate fecha, String texto) {
+            this.lote = lote;
+            this.version = lote.getVersion();
+            this.fecha = fecha;
+            this.texto = texto;
+        }
+
+        boolean vigente(Lote actual, LocalDate hoy) {
+            return lote == actual && version == actual.getVersion() && fecha.equals(hoy);
+        }
     }
 }
@@ -0,0 +1,151 @@
+package com.agrosense.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cómo espera un consumidor a que haya eventos nuevos en el anillo. Las
+ * estrategias que giran dan menor latencia a cambio de ocupar un núcleo; las
+ * que duermen o se bloquean liberan la CPU.
+ */
+public interface EstrategiaEspera {
+
+    /**
+     * Espera hasta que lo que precede a la barrera alcance la secuencia y
+     * devuelve la secuencia alcanzada
+     */
+    long esperar(long secuencia, BarreraSecuencias barrera) throws InterruptedException;
+
+    void notificarPublicacion();
+
+    /**
+     * Giro continuo: la menor latencia, ocupa un núcleo por consumidor
+     */
+    static EstrategiaEspera ocupada() {
+        return new EstrategiaEspera() {
+            @Override
+            public long esperar(long secuencia, BarreraSecuencias barrera) throws InterruptedException {
+                long disponible;
+                while ((disponible = barrera.disponible()) < secuencia) {
+                    barrera.verificar();
+                    Thread.onSpinWait();
+                }
+                return disponible;
+            }
+
+            @Override
+            public void notificarPublicacion() {
+            }
+        };
+    }
+
+    /**
+     * Gira un momento y luego cede el procesador a otros hilos
+     */
+    static EstrategiaEspera cediendo() {
+        return new EstrategiaEspera() {
+            @Override
+            public long esperar(long secuencia, BarreraSecuencias barrera) throws InterruptedException {
+                long disponible;
+                int giros = 100;
+                while ((disponible = barrera.disponible()) < secuencia) {
+                    barrera.verificar();
+                    if (giros > 0) {
+                        giros--;
+                        Thread.onSpinWait();
+                    } else {
+                        Thread.yield();
+                    }
+                }
+                return disponible;
+            }
+
+            @Override
+            public void notificarPublicacion() {
+            }
+        };
+    }
+
+    /**
+     * Gira, cede y finalmente duerme intervalos cortos. Buen equilibrio entre
+     * latencia y uso de CPU cuando la carga es variable.
+     */
+    static EstrategiaEspera durmiendo() {
+        return new EstrategiaEspera() {
+            @Override
+            public long esperar(long secuencia, BarreraSecuencias barrera) throws InterruptedException {
+                long disponible;
+                int intentos = 200;
+                while ((disponible = barrera.disponible()) < secuencia) {
+                    barrera.verificar();
+                    if (intentos > 100) {
+                        intentos--;
+                        Thread.onSpinWait();
+                    } else if (intentos > 0) {
+                        intentos--;
+                        Thread.yield();
+                    } else {
+                        LockSupport.parkNanos(50_000);
+                    }
+                }
+                return disponible;
+            }
+
+            @Override
+            public void notificarPublicacion() {
+            }
+        };
+    }
+
+    /**
+     * Los consumidores se bloquean hasta que un productor publica. No gasta
+     * CPU en espera, pero cada publicación paga el costo de despertar.
+     */
+    static EstrategiaEspera bloqueante() {
+        return new EstrategiaEspera() {
+            private final ReentrantLock cerrojo = new ReentrantLock();
+            private final Condition publicado = cerrojo.newCondition();
+            private volatile boolean hayEsperando;
+
+            @Override
+            public long esperar(long secuencia, BarreraSecuencias barrera) throws InterruptedException {
+                if (barrera.dependeDeProductores()) {
+                    while (barrera.disponible() < secuencia) {
+                        cerrojo.lock();
+                        try {
+                            hayEsperando = true;
+                            barrera.verificar();
+                            if (barrera.disponible() < secuencia) {
+                                publicado.await(10, TimeUnit.MILLISECONDS);
+                            }
+                        } finally {
+                            cerrojo.unlock();
+                        }
+                    }
+                }
+                // Las etapas anteriores avanzan rápido una vez que hay eventos
+                long disponible;
+                while ((disponible = barrera.disponible()) < secuencia) {
+                    barrera.verificar();
+                    Thread.yield();
+                }
+                return disponible;
+            }
+
+            @Override
+            public void notificarPublicacion() {
+                if (hayEsperando) {
+                    cerrojo.lock();
+                    try {
+                        hayEsperando = false;
+                        publicado.signalAll();
+                    } finally {
+                        cerrojo.unlock();
+                    }
+                }
+            }
+        };
+    }
+}
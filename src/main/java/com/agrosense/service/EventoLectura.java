@@ -0,0 +1,85 @@
+package com.agrosense.service;
+
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
+
+/**
+ * Ranura reutilizable del anillo de {@link TuberiaLecturas}. Los objetos se
+ * crean una sola vez al construir el anillo y cada publicación sobrescribe sus
+ * campos. Sensor y lote se guardan como números de {@link TablaIds}.
+ */
+public class EventoLectura {
+    private int sensor;
+    private int lote;
+    private TipoSensor tipo;
+    private double valor;
+    private long epochMillis;
+    private DetectorAnomalias.TipoAnomalia anomalia;
+    // System.nanoTime() al publicar, para medir la latencia de cada etapa
+    private long publicadoNanos;
+
+    void asignar(int sensor, int lote, TipoSensor tipo, double valor, long epochMillis) {
+        this.sensor = sensor;
+        this.lote = lote;
+        this.tipo = tipo;
+        this.valor = valor;
+        this.epochMillis = epochMillis;
+        this.anomalia = null;
+        this.publicadoNanos = System.nanoTime();
+    }
+
+    void setAnomalia(DetectorAnomalias.TipoAnomalia anomalia) {
+        this.anomalia = anomalia;
+    }
+
+    public long getPublicadoNanos() {
+        return publicadoNanos;
+    }
+
+    public int getSensor() {
+        return sensor;
+    }
+
+    public int getLote() {
+        return lote;
+    }
+
+    public String getSensorId() {
+        return TablaIds.SENSORES.texto(sensor);
+    }
+
+    public String getLoteId() {
+        return TablaIds.LOTES.texto(lote);
+    }
+
+    public TipoSensor getTipo() {
+        return tipo;
+    }
+
+    public double getValor() {
+        return valor;
+    }
+
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    /**
+     * Resultado del detector de anomalías; null hasta que pasa por esa etapa
+     */
+    public DetectorAnomalias.TipoAnomalia getAnomalia() {
+        return anomalia;
+    }
+
+    /**
+     * Indica si el valor está en rango crítico; estas lecturas no se descartan
+     * por sobrecarga
+     */
+    public boolean esCritica() {
+        return AlertaService.esCritica(tipo, valor);
+    }
+
+    public boolean esAceptada() {
+        return anomalia == DetectorAnomalias.TipoAnomalia.NINGUNA;
+    }
+}
@@ -0,0 +1,140 @@
+package com.agrosense.service;
+
+import com.agrosense.model.Alerta;
+import com.agrosense.model.Lote;
+import com.agrosense.model.Sensor;
+import com.agrosense.model.SensorHumedad;
+import com.agrosense.model.SensorTemperatura;
+import com.agrosense.model.TipoSensor;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Formato binario de la replicación entre {@link ReplicadorLider} y
+ * {@link ReplicaSeguidor}. El líder envía tramas:
+ *
+ * <pre>
+ * int bytesCuerpo, long secuencia, long epoca, long epochMillisCaptura, int registros
+ * registros x { byte tipo, campos del registro }
+ * </pre>
+ *
+ * y el seguidor responde con la secuencia de la última trama aplicada
+ * ({@code long}), una vez por cada grupo de tramas que recibe junto.
+ *
+ * La época identifica al líder: una réplica promovida lidera con la época
+ * siguiente a la del líder que seguía, y un seguidor rechaza a un líder con
+ * una época menor a la que ya vio. Las tramas sin registros sirven de latido.
+ */
+final class FormatoReplicacion {
+
+    static final int BYTES_CABECERA = 4 + 8 + 8 + 8 + 4;
+
+    // Vaciar el estado antes de recibir la instantánea completa
+    static final byte INSTANTANEA = 1;
+    static final byte LOTE = 2;
+    static final byte LOTE_ELIMINADO = 3;
+    static final byte ALERTA = 4;
+    static final byte ALERTAS_VACIADAS = 5;
+    static final byte LECTURA = 6;
+    // El seguidor quedó demasiado atrasado: debe reconectarse y recibir otra instantánea
+    static final byte RESINCRONIZAR = 7;
+
+    private FormatoReplicacion() {
+    }
+
+    /**
+     * Registro sin campos (instantánea, alertas vaciadas, resincronizar)
+     */
+    static void escribirTipo(DataOutput out, byte tipo) throws IOException {
+        out.writeByte(tipo);
+    }
+
+    /**
+     * Lote completo con sus sensores; el seguidor lo agrega o reemplaza
+     */
+    static void escribirLote(DataOutput out, Lote lote) throws IOException {
+        out.writeByte(LOTE);
+        out.writeUTF(lote.getId());
+        out.writeUTF(lote.getNombre());
+        escribirOpcional(out, lote.getTipoCultivo());
+        out.writeDouble(lote.getArea());
+        escribirOpcional(out, lote.getFechaSiembra() == null ? null : lote.getFechaSiembra().toString());
+        escribirOpcional(out, lote.getEtapaCrecimiento());
+        escribirOpcional(out, lote.getNotas());
+        out.writeInt(lote.getSensores().size());
+        for (Sensor sensor : lote.getSensores()) {
+            out.writeUTF(sensor.getId());
+            out.writeByte(sensor.getTipo().ordinal());
+            escribirOpcional(out, sensor.getUbicacion());
+            out.writeLong(sensor.getIntervaloMuestreoMs());
+        }
+    }
+
+    static Lote leerLote(DataInput in) throws IOException {
+        Lote lote = new Lote(in.readUTF(), in.readUTF(), leerOpcional(in), in.readDouble());
+        String fechaSiembra = leerOpcional(in);
+        if (fechaSiembra != null) {
+            lote.setFechaSiembra(LocalDate.parse(fechaSiembra));
+        }
+        lote.setEtapaCrecimiento(leerOpcional(in));
+        lote.setNotas(leerOpcional(in));
+        int sensores = in.readInt();
+        for (int i = 0; i < sensores; i++) {
+            String id = in.readUTF();
+            TipoSensor tipo = TipoSensor.values()[in.readByte()];
+            String ubicacion = leerOpcional(in);
+            Sensor sensor = tipo == TipoSensor.HUMEDAD ? new SensorHumedad(id, ubicacion)
+                    : new SensorTemperatura(id, ubicacion);
+            sensor.setIntervaloMuestreoMs(in.readLong());
+            lote.agregarSensor(sensor);
+        }
+        return lote;
+    }
+
+    static void escribirLoteEliminado(DataOutput out, String loteId) throws IOException {
+        out.writeByte(LOTE_ELIMINADO);
+        out.writeUTF(loteId);
+    }
+
+    static void escribirAlerta(DataOutput out, Alerta alerta) throws IOException {
+        out.writeByte(ALERTA);
+        out.writeByte(alerta.getNivel().ordinal());
+        out.writeUTF(alerta.getMensaje());
+        escribirOpcional(out, alerta.getLoteId());
+        out.writeUTF(alerta.getFechaHora().toString());
+    }
+
+    static Alerta leerAlerta(DataInput in) throws IOException {
+        Alerta.Nivel nivel = Alerta.Nivel.values()[in.readByte()];
+        String mensaje = in.readUTF();
+        String loteId = leerOpcional(in);
+        return new Alerta(mensaje, nivel, loteId, LocalDateTime.parse(in.readUTF()));
+    }
+
+    /**
+     * Una lectura aceptada; el seguidor la suma a sus estadísticas
+     */
+    static void escribirLectura(DataOutput out, String sensorId, String loteId, TipoSensor tipo, double valor,
+            long epochMillis) throws IOException {
+        out.writeByte(LECTURA);
+        out.writeUTF(sensorId);
+        out.writeUTF(loteId);
+        out.writeByte(tipo.ordinal());
+        out.writeDouble(valor);
+        out.writeLong(epochMillis);
+    }
+
+    private static void escribirOpcional(DataOutput out, String texto) throws IOException {
+        out.writeBoolean(texto != null);
+        if (texto != null) {
+            out.writeUTF(texto);
+        }
+    }
+
+    private static String leerOpcional(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
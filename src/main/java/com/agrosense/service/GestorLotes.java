@@ -3,44 +3,78 @@ package com.agrosense.service;
 import com.agrosense.model.Lote;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Lotes registrados, en orden de registro. Las búsquedas por ID van a un
+ * mapa concurrente y las lecturas de todos los lotes reciben una copia
+ * inmutable que se arma de nuevo solo después de un cambio, así el monitoreo
+ * y el guardado en segundo plano leen sin bloquear mientras la UI registra
+ * lotes. Los cambios se serializan entre sí; registrar N lotes seguidos sin
+ * leerlos en el medio cuesta O(N).
+ */
 public class GestorLotes {
-    private List<Lote> lotes;
+    private final Map<String, Lote> porId = new ConcurrentHashMap<>();
+    // Orden de registro; solo se usa con el monitor tomado
+    private final List<Lote> orden = new ArrayList<>();
+    // Copia publicada; null si hubo cambios desde la última
+    private volatile List<Lote> instantanea = List.of();
 
-    public GestorLotes() {
-        this.lotes = new ArrayList<>();
-    }
-
-    public void registrarLote(Lote lote) {
-        if (buscarPorId(lote.getId()).isPresent()) {
+    public synchronized void registrarLote(Lote lote) {
+        if (porId.putIfAbsent(lote.getId(), lote) != null) {
             throw new IllegalArgumentException("Ya existe un lote con ID: " + lote.getId());
         }
-        lotes.add(lote);
+        orden.add(lote);
+        instantanea = null;
     }
 
-    public void actualizarLote(Lote lote) {
-        Optional<Lote> existente = buscarPorId(lote.getId());
-        if (existente.isEmpty()) {
+    public synchronized void actualizarLote(Lote lote) {
+        Lote existente = porId.get(lote.getId());
+        if (existente == null) {
             throw new IllegalArgumentException("No existe un lote con ID: " + lote.getId());
         }
-        lotes.remove(existente.get());
-        lotes.add(lote);
+        orden.remove(existente);
+        orden.add(lote);
+        porId.put(lote.getId(), lote);
+        instantanea = null;
     }
 
-    public boolean eliminarLote(String id) {
-        return lotes.removeIf(l -> l.getId().equals(id));
+    public synchronized boolean eliminarLote(String id) {
+        Lote eliminado = id == null ? null : porId.remove(id);
+        if (eliminado == null) {
+            return false;
+        }
+        orden.remove(eliminado);
+        instantanea = null;
+        return true;
     }
 
+    /**
+     * Todos los lotes en orden de registro, en una lista inmutable que no
+     * cambia aunque después se registren o eliminen lotes
+     */
     public List<Lote> obtenerTodos() {
-        return lotes;
+        List<Lote> actual = instantanea;
+        if (actual != null) {
+            return actual;
+        }
+        synchronized (this) {
+            if (instantanea == null) {
+                instantanea = List.copyOf(orden);
+            }
+            return instantanea;
+        }
     }
 
     public Optional<Lote> buscarPorId(String id) {
-        return lotes.stream().filter(l -> l.getId().equals(id)).findFirst();
+        return id == null ? Optional.empty() : Optional.ofNullable(porId.get(id));
     }
 
-    public void limpiar() {
-        lotes.clear();
+    public synchronized void limpiar() {
+        porId.clear();
+        orden.clear();
+        instantanea = null;
     }
 }
@@ -0,0 +1,183 @@
+package com.agrosense.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de duraciones en nanosegundos con cubetas log-lineales al estilo
+ * HdrHistogram: cada potencia de 2 se divide en 32 cubetas iguales, así que
+ * cualquier valor se guarda con error relativo menor a 1/32 (~3 %) y un
+ * rango de 0 a {@code Long.MAX_VALUE} cabe en 1.888 contadores.
+ *
+ * Registrar es un incremento atómico en la cubeta, una suma en un
+ * {@link LongAdder} y, solo si el valor supera al máximo, un CAS: sin candados
+ * ni reserva de memoria. Las lecturas toman una {@link Instantanea} que puede
+ * restarse de otra anterior para ver solo un intervalo.
+ */
+public class HistogramaLatencia implements HistogramaLatenciaMXBean {
+
+    private static final int BITS_SUBCUBETA = 5;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+    static final int CUBETAS = (Long.SIZE - BITS_SUBCUBETA) * SUBCUBETAS;
+
+    private final String nombre;
+    private final AtomicLongArray cuentas = new AtomicLongArray(CUBETAS);
+    private final LongAdder suma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    HistogramaLatencia(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * Registra una duración en nanosegundos (los valores negativos cuentan como 0)
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(nanos, 0);
+        cuentas.incrementAndGet(indice(valor));
+        suma.add(valor);
+        if (valor > maximo.get()) {
+            maximo.accumulateAndGet(valor, Math::max);
+        }
+    }
+
+    /**
+     * Registra el tiempo transcurrido desde {@code inicioNanos} ({@link System#nanoTime()})
+     */
+    public void registrarDesde(long inicioNanos) {
+        registrar(System.nanoTime() - inicioNanos);
+    }
+
+    static int indice(long valor) {
+        if (valor < 2 * SUBCUBETAS) {
+            return (int) valor;
+        }
+        int desplazamiento = 63 - Long.numberOfLeadingZeros(valor) - BITS_SUBCUBETA;
+        return (desplazamiento + 1) * SUBCUBETAS + (int) (valor >>> desplazamiento) - SUBCUBETAS;
+    }
+
+    // Mayor valor que cae en la cubeta
+    static long limiteSuperior(int indice) {
+        if (indice < 2 * SUBCUBETAS) {
+            return indice;
+        }
+        int desplazamiento = indice / SUBCUBETAS - 1;
+        long inferior = (long) (indice % SUBCUBETAS + SUBCUBETAS) << desplazamiento;
+        return inferior + (1L << desplazamiento) - 1;
+    }
+
+    public Instantanea instantanea() {
+        long[] copia = new long[CUBETAS];
+        long total = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            copia[i] = cuentas.get(i);
+            total += copia[i];
+        }
+        return new Instantanea(copia, total, suma.sum(), maximo.get());
+    }
+
+    @Override
+    public long getCantidad() {
+        return instantanea().getCantidad();
+    }
+
+    @Override
+    public double getPromedioMicros() {
+        return instantanea().getPromedio() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return instantanea().percentil(50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return instantanea().percentil(99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return instantanea().percentil(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getMaximoMicros() {
+        return maximo.get() / 1000.0;
+    }
+
+    /**
+     * Copia de las cuentas en un momento dado. Como los valores se registran
+     * sin detener a nadie, la copia puede incluir a medias los eventos
+     * concurrentes con ella; para métricas eso no importa.
+     */
+    public static class Instantanea {
+        private final long[] cuentas;
+        private final long cantidad;
+        private final long suma;
+        private final long maximo;
+
+        Instantanea(long[] cuentas, long cantidad, long suma, long maximo) {
+            this.cuentas = cuentas;
+            this.cantidad = cantidad;
+            this.suma = suma;
+            this.maximo = maximo;
+        }
+
+        /**
+         * Eventos registrados después de {@code anterior}. El máximo es el de
+         * las cubetas del intervalo, salvo que el máximo total haya cambiado.
+         */
+        public Instantanea menos(Instantanea anterior) {
+            long[] diferencia = new long[CUBETAS];
+            long total = 0;
+            int mayor = -1;
+            for (int i = 0; i < CUBETAS; i++) {
+                diferencia[i] = cuentas[i] - anterior.cuentas[i];
+                total += diferencia[i];
+                if (diferencia[i] > 0) {
+                    mayor = i;
+                }
+            }
+            long maximoIntervalo = maximo != anterior.maximo ? maximo
+                    : mayor < 0 ? 0 : Math.min(maximo, limiteSuperior(mayor));
+            return new Instantanea(diferencia, total, suma - anterior.suma, maximoIntervalo);
+        }
+
+        public long getCantidad() {
+            return cantidad;
+        }
+
+        public double getPromedio() {
+            return cantidad == 0 ? 0 : (double) suma / cantidad;
+        }
+
+        public long getMaximo() {
+            return maximo;
+        }
+
+        /**
+         * Valor bajo el que queda el porcentaje indicado de los eventos
+         * (límite superior de su cubeta, sin pasar del máximo)
+         */
+        public long percentil(double porcentaje) {
+            if (cantidad == 0) {
+                return 0;
+            }
+            long objetivo = Math.max(1, (long) Math.ceil(cantidad * porcentaje / 100.0));
+            long acumulado = 0;
+            for (int i = 0; i < CUBETAS; i++) {
+                acumulado += cuentas[i];
+                if (acumulado >= objetivo) {
+                    return Math.min(limiteSuperior(i), maximo);
+                }
+            }
+            return maximo;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.agrosense.service;
+
+/**
+ * Vista JMX de un {@link HistogramaLatencia}. Los valores son acumulados
+ * desde el arranque, en microsegundos.
+ */
+public interface HistogramaLatenciaMXBean {
+
+    long getCantidad();
+
+    double getPromedioMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaximoMicros();
+}
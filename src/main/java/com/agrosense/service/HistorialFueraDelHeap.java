@@ -0,0 +1,407 @@
+package com.agrosense.service;
+
+import com.agrosense.model.MedicionBatch;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Histórico crudo de lecturas por sensor fuera del heap. Las lecturas se
+ * guardan en bloques de 4 KB ("slabs") tomados de segmentos de 64 MB, que son
+ * {@link ByteBuffer} directos o regiones de un archivo mapeado en memoria. Cada
+ * sensor tiene una cadena de bloques de solo agregar, del más viejo al más
+ * nuevo:
+ *
+ * <pre>
+ * bloque:  int siguiente, int cantidad, cantidad x { long epochMillis, double valor }
+ * </pre>
+ *
+ * Un bloque ocupa una página: cada ciclo escribe en el último bloque de cada
+ * sensor, así que la memoria que se modifica sin parar es de 4 KB por sensor
+ * y no crece con el histórico.
+ *
+ * En el heap solo quedan, por número de sensor de {@code TablaIds.SENSORES},
+ * el primer y el último bloque de su cadena y la cantidad de lecturas; el
+ * tamaño del histórico no cambia la cantidad de objetos que recorre el GC.
+ *
+ * Las lecturas quedan en orden de llegada y las consultas por rango suponen
+ * que cada sensor las entrega en orden de tiempo, como las toma el monitoreo;
+ * una lectura atrasada se conserva pero puede quedar fuera de una consulta.
+ *
+ * Los bloques que libera {@link #recortar} o {@link #eliminarSensor} vuelven a
+ * una lista libre y se reutilizan antes de reservar otro segmento. Si se
+ * alcanza la capacidad y no hay bloques libres, el sensor que necesita espacio
+ * reutiliza su propio bloque más viejo.
+ *
+ * Un solo candado protege el almacén; {@link #registrarLote} lo toma una vez
+ * por lote de mediciones. Después de {@link #close} las lecturas que lleguen
+ * se ignoran y las consultas no devuelven nada.
+ */
+public class HistorialFueraDelHeap implements AutoCloseable {
+
+    static final int BYTES_BLOQUE = 4 * 1024;
+    static final int BYTES_SEGMENTO = 64 * 1024 * 1024;
+    static final int BLOQUES_POR_SEGMENTO = BYTES_SEGMENTO / BYTES_BLOQUE;
+
+    private static final int BYTES_CABECERA = 8;
+    private static final int BYTES_LECTURA = 16;
+    static final int LECTURAS_POR_BLOQUE = (BYTES_BLOQUE - BYTES_CABECERA) / BYTES_LECTURA;
+    private static final int SIN_BLOQUE = -1;
+
+    public static final int CAPACIDAD_MINIMA_MB = BYTES_SEGMENTO >> 20;
+
+    private final long capacidadBytes;
+    // Baja si falla la reserva de un segmento, para no reintentar en cada bloque
+    private int maxSegmentos;
+    private final FileChannel archivo;
+
+    private ByteBuffer[] segmentos = new ByteBuffer[8];
+    private int cantidadSegmentos;
+    // Bloques nunca usados del último segmento
+    private int bloquesReservados;
+
+    private int[] libres = new int[64];
+    private int cantidadLibres;
+
+    // Por número de sensor
+    private int[] primero = new int[0];
+    private int[] ultimo = new int[0];
+    private long[] lecturas = new long[0];
+
+    private long totalLecturas;
+    private long lecturasDescartadas;
+    private boolean cerrado;
+
+    /**
+     * Histórico en memoria directa; la JVM debe admitir al menos
+     * {@code capacidadBytes} con {@code -XX:MaxDirectMemorySize}
+     */
+    public HistorialFueraDelHeap(long capacidadBytes) {
+        this.capacidadBytes = capacidadBytes;
+        this.maxSegmentos = segmentosPara(capacidadBytes);
+        this.archivo = null;
+    }
+
+    /**
+     * Histórico en un archivo mapeado en memoria; el archivo crece de a un
+     * segmento y el sistema operativo decide qué parte queda en RAM, así que
+     * la capacidad puede superar la memoria física
+     */
+    public HistorialFueraDelHeap(Path ruta, long capacidadBytes) throws IOException {
+        this.capacidadBytes = capacidadBytes;
+        this.maxSegmentos = segmentosPara(capacidadBytes);
+        this.archivo = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static int segmentosPara(long capacidadBytes) {
+        if (capacidadBytes < BYTES_SEGMENTO) {
+            throw new IllegalArgumentException("La capacidad mínima del histórico es de "
+                    + CAPACIDAD_MINIMA_MB + " MB");
+        }
+        return (int) Math.min(Integer.MAX_VALUE / BLOQUES_POR_SEGMENTO, capacidadBytes / BYTES_SEGMENTO);
+    }
+
+    /**
+     * Agrega una lectura al final de la cadena del sensor
+     */
+    public synchronized void registrar(int sensor, long epochMillis, double valor) {
+        if (!cerrado) {
+            agregar(sensor, epochMillis, valor);
+        }
+    }
+
+    /**
+     * Agrega todas las lecturas del lote de mediciones
+     */
+    public synchronized void registrarLote(MedicionBatch batch) {
+        if (cerrado) {
+            return;
+        }
+        int n = batch.getTamano();
+        int[] sensores = batch.getSensores();
+        long[] tiempos = batch.getTiempos();
+        double[] valores = batch.getValores();
+        for (int i = 0; i < n; i++) {
+            agregar(sensores[i], tiempos[i], valores[i]);
+        }
+    }
+
+    private void agregar(int sensor, long epochMillis, double valor) {
+        if (sensor < 0) {
+            return;
+        }
+        if (sensor >= ultimo.length) {
+            crecer(sensor + 1);
+        }
+        int bloque = ultimo[sensor];
+        int cantidad;
+        if (bloque == SIN_BLOQUE) {
+            bloque = nuevoBloque(sensor);
+            if (bloque == SIN_BLOQUE) {
+                lecturasDescartadas++;
+                return;
+            }
+            primero[sensor] = bloque;
+            ultimo[sensor] = bloque;
+            cantidad = 0;
+        } else {
+            cantidad = segmento(bloque).getInt(inicio(bloque) + 4);
+            if (cantidad == LECTURAS_POR_BLOQUE) {
+                int nuevo = nuevoBloque(sensor);
+                if (ultimo[sensor] != SIN_BLOQUE) {
+                    segmento(ultimo[sensor]).putInt(inicio(ultimo[sensor]), nuevo);
+                } else {
+                    primero[sensor] = nuevo;
+                }
+                ultimo[sensor] = nuevo;
+                bloque = nuevo;
+                cantidad = 0;
+            }
+        }
+        ByteBuffer seg = segmento(bloque);
+        int pos = inicio(bloque) + BYTES_CABECERA + cantidad * BYTES_LECTURA;
+        seg.putLong(pos, epochMillis);
+        seg.putDouble(pos + 8, valor);
+        seg.putInt(inicio(bloque) + 4, cantidad + 1);
+        lecturas[sensor]++;
+        totalLecturas++;
+    }
+
+    /**
+     * Bloque vacío para el sensor: de la lista libre, de un segmento nuevo o,
+     * sin capacidad, el bloque más viejo del propio sensor (que deja de estar
+     * en su cadena). {@link #SIN_BLOQUE} si el sensor no tiene ninguno que
+     * ceder.
+     */
+    private int nuevoBloque(int sensor) {
+        int bloque;
+        if (cantidadLibres > 0) {
+            bloque = libres[--cantidadLibres];
+        } else if (bloquesReservados > 0 || reservarSegmento()) {
+            bloque = cantidadSegmentos * BLOQUES_POR_SEGMENTO - bloquesReservados;
+            bloquesReservados--;
+        } else if (primero[sensor] != SIN_BLOQUE) {
+            bloque = primero[sensor];
+            ByteBuffer seg = segmento(bloque);
+            int descartadas = seg.getInt(inicio(bloque) + 4);
+            int siguiente = seg.getInt(inicio(bloque));
+            primero[sensor] = siguiente;
+            if (siguiente == SIN_BLOQUE) {
+                ultimo[sensor] = SIN_BLOQUE;
+            }
+            lecturas[sensor] -= descartadas;
+            totalLecturas -= descartadas;
+            lecturasDescartadas += descartadas;
+        } else {
+            return SIN_BLOQUE;
+        }
+        ByteBuffer seg = segmento(bloque);
+        seg.putInt(inicio(bloque), SIN_BLOQUE);
+        seg.putInt(inicio(bloque) + 4, 0);
+        return bloque;
+    }
+
+    private boolean reservarSegmento() {
+        if (cantidadSegmentos == maxSegmentos) {
+            return false;
+        }
+        ByteBuffer seg;
+        try {
+            seg = archivo == null ? ByteBuffer.allocateDirect(BYTES_SEGMENTO)
+                    : archivo.map(FileChannel.MapMode.READ_WRITE, (long) cantidadSegmentos * BYTES_SEGMENTO,
+                            BYTES_SEGMENTO);
+            seg.order(ByteOrder.nativeOrder());
+        } catch (IOException | OutOfMemoryError e) {
+            // La capacidad queda en lo ya reservado: desde ahora se reutilizan bloques
+            Metricas.HISTORIAL_SEGMENTOS_FALLIDOS.incrementar();
+            maxSegmentos = cantidadSegmentos;
+            return false;
+        }
+        if (cantidadSegmentos == segmentos.length) {
+            segmentos = Arrays.copyOf(segmentos, segmentos.length * 2);
+        }
+        segmentos[cantidadSegmentos++] = seg;
+        bloquesReservados = BLOQUES_POR_SEGMENTO;
+        return true;
+    }
+
+    private void crecer(int sensores) {
+        int anterior = ultimo.length;
+        int capacidad = Math.max(sensores, Math.max(16, anterior * 2));
+        primero = Arrays.copyOf(primero, capacidad);
+        ultimo = Arrays.copyOf(ultimo, capacidad);
+        lecturas = Arrays.copyOf(lecturas, capacidad);
+        Arrays.fill(primero, anterior, capacidad, SIN_BLOQUE);
+        Arrays.fill(ultimo, anterior, capacidad, SIN_BLOQUE);
+    }
+
+    private ByteBuffer segmento(int bloque) {
+        return segmentos[bloque / BLOQUES_POR_SEGMENTO];
+    }
+
+    private static int inicio(int bloque) {
+        return (bloque % BLOQUES_POR_SEGMENTO) * BYTES_BLOQUE;
+    }
+
+    /**
+     * Copia las lecturas del sensor en [desde, hasta), en orden cronológico,
+     * hasta llenar los arreglos
+     *
+     * @return cantidad de lecturas copiadas
+     */
+    public synchronized int leer(int sensor, long desdeMillis, long hastaMillis, long[] tiempos,
+            double[] valores) {
+        if (sensor < 0 || sensor >= primero.length) {
+            return 0;
+        }
+        int max = Math.min(tiempos.length, valores.length);
+        int copiadas = 0;
+        for (int bloque = primero[sensor]; bloque != SIN_BLOQUE && copiadas < max;) {
+            ByteBuffer seg = segmento(bloque);
+            int base = inicio(bloque);
+            int cantidad = seg.getInt(base + 4);
+            // Se saltan los bloques que terminan antes del rango
+            if (cantidad > 0 && seg.getLong(base + BYTES_CABECERA + (cantidad - 1) * BYTES_LECTURA) >= desdeMillis) {
+                for (int i = 0; i < cantidad && copiadas < max; i++) {
+                    int pos = base + BYTES_CABECERA + i * BYTES_LECTURA;
+                    long t = seg.getLong(pos);
+                    if (t >= hastaMillis) {
+                        return copiadas;
+                    }
+                    if (t >= desdeMillis) {
+                        tiempos[copiadas] = t;
+                        valores[copiadas] = seg.getDouble(pos + 8);
+                        copiadas++;
+                    }
+                }
+            }
+            bloque = seg.getInt(base);
+        }
+        return copiadas;
+    }
+
+    /**
+     * Libera los bloques cuyas lecturas son todas anteriores a
+     * {@code antesDeMillis}. El último bloque de cada sensor se conserva.
+     *
+     * @return lecturas liberadas
+     */
+    public synchronized long recortar(long antesDeMillis) {
+        long liberadas = 0;
+        for (int sensor = 0; sensor < primero.length; sensor++) {
+            int bloque = primero[sensor];
+            while (bloque != SIN_BLOQUE && bloque != ultimo[sensor]) {
+                ByteBuffer seg = segmento(bloque);
+                int base = inicio(bloque);
+                int cantidad = seg.getInt(base + 4);
+                if (seg.getLong(base + BYTES_CABECERA + (cantidad - 1) * BYTES_LECTURA) >= antesDeMillis) {
+                    break;
+                }
+                int siguiente = seg.getInt(base);
+                liberar(bloque);
+                lecturas[sensor] -= cantidad;
+                liberadas += cantidad;
+                bloque = siguiente;
+            }
+            primero[sensor] = bloque;
+        }
+        totalLecturas -= liberadas;
+        return liberadas;
+    }
+
+    /**
+     * Devuelve todos los bloques del sensor a la lista libre
+     */
+    public synchronized void eliminarSensor(int sensor) {
+        if (sensor < 0 || sensor >= primero.length) {
+            return;
+        }
+        for (int bloque = primero[sensor]; bloque != SIN_BLOQUE;) {
+            int siguiente = segmento(bloque).getInt(inicio(bloque));
+            liberar(bloque);
+            bloque = siguiente;
+        }
+        totalLecturas -= lecturas[sensor];
+        primero[sensor] = SIN_BLOQUE;
+        ultimo[sensor] = SIN_BLOQUE;
+        lecturas[sensor] = 0;
+    }
+
+    /**
+     * Devuelve los bloques de todos los sensores a la lista libre
+     */
+    public synchronized void vaciar() {
+        for (int sensor = 0; sensor < primero.length; sensor++) {
+            eliminarSensor(sensor);
+        }
+    }
+
+    private void liberar(int bloque) {
+        if (cantidadLibres == libres.length) {
+            libres = Arrays.copyOf(libres, libres.length * 2);
+        }
+        libres[cantidadLibres++] = bloque;
+    }
+
+    public synchronized long getLecturas(int sensor) {
+        return sensor < 0 || sensor >= lecturas.length ? 0 : lecturas[sensor];
+    }
+
+    public synchronized long getTotalLecturas() {
+        return totalLecturas;
+    }
+
+    /**
+     * Lecturas que se perdieron por reutilizar bloques al llegar a la capacidad
+     */
+    public synchronized long getLecturasDescartadas() {
+        return lecturasDescartadas;
+    }
+
+    /**
+     * Bytes de los bloques en uso (sin contar los libres ni los reservados)
+     */
+    public synchronized long getBytesEnUso() {
+        long bloques = (long) cantidadSegmentos * BLOQUES_POR_SEGMENTO - bloquesReservados - cantidadLibres;
+        return bloques * BYTES_BLOQUE;
+    }
+
+    /**
+     * Bytes de todos los segmentos reservados
+     */
+    public synchronized long getBytesReservados() {
+        return (long) cantidadSegmentos * BYTES_SEGMENTO;
+    }
+
+    public long getCapacidadBytes() {
+        return capacidadBytes;
+    }
+
+    /**
+     * Cierra el archivo mapeado; las regiones se liberan cuando el GC recoge
+     * sus buffers. Cerrar más de una vez no hace nada.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (cerrado) {
+            return;
+        }
+        cerrado = true;
+        if (archivo != null) {
+            archivo.close();
+        }
+        segmentos = new ByteBuffer[0];
+        cantidadSegmentos = 0;
+        bloquesReservados = 0;
+        cantidadLibres = 0;
+        Arrays.fill(primero, SIN_BLOQUE);
+        Arrays.fill(ultimo, SIN_BLOQUE);
+        Arrays.fill(lecturas, 0);
+        totalLecturas = 0;
+    }
+}
@@ -0,0 +1,160 @@
+package com.agrosense.service;
+
+import com.agrosense.model.Lote;
+import com.agrosense.model.Sensor;
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice compacto de todos los sensores registrados en un {@link GestorLotes}.
+ * Asigna a cada sensor un número entero, agrupa los sensores de un mismo lote
+ * en posiciones contiguas y resuelve el tipo de cada sensor una sola vez, para
+ * que los recorridos de lectura trabajen con arreglos primitivos.
+ */
+public class IndiceSensores {
+
+    // Códigos de tipo: el ordinal de TipoSensor
+    public static final byte TIPO_HUMEDAD = (byte) 0;
+    public static final byte TIPO_TEMPERATURA = (byte) 1;
+
+    private final Lote[] lotes;
+    private final long[] versionesLote;
+    private final int[] inicioLote; // sensores del lote i: [inicioLote[i], inicioLote[i + 1])
+
+    private final Sensor[] sensores;
+    private final byte[] tipos;
+    private final int[] loteDeSensor;
+    private final Map<String, Integer> posicionPorId;
+    private final int[] posicionPorNumero; // por número de TablaIds.SENSORES, -1 si no está
+
+    public IndiceSensores(GestorLotes gestorLotes) {
+        List<Lote> todos = gestorLotes.obtenerTodos();
+        this.lotes = todos.toArray(new Lote[0]);
+        this.versionesLote = new long[lotes.length];
+        this.inicioLote = new int[lotes.length + 1];
+
+        // Una sola copia de los sensores de cada lote para contar y para llenar:
+        // la UI, la API y la replicación pueden agregar o quitar sensores
+        // mientras se construye el índice. La versión se lee antes de copiar;
+        // si cambia en medio, el índice queda no vigente y se reconstruye.
+        Sensor[][] sensoresLote = new Sensor[lotes.length][];
+        int total = 0;
+        for (int i = 0; i < lotes.length; i++) {
+            versionesLote[i] = lotes[i].getVersion();
+            sensoresLote[i] = lotes[i].getSensores().toArray(new Sensor[0]);
+            inicioLote[i] = total;
+            total += sensoresLote[i].length;
+        }
+        inicioLote[lotes.length] = total;
+
+        this.sensores = new Sensor[total];
+        this.tipos = new byte[total];
+        this.loteDeSensor = new int[total];
+        this.posicionPorId = new HashMap<>(total * 2);
+
+        int pos = 0;
+        int maximoNumero = -1;
+        for (int i = 0; i < lotes.length; i++) {
+            for (Sensor sensor : sensoresLote[i]) {
+                sensores[pos] = sensor;
+                tipos[pos] = codificarTipo(sensor.getTipo());
+                loteDeSensor[pos] = i;
+                posicionPorId.putIfAbsent(sensor.getId(), pos);
+                maximoNumero = Math.max(maximoNumero, sensor.getNumero());
+                pos++;
+            }
+        }
+        this.posicionPorNumero = new int[maximoNumero + 1];
+        Arrays.fill(posicionPorNumero, -1);
+        for (int p = 0; p < total; p++) {
+            if (posicionPorNumero[sensores[p].getNumero()] < 0) {
+                posicionPorNumero[sensores[p].getNumero()] = p;
+            }
+        }
+    }
+
+    public static byte codificarTipo(TipoSensor tipo) {
+        return (byte) tipo.ordinal();
+    }
+
+    /**
+     * Indica si el índice sigue reflejando los lotes y sensores del gestor. No
+     * reserva memoria; recorre la lista de lotes comparando identidad y versión.
+     */
+    public boolean estaVigente(GestorLotes gestorLotes) {
+        List<Lote> todos = gestorLotes.obtenerTodos();
+        if (todos.size() != lotes.length) {
+            return false;
+        }
+        for (int i = 0; i < lotes.length; i++) {
+            Lote lote = todos.get(i);
+            if (lote != lotes[i] || lote.getVersion() != versionesLote[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Devuelve el índice actual si sigue vigente o construye uno nuevo
+     */
+    public static IndiceSensores actualizar(IndiceSensores actual, GestorLotes gestorLotes) {
+        if (actual != null && actual.estaVigente(gestorLotes)) {
+            return actual;
+        }
+        return new IndiceSensores(gestorLotes);
+    }
+
+    public int getCantidadSensores() {
+        return sensores.length;
+    }
+
+    public int getCantidadLotes() {
+        return lotes.length;
+    }
+
+    public Sensor getSensor(int indice) {
+        return sensores[indice];
+    }
+
+    public byte getTipo(int indice) {
+        return tipos[indice];
+    }
+
+    public int getLoteDeSensor(int indice) {
+        return loteDeSensor[indice];
+    }
+
+    public Lote getLote(int indiceLote) {
+        return lotes[indiceLote];
+    }
+
+    public int getInicioLote(int indiceLote) {
+        return inicioLote[indiceLote];
+    }
+
+    public int getFinLote(int indiceLote) {
+        return inicioLote[indiceLote + 1];
+    }
+
+    /**
+     * Posición del sensor con el ID dado, o -1 si no está registrado
+     */
+    public int buscarSensor(String sensorId) {
+        Integer pos = posicionPorId.get(sensorId);
+        return pos == null ? -1 : pos;
+    }
+
+    /**
+     * Posición del sensor con el número dado de {@link TablaIds#SENSORES}, o
+     * -1 si no está registrado. A diferencia de la posición, el número no
+     * cambia al agregar o quitar lotes y sensores.
+     */
+    public int buscarPorNumero(int numeroSensor) {
+        return numeroSensor >= 0 && numeroSensor < posicionPorNumero.length ? posicionPorNumero[numeroSensor] : -1;
+    }
+}
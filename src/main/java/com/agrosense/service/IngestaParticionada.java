@@ -0,0 +1,47 @@
+package com.agrosense.service;
+
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.TablaIds;
+
+/**
+ * Lleva las lecturas de la ingesta por red a un {@link ProcesadorParticionado}:
+ * resuelve sensor y lote con un {@link EnrutadorLecturas}, junta las lecturas
+ * de cada trama en un lote de mediciones y lo envía entero al terminar la
+ * trama, así cada partición recibe un bloque por trama y no uno por lectura.
+ * Se usa desde un solo hilo, el del servidor de ingesta.
+ */
+public class IngestaParticionada implements ConsumidorLecturas {
+
+    private static final int MAX_PENDIENTES = ServidorIngesta.MAX_LECTURAS_TRAMA;
+
+    private final ProcesadorParticionado procesador;
+    private final EnrutadorLecturas enrutador;
+    private final MedicionBatch pendientes = new MedicionBatch();
+
+    public IngestaParticionada(GestorLotes gestorLotes, ProcesadorParticionado procesador) {
+        this.procesador = procesador;
+        this.enrutador = new EnrutadorLecturas(gestorLotes, (sensor, loteId, valor, epochMillis) -> pendientes
+                .agregar(sensor.getNumero(), TablaIds.LOTES.numero(loteId), sensor.getTipo(), valor, epochMillis));
+    }
+
+    @Override
+    public void aceptar(int sensor, long epochMillis, double valor) {
+        enrutador.aceptar(sensor, epochMillis, valor);
+        // Por si quien entrega las lecturas no avisa el fin de las tramas
+        if (pendientes.getTamano() >= MAX_PENDIENTES) {
+            finTrama();
+        }
+    }
+
+    @Override
+    public void finTrama() {
+        if (pendientes.getTamano() > 0) {
+            procesador.enviar(pendientes);
+            pendientes.limpiar();
+        }
+    }
+
+    public long getSensoresDesconocidos() {
+        return enrutador.getSensoresDesconocidos();
+    }
+}
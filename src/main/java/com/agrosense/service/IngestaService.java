@@ -0,0 +1,215 @@
+package com.agrosense.service;
+
+import com.agrosense.model.Medicion;
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.Sensor;
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Punto de entrada de las lecturas de sensores. Cada lectura pasa primero por
+ * el detector de anomalías; las sospechosas quedan en cuarentena y no llegan
+ * a las alertas ni a las estadísticas.
+ */
+public class IngestaService implements ReceptorLecturas {
+
+    private static final int MAX_CUARENTENA = 1000;
+
+    private final AlertaService alertaService;
+    private final EstadisticasService estadisticasService;
+    private final DetectorAnomalias detector;
+
+    // Últimas lecturas descartadas, para diagnóstico
+    private final Deque<LecturaEnCuarentena> cuarentena;
+    private final LongAdder[] anomaliasPorTipo;
+    private final LongAdder lecturasAceptadas;
+
+    public IngestaService(AlertaService alertaService, EstadisticasService estadisticasService) {
+        this.alertaService = alertaService;
+        this.estadisticasService = estadisticasService;
+        this.detector = new DetectorAnomalias();
+        this.cuarentena = new ArrayDeque<>();
+        this.anomaliasPorTipo = new LongAdder[DetectorAnomalias.TipoAnomalia.values().length];
+        for (int i = 0; i < anomaliasPorTipo.length; i++) {
+            anomaliasPorTipo[i] = new LongAdder();
+        }
+        this.lecturasAceptadas = new LongAdder();
+    }
+
+    /**
+     * Procesa una medición de un lote
+     *
+     * @return NINGUNA si la lectura fue aceptada, o el tipo de anomalía por el
+     *         que quedó en cuarentena
+     */
+    public DetectorAnomalias.TipoAnomalia procesar(Medicion medicion, String loteId) {
+        return procesarLectura(medicion.getSensorId(), medicion.getTipoSensor(), loteId, medicion.getValor(),
+                medicion.getEpochMillis(), medicion);
+    }
+
+    /**
+     * Procesa un lote de mediciones completo: evalúa cada lectura con el
+     * detector, compacta el lote en el lugar dejando solo las aceptadas y las
+     * entrega juntas a alertas y estadísticas. Las lecturas aceptadas no
+     * reservan memoria salvo que generen una alerta.
+     *
+     * @return cantidad de lecturas aceptadas (el nuevo tamaño del lote)
+     */
+    public int procesarLote(MedicionBatch batch) {
+        return procesarLote(batch, null);
+    }
+
+    /**
+     * Igual que {@link #procesarLote(MedicionBatch)}, y además anota en
+     * {@code anomalias[i]} el resultado de la lectura que estaba en la
+     * posición i antes de compactar (NINGUNA si fue aceptada), para quien
+     * muestra cada lectura
+     */
+    public int procesarLote(MedicionBatch batch, DetectorAnomalias.TipoAnomalia[] anomalias) {
+        long inicio = System.nanoTime();
+        int aceptadas = 0;
+        for (int i = 0; i < batch.getTamano(); i++) {
+            String loteId = TablaIds.LOTES.texto(batch.getLote(i));
+            DetectorAnomalias.TipoAnomalia anomalia = evaluar(TablaIds.SENSORES.texto(batch.getSensor(i)),
+                    batch.getTipo(i), loteId, batch.getValor(i), batch.getTiempo(i), null);
+            if (anomalias != null) {
+                anomalias[i] = anomalia;
+            }
+            if (anomalia == DetectorAnomalias.TipoAnomalia.NINGUNA) {
+                batch.mover(i, aceptadas++);
+            }
+        }
+        batch.truncar(aceptadas);
+        long finDeteccion = System.nanoTime();
+        Metricas.INGESTA_DETECCION.registrar(finDeteccion - inicio);
+        alertaService.verificarLote(batch);
+        long finAlertas = System.nanoTime();
+        Metricas.INGESTA_ALERTAS.registrar(finAlertas - finDeteccion);
+        estadisticasService.registrarLote(batch);
+        Metricas.INGESTA_ESTADISTICAS.registrarDesde(finAlertas);
+        return aceptadas;
+    }
+
+    /**
+     * Procesa una lectura individual expresada con valores primitivos
+     */
+    public DetectorAnomalias.TipoAnomalia procesarLectura(Sensor sensor, String loteId, double valor,
+            long epochMillis) {
+        return procesarLectura(sensor.getId(), sensor.getTipo(), loteId, valor, epochMillis, null);
+    }
+
+    @Override
+    public void recibir(Sensor sensor, String loteId, double valor, long epochMillis) {
+        procesarLectura(sensor, loteId, valor, epochMillis);
+    }
+
+    private DetectorAnomalias.TipoAnomalia procesarLectura(String sensorId, TipoSensor tipoSensor, String loteId,
+            double valor, long epochMillis, Medicion medicion) {
+        DetectorAnomalias.TipoAnomalia anomalia = evaluar(sensorId, tipoSensor, loteId, valor, epochMillis, medicion);
+        if (anomalia == DetectorAnomalias.TipoAnomalia.NINGUNA) {
+            alertaService.verificarLectura(tipoSensor, valor, loteId);
+            estadisticasService.registrarMedicion(TablaIds.SENSORES.numero(sensorId), loteId, tipoSensor, valor,
+                    epochMillis);
+        }
+        return anomalia;
+    }
+
+    /**
+     * Solo la etapa de detección: evalúa la lectura y, si es anómala, la deja
+     * en cuarentena. Las lecturas aceptadas no se envían a alertas ni
+     * estadísticas; eso queda a cargo de quien llama (ver
+     * {@link TuberiaLecturas}).
+     */
+    public DetectorAnomalias.TipoAnomalia evaluar(String sensorId, TipoSensor tipoSensor, String loteId,
+            double valor, long epochMillis) {
+        return evaluar(sensorId, tipoSensor, loteId, valor, epochMillis, null);
+    }
+
+    private DetectorAnomalias.TipoAnomalia evaluar(String sensorId, TipoSensor tipoSensor, String loteId,
+            double valor, long epochMillis, Medicion medicion) {
+        boolean estabaEnCuarentena = detector.estaEnCuarentena(sensorId);
+        DetectorAnomalias.TipoAnomalia anomalia = detector.evaluar(sensorId, tipoSensor, valor, epochMillis);
+        Metricas.LECTURAS.incrementar();
+
+        if (anomalia == DetectorAnomalias.TipoAnomalia.NINGUNA) {
+            lecturasAceptadas.increment();
+            return anomalia;
+        }
+
+        anomaliasPorTipo[anomalia.ordinal()].increment();
+        Metricas.LECTURAS_CUARENTENA.incrementar();
+        Medicion descartada = medicion != null ? medicion
+                : new Medicion(TablaIds.SENSORES.numero(sensorId), TablaIds.LOTES.numero(loteId), tipoSensor, valor,
+                        epochMillis);
+        synchronized (cuarentena) {
+            if (cuarentena.size() == MAX_CUARENTENA) {
+                cuarentena.removeFirst();
+            }
+            cuarentena.addLast(new LecturaEnCuarentena(descartada, loteId, anomalia));
+        }
+        // Se avisa una sola vez cuando el sensor pasa a estar en cuarentena
+        if (!estabaEnCuarentena) {
+            alertaService.reportarFallaSensor(sensorId, describir(anomalia), loteId);
+        }
+        return anomalia;
+    }
+
+    private String describir(DetectorAnomalias.TipoAnomalia anomalia) {
+        switch (anomalia) {
+            case VALOR_CONGELADO:
+                return "valor congelado";
+            case CAMBIO_BRUSCO:
+                return "cambio brusco";
+            default:
+                return "valor atípico";
+        }
+    }
+
+    public List<LecturaEnCuarentena> getLecturasEnCuarentena() {
+        synchronized (cuarentena) {
+            return new ArrayList<>(cuarentena);
+        }
+    }
+
+    public long getTotalAnomalias(DetectorAnomalias.TipoAnomalia tipo) {
+        return anomaliasPorTipo[tipo.ordinal()].sum();
+    }
+
+    public long getLecturasAceptadas() {
+        return lecturasAceptadas.sum();
+    }
+
+    public DetectorAnomalias getDetector() {
+        return detector;
+    }
+
+    // Lectura descartada junto con el motivo
+    public static class LecturaEnCuarentena {
+        private final Medicion medicion;
+        private final String loteId;
+        private final DetectorAnomalias.TipoAnomalia anomalia;
+
+        public LecturaEnCuarentena(Medicion medicion, String loteId, DetectorAnomalias.TipoAnomalia anomalia) {
+            this.medicion = medicion;
+            this.loteId = loteId;
+            this.anomalia = anomalia;
+        }
+
+        public Medicion getMedicion() {
+            return medicion;
+        }
+
+        public String getLoteId() {
+            return loteId;
+        }
+
+        public DetectorAnomalias.TipoAnomalia getAnomalia() {
+            return anomalia;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.agrosense.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Lectura y escritura de JSON mínimo para la API HTTP, sin dependencias:
+ * objetos planos (sin anidar) de entrada y valores sueltos de salida que se
+ * escriben directamente en un {@link Writer}.
+ */
+final class JsonPlano {
+
+    private JsonPlano() {
+    }
+
+    /**
+     * Escribe una cadena JSON entre comillas, o null
+     */
+    static void escribirTexto(Writer w, String texto) throws IOException {
+        if (texto == null) {
+            w.write("null");
+            return;
+        }
+        w.write('"');
+        int inicio = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            String escape = null;
+            if (c == '"') {
+                escape = "\\\"";
+            } else if (c == '\\') {
+                escape = "\\\\";
+            } else if (c == '\n') {
+                escape = "\\n";
+            } else if (c == '\r') {
+                escape = "\\r";
+            } else if (c == '\t') {
+                escape = "\\t";
+            } else if (c < 0x20) {
+                escape = String.format("\\u%04x", (int) c);
+            }
+            if (escape != null) {
+                w.write(texto, inicio, i - inicio);
+                w.write(escape);
+                inicio = i + 1;
+            }
+        }
+        w.write(texto, inicio, texto.length() - inicio);
+        w.write('"');
+    }
+
+    /**
+     * Escribe un número; NaN e infinitos se escriben como null
+     */
+    static void escribirNumero(Writer w, double valor) throws IOException {
+        if (Double.isNaN(valor) || Double.isInfinite(valor)) {
+            w.write("null");
+        } else if (valor == Math.rint(valor) && Math.abs(valor) < 1e15) {
+            w.write(Long.toString((long) valor));
+        } else {
+            w.write(Double.toString(valor));
+        }
+    }
+
+    /**
+     * Escribe {@code "clave":} precedido de una coma si no es el primer campo
+     */
+    static void escribirClave(Writer w, String clave, boolean primera) throws IOException {
+        if (!primera) {
+            w.write(',');
+        }
+        w.write('"');
+        w.write(clave);
+        w.write("\":");
+    }
+
+    /**
+     * Lee un objeto JSON plano en {@code destino} (que se vacía antes). Los
+     * valores quedan como texto: las cadenas sin comillas ni escapes y los
+     * números, true y false tal como vienen; los null se omiten.
+     *
+     * @throws IllegalArgumentException si el texto no es un objeto plano válido
+     */
+    static Map<String, String> leerObjeto(CharSequence json, Map<String, String> destino) {
+        destino.clear();
+        Cursor c = new Cursor(json);
+        c.saltarEspacios();
+        c.esperar('{');
+        c.saltarEspacios();
+        if (c.siguienteEs('}')) {
+            c.pos++;
+            c.verificarFin();
+            return destino;
+        }
+        while (true) {
+            c.saltarEspacios();
+            String clave = c.leerCadena();
+            c.saltarEspacios();
+            c.esperar(':');
+            c.saltarEspacios();
+            String valor = c.siguienteEs('"') ? c.leerCadena() : c.leerLiteral();
+            if (!"null".equals(valor) || c.ultimoFueCadena) {
+                destino.put(clave, valor);
+            }
+            c.saltarEspacios();
+            if (c.siguienteEs(',')) {
+                c.pos++;
+                continue;
+            }
+            c.esperar('}');
+            c.verificarFin();
+            return destino;
+        }
+    }
+
+    private static class Cursor {
+        private final CharSequence texto;
+        private int pos;
+        private boolean ultimoFueCadena;
+
+        Cursor(CharSequence texto) {
+            this.texto = texto;
+        }
+
+        void saltarEspacios() {
+            while (pos < texto.length() && Character.isWhitespace(texto.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        boolean siguienteEs(char c) {
+            return pos < texto.length() && texto.charAt(pos) == c;
+        }
+
+        void esperar(char c) {
+            if (!siguienteEs(c)) {
+                throw new IllegalArgumentException("JSON inválido: se esperaba '" + c + "' en la posición " + pos);
+            }
+            pos++;
+        }
+
+        void verificarFin() {
+            saltarEspacios();
+            if (pos != texto.length()) {
+                throw new IllegalArgumentException("JSON inválido: texto sobrante en la posición " + pos);
+            }
+        }
+
+        String leerCadena() {
+            esperar('"');
+            StringBuilder sb = null;
+            int inicio = pos;
+            while (pos < texto.length()) {
+                char c = texto.charAt(pos);
+                if (c == '"') {
+                    String valor = sb == null ? texto.subSequence(inicio, pos).toString()
+                            : sb.append(texto, inicio, pos).toString();
+                    pos++;
+                    ultimoFueCadena = true;
+                    return valor;
+                }
+                if (c == '\\') {
+                    if (sb == null) {
+                        sb = new StringBuilder();
+                    }
+                    sb.append(texto, inicio, pos);
+                    pos++;
+                    if (pos >= texto.length()) {
+                        break;
+                    }
+                    char e = texto.charAt(pos);
+                    switch (e) {
+                        case 'n':
+                            sb.append('\n');
+                            break;
+                        case 'r':
+                            sb.append('\r');
+                            break;
+                        case 't':
+                            sb.append('\t');
+                            break;
+                        case 'b':
+                            sb.append('\b');
+                            break;
+                        case 'f':
+                            sb.append('\f');
+                            break;
+                        case 'u':
+                            if (pos + 4 >= texto.length()) {
+                                throw new IllegalArgumentException("JSON inválido: escape \\u incompleto");
+                            }
+                            try {
+                                sb.append((char) Integer.parseInt(texto.subSequence(pos + 1, pos + 5).toString(),
+                                        16));
+                            } catch (NumberFormatException ex) {
+                                throw new IllegalArgumentException("JSON inválido: escape \\u incorrecto");
+                            }
+                            pos += 4;
+                            break;
+                        default:
+                            sb.append(e);
+                    }
+                    pos++;
+                    inicio = pos;
+                    continue;
+                }
+                pos++;
+            }
+            throw new IllegalArgumentException("JSON inválido: cadena sin cerrar");
+        }
+
+        String leerLiteral() {
+            int inicio = pos;
+            while (pos < texto.length()) {
+                char c = texto.charAt(pos);
+                if (c == ',' || c == '}' || Character.isWhitespace(c)) {
+                    break;
+                }
+                if (c == '{' || c == '[') {
+                    throw new IllegalArgumentException("JSON inválido: solo se aceptan objetos planos");
+                }
+                pos++;
+            }
+            if (inicio == pos) {
+                throw new IllegalArgumentException("JSON inválido: falta un valor en la posición " + pos);
+            }
+            ultimoFueCadena = false;
+            return texto.subSequence(inicio, pos).toString();
+        }
+    }
+}
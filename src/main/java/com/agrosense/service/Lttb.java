@@ -0,0 +1,88 @@
+package com.agrosense.service;
+
+/**
+ * Reducción de series temporales para gráficas con el algoritmo
+ * Largest-Triangle-Three-Buckets (Steinarsson, 2013). Conserva el primer y el
+ * último punto y, en cada uno de los {@code umbral - 2} tramos intermedios,
+ * elige el punto que forma el triángulo de mayor área con el punto elegido en
+ * el tramo anterior y el promedio del tramo siguiente. A diferencia de
+ * promediar, mantiene picos y caídas visibles con pocos puntos.
+ */
+public final class Lttb {
+
+    private Lttb() {
+    }
+
+    /**
+     * Elige hasta {@code umbral} puntos de la serie (x creciente).
+     *
+     * @param salida recibe las posiciones elegidas, en orden creciente; debe
+     *               tener espacio para {@code min(n, umbral)} posiciones
+     * @return cantidad de posiciones escritas en {@code salida}
+     */
+    public static int seleccionar(long[] x, double[] y, int n, int umbral, int[] salida) {
+        if (umbral >= n) {
+            for (int i = 0; i < n; i++) {
+                salida[i] = i;
+            }
+            return n;
+        }
+        if (umbral < 3) {
+            // Con menos de 3 puntos solo se pueden conservar los extremos
+            if (umbral <= 0) {
+                return 0;
+            }
+            salida[0] = 0;
+            if (umbral == 2) {
+                salida[1] = n - 1;
+            }
+            return umbral;
+        }
+
+        // Los x se toman relativos al primero para no perder precisión en double
+        long origen = x[0];
+        double tamanoTramo = (double) (n - 2) / (umbral - 2);
+        int elegido = 0;
+        int k = 0;
+        salida[k++] = 0;
+
+        for (int t = 0; t < umbral - 2; t++) {
+            // Promedio del tramo siguiente (el último punto para el último tramo)
+            int inicioSiguiente = (int) ((t + 1) * tamanoTramo) + 1;
+            int finSiguiente = Math.min((int) ((t + 2) * tamanoTramo) + 1, n);
+            if (inicioSiguiente >= finSiguiente) {
+                inicioSiguiente = n - 1;
+                finSiguiente = n;
+            }
+            double promX = 0;
+            double promY = 0;
+            for (int j = inicioSiguiente; j < finSiguiente; j++) {
+                promX += x[j] - origen;
+                promY += y[j];
+            }
+            int cantidadSiguiente = finSiguiente - inicioSiguiente;
+            promX /= cantidadSiguiente;
+            promY /= cantidadSiguiente;
+
+            // Punto del tramo actual con el triángulo de mayor área
+            int desde = (int) (t * tamanoTramo) + 1;
+            int hasta = (int) ((t + 1) * tamanoTramo) + 1;
+            double ax = x[elegido] - origen;
+            double ay = y[elegido];
+            double mayorArea = -1;
+            int mejor = desde;
+            for (int j = desde; j < hasta; j++) {
+                double area = Math.abs((ax - promX) * (y[j] - ay) - (ax - (x[j] - origen)) * (promY - ay));
+                if (area > mayorArea) {
+                    mayorArea = area;
+                    mejor = j;
+                }
+            }
+            salida[k++] = mejor;
+            elegido = mejor;
+        }
+
+        salida[k++] = n - 1;
+        return k;
+    }
+}
@@ -0,0 +1,15 @@
+package com.agrosense.service;
+
+/**
+ * Consumidor de eventos del anillo. Cada manejador corre en su propio hilo y
+ * recibe los eventos en orden de secuencia.
+ */
+@FunctionalInterface
+public interface ManejadorEventos {
+
+    /**
+     * @param finDeLote true en el último evento disponible de este ciclo, útil
+     *                  para agrupar escrituras
+     */
+    void procesar(EventoLectura evento, long secuencia, boolean finDeLote);
+}
@@ -0,0 +1,31 @@
+package com.agrosense.service;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Métrica de valor instantáneo: se calcula al leerla (JMX o volcado), no al
+ * registrar eventos
+ */
+public class Medidor implements MedidorMXBean {
+
+    private final String nombre;
+    private volatile DoubleSupplier fuente;
+
+    Medidor(String nombre, DoubleSupplier fuente) {
+        this.nombre = nombre;
+        this.fuente = fuente;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    void setFuente(DoubleSupplier fuente) {
+        this.fuente = fuente;
+    }
+
+    @Override
+    public double getValor() {
+        return fuente.getAsDouble();
+    }
+}
@@ -0,0 +1,9 @@
+package com.agrosense.service;
+
+/**
+ * Vista JMX de un {@link Medidor}
+ */
+public interface MedidorMXBean {
+
+    double getValor();
+}
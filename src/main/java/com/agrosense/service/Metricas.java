@@ -0,0 +1,103 @@
+package com.agrosense.service;
+
+import com.agrosense.model.Alerta;
+import java.util.function.ToLongFunction;
+
+/**
+ * Métricas de AgroSense en {@link RegistroMetricas#GLOBAL}. Las duraciones
+ * están en nanosegundos.
+ *
+ * <ul>
+ * <li>{@code lectura.ciclo}: leer un rango de sensores ({@link SensorService})</li>
+ * <li>{@code ingesta.*}: lecturas evaluadas y en cuarentena; duración de cada
+ * etapa de {@link IngestaService#procesarLote} por lote de mediciones</li>
+ * <li>{@code tuberia.*}: tiempo desde que se publicó una lectura en
+ * {@link TuberiaLecturas} hasta que la procesó cada etapa</li>
+ * <li>{@code alertas.*}: alertas generadas por nivel</li>
+ * <li>{@code persistencia.*}: duración y bytes de guardados e importaciones TOON</li>
+ * <li>{@code api.*}: duración de cada solicitud a {@link ServidorApi} y
+ * solicitudes que terminaron en error</li>
+ * <li>{@code replicacion.*}: tiempo desde que {@link ReplicadorLider} captura
+ * un cambio hasta que un seguidor confirma haberlo aplicado, y bytes enviados</li>
+ * <li>{@code memoria.*}: medidores de heap, ver {@link #registrarMemoria}</li>
+ * <li>{@code historial.*}: uso del histórico fuera del heap, ver
+ * {@link #registrarHistorial}, y segmentos que no se pudieron reservar</li>
+ * </ul>
+ */
+public final class Metricas {
+
+    private static final RegistroMetricas REGISTRO = RegistroMetricas.GLOBAL;
+
+    public static final HistogramaLatencia LECTURA_CICLO = REGISTRO.histograma("lectura.ciclo");
+
+    public static final Contador LECTURAS = REGISTRO.contador("ingesta.lecturas");
+    public static final Contador LECTURAS_CUARENTENA = REGISTRO.contador("ingesta.cuarentena");
+    public static final HistogramaLatencia INGESTA_DETECCION = REGISTRO.histograma("ingesta.deteccion");
+    public static final HistogramaLatencia INGESTA_ALERTAS = REGISTRO.histograma("ingesta.alertas");
+    public static final HistogramaLatencia INGESTA_ESTADISTICAS = REGISTRO.histograma("ingesta.estadisticas");
+
+    public static final HistogramaLatencia TUBERIA_DETECTOR = REGISTRO.histograma("tuberia.detector");
+    public static final HistogramaLatencia TUBERIA_ALERTAS = REGISTRO.histograma("tuberia.alertas");
+    public static final HistogramaLatencia TUBERIA_ESTADISTICAS = REGISTRO.histograma("tuberia.estadisticas");
+
+    public static final HistogramaLatencia PERSISTENCIA_GUARDADO = REGISTRO.histograma("persistencia.guardado");
+    public static final Contador PERSISTENCIA_BYTES = REGISTRO.contador("persistencia.bytes");
+    public static final HistogramaLatencia PERSISTENCIA_MEDICIONES = REGISTRO.histograma("persistencia.mediciones");
+    public static final HistogramaLatencia PERSISTENCIA_IMPORTACION = REGISTRO.histograma("persistencia.importacion");
+
+    public static final HistogramaLatencia API_SOLICITUD = REGISTRO.histograma("api.solicitud");
+    public static final Contador API_ERRORES = REGISTRO.contador("api.errores");
+
+    public static final HistogramaLatencia REPLICACION_RETRASO = REGISTRO.histograma("replicacion.retraso");
+    public static final Contador REPLICACION_BYTES = REGISTRO.contador("replicacion.bytes");
+
+    public static final Contador HISTORIAL_SEGMENTOS_FALLIDOS = REGISTRO.contador("historial.segmentosFallidos");
+
+    private static final Contador[] ALERTAS_POR_NIVEL = new Contador[Alerta.Nivel.values().length];
+
+    static {
+        for (Alerta.Nivel nivel : Alerta.Nivel.values()) {
+            ALERTAS_POR_NIVEL[nivel.ordinal()] = REGISTRO.contador("alertas." + nivel.name().toLowerCase());
+        }
+    }
+
+    private Metricas() {
+    }
+
+    public static Contador alertas(Alerta.Nivel nivel) {
+        return ALERTAS_POR_NIVEL[nivel.ordinal()];
+    }
+
+    /**
+     * Registra los medidores de memoria: heap usado y heap usado por lote
+     * registrado (en bytes)
+     */
+    public static void registrarMemoria(GestorLotes gestorLotes) {
+        Runtime runtime = Runtime.getRuntime();
+        REGISTRO.medidor("memoria.heapUsado", () -> runtime.totalMemory() - runtime.freeMemory());
+        REGISTRO.medidor("memoria.heapPorLote",
+                () -> (double) (runtime.totalMemory() - runtime.freeMemory())
+                        / Math.max(1, gestorLotes.obtenerTodos().size()));
+    }
+
+    /**
+     * Registra los medidores del histórico fuera del heap: bytes en bloques
+     * usados, lecturas conservadas y lecturas descartadas por falta de espacio,
+     * sumados entre los históricos indicados (uno por partición). Volver a
+     * llamarlo reemplaza los anteriores.
+     */
+    public static void registrarHistorial(HistorialFueraDelHeap... historiales) {
+        REGISTRO.medidor("historial.bytesEnUso", () -> sumar(historiales, HistorialFueraDelHeap::getBytesEnUso));
+        REGISTRO.medidor("historial.lecturas", () -> sumar(historiales, HistorialFueraDelHeap::getTotalLecturas));
+        REGISTRO.medidor("historial.descartadas",
+                () -> sumar(historiales, HistorialFueraDelHeap::getLecturasDescartadas));
+    }
+
+    private static double sumar(HistorialFueraDelHeap[] historiales, ToLongFunction<HistorialFueraDelHeap> valor) {
+        long total = 0;
+        for (HistorialFueraDelHeap historial : historiales) {
+            total += valor.applyAsLong(historial);
+        }
+        return total;
+    }
+}
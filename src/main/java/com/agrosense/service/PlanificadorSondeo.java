@@ -0,0 +1,262 @@
+package com.agrosense.service;
+
+import com.agrosense.model.Lote;
+import com.agrosense.model.Sensor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monitoreo continuo en segundo plano. Cada sensor se lee con su propio
+ * intervalo de muestreo; los sensores que comparten intervalo se desfasan de
+ * manera uniforme dentro del periodo para no leerlos todos a la vez. Las
+ * lecturas se ejecutan fuera del hilo de planificación con un tiempo máximo,
+ * de modo que un sensor lento no retrasa a los demás, y los resultados pasan
+ * por un {@link ReceptorLecturas} (ingesta directa o tubería) hacia alertas
+ * y estadísticas.
+ */
+public class PlanificadorSondeo {
+
+    private static final long PERIODO_REVISION_MS = 1000;
+
+    private final GestorLotes gestorLotes;
+    private final SensorService sensorService;
+    private final ReceptorLecturas receptor;
+    private final long tiempoMaximoLecturaMs;
+    private final boolean hilosVirtuales;
+
+    private volatile ScheduledThreadPoolExecutor planificador;
+    private volatile ExecutorService lectores;
+    private IndiceSensores indice;
+    private final List<TareaSensor> tareas = new ArrayList<>();
+    private ScheduledFuture<?> revision;
+
+    private final LongAdder lecturas = new LongAdder();
+    private final LongAdder lecturasVencidas = new LongAdder();
+    private final LongAdder lecturasOmitidas = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+
+    public PlanificadorSondeo(GestorLotes gestorLotes, SensorService sensorService, ReceptorLecturas receptor) {
+        this(gestorLotes, sensorService, receptor, 2000, true);
+    }
+
+    /**
+     * @param tiempoMaximoLecturaMs tiempo tras el cual se cancela una lectura
+     * @param usarHilosVirtuales    usar hilos virtuales para las lecturas si la
+     *                              JVM los soporta (Java 21+)
+     */
+    public PlanificadorSondeo(GestorLotes gestorLotes, SensorService sensorService, ReceptorLecturas receptor,
+            long tiempoMaximoLecturaMs, boolean usarHilosVirtuales) {
+        this.gestorLotes = gestorLotes;
+        this.sensorService = sensorService;
+        this.receptor = receptor;
+        this.tiempoMaximoLecturaMs = tiempoMaximoLecturaMs;
+        this.hilosVirtuales = usarHilosVirtuales;
+    }
+
+    public synchronized void iniciar() {
+        if (planificador != null) {
+            return;
+        }
+        int nucleos = Runtime.getRuntime().availableProcessors();
+        planificador = new ScheduledThreadPoolExecutor(Math.max(1, nucleos / 2), hilos("agrosense-sondeo"));
+        // Los vencimientos cancelados salen de la cola en vez de esperar su turno
+        planificador.setRemoveOnCancelPolicy(true);
+        lectores = crearLectores(nucleos);
+        reprogramar();
+        revision = planificador.scheduleWithFixedDelay(this::revisarCambios, PERIODO_REVISION_MS,
+                PERIODO_REVISION_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Detiene la planificación y espera, hasta el tiempo máximo de lectura, a
+     * que terminen las lecturas en curso: al volver, nadie más lee los sensores
+     */
+    public synchronized void detener() {
+        if (planificador == null) {
+            return;
+        }
+        revision.cancel(false);
+        cancelarTareas();
+        planificador.shutdownNow();
+        lectores.shutdownNow();
+        try {
+            lectores.awaitTermination(tiempoMaximoLecturaMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        planificador = null;
+        lectores = null;
+        indice = null;
+    }
+
+    public synchronized boolean estaActivo() {
+        return planificador != null;
+    }
+
+    private ExecutorService crearLectores(int nucleos) {
+        if (hilosVirtuales) {
+            try {
+                Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) m.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // JVM sin hilos virtuales: se usa un pool convencional
+            }
+        }
+        return Executors.newFixedThreadPool(Math.max(2, nucleos * 2), hilos("agrosense-lector"));
+    }
+
+    private static ThreadFactory hilos(String nombre) {
+        AtomicInteger contador = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, nombre + "-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // Si cambiaron los lotes o sensores se vuelve a armar la planificación
+    private synchronized void revisarCambios() {
+        if (planificador != null && (indice == null || !indice.estaVigente(gestorLotes))) {
+            reprogramar();
+        }
+    }
+
+    private void reprogramar() {
+        cancelarTareas();
+        indice = new IndiceSensores(gestorLotes);
+
+        // Agrupar por intervalo para repartir los desfases dentro de cada periodo
+        Map<Long, List<Integer>> porIntervalo = new HashMap<>();
+        for (int i = 0; i < indice.getCantidadSensores(); i++) {
+            porIntervalo.computeIfAbsent(indice.getSensor(i).getIntervaloMuestreoMs(), k -> new ArrayList<>())
+                    .add(i);
+        }
+
+        for (Map.Entry<Long, List<Integer>> grupo : porIntervalo.entrySet()) {
+            long intervalo = grupo.getKey();
+            List<Integer> posiciones = grupo.getValue();
+            for (int k = 0; k < posiciones.size(); k++) {
+                int pos = posiciones.get(k);
+                Sensor sensor = indice.getSensor(pos);
+                Lote lote = indice.getLote(indice.getLoteDeSensor(pos));
+                long desfase = intervalo * k / posiciones.size();
+
+                TareaSensor tarea = new TareaSensor(sensor, lote.getId());
+                tarea.programada = planificador.scheduleAtFixedRate(tarea, desfase, intervalo, TimeUnit.MILLISECONDS);
+                tareas.add(tarea);
+            }
+        }
+    }
+
+    private void cancelarTareas() {
+        for (TareaSensor tarea : tareas) {
+            tarea.programada.cancel(false);
+            Future<?> pendiente = tarea.pendiente;
+            if (pendiente != null) {
+                pendiente.cancel(true);
+            }
+        }
+        tareas.clear();
+    }
+
+    public long getLecturas() {
+        return lecturas.sum();
+    }
+
+    public long getLecturasVencidas() {
+        return lecturasVencidas.sum();
+    }
+
+    public long getLecturasOmitidas() {
+        return lecturasOmitidas.sum();
+    }
+
+    public long getErrores() {
+        return errores.sum();
+    }
+
+    // Tareas en la cola del planificador: las periódicas, la revisión y los
+    // vencimientos de las lecturas en curso
+    synchronized int getTareasEnCola() {
+        return planificador == null ? 0 : planificador.getQueue().size();
+    }
+
+    // Tarea periódica de un sensor
+    private class TareaSensor implements Runnable {
+        private final Sensor sensor;
+        private final String loteId;
+        private ScheduledFuture<?> programada;
+        private volatile Future<?> pendiente;
+        private volatile ScheduledFuture<?> vencimiento;
+
+        TareaSensor(Sensor sensor, String loteId) {
+            this.sensor = sensor;
+            this.loteId = loteId;
+        }
+
+        @Override
+        public void run() {
+            ExecutorService ejecutor = lectores;
+            ScheduledExecutorService plan = planificador;
+            if (ejecutor == null || plan == null) {
+                return;
+            }
+            // Si la lectura anterior sigue en curso se omite este turno
+            Future<?> anterior = pendiente;
+            if (anterior != null && !anterior.isDone()) {
+                lecturasOmitidas.increment();
+                return;
+            }
+
+            try {
+                Future<?> lectura = ejecutor.submit(this::leer);
+                pendiente = lectura;
+                ScheduledFuture<?> limite = plan.schedule(() -> {
+                    if (!lectura.isDone() && lectura.cancel(true)) {
+                        lecturasVencidas.increment();
+                    }
+                }, tiempoMaximoLecturaMs, TimeUnit.MILLISECONDS);
+                vencimiento = limite;
+                // La lectura pudo terminar antes de conocer su vencimiento
+                if (lectura.isDone()) {
+                    limite.cancel(false);
+                }
+            } catch (RejectedExecutionException e) {
+                // El planificador se está deteniendo
+            }
+        }
+
+        private void leer() {
+            try {
+                double valor = sensorService.leerSensor(sensor);
+                if (Thread.currentThread().isInterrupted()) {
+                    return; // se venció el tiempo máximo
+                }
+                lecturas.increment();
+                receptor.recibir(sensor, loteId, valor, System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                errores.increment();
+                System.err.println("Error leyendo sensor " + sensor.getId() + ": " + e.getMessage());
+            } finally {
+                ScheduledFuture<?> limite = vencimiento;
+                if (limite != null) {
+                    limite.cancel(false);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.agrosense.service;
+
+/**
+ * Qué hace una etapa de {@link TuberiaLecturas} cuando acumula más lecturas
+ * pendientes que su límite. Las lecturas en rango crítico nunca se descartan.
+ */
+public enum PoliticaSobrecarga {
+    /** Procesa todo; si no da abasto el anillo se llena y frena a los productores */
+    BLOQUEAR,
+    /** Descarta las lecturas más antiguas y procesa solo las más recientes */
+    DESCARTAR_ANTIGUAS,
+    /** Procesa una de cada k lecturas pendientes, de modo que no superen el límite */
+    MUESTREAR,
+    /** Procesa solo la última lectura pendiente de cada sensor */
+    COALESCER
+}
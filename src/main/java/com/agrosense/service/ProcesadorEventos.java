@@ -0,0 +1,160 @@
+package com.agrosense.service;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bucle de un consumidor del anillo: espera en su barrera, entrega en orden
+ * todos los eventos disponibles a su manejador y recién entonces avanza su
+ * secuencia, de modo que procesa por lotes cuando se acumulan eventos. Si los
+ * pendientes superan el límite de la etapa se aplica su
+ * {@link PoliticaSobrecarga}; los eventos descartados solo se cuentan.
+ */
+class ProcesadorEventos implements Runnable {
+
+    private final String nombre;
+    private final AnilloLecturas anillo;
+    private final BarreraSecuencias barrera;
+    private final ManejadorEventos manejador;
+    private final Secuencia secuencia;
+    private final PoliticaSobrecarga politica;
+    private final long limitePendientes;
+
+    private final LongAdder procesadas = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+
+    // Estado del lote en curso cuando hay sobrecarga
+    private boolean enSobrecarga;
+    private long corte;
+    private long paso;
+    private final boolean[] conservar;
+    private long[] ultimaPasadaSensor = new long[0];
+    private long pasada;
+
+    /**
+     * @param inicio           última secuencia que se considera ya procesada
+     * @param limitePendientes pendientes a partir de los cuales se aplica la
+     *                         política
+     */
+    ProcesadorEventos(String nombre, AnilloLecturas anillo, BarreraSecuencias barrera, ManejadorEventos manejador,
+            long inicio, PoliticaSobrecarga politica, long limitePendientes) {
+        this.nombre = nombre;
+        this.secuencia = new Secuencia(inicio);
+        this.anillo = anillo;
+        this.barrera = barrera;
+        this.manejador = manejador;
+        this.politica = politica;
+        this.limitePendientes = Math.max(1, limitePendientes);
+        this.conservar = politica == PoliticaSobrecarga.COALESCER ? new boolean[anillo.getTamano()] : null;
+    }
+
+    @Override
+    public void run() {
+        long siguiente = secuencia.get() + 1;
+        while (true) {
+            try {
+                long disponible = barrera.esperar(siguiente);
+                if (disponible < siguiente) {
+                    continue;
+                }
+                prepararLote(siguiente, disponible);
+                while (siguiente <= disponible) {
+                    EventoLectura evento = anillo.obtener(siguiente);
+                    if (admitir(evento, siguiente, disponible)) {
+                        manejador.procesar(evento, siguiente, siguiente == disponible);
+                        procesadas.increment();
+                    } else {
+                        descartadas.increment();
+                    }
+                    siguiente++;
+                }
+                secuencia.set(disponible);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                // Se descarta el evento que falló y se sigue con el resto
+                errores.increment();
+                System.err.println("Error en el consumidor " + nombre + ": " + e.getMessage());
+                secuencia.set(siguiente);
+                siguiente++;
+            }
+        }
+    }
+
+    private void prepararLote(long desde, long hasta) {
+        long pendientes = hasta - desde + 1;
+        enSobrecarga = politica != PoliticaSobrecarga.BLOQUEAR && pendientes > limitePendientes;
+        if (!enSobrecarga) {
+            return;
+        }
+        switch (politica) {
+            case DESCARTAR_ANTIGUAS:
+                corte = hasta - limitePendientes;
+                break;
+            case MUESTREAR:
+                paso = (pendientes + limitePendientes - 1) / limitePendientes;
+                break;
+            case COALESCER:
+                marcarUltimaPorSensor(desde, hasta);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Recorre el lote hacia atrás y conserva el primer evento que aparece de cada sensor
+    private void marcarUltimaPorSensor(long desde, long hasta) {
+        pasada++;
+        int mascara = conservar.length - 1;
+        for (long s = hasta; s >= desde; s--) {
+            int sensor = anillo.obtener(s).getSensor();
+            if (sensor >= ultimaPasadaSensor.length) {
+                ultimaPasadaSensor = Arrays.copyOf(ultimaPasadaSensor,
+                        Math.max(sensor + 1, ultimaPasadaSensor.length * 2));
+            }
+            conservar[(int) s & mascara] = ultimaPasadaSensor[sensor] != pasada;
+            ultimaPasadaSensor[sensor] = pasada;
+        }
+    }
+
+    private boolean admitir(EventoLectura evento, long s, long hasta) {
+        if (!enSobrecarga || evento.esCritica()) {
+            return true;
+        }
+        switch (politica) {
+            case DESCARTAR_ANTIGUAS:
+                return s > corte;
+            case MUESTREAR:
+                return (hasta - s) % paso == 0;
+            case COALESCER:
+                return conservar[(int) s & (conservar.length - 1)];
+            default:
+                return true;
+        }
+    }
+
+    String getNombre() {
+        return nombre;
+    }
+
+    Secuencia getSecuencia() {
+        return secuencia;
+    }
+
+    void detener() {
+        barrera.detener();
+    }
+
+    long getErrores() {
+        return errores.sum();
+    }
+
+    long getProcesadas() {
+        return procesadas.sum();
+    }
+
+    long getDescartadas() {
+        return descartadas.sum();
+    }
+}
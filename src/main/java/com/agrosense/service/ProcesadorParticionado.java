@@ -0,0 +1,427 @@
+package com.agrosense.service;
+
+import com.agrosense.model.Alerta;
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.ResultadoTendencia;
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+
+/**
+ * Procesamiento de lecturas repartido en particiones con un único escritor
+ * cada una. Los lotes se asignan a una partición por hash de su número
+ * ({@link TablaIds#LOTES}); cada partición tiene su propio hilo y sus propios
+ * {@link IngestaService}, {@link AlertaService} y {@link EstadisticasService},
+ * que solo ese hilo modifica. Así el detector, las alertas y las estadísticas
+ * de un lote nunca se comparten entre hilos y las particiones avanzan en
+ * paralelo sin competir por los mismos datos.
+ *
+ * Las lecturas se reparten en bloques por partición, que se reciclan para no
+ * reservar memoria por lectura; si una partición se atrasa, quien envía
+ * espera a que libere un bloque. Cada envío llena sus propios bloques sin
+ * bloqueos compartidos, así que una partición atrasada solo detiene a quien le
+ * está enviando, no a los demás emisores. Las consultas que abarcan todos los lotes se
+ * ejecutan en el hilo de cada partición y se combinan (scatter-gather); las
+ * de un lote van solo a la partición dueña.
+ *
+ * En el modo sin interfaz reciben las lecturas los ciclos de monitoreo y la
+ * ingesta por red ({@link IngestaParticionada}). La API HTTP y la replicación
+ * todavía trabajan sobre un único {@link AlertaService} y
+ * {@link EstadisticasService}, así que no se combinan con las particiones.
+ */
+public class ProcesadorParticionado {
+
+    private static final int LECTURAS_POR_BLOQUE = 1024;
+    private static final int BLOQUES_POR_PARTICION = 32;
+
+    private final Particion[] particiones;
+
+    public ProcesadorParticionado(int cantidadParticiones) {
+        if (cantidadParticiones <= 0) {
+            throw new IllegalArgumentException("La cantidad de particiones debe ser mayor a 0");
+        }
+        particiones = new Particion[cantidadParticiones];
+        for (int i = 0; i < cantidadParticiones; i++) {
+            particiones[i] = new Particion(i);
+        }
+    }
+
+    public void iniciar() {
+        for (Particion particion : particiones) {
+            particion.hilo.start();
+        }
+    }
+
+    /**
+     * Procesa lo pendiente y detiene los hilos de las particiones
+     */
+    public void detener() {
+        for (Particion particion : particiones) {
+            particion.encolar(Particion.FIN);
+        }
+        for (Particion particion : particiones) {
+            try {
+                particion.hilo.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public void setMostrarAlertasEnConsola(boolean mostrar) {
+        for (Particion particion : particiones) {
+            particion.alertaService.setMostrarEnConsola(mostrar);
+        }
+    }
+
+    public int getCantidadParticiones() {
+        return particiones.length;
+    }
+
+    /**
+     * Partición dueña del lote con el número dado
+     */
+    public int particionDe(int numeroLote) {
+        int h = numeroLote * 0x9E3779B9;
+        return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % particiones.length;
+    }
+
+    public int particionDe(String loteId) {
+        return particionDe(TablaIds.LOTES.numero(loteId));
+    }
+
+    // ---- Ingesta ----
+
+    /**
+     * Reparte las lecturas entre las particiones y vuelve sin esperar a que
+     * se procesen. El lote de entrada se puede reutilizar al volver.
+     */
+    public void enviar(MedicionBatch batch) {
+        repartir(batch, null);
+    }
+
+    /**
+     * Reparte las lecturas y espera a que todas las particiones las procesen
+     *
+     * @return cantidad de lecturas aceptadas por el detector
+     */
+    public long procesarLote(MedicionBatch batch) {
+        Seguimiento seguimiento = new Seguimiento();
+        repartir(batch, seguimiento);
+        return seguimiento.esperar();
+    }
+
+    private void repartir(MedicionBatch batch, Seguimiento seguimiento) {
+        // Bloque que este envío está llenando para cada partición
+        Bloque[] enCurso = new Bloque[particiones.length];
+        int[] lotes = batch.getLotes();
+        for (int i = 0; i < batch.getTamano(); i++) {
+            int p = particionDe(lotes[i]);
+            Bloque bloque = enCurso[p];
+            if (bloque == null) {
+                bloque = particiones[p].libres.poll();
+                if (bloque == null) {
+                    // Antes de esperar se entregan los bloques a medio llenar,
+                    // para no retener bloques de otras particiones mientras tanto
+                    despacharTodos(enCurso, seguimiento);
+                    bloque = particiones[p].tomarBloque();
+                }
+                enCurso[p] = bloque;
+            }
+            bloque.batch.agregar(batch.getSensor(i), lotes[i], batch.getTipo(i), batch.getValor(i),
+                    batch.getTiempo(i));
+            if (bloque.batch.getTamano() == LECTURAS_POR_BLOQUE) {
+                despachar(enCurso, p, seguimiento);
+            }
+        }
+        despacharTodos(enCurso, seguimiento);
+    }
+
+    private void despacharTodos(Bloque[] enCurso, Seguimiento seguimiento) {
+        for (int p = 0; p < enCurso.length; p++) {
+            if (enCurso[p] != null) {
+                despachar(enCurso, p, seguimiento);
+            }
+        }
+    }
+
+    private void despachar(Bloque[] enCurso, int p, Seguimiento seguimiento) {
+        Bloque bloque = enCurso[p];
+        enCurso[p] = null;
+        bloque.seguimiento = seguimiento;
+        if (seguimiento != null) {
+            seguimiento.agregarPendiente();
+        }
+        particiones[p].encolar(bloque);
+    }
+
+    // ---- Consultas ----
+
+    /**
+     * Ejecuta la consulta en el hilo de cada partición y devuelve los
+     * resultados en orden de partición. Ve todo lo enviado antes de llamarla.
+     */
+    public <T> List<T> consultarTodas(Function<Particion, T> consulta) {
+        List<FutureTask<T>> tareas = new ArrayList<>(particiones.length);
+        for (Particion particion : particiones) {
+            FutureTask<T> tarea = new FutureTask<>(() -> consulta.apply(particion));
+            particion.encolar(tarea);
+            tareas.add(tarea);
+        }
+        List<T> resultados = new ArrayList<>(tareas.size());
+        for (FutureTask<T> tarea : tareas) {
+            resultados.add(resultado(tarea));
+        }
+        return resultados;
+    }
+
+    /**
+     * Ejecuta la consulta solo en la partición dueña del lote
+     */
+    public <T> T consultarLote(String loteId, Function<Particion, T> consulta) {
+        Particion particion = particiones[particionDe(loteId)];
+        FutureTask<T> tarea = new FutureTask<>(() -> consulta.apply(particion));
+        particion.encolar(tarea);
+        return resultado(tarea);
+    }
+
+    private static <T> T resultado(FutureTask<T> tarea) {
+        try {
+            return tarea.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Consulta interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Espera a que las particiones procesen todo lo enviado hasta ahora
+     */
+    public void esperar() {
+        consultarTodas(particion -> null);
+    }
+
+    public long getLecturasAceptadas() {
+        long total = 0;
+        for (Particion particion : particiones) {
+            total += particion.ingestaService.getLecturasAceptadas();
+        }
+        return total;
+    }
+
+    public long getTotalMediciones() {
+        long total = 0;
+        for (Particion particion : particiones) {
+            total += particion.estadisticasService.getTotalMediciones();
+        }
+        return total;
+    }
+
+    public int contarAlertas() {
+        int total = 0;
+        for (int cantidad : consultarTodas(p -> p.alertaService.getAlmacen().size())) {
+            total += cantidad;
+        }
+        return total;
+    }
+
+    /**
+     * Las alertas más recientes que cumplen el filtro, de la más reciente a la
+     * más antigua. Cada partición aporta a lo sumo {@code limite}.
+     */
+    public List<Alerta> consultarAlertas(AlmacenAlertas.Filtro filtro, int limite) {
+        List<List<Alerta>> porParticion = consultarTodas(p -> {
+            AlmacenAlertas almacen = p.alertaService.getAlmacen();
+            return almacen.obtener(almacen.consultar(filtro, AlmacenAlertas.Orden.FECHA, true), 0, limite);
+        });
+        return mezclar(porParticion, Comparator.comparing(Alerta::getFechaHora).reversed(), limite);
+    }
+
+    /**
+     * Todas las alertas de las particiones en orden de fecha, por ejemplo
+     * para guardarlas
+     */
+    public List<Alerta> reunirAlertas() {
+        return mezclar(consultarTodas(p -> p.alertaService.obtenerCopiaHistorial()),
+                Comparator.comparing(Alerta::getFechaHora), Integer.MAX_VALUE);
+    }
+
+    public ResultadoTendencia calcularTendencia(String loteId, TipoSensor tipoSensor) {
+        return consultarLote(loteId, p -> p.estadisticasService.calcularTendencia(loteId, tipoSensor));
+    }
+
+    public double calcularPromedioTotal(String loteId, TipoSensor tipoSensor) {
+        return consultarLote(loteId, p -> p.estadisticasService.calcularPromedioTotal(loteId, tipoSensor));
+    }
+
+    /**
+     * Mezcla listas ya ordenadas con el mismo criterio, hasta {@code limite}
+     */
+    private static List<Alerta> mezclar(List<List<Alerta>> listas, Comparator<Alerta> orden, int limite) {
+        int total = 0;
+        for (List<Alerta> lista : listas) {
+            total += lista.size();
+        }
+        List<Alerta> resultado = new ArrayList<>(Math.min(total, limite));
+        int[] posiciones = new int[listas.size()];
+        while (resultado.size() < limite) {
+            int elegida = -1;
+            for (int i = 0; i < listas.size(); i++) {
+                if (posiciones[i] < listas.get(i).size() && (elegida < 0 || orden.compare(
+                        listas.get(i).get(posiciones[i]), listas.get(elegida).get(posiciones[elegida])) < 0)) {
+                    elegida = i;
+                }
+            }
+            if (elegida < 0) {
+                break;
+            }
+            resultado.add(listas.get(elegida).get(posiciones[elegida]++));
+        }
+        return resultado;
+    }
+
+    /**
+     * Una partición: su hilo, su cola de trabajo y los servicios que solo él
+     * modifica. Las consultas reciben la partición en ese mismo hilo.
+     */
+    public static class Particion {
+        private static final Object FIN = new Object();
+
+        private final int numero;
+        private final AlertaService alertaService = new AlertaService();
+        private final EstadisticasService estadisticasService = new EstadisticasService();
+        private final IngestaService ingestaService = new IngestaService(alertaService, estadisticasService);
+
+        // Bloques de lecturas y tareas de consulta, en orden de llegada
+        private final BlockingQueue<Object> cola = new ArrayBlockingQueue<>(BLOQUES_POR_PARTICION * 2);
+        private final BlockingQueue<Bloque> libres = new ArrayBlockingQueue<>(BLOQUES_POR_PARTICION);
+        private final Thread hilo;
+
+        Particion(int numero) {
+            this.numero = numero;
+            for (int i = 0; i < BLOQUES_POR_PARTICION; i++) {
+                libres.add(new Bloque());
+            }
+            hilo = new Thread(this::bucle, "agrosense-particion-" + numero);
+            hilo.setDaemon(true);
+        }
+
+        public int getNumero() {
+            return numero;
+        }
+
+        public AlertaService getAlertaService() {
+            return alertaService;
+        }
+
+        public EstadisticasService getEstadisticasService() {
+            return estadisticasService;
+        }
+
+        public IngestaService getIngestaService() {
+            return ingestaService;
+        }
+
+        private Bloque tomarBloque() {
+            try {
+                return libres.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Envío interrumpido", e);
+            }
+        }
+
+        private void encolar(Object trabajo) {
+            try {
+                cola.put(trabajo);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Envío interrumpido", e);
+            }
+        }
+
+        private void bucle() {
+            try {
+                while (true) {
+                    Object trabajo = cola.take();
+                    if (trabajo == FIN) {
+                        return;
+                    }
+                    if (trabajo instanceof Bloque) {
+                        procesar((Bloque) trabajo);
+                    } else {
+                        ((Runnable) trabajo).run();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void procesar(Bloque bloque) {
+            int aceptadas = 0;
+            try {
+                aceptadas = ingestaService.procesarLote(bloque.batch);
+            } catch (RuntimeException e) {
+                System.err.println("Error en la partición " + numero + ": " + e.getMessage());
+            } finally {
+                Seguimiento seguimiento = bloque.seguimiento;
+                bloque.batch.limpiar();
+                bloque.seguimiento = null;
+                libres.add(bloque);
+                if (seguimiento != null) {
+                    seguimiento.terminar(aceptadas);
+                }
+            }
+        }
+    }
+
+    private static class Bloque {
+        private final MedicionBatch batch = new MedicionBatch(LECTURAS_POR_BLOQUE);
+        private Seguimiento seguimiento;
+    }
+
+    /**
+     * Bloques pendientes de un {@link #procesarLote} y lecturas aceptadas
+     */
+    private static class Seguimiento {
+        private int pendientes;
+        private long aceptadas;
+
+        synchronized void agregarPendiente() {
+            pendientes++;
+        }
+
+        synchronized void terminar(int aceptadasBloque) {
+            aceptadas += aceptadasBloque;
+            if (--pendientes == 0) {
+                notifyAll();
+            }
+        }
+
+        synchronized long esperar() {
+            try {
+                while (pendientes > 0) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Espera interrumpida", e);
+            }
+            return aceptadas;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.agrosense.service;
+
+import com.agrosense.model.Sensor;
+
+/**
+ * Destino de las lecturas que producen el sondeo y el servidor de ingesta.
+ * {@link IngestaService} las procesa en el mismo hilo y
+ * {@link TuberiaLecturas} las publica en un anillo para procesarlas en
+ * segundo plano.
+ */
+@FunctionalInterface
+public interface ReceptorLecturas {
+
+    void recibir(Sensor sensor, String loteId, double valor, long epochMillis);
+}
@@ -0,0 +1,194 @@
+package com.agrosense.service;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registro de métricas por nombre: contadores, medidores e histogramas de
+ * latencia. Pedir dos veces el mismo nombre devuelve la misma métrica, así
+ * que cada clase puede guardar las suyas en campos estáticos (ver
+ * {@link Metricas}).
+ *
+ * Las métricas se publican como MXBeans ({@code com.agrosense:type=...,name=...})
+ * con {@link #registrarJmx()} y en un volcado de texto periódico con
+ * {@link #iniciarVolcado}; cada volcado muestra los cambios desde el anterior.
+ */
+public class RegistroMetricas {
+
+    public static final RegistroMetricas GLOBAL = new RegistroMetricas("com.agrosense");
+
+    private static final DateTimeFormatter FORMATO_HORA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final String dominioJmx;
+    // Ordenados por nombre para el volcado
+    private final Map<String, Contador> contadores = new ConcurrentSkipListMap<>();
+    private final Map<String, Medidor> medidores = new ConcurrentSkipListMap<>();
+    private final Map<String, HistogramaLatencia> histogramas = new ConcurrentSkipListMap<>();
+
+    private boolean jmxActivo;
+    private ScheduledExecutorService volcador;
+
+    // Estado del volcado anterior
+    private long ultimoVolcadoNanos = System.nanoTime();
+    private final Map<String, Long> contadoresAnteriores = new HashMap<>();
+    private final Map<String, HistogramaLatencia.Instantanea> histogramasAnteriores = new HashMap<>();
+
+    public RegistroMetricas(String dominioJmx) {
+        this.dominioJmx = dominioJmx;
+    }
+
+    public Contador contador(String nombre) {
+        Contador contador = contadores.get(nombre);
+        return contador != null ? contador : registrar(contadores, nombre, new Contador(nombre), "Contador");
+    }
+
+    public HistogramaLatencia histograma(String nombre) {
+        HistogramaLatencia histograma = histogramas.get(nombre);
+        return histograma != null ? histograma
+                : registrar(histogramas, nombre, new HistogramaLatencia(nombre), "Histograma");
+    }
+
+    /**
+     * Crea un medidor o, si ya existe, cambia de dónde toma su valor
+     */
+    public Medidor medidor(String nombre, DoubleSupplier fuente) {
+        Medidor medidor = medidores.get(nombre);
+        if (medidor != null) {
+            medidor.setFuente(fuente);
+            return medidor;
+        }
+        return registrar(medidores, nombre, new Medidor(nombre, fuente), "Medidor");
+    }
+
+    private synchronized <T> T registrar(Map<String, T> mapa, String nombre, T nueva, String tipo) {
+        T existente = mapa.get(nombre);
+        if (existente != null) {
+            return existente;
+        }
+        mapa.put(nombre, nueva);
+        if (jmxActivo) {
+            registrarMBean(nueva, tipo, nombre);
+        }
+        return nueva;
+    }
+
+    /**
+     * Publica en el servidor JMX de la plataforma las métricas actuales y las
+     * que se creen después. Llamarlo varias veces no tiene efecto.
+     */
+    public synchronized void registrarJmx() {
+        if (jmxActivo) {
+            return;
+        }
+        jmxActivo = true;
+        contadores.forEach((nombre, c) -> registrarMBean(c, "Contador", nombre));
+        medidores.forEach((nombre, m) -> registrarMBean(m, "Medidor", nombre));
+        histogramas.forEach((nombre, h) -> registrarMBean(h, "Histograma", nombre));
+    }
+
+    private void registrarMBean(Object metrica, String tipo, String nombre) {
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objeto = new ObjectName(dominioJmx + ":type=" + tipo + ",name=" + nombre);
+            if (!servidor.isRegistered(objeto)) {
+                servidor.registerMBean(metrica, objeto);
+            }
+        } catch (JMException e) {
+            System.err.println("No se pudo publicar la métrica " + nombre + " en JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Escribe un volcado en {@code destino} cada {@code periodoSegundos}.
+     * Reemplaza un volcado periódico anterior.
+     */
+    public synchronized void iniciarVolcado(long periodoSegundos, PrintStream destino) {
+        if (periodoSegundos <= 0) {
+            throw new IllegalArgumentException("El periodo del volcado debe ser mayor a 0");
+        }
+        detenerVolcado();
+        volcador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "agrosense-metricas");
+            t.setDaemon(true);
+            return t;
+        });
+        volcador.scheduleAtFixedRate(() -> {
+            destino.print(volcar());
+            destino.flush();
+        }, periodoSegundos, periodoSegundos, TimeUnit.SECONDS);
+    }
+
+    public synchronized void detenerVolcado() {
+        if (volcador != null) {
+            volcador.shutdownNow();
+            volcador = null;
+        }
+    }
+
+    /**
+     * Texto con todas las métricas: contadores con su cambio y ritmo desde el
+     * volcado anterior, medidores con su valor actual e histogramas con los
+     * percentiles del intervalo. Actualiza el ritmo que muestran los
+     * contadores por JMX.
+     */
+    public synchronized String volcar() {
+        long ahora = System.nanoTime();
+        double segundos = Math.max(1e-9, (ahora - ultimoVolcadoNanos) / 1e9);
+        ultimoVolcadoNanos = ahora;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("[%s] Métricas (últimos %.1f s)%n", LocalDateTime.now().format(FORMATO_HORA),
+                segundos));
+        for (Contador contador : contadores.values()) {
+            long valor = contador.getValor();
+            long anterior = contadoresAnteriores.getOrDefault(contador.getNombre(), 0L);
+            contadoresAnteriores.put(contador.getNombre(), valor);
+            double porSegundo = (valor - anterior) / segundos;
+            contador.setPorSegundo(porSegundo);
+            sb.append(String.format("  %-32s %,d (+%,d, %,.1f/s)%n", contador.getNombre(), valor, valor - anterior,
+                    porSegundo));
+        }
+        for (Medidor medidor : medidores.values()) {
+            sb.append(String.format("  %-32s %,.2f%n", medidor.getNombre(), medidor.getValor()));
+        }
+        for (HistogramaLatencia histograma : histogramas.values()) {
+            HistogramaLatencia.Instantanea total = histograma.instantanea();
+            HistogramaLatencia.Instantanea anterior = histogramasAnteriores.put(histograma.getNombre(), total);
+            HistogramaLatencia.Instantanea intervalo = anterior == null ? total : total.menos(anterior);
+            if (intervalo.getCantidad() == 0) {
+                sb.append(String.format("  %-32s sin eventos%n", histograma.getNombre()));
+                continue;
+            }
+            sb.append(String.format("  %-32s n=%,d prom=%s p50=%s p99=%s p99.9=%s max=%s%n", histograma.getNombre(),
+                    intervalo.getCantidad(), duracion(intervalo.getPromedio()), duracion(intervalo.percentil(50)),
+                    duracion(intervalo.percentil(99)), duracion(intervalo.percentil(99.9)),
+                    duracion(intervalo.getMaximo())));
+        }
+        return sb.toString();
+    }
+
+    private static String duracion(double nanos) {
+        if (nanos < 1_000) {
+            return String.format("%.0f ns", nanos);
+        }
+        if (nanos < 1_000_000) {
+            return String.format("%.1f µs", nanos / 1e3);
+        }
+        if (nanos < 1_000_000_000) {
+            return String.format("%.1f ms", nanos / 1e6);
+        }
+        return String.format("%.2f s", nanos / 1e9);
+    }
+}
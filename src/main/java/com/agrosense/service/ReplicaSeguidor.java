@@ -0,0 +1,350 @@
+package com.agrosense.service;
+
+import com.agrosense.model.Lote;
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.Sensor;
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Optional;
+
+/**
+ * Réplica en espera: se conecta a un {@link ReplicadorLider} y aplica sus
+ * tramas a su propio {@link GestorLotes}, {@link AlertaService} y
+ * {@link EstadisticasService}. Las lecturas replicadas ya pasaron el detector
+ * del líder y solo se suman a las estadísticas; las alertas llegan tal como
+ * las generó el líder.
+ *
+ * La instantánea trae lotes y alertas pero no las estadísticas: al recibirla
+ * la réplica vacía las suyas (series, conteo e histórico crudo), que vuelven
+ * a formarse solo con las lecturas que el líder envíe desde ese momento.
+ *
+ * Confirma la última trama aplicada cada vez que no queda nada más por leer,
+ * así que bajo carga una confirmación cubre varias tramas.
+ *
+ * Una conexión cortada no alcanza para dar al líder por perdido: la réplica
+ * se reconecta (y recibe una instantánea nueva) mientras no pase el tiempo de
+ * espera sin recibir tramas, que el líder envía aunque no haya cambios. Un
+ * pedido de resincronización del líder también provoca una reconexión. Solo
+ * si se cumple la espera sin tramas avisa con {@link #setAlPerderLider}; a
+ * partir de ahí el estado local es el del líder hasta la última trama
+ * aplicada y la réplica puede tomar su lugar con la época siguiente a
+ * {@link #getEpocaLider()}. Las tramas de un líder con una época menor a la
+ * ya vista se rechazan: es un líder anterior que volvió.
+ */
+public class ReplicaSeguidor {
+
+    private static final int TIEMPO_CONEXION_MS = 5000;
+    private static final long PAUSA_RECONEXION_MS = 200;
+    public static final long ESPERA_SIN_LIDER_MS = 3000;
+
+    private final GestorLotes gestorLotes;
+    private final AlertaService alertaService;
+    private final EstadisticasService estadisticasService;
+    private final String host;
+    private final int puerto;
+    private final long esperaSinLiderMs;
+
+    private Socket socket;
+    private Thread hilo;
+    private volatile boolean detenida;
+    private Runnable alPerderLider;
+
+    private volatile long secuenciaAplicada;
+    private volatile long ultimaCapturaMillis;
+    private volatile long retrasoMillis;
+    private volatile long tramasAplicadas;
+    private volatile long epocaLider;
+    private volatile long reconexiones;
+    // System.nanoTime() de la última trama recibida de un líder vigente
+    private long ultimaTramaNanos;
+
+    private final MedicionBatch lecturas = new MedicionBatch();
+
+    public ReplicaSeguidor(GestorLotes gestorLotes, AlertaService alertaService,
+            EstadisticasService estadisticasService, String host, int puerto) {
+        this(gestorLotes, alertaService, estadisticasService, host, puerto, ESPERA_SIN_LIDER_MS);
+    }
+
+    /**
+     * @param esperaSinLiderMs tiempo sin recibir tramas tras el cual se da al
+     *                         líder por perdido
+     */
+    public ReplicaSeguidor(GestorLotes gestorLotes, AlertaService alertaService,
+            EstadisticasService estadisticasService, String host, int puerto, long esperaSinLiderMs) {
+        if (esperaSinLiderMs <= 0) {
+            throw new IllegalArgumentException("La espera sin líder debe ser mayor a 0");
+        }
+        this.gestorLotes = gestorLotes;
+        this.alertaService = alertaService;
+        this.estadisticasService = estadisticasService;
+        this.host = host;
+        this.puerto = puerto;
+        this.esperaSinLiderMs = esperaSinLiderMs;
+    }
+
+    /**
+     * Se ejecuta en el hilo de la réplica cuando pasa la espera sin recibir
+     * tramas del líder sin haber llamado a {@link #detener}
+     */
+    public void setAlPerderLider(Runnable alPerderLider) {
+        this.alPerderLider = alPerderLider;
+    }
+
+    /**
+     * Se conecta al líder; si no responde falla en lugar de esperar
+     */
+    public synchronized void iniciar() throws IOException {
+        if (hilo != null) {
+            return;
+        }
+        conectar();
+        ultimaTramaNanos = System.nanoTime();
+        hilo = new Thread(this::seguir, "agrosense-replica");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    public synchronized void detener() {
+        detenida = true;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ya estaba cerrado
+            }
+        }
+    }
+
+    public long getSecuenciaAplicada() {
+        return secuenciaAplicada;
+    }
+
+    public long getTramasAplicadas() {
+        return tramasAplicadas;
+    }
+
+    /**
+     * Época del líder seguido; 0 antes de recibir la primera trama
+     */
+    public long getEpocaLider() {
+        return epocaLider;
+    }
+
+    /**
+     * Veces que se volvió a conectar al líder, por un corte o un pedido de
+     * resincronización
+     */
+    public long getReconexiones() {
+        return reconexiones;
+    }
+
+    /**
+     * Milisegundos entre la captura en el líder y la aplicación aquí, de la
+     * última trama (los dos procesos comparten el reloj en localhost)
+     */
+    public long getRetrasoMillis() {
+        return retrasoMillis;
+    }
+
+    /**
+     * Milisegundos desde la captura de la última trama aplicada; al perder al
+     * líder, cota de los cambios que pudieron no llegar
+     */
+    public long getAntiguedadMillis() {
+        return ultimaCapturaMillis == 0 ? -1 : System.currentTimeMillis() - ultimaCapturaMillis;
+    }
+
+    private Socket conectar() throws IOException {
+        Socket nuevo = new Socket();
+        try {
+            nuevo.connect(new InetSocketAddress(host, puerto), (int) Math.min(TIEMPO_CONEXION_MS, esperaSinLiderMs));
+            nuevo.setTcpNoDelay(true);
+            // Sin tramas durante la espera, la lectura falla por tiempo
+            nuevo.setSoTimeout((int) Math.min(Integer.MAX_VALUE, esperaSinLiderMs));
+        } catch (IOException e) {
+            nuevo.close();
+            throw e;
+        }
+        // Sin el candado durante la conexión, para que detener() no la espere
+        synchronized (this) {
+            if (detenida) {
+                nuevo.close();
+                throw new IOException("Réplica detenida");
+            }
+            socket = nuevo;
+        }
+        return nuevo;
+    }
+
+    private void seguir() {
+        Socket actual = socket;
+        // Los reintentos fallidos se informan una vez por corte
+        boolean reintentando = false;
+        while (!detenida) {
+            try {
+                if (actual == null) {
+                    actual = conectar();
+                    reconexiones++;
+                    reintentando = false;
+                }
+                recibir(actual);
+                // Pedido de resincronización: se reconecta enseguida
+                System.err.println("El líder pidió resincronizar la réplica");
+            } catch (SocketTimeoutException e) {
+                if (!detenida) {
+                    System.err.println("Sin tramas del líder en " + esperaSinLiderMs + " ms");
+                }
+            } catch (EOFException e) {
+                // El líder cerró la conexión
+            } catch (IOException | RuntimeException e) {
+                if (!detenida && !(actual == null && reintentando)) {
+                    System.err.println("Error en la réplica: " + e.getMessage());
+                }
+                reintentando |= actual == null;
+            }
+            cerrar(actual);
+            actual = null;
+            if (detenida) {
+                return;
+            }
+            if (System.nanoTime() - ultimaTramaNanos >= esperaSinLiderMs * 1_000_000L) {
+                break;
+            }
+            try {
+                Thread.sleep(PAUSA_RECONEXION_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (!detenida) {
+            detener();
+            if (alPerderLider != null) {
+                alPerderLider.run();
+            }
+        }
+    }
+
+    /**
+     * Aplica tramas hasta que la conexión se corta o el líder pide
+     * resincronizar (en ese caso vuelve normalmente)
+     */
+    private void recibir(Socket conexion) throws IOException {
+        DataInputStream entrada = new DataInputStream(new BufferedInputStream(conexion.getInputStream(), 1 << 16));
+        DataOutputStream confirmaciones = new DataOutputStream(
+                new BufferedOutputStream(conexion.getOutputStream(), 64));
+        byte[] cuerpo = new byte[1 << 16];
+        while (!detenida) {
+            int bytes = entrada.readInt();
+            long secuencia = entrada.readLong();
+            long epoca = entrada.readLong();
+            long capturaMillis = entrada.readLong();
+            int registros = entrada.readInt();
+            if (epoca < epocaLider) {
+                throw new IOException("Líder con época " + epoca + " anterior a la seguida (" + epocaLider
+                        + "); se rechaza");
+            }
+            epocaLider = epoca;
+            ultimaTramaNanos = System.nanoTime();
+            if (bytes > cuerpo.length) {
+                cuerpo = new byte[Math.max(bytes, cuerpo.length * 2)];
+            }
+            entrada.readFully(cuerpo, 0, bytes);
+            if (!aplicar(new DataInputStream(new ByteArrayInputStream(cuerpo, 0, bytes)), registros)) {
+                return;
+            }
+
+            secuenciaAplicada = secuencia;
+            ultimaCapturaMillis = capturaMillis;
+            retrasoMillis = System.currentTimeMillis() - capturaMillis;
+            tramasAplicadas++;
+            // Una confirmación por grupo de tramas recibidas juntas
+            if (entrada.available() == 0) {
+                confirmaciones.writeLong(secuencia);
+                confirmaciones.flush();
+            }
+        }
+    }
+
+    private static void cerrar(Socket conexion) {
+        if (conexion == null) {
+            return;
+        }
+        try {
+            conexion.close();
+        } catch (IOException e) {
+            // Ya estaba cerrado
+        }
+    }
+
+    /**
+     * @return false si la trama es un pedido de resincronización
+     */
+    private boolean aplicar(DataInputStream in, int registros) throws IOException {
+        lecturas.limpiar();
+        for (int i = 0; i < registros; i++) {
+            byte tipo = in.readByte();
+            switch (tipo) {
+                case FormatoReplicacion.INSTANTANEA:
+                    gestorLotes.limpiar();
+                    alertaService.getHistorialAlertas().clear();
+                    estadisticasService.limpiarHistorico();
+                    break;
+                case FormatoReplicacion.LOTE: {
+                    Lote lote = FormatoReplicacion.leerLote(in);
+                    Optional<Lote> existente = gestorLotes.buscarPorId(lote.getId());
+                    if (existente.isPresent()) {
+                        // Los sensores que el líder quitó del lote dejan de tener histórico
+                        for (Sensor sensor : existente.get().getSensores()) {
+                            if (lote.getSensores().stream().noneMatch(s -> s.getId().equals(sensor.getId()))) {
+                                estadisticasService.eliminarLecturas(sensor.getId());
+                            }
+                        }
+                        gestorLotes.actualizarLote(lote);
+                    } else {
+                        gestorLotes.registrarLote(lote);
+                    }
+                    break;
+                }
+                case FormatoReplicacion.LOTE_ELIMINADO: {
+                    Optional<Lote> eliminado = gestorLotes.buscarPorId(in.readUTF());
+                    if (eliminado.isPresent()) {
+                        gestorLotes.eliminarLote(eliminado.get().getId());
+                        for (Sensor sensor : eliminado.get().getSensores()) {
+                            estadisticasService.eliminarLecturas(sensor.getId());
+                        }
+                    }
+                    break;
+                }
+                case FormatoReplicacion.ALERTA:
+                    alertaService.getHistorialAlertas().add(FormatoReplicacion.leerAlerta(in));
+                    break;
+                case FormatoReplicacion.ALERTAS_VACIADAS:
+                    alertaService.getHistorialAlertas().clear();
+                    break;
+                case FormatoReplicacion.RESINCRONIZAR:
+                    return false;
+                case FormatoReplicacion.LECTURA:
+                    lecturas.agregar(TablaIds.SENSORES.numero(in.readUTF()), TablaIds.LOTES.numero(in.readUTF()),
+                            TipoSensor.values()[in.readByte()], in.readDouble(), in.readLong());
+                    break;
+                default:
+                    throw new IOException("Registro de replicación desconocido: " + tipo);
+            }
+        }
+        if (lecturas.getTamano() > 0) {
+            estadisticasService.registrarLote(lecturas);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,557 @@
+package com.agrosense.service;
+
+import com.agrosense.model.Alerta;
+import com.agrosense.model.Lote;
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.TablaIds;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lado líder de la replicación a réplicas en espera ({@link ReplicaSeguidor}).
+ *
+ * Cada cierto tiempo (100 ms por defecto) un único hilo captura los cambios
+ * desde la captura anterior y los envía a todos los seguidores como una trama
+ * numerada ({@link FormatoReplicacion}): lotes nuevos o modificados (según su
+ * identidad y {@link Lote#getVersion()}), lotes eliminados, alertas nuevas del
+ * {@link AlmacenAlertas} y las lecturas aceptadas que se hayan registrado con
+ * {@link #registrarLecturas}. Un seguidor nuevo recibe primero una instantánea
+ * con todos los lotes y alertas.
+ *
+ * El envío no espera confirmaciones: cada seguidor tiene su cola de tramas y
+ * un hilo que las escribe seguidas, y confirma por grupos. El tiempo entre la
+ * captura y la confirmación se registra en {@code replicacion.retraso}. Si
+ * un seguidor acumula demasiadas tramas sin enviar, su cola se descarta y se
+ * le envía un pedido de resincronización antes de cerrar la conexión; al
+ * volver a conectarse recibe una instantánea nueva.
+ *
+ * Todas las tramas llevan la época del líder (ver {@link FormatoReplicacion}).
+ */
+public class ReplicadorLider {
+
+    public static final long PERIODO_CAPTURA_MS = 100;
+    private static final int MAX_TRAMAS_EN_COLA = 1024;
+
+    private final GestorLotes gestorLotes;
+    private final AlertaService alertaService;
+    private final int puerto;
+    private final long periodoMs;
+    private final long epoca;
+
+    private ServerSocket servidor;
+    private Thread aceptador;
+    private ScheduledExecutorService capturador;
+    private volatile boolean activo;
+
+    private final List<Seguidor> seguidores = new CopyOnWriteArrayList<>();
+    private final Queue<Seguidor> nuevos = new ConcurrentLinkedQueue<>();
+
+    // Estado de la última captura; solo lo usa el hilo capturador
+    private final Map<String, Lote> lotesEnviados = new HashMap<>();
+    private final Map<String, Long> versionesEnviadas = new HashMap<>();
+    private Lote[] ultimosLotes = new Lote[0];
+    private long[] ultimasVersiones = new long[0];
+    private int alertasEnviadas;
+    private int generacionAlertas;
+    private long secuencia;
+    private final ByteArrayOutputStream cuerpo = new ByteArrayOutputStream(1 << 16);
+    private final DataOutputStream escritor = new DataOutputStream(cuerpo);
+    private int registros;
+
+    // Lecturas registradas desde la última captura, ya codificadas, y el
+    // buffer que se alterna con él en cada captura
+    private ByteArrayOutputStream lecturasPendientes = new ByteArrayOutputStream(1 << 16);
+    private DataOutputStream escritorLecturas = new DataOutputStream(lecturasPendientes);
+    private int cantidadLecturas;
+    private ByteArrayOutputStream lecturasRepuesto = new ByteArrayOutputStream(1 << 16);
+    private DataOutputStream escritorRepuesto = new DataOutputStream(lecturasRepuesto);
+
+    /**
+     * @param puerto    puerto TCP donde se conectan los seguidores (0 elige uno libre)
+     * @param periodoMs cada cuánto se capturan y envían los cambios
+     */
+    public ReplicadorLider(GestorLotes gestorLotes, AlertaService alertaService, int puerto, long periodoMs) {
+        this(gestorLotes, alertaService, puerto, periodoMs, 1);
+    }
+
+    /**
+     * @param epoca época de este líder; una réplica promovida usa la siguiente
+     *              a la de su líder anterior ({@link ReplicaSeguidor#getEpocaLider()})
+     */
+    public ReplicadorLider(GestorLotes gestorLotes, AlertaService alertaService, int puerto, long periodoMs,
+            long epoca) {
+        if (periodoMs <= 0) {
+            throw new IllegalArgumentException("El periodo de captura debe ser mayor a 0");
+        }
+        if (epoca <= 0) {
+            throw new IllegalArgumentException("La época debe ser mayor a 0");
+        }
+        this.gestorLotes = gestorLotes;
+        this.alertaService = alertaService;
+        this.puerto = puerto;
+        this.periodoMs = periodoMs;
+        this.epoca = epoca;
+    }
+
+    public synchronized void iniciar() throws IOException {
+        if (activo) {
+            return;
+        }
+        servidor = new ServerSocket();
+        // Un líder que se reinicia vuelve a tomar el puerto aunque queden conexiones cerrándose
+        servidor.setReuseAddress(true);
+        servidor.bind(new InetSocketAddress(puerto));
+        activo = true;
+        aceptador = new Thread(this::aceptar, "agrosense-replicacion");
+        aceptador.setDaemon(true);
+        aceptador.start();
+        capturador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "agrosense-replicacion-captura");
+            t.setDaemon(true);
+            return t;
+        });
+        capturador.scheduleAtFixedRate(this::capturarSinFallar, 0, periodoMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Envía una última captura y cierra las conexiones
+     */
+    public synchronized void detener() {
+        if (!activo) {
+            return;
+        }
+        activo = false;
+        capturador.shutdown();
+        try {
+            capturador.awaitTermination(2, TimeUnit.SECONDS);
+            capturar();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Error en la última captura de replicación: " + e.getMessage());
+        }
+        for (Seguidor seguidor : seguidores) {
+            seguidor.terminar();
+        }
+        try {
+            servidor.close();
+        } catch (IOException e) {
+            // Ya estaba cerrado
+        }
+    }
+
+    public int getPuerto() {
+        return servidor.getLocalPort();
+    }
+
+    public long getEpoca() {
+        return epoca;
+    }
+
+    public int getCantidadSeguidores() {
+        return seguidores.size();
+    }
+
+    /**
+     * Secuencia de la última trama capturada
+     */
+    public synchronized long getSecuencia() {
+        return secuencia;
+    }
+
+    /**
+     * Tramas capturadas que algún seguidor todavía no confirmó
+     */
+    public long getTramasSinConfirmar() {
+        long maximo = 0;
+        long actual = getSecuencia();
+        for (Seguidor seguidor : seguidores) {
+            maximo = Math.max(maximo, actual - seguidor.confirmada);
+        }
+        return maximo;
+    }
+
+    /**
+     * Agrega las lecturas del lote a la próxima trama. Se llama después de
+     * procesarlas, con el lote ya compactado a las aceptadas.
+     */
+    public void registrarLecturas(MedicionBatch batch) {
+        if (seguidores.isEmpty() && nuevos.isEmpty()) {
+            return; // nadie las recibiría; los seguidores nuevos parten de una instantánea
+        }
+        synchronized (this) {
+            try {
+                for (int i = 0; i < batch.getTamano(); i++) {
+                    FormatoReplicacion.escribirLectura(escritorLecturas, TablaIds.SENSORES.texto(batch.getSensor(i)),
+                            TablaIds.LOTES.texto(batch.getLote(i)), batch.getTipo(i), batch.getValor(i),
+                            batch.getTiempo(i));
+                }
+                cantidadLecturas += batch.getTamano();
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // ByteArrayOutputStream no falla
+            }
+        }
+    }
+
+    private void aceptar() {
+        while (activo) {
+            try {
+                Socket socket = servidor.accept();
+                socket.setTcpNoDelay(true);
+                Seguidor seguidor = new Seguidor(socket);
+                nuevos.add(seguidor);
+                System.err.println("Réplica conectada desde " + socket.getRemoteSocketAddress());
+            } catch (IOException e) {
+                if (activo) {
+                    System.err.println("Error aceptando una réplica: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void capturarSinFallar() {
+        try {
+            capturar();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error capturando cambios para replicar: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Arma la trama con los cambios desde la captura anterior, la envía a los
+     * seguidores conectados y luego da la instantánea a los nuevos
+     */
+    private void capturar() throws IOException {
+        long capturada = System.nanoTime();
+        abrirTrama();
+        capturarLotes();
+        capturarAlertas();
+
+        // Lecturas pendientes: se alternan los buffers para no frenar a quien
+        // las registra mientras se copian
+        ByteArrayOutputStream lecturas;
+        DataOutputStream escritorUsado;
+        synchronized (this) {
+            lecturas = lecturasPendientes;
+            escritorUsado = escritorLecturas;
+            registros += cantidadLecturas;
+            lecturasPendientes = lecturasRepuesto;
+            escritorLecturas = escritorRepuesto;
+            cantidadLecturas = 0;
+        }
+        lecturas.writeTo(cuerpo);
+        lecturas.reset();
+        lecturasRepuesto = lecturas;
+        escritorRepuesto = escritorUsado;
+
+        Trama trama = cerrarTrama(capturada);
+        for (Seguidor seguidor : seguidores) {
+            seguidor.enviar(trama);
+        }
+
+        Seguidor nuevo;
+        while ((nuevo = nuevos.poll()) != null) {
+            nuevo.enviar(instantanea(capturada));
+            nuevo.iniciar();
+            seguidores.add(nuevo);
+        }
+    }
+
+    private void capturarLotes() throws IOException {
+        List<Lote> actuales = gestorLotes.obtenerTodos();
+        if (sinCambios(actuales)) {
+            return;
+        }
+        Map<String, Lote> vistos = new HashMap<>(actuales.size() * 2);
+        Lote[] lotes = actuales.toArray(new Lote[0]);
+        long[] versiones = new long[lotes.length];
+        for (int i = 0; i < lotes.length; i++) {
+            Lote lote = lotes[i];
+            versiones[i] = lote.getVersion();
+            vistos.put(lote.getId(), lote);
+            Long version = versionesEnviadas.get(lote.getId());
+            if (lotesEnviados.get(lote.getId()) != lote || version == null || version != versiones[i]) {
+                FormatoReplicacion.escribirLote(escritor, lote);
+                registros++;
+                lotesEnviados.put(lote.getId(), lote);
+                versionesEnviadas.put(lote.getId(), versiones[i]);
+            }
+        }
+        for (String id : new ArrayList<>(lotesEnviados.keySet())) {
+            if (!vistos.containsKey(id)) {
+                FormatoReplicacion.escribirLoteEliminado(escritor, id);
+                registros++;
+                lotesEnviados.remove(id);
+                versionesEnviadas.remove(id);
+            }
+        }
+        ultimosLotes = lotes;
+        ultimasVersiones = versiones;
+    }
+
+    // Igual que IndiceSensores.estaVigente: misma lista, mismas identidades y versiones
+    private boolean sinCambios(List<Lote> actuales) {
+        if (actuales.size() != ultimosLotes.length) {
+            return false;
+        }
+        for (int i = 0; i < ultimosLotes.length; i++) {
+            Lote lote = actuales.get(i);
+            if (lote != ultimosLotes[i] || lote.getVersion() != ultimasVersiones[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void capturarAlertas() throws IOException {
+        AlmacenAlertas almacen = alertaService.getAlmacen();
+        List<Alerta> nuevas = new ArrayList<>();
+        synchronized (almacen) {
+            if (almacen.getGeneracion() != generacionAlertas) {
+                FormatoReplicacion.escribirTipo(escritor, FormatoReplicacion.ALERTAS_VACIADAS);
+                registros++;
+                generacionAlertas = almacen.getGeneracion();
+                alertasEnviadas = 0;
+            }
+            almacen.copiarDesde(alertasEnviadas, nuevas);
+        }
+        for (Alerta alerta : nuevas) {
+            FormatoReplicacion.escribirAlerta(escritor, alerta);
+        }
+        registros += nuevas.size();
+        alertasEnviadas += nuevas.size();
+    }
+
+    /**
+     * Estado completo al momento de la captura actual: lotes ya enviados y
+     * alertas hasta la última enviada
+     */
+    private Trama instantanea(long capturada) throws IOException {
+        abrirTrama();
+        FormatoReplicacion.escribirTipo(escritor, FormatoReplicacion.INSTANTANEA);
+        registros++;
+        for (Lote lote : ultimosLotes) {
+            FormatoReplicacion.escribirLote(escritor, lote);
+            registros++;
+        }
+        List<Alerta> alertas = new ArrayList<>(alertasEnviadas);
+        AlmacenAlertas almacen = alertaService.getAlmacen();
+        synchronized (almacen) {
+            if (almacen.getGeneracion() == generacionAlertas) {
+                almacen.copiarDesde(0, alertas);
+            }
+        }
+        for (int i = 0; i < Math.min(alertasEnviadas, alertas.size()); i++) {
+            FormatoReplicacion.escribirAlerta(escritor, alertas.get(i));
+            registros++;
+        }
+        // Misma secuencia que la trama de esta captura: el seguidor queda igual
+        // que los que la recibieron
+        return cerrarTrama(capturada, secuencia);
+    }
+
+    /**
+     * Trama con el único registro {@link FormatoReplicacion#RESINCRONIZAR};
+     * lleva la secuencia actual, como la instantánea
+     */
+    private Trama resincronizacion() throws IOException {
+        abrirTrama();
+        FormatoReplicacion.escribirTipo(escritor, FormatoReplicacion.RESINCRONIZAR);
+        registros++;
+        return cerrarTrama(System.nanoTime(), secuencia);
+    }
+
+    // La cabecera se reserva al principio del cuerpo y se completa al cerrar
+    private void abrirTrama() {
+        cuerpo.reset();
+        cuerpo.write(new byte[FormatoReplicacion.BYTES_CABECERA], 0, FormatoReplicacion.BYTES_CABECERA);
+        registros = 0;
+    }
+
+    private Trama cerrarTrama(long capturada) {
+        long numero;
+        synchronized (this) {
+            numero = ++secuencia;
+        }
+        return cerrarTrama(capturada, numero);
+    }
+
+    private Trama cerrarTrama(long capturada, long numero) {
+        byte[] datos = cuerpo.toByteArray();
+        ByteBuffer.wrap(datos).putInt(datos.length - FormatoReplicacion.BYTES_CABECERA).putLong(numero)
+                .putLong(epoca).putLong(System.currentTimeMillis()).putInt(registros);
+        return new Trama(numero, capturada, datos, false);
+    }
+
+    private static class Trama {
+        final long secuencia;
+        final long capturadaNanos;
+        final byte[] datos;
+        // Última trama de la conexión: después de escribirla se cierra
+        final boolean ultima;
+
+        Trama(long secuencia, long capturadaNanos, byte[] datos, boolean ultima) {
+            this.secuencia = secuencia;
+            this.capturadaNanos = capturadaNanos;
+            this.datos = datos;
+            this.ultima = ultima;
+        }
+    }
+
+    /**
+     * Conexión con un seguidor: un hilo escribe las tramas en cola sin esperar
+     * confirmaciones y otro lee las confirmaciones
+     */
+    private class Seguidor {
+        private final Socket socket;
+        private final BlockingQueue<Trama> cola = new ArrayBlockingQueue<>(MAX_TRAMAS_EN_COLA);
+        // Tramas escritas y todavía sin confirmar, en orden
+        private final ArrayDeque<Trama> enVuelo = new ArrayDeque<>();
+        private volatile long confirmada;
+        private volatile boolean cerrado;
+        // Ya se encoló el pedido de resincronización; no se encola nada más
+        private boolean resincronizando;
+
+        Seguidor(Socket socket) {
+            this.socket = socket;
+        }
+
+        void iniciar() {
+            Thread emisor = new Thread(this::emitir, "agrosense-replicacion-envio");
+            emisor.setDaemon(true);
+            emisor.start();
+            Thread receptor = new Thread(this::recibirConfirmaciones, "agrosense-replicacion-confirmacion");
+            receptor.setDaemon(true);
+            receptor.start();
+        }
+
+        /**
+         * Encola la trama; solo lo llama el hilo capturador
+         */
+        void enviar(Trama trama) throws IOException {
+            if (cerrado || resincronizando || cola.offer(trama)) {
+                return;
+            }
+            // Lo encolado ya no sirve: el seguidor vuelve a empezar desde una instantánea
+            System.err.println("Réplica " + socket.getRemoteSocketAddress()
+                    + " demasiado atrasada; se le pide resincronizar");
+            resincronizando = true;
+            cola.clear();
+            Trama pedido = resincronizacion();
+            cola.offer(new Trama(pedido.secuencia, pedido.capturadaNanos, pedido.datos, true));
+        }
+
+        void terminar() {
+            // Deja que el emisor vacíe la cola antes de cerrar
+            long limite = System.nanoTime() + 2_000_000_000L;
+            try {
+                while (!cerrado && !cola.isEmpty() && System.nanoTime() < limite) {
+                    Thread.sleep(5);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            cerrar();
+        }
+
+        private void emitir() {
+            boolean esperarCierre = false;
+            try {
+                DataOutputStream salida = new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+                while (!cerrado) {
+                    Trama trama = cola.poll(500, TimeUnit.MILLISECONDS);
+                    if (trama == null) {
+                        continue;
+                    }
+                    synchronized (enVuelo) {
+                        enVuelo.add(trama);
+                    }
+                    salida.write(trama.datos);
+                    Metricas.REPLICACION_BYTES.agregar(trama.datos.length);
+                    if (trama.ultima) {
+                        // Se cierra cuando el seguidor corta, para no descartar
+                        // el pedido de resincronización que todavía no leyó
+                        salida.flush();
+                        socket.shutdownOutput();
+                        esperarCierre = true;
+                        return;
+                    }
+                    // Las tramas acumuladas salen juntas
+                    if (cola.isEmpty()) {
+                        salida.flush();
+                    }
+                }
+            } catch (IOException e) {
+                if (!cerrado) {
+                    System.err.println("Réplica " + socket.getRemoteSocketAddress() + " desconectada: "
+                            + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (!esperarCierre) {
+                    cerrar();
+                }
+            }
+        }
+
+        private void recibirConfirmaciones() {
+            try {
+                DataInputStream entrada = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                while (!cerrado) {
+                    long numero = entrada.readLong();
+                    long ahora = System.nanoTime();
+                    Trama ultima = null;
+                    synchronized (enVuelo) {
+                        while (!enVuelo.isEmpty() && enVuelo.peek().secuencia <= numero) {
+                            ultima = enVuelo.poll();
+                        }
+                    }
+                    if (ultima != null) {
+                        Metricas.REPLICACION_RETRASO.registrar(ahora - ultima.capturadaNanos);
+                    }
+                    confirmada = numero;
+                }
+            } catch (IOException e) {
+                // El emisor informa la desconexión
+            } finally {
+                cerrar();
+            }
+        }
+
+        private void cerrar() {
+            if (cerrado) {
+                return;
+            }
+            cerrado = true;
+            seguidores.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ya estaba cerrado
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.agrosense.service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Número de secuencia de un productor o consumidor del anillo. El valor queda
+ * rodeado de relleno para que dos secuencias escritas por hilos distintos no
+ * compartan línea de caché.
+ */
+class Secuencia extends SecuenciaRellenoDerecho {
+
+    private static final VarHandle VALOR;
+
+    static {
+        try {
+            VALOR = MethodHandles.lookup().findVarHandle(SecuenciaValor.class, "valor", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    Secuencia(long inicial) {
+        valor = inicial;
+    }
+
+    long get() {
+        return valor;
+    }
+
+    // Escritura con orden de liberación: suficiente para publicar a otros hilos
+    void set(long nuevo) {
+        VALOR.setRelease(this, nuevo);
+    }
+
+    boolean compararYAsignar(long esperado, long nuevo) {
+        return VALOR.compareAndSet(this, esperado, nuevo);
+    }
+
+    /**
+     * Menor valor entre las secuencias dadas, o {@code porDefecto} si no hay
+     * ninguna
+     */
+    static long minimo(Secuencia[] secuencias, long porDefecto) {
+        long minimo = porDefecto;
+        for (Secuencia s : secuencias) {
+            minimo = Math.min(minimo, s.get());
+        }
+        return minimo;
+    }
+}
+
+abstract class SecuenciaRellenoIzquierdo {
+    long p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class SecuenciaValor extends SecuenciaRellenoIzquierdo {
+    volatile long valor;
+}
+
+abstract class SecuenciaRellenoDerecho extends SecuenciaValor {
+    long p11, p12, p13, p14, p15, p16, p17;
+}
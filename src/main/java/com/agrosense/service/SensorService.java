@@ -1,27 +1,108 @@
 package com.agrosense.service;
 
+import com.agrosense.model.MedicionBatch;
 import com.agrosense.model.Sensor;
-import java.util.Random;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Lecturas simuladas de los sensores registrados. Cada sensor recibe un estado
+ * propio en {@link SimuladorSensores} sembrado a partir de su id, así que con
+ * la misma semilla se repiten las mismas series. Sensores distintos se leen en
+ * paralelo sin bloquearse; solo el alta de un sensor nuevo se sincroniza.
+ */
 public class SensorService {
-    private Random random;
+    // Probabilidad de que una lectura inicie una falla simulada
+    private static final double PROBABILIDAD_FALLA = 0.001;
+
+    private final long semilla;
+    private final SimuladorSensores simulador;
+    private final Map<String, Integer> posicionSimulada;
+
+    // Posición en el simulador de cada sensor del último índice leído
+    private volatile Resolucion resuelta;
 
     public SensorService() {
-        this.random = new Random();
+        this(System.nanoTime());
+    }
+
+    public SensorService(long semilla) {
+        this(semilla, ZoneOffset.UTC);
+    }
+
+    /**
+     * @param zona desfase respecto de UTC de la hora del día simulada
+     */
+    public SensorService(long semilla, ZoneOffset zona) {
+        this.semilla = semilla;
+        this.simulador = new SimuladorSensores(64, PROBABILIDAD_FALLA, zona);
+        this.posicionSimulada = new ConcurrentHashMap<>();
     }
 
     // Simula una lectura para un sensor específico
     // En una implementación real, esto conectaría con el hardware
     public double leerSensor(Sensor sensor) {
-        // Simulación básica:
-        // Humedad: 0 - 100%
-        // Temperatura: 10 - 40 °C
-
-        if (sensor.getTipo().equalsIgnoreCase("HUMEDAD")) {
-            return 10 + (90 * random.nextDouble()); // 10% a 100%
-        } else if (sensor.getTipo().equalsIgnoreCase("TEMPERATURA")) {
-            return 15 + (25 * random.nextDouble()); // 15°C a 40°C
+        return simulador.leer(posicionSimulada(sensor), System.currentTimeMillis());
+    }
+
+    private int posicionSimulada(Sensor sensor) {
+        Integer pos = posicionSimulada.get(sensor.getId());
+        if (pos == null) {
+            pos = posicionSimulada.computeIfAbsent(sensor.getId(), id -> simulador
+                    .agregarSensor(IndiceSensores.codificarTipo(sensor.getTipo()),
+                            semilla ^ (id.hashCode() * 0x9E3779B97F4A7C15L)));
+        }
+        return pos;
+    }
+
+    /**
+     * Lee todos los sensores del índice y agrega las lecturas al lote de
+     * mediciones, una por sensor y en el orden del índice. Si el lote tiene
+     * capacidad suficiente no se reserva memoria.
+     */
+    public void leerTodos(IndiceSensores indice, MedicionBatch batch) {
+        leerRango(indice, 0, indice.getCantidadSensores(), batch);
+    }
+
+    /**
+     * Lee los sensores de un lote (posición en el índice) y agrega las lecturas
+     * al lote de mediciones
+     */
+    public void leerLote(IndiceSensores indice, int indiceLote, MedicionBatch batch) {
+        leerRango(indice, indice.getInicioLote(indiceLote), indice.getFinLote(indiceLote), batch);
+    }
+
+    private void leerRango(IndiceSensores indice, int desde, int hasta, MedicionBatch batch) {
+        long inicio = System.nanoTime();
+        Resolucion r = resuelta;
+        if (r == null || r.indice != indice) {
+            int[] posiciones = new int[indice.getCantidadSensores()];
+            for (int i = 0; i < posiciones.length; i++) {
+                posiciones[i] = posicionSimulada(indice.getSensor(i));
+            }
+            r = new Resolucion(indice, posiciones);
+            resuelta = r;
+        }
+        int[] simuladoPorPosicion = r.simuladoPorPosicion;
+        batch.reservar(hasta - desde);
+        long ahora = System.currentTimeMillis();
+        for (int i = desde; i < hasta; i++) {
+            Sensor sensor = indice.getSensor(i);
+            int lote = indice.getLote(indice.getLoteDeSensor(i)).getNumero();
+            batch.agregar(sensor.getNumero(), lote, sensor.getTipo(), simulador.leer(simuladoPorPosicion[i], ahora),
+                    ahora);
+        }
+        Metricas.LECTURA_CICLO.registrarDesde(inicio);
+    }
+
+    private static final class Resolucion {
+        final IndiceSensores indice;
+        final int[] simuladoPorPosicion;
+
+        Resolucion(IndiceSensores indice, int[] simuladoPorPosicion) {
+            this.indice = indice;
+            this.simuladoPorPosicion = simuladoPorPosicion;
         }
-        return 0.0;
     }
 }
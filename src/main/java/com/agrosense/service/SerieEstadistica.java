@@ -0,0 +1,170 @@
+package com.agrosense.service;
+
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.ResultadoTendencia;
+import com.agrosense.model.ResumenIntervalo;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estadísticas de un tipo de sensor dentro de un lote. La ventana de últimas
+ * mediciones y los agregados por intervalo se protegen con el candado propio de
+ * la serie, así que escritores de lotes distintos no compiten entre sí. Los
+ * acumulados totales usan sumadores repartidos en celdas que se combinan al
+ * leerlos.
+ */
+class SerieEstadistica {
+
+    static final int TAMANO_VENTANA = 100;
+
+    // Ventana circular con las últimas mediciones
+    private final double[] ventana = new double[TAMANO_VENTANA];
+    private int siguiente;
+    private int tamano;
+    private double sumaVentana;
+
+    private final SerieMultiResolucion agregados = new SerieMultiResolucion();
+    private final TendenciaIncremental tendencia;
+
+    // Acumulados desde el inicio, sin candado
+    private final LongAdder conteoTotal = new LongAdder();
+    private final DoubleAdder sumaTotal = new DoubleAdder();
+    private final DoubleAccumulator minimo = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+    private final DoubleAccumulator maximo = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+
+    SerieEstadistica(long ventanaTendenciaMillis, long suavizadoMillis) {
+        this.tendencia = new TendenciaIncremental(ventanaTendenciaMillis, suavizadoMillis);
+    }
+
+    void registrar(long epochMillis, double valor) {
+        synchronized (this) {
+            if (tamano == TAMANO_VENTANA) {
+                sumaVentana -= ventana[siguiente];
+            } else {
+                tamano++;
+            }
+            ventana[siguiente] = valor;
+            sumaVentana += valor;
+            siguiente = (siguiente + 1) % TAMANO_VENTANA;
+            if (siguiente == 0) {
+                recalcularSuma(); // evita acumular error de redondeo
+            }
+            agregados.agregar(epochMillis, valor);
+            tendencia.agregar(epochMillis, valor);
+        }
+
+        conteoTotal.increment();
+        sumaTotal.add(valor);
+        minimo.accumulate(valor);
+        maximo.accumulate(valor);
+    }
+
+    /**
+     * Registra las filas [desde, hasta) del lote que son del tipo indicado,
+     * tomando el candado una sola vez y combinando los acumulados al final
+     */
+    void registrarLote(MedicionBatch batch, int desde, int hasta, byte tipo) {
+        byte[] tipos = batch.getTipos();
+        double[] valores = batch.getValores();
+        long[] tiempos = batch.getTiempos();
+        int cantidad = 0;
+        double suma = 0;
+        double mn = Double.POSITIVE_INFINITY;
+        double mx = Double.NEGATIVE_INFINITY;
+
+        synchronized (this) {
+            for (int i = desde; i < hasta; i++) {
+                if (tipos[i] != tipo) {
+                    continue;
+                }
+                double valor = valores[i];
+                if (tamano == TAMANO_VENTANA) {
+                    sumaVentana -= ventana[siguiente];
+                } else {
+                    tamano++;
+                }
+                ventana[siguiente] = valor;
+                sumaVentana += valor;
+                siguiente = (siguiente + 1) % TAMANO_VENTANA;
+                if (siguiente == 0) {
+                    recalcularSuma();
+                }
+                agregados.agregar(tiempos[i], valor);
+                tendencia.agregar(tiempos[i], valor);
+
+                cantidad++;
+                suma += valor;
+                mn = Math.min(mn, valor);
+                mx = Math.max(mx, valor);
+            }
+        }
+
+        if (cantidad > 0) {
+            conteoTotal.add(cantidad);
+            sumaTotal.add(suma);
+            minimo.accumulate(mn);
+            maximo.accumulate(mx);
+        }
+    }
+
+    private void recalcularSuma() {
+        double suma = 0;
+        for (int i = 0; i < tamano; i++) {
+            suma += ventana[i];
+        }
+        sumaVentana = suma;
+    }
+
+    synchronized double promedioVentana() {
+        return tamano == 0 ? 0.0 : sumaVentana / tamano;
+    }
+
+    /**
+     * Últimas {@code n} mediciones en orden cronológico (menos si no hay tantas)
+     */
+    synchronized double[] ultimas(int n) {
+        int cantidad = Math.min(n, tamano);
+        double[] resultado = new double[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            int pos = Math.floorMod(siguiente - cantidad + i, TAMANO_VENTANA);
+            resultado[i] = ventana[pos];
+        }
+        return resultado;
+    }
+
+    synchronized List<Double> historico() {
+        List<Double> resultado = new ArrayList<>(tamano);
+        for (double valor : ultimas(tamano)) {
+            resultado.add(valor);
+        }
+        return resultado;
+    }
+
+    synchronized List<ResumenIntervalo> consultar(long desdeMillis, long hastaMillis, long resolucionMillis) {
+        return agregados.consultar(desdeMillis, hastaMillis, resolucionMillis);
+    }
+
+    synchronized ResultadoTendencia tendencia() {
+        return tendencia.calcular();
+    }
+
+    long conteoTotal() {
+        return conteoTotal.sum();
+    }
+
+    double promedioTotal() {
+        long n = conteoTotal.sum();
+        return n == 0 ? 0.0 : sumaTotal.sum() / n;
+    }
+
+    double minimo() {
+        return minimo.get();
+    }
+
+    double maximo() {
+        return maximo.get();
+    }
+}
@@ -0,0 +1,289 @@
+package com.agrosense.service;
+
+import com.agrosense.model.ResumenIntervalo;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serie temporal de un sensor agregada en varios niveles de resolución
+ * (minuto, hora y día). Cada nivel guarda mínimo, máximo, suma y cantidad por
+ * intervalo y se actualiza de forma incremental con cada medición, de modo que
+ * las consultas de rangos largos no recorren las lecturas crudas.
+ */
+public class SerieMultiResolucion {
+
+    public static final long MINUTO = 60_000L;
+    public static final long HORA = 60 * MINUTO;
+    public static final long DIA = 24 * HORA;
+
+    // Niveles ordenados del más fino al más grueso
+    private final NivelAgregacion[] niveles;
+
+    public SerieMultiResolucion() {
+        this.niveles = new NivelAgregacion[] {
+                new NivelAgregacion(MINUTO, 7 * 24 * 60), // 7 días por minuto
+                new NivelAgregacion(HORA, 180 * 24), // 180 días por hora
+                new NivelAgregacion(DIA, 10 * 366) // 10 años por día
+        };
+    }
+
+    /**
+     * Registra una medición en todos los niveles de agregación
+     */
+    public void agregar(long epochMillis, double valor) {
+        for (NivelAgregacion nivel : niveles) {
+            nivel.agregar(epochMillis, valor);
+        }
+    }
+
+    /**
+     * Consulta el rango [desde, hasta) con la resolución pedida. Se usa el nivel
+     * más grueso cuyo intervalo no supere la resolución (pasando a uno más
+     * grueso si el elegido ya no conserva el inicio del rango) y sus intervalos
+     * se combinan hasta alcanzar la resolución solicitada. Los grupos se cuentan
+     * desde {@code desdeMillis}: el resultado k empieza en
+     * {@code desde + k * resolución}, y un intervalo del nivel que empieza antes
+     * de {@code desde} cuenta en el primero.
+     */
+    public List<ResumenIntervalo> consultar(long desdeMillis, long hastaMillis, long resolucionMillis) {
+        List<ResumenIntervalo> resultado = new ArrayList<>();
+        if (hastaMillis <= desdeMillis) {
+            return resultado;
+        }
+
+        int elegido = 0;
+        for (int i = 0; i < niveles.length; i++) {
+            if (niveles[i].ancho <= resolucionMillis) {
+                elegido = i;
+            }
+        }
+        while (elegido < niveles.length - 1 && !niveles[elegido].cubre(desdeMillis)) {
+            elegido++;
+        }
+
+        NivelAgregacion nivel = niveles[elegido];
+        long grupo = Math.max(resolucionMillis, nivel.ancho);
+        nivel.combinar(desdeMillis, hastaMillis, grupo, resultado);
+        return resultado;
+    }
+
+    /**
+     * Ancho del intervalo del nivel que se usaría para la resolución dada
+     */
+    public long anchoParaResolucion(long resolucionMillis) {
+        long ancho = niveles[0].ancho;
+        for (NivelAgregacion nivel : niveles) {
+            if (nivel.ancho <= resolucionMillis) {
+                ancho = nivel.ancho;
+            }
+        }
+        return ancho;
+    }
+
+    public void limpiar() {
+        for (NivelAgregacion nivel : niveles) {
+            nivel.limpiar();
+        }
+    }
+
+    /**
+     * Buffer circular de intervalos de un mismo ancho, en orden cronológico.
+     * Los intervalos sin mediciones no se almacenan.
+     */
+    static class NivelAgregacion {
+        private static final int CAPACIDAD_INICIAL = 16;
+
+        final long ancho;
+        private final int capacidadMaxima;
+        private int capacidad;
+        private long[] inicio;
+        private double[] min;
+        private double[] max;
+        private double[] suma;
+        private long[] conteo;
+        private int cabeza; // posición física del intervalo más antiguo
+        private int tamano;
+
+        NivelAgregacion(long ancho, int capacidadMaxima) {
+            this.ancho = ancho;
+            this.capacidadMaxima = capacidadMaxima;
+            reservar(Math.min(CAPACIDAD_INICIAL, capacidadMaxima));
+        }
+
+        // Los arreglos crecen bajo demanda hasta la capacidad máxima
+        private void reservar(int nuevaCapacidad) {
+            long[] nInicio = new long[nuevaCapacidad];
+            double[] nMin = new double[nuevaCapacidad];
+            double[] nMax = new double[nuevaCapacidad];
+            double[] nSuma = new double[nuevaCapacidad];
+            long[] nConteo = new long[nuevaCapacidad];
+            for (int i = 0; i < tamano; i++) {
+                int p = fisico(i);
+                nInicio[i] = inicio[p];
+                nMin[i] = min[p];
+                nMax[i] = max[p];
+                nSuma[i] = suma[p];
+                nConteo[i] = conteo[p];
+            }
+            inicio = nInicio;
+            min = nMin;
+            max = nMax;
+            suma = nSuma;
+            conteo = nConteo;
+            capacidad = nuevaCapacidad;
+            cabeza = 0;
+        }
+
+        private boolean lleno() {
+            if (tamano < capacidad) {
+                return false;
+            }
+            if (capacidad < capacidadMaxima) {
+                reservar(Math.min(capacidad * 2, capacidadMaxima));
+                return false;
+            }
+            return true;
+        }
+
+        void agregar(long epochMillis, double valor) {
+            long intervalo = Math.floorDiv(epochMillis, ancho) * ancho;
+
+            if (tamano > 0) {
+                int ultimo = fisico(tamano - 1);
+                if (inicio[ultimo] == intervalo) {
+                    acumular(ultimo, valor);
+                    return;
+                }
+                if (intervalo < inicio[ultimo]) {
+                    insertarAtrasado(intervalo, valor);
+                    return;
+                }
+            }
+
+            int pos;
+            if (lleno()) {
+                // Se descarta el intervalo más antiguo
+                pos = cabeza;
+                cabeza = (cabeza + 1) % capacidad;
+            } else {
+                pos = fisico(tamano);
+                tamano++;
+            }
+            iniciar(pos, intervalo, valor);
+        }
+
+        // Medición fuera de orden: poco frecuente, se admite un costo O(n)
+        private void insertarAtrasado(long intervalo, double valor) {
+            int logico = buscarDesde(intervalo);
+            if (logico < tamano && inicio[fisico(logico)] == intervalo) {
+                acumular(fisico(logico), valor);
+                return;
+            }
+            boolean lleno = lleno();
+            if (logico == 0 && lleno) {
+                return; // más antiguo que lo que se conserva
+            }
+            if (lleno) {
+                cabeza = (cabeza + 1) % capacidad;
+                tamano--;
+                logico--;
+            }
+            for (int i = tamano; i > logico; i--) {
+                copiar(fisico(i - 1), fisico(i));
+            }
+            tamano++;
+            iniciar(fisico(logico), intervalo, valor);
+        }
+
+        boolean cubre(long desdeMillis) {
+            return tamano < capacidadMaxima || inicio[cabeza] <= desdeMillis;
+        }
+
+        // Grupos de ancho "grupo" alineados a desdeMillis
+        void combinar(long desdeMillis, long hastaMillis, long grupo, List<ResumenIntervalo> destino) {
+            int i = buscarDesde(Math.floorDiv(desdeMillis, ancho) * ancho);
+
+            long grupoActual = Long.MIN_VALUE;
+            double gMin = 0, gMax = 0, gSuma = 0;
+            long gConteo = 0;
+
+            for (; i < tamano; i++) {
+                int p = fisico(i);
+                if (inicio[p] >= hastaMillis) {
+                    break;
+                }
+                long g = desdeMillis + Math.max(0, Math.floorDiv(inicio[p] - desdeMillis, grupo)) * grupo;
+                if (g != grupoActual) {
+                    if (gConteo > 0) {
+                        destino.add(new ResumenIntervalo(grupoActual, grupo, gMin, gMax, gSuma / gConteo, gConteo));
+                    }
+                    grupoActual = g;
+                    gMin = min[p];
+                    gMax = max[p];
+                    gSuma = suma[p];
+                    gConteo = conteo[p];
+                } else {
+                    gMin = Math.min(gMin, min[p]);
+                    gMax = Math.max(gMax, max[p]);
+                    gSuma += suma[p];
+                    gConteo += conteo[p];
+                }
+            }
+            if (gConteo > 0) {
+                destino.add(new ResumenIntervalo(grupoActual, grupo, gMin, gMax, gSuma / gConteo, gConteo));
+            }
+        }
+
+        // Primer índice lógico cuyo inicio es >= al valor buscado
+        private int buscarDesde(long desde) {
+            int bajo = 0;
+            int alto = tamano;
+            while (bajo < alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (inicio[fisico(medio)] < desde) {
+                    bajo = medio + 1;
+                } else {
+                    alto = medio;
+                }
+            }
+            return bajo;
+        }
+
+        private int fisico(int logico) {
+            int p = cabeza + logico;
+            return p >= capacidad ? p - capacidad : p;
+        }
+
+        private void iniciar(int pos, long intervalo, double valor) {
+            inicio[pos] = intervalo;
+            min[pos] = valor;
+            max[pos] = valor;
+            suma[pos] = valor;
+            conteo[pos] = 1;
+        }
+
+        private void acumular(int pos, double valor) {
+            if (valor < min[pos]) {
+                min[pos] = valor;
+            }
+            if (valor > max[pos]) {
+                max[pos] = valor;
+            }
+            suma[pos] += valor;
+            conteo[pos]++;
+        }
+
+        private void copiar(int origen, int destino) {
+            inicio[destino] = inicio[origen];
+            min[destino] = min[origen];
+            max[destino] = max[origen];
+            suma[destino] = suma[origen];
+            conteo[destino] = conteo[origen];
+        }
+
+        void limpiar() {
+            cabeza = 0;
+            tamano = 0;
+        }
+    }
+}
@@ -0,0 +1,829 @@
+package com.agrosense.service;
+
+import com.agrosense.model.Alerta;
+import com.agrosense.model.Lote;
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.ResultadoTendencia;
+import com.agrosense.model.Sensor;
+import com.agrosense.model.SensorHumedad;
+import com.agrosense.model.SensorTemperatura;
+import com.agrosense.model.TipoSensor;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * API HTTP local (com.sun.net.httpserver) para consultar el estado y enviar
+ * lecturas por lotes sin pasar por la interfaz.
+ *
+ * <pre>
+ * POST   /api/lecturas                     lecturas en JSON por líneas o en tramas binarias
+ * GET    /api/lotes                        lista de lotes
+ * POST   /api/lotes                        crear lote
+ * GET    /api/lotes/{id}                   lote con sus sensores
+ * PUT    /api/lotes/{id}                   reemplazar los datos del lote (conserva los sensores)
+ * DELETE /api/lotes/{id}                   eliminar lote
+ * GET    /api/lotes/{id}/sensores          sensores del lote
+ * POST   /api/lotes/{id}/sensores          agregar sensor
+ * DELETE /api/lotes/{id}/sensores/{sid}    quitar sensor
+ * GET    /api/alertas?desde&amp;hasta&amp;nivel&amp;lote&amp;limite&amp;orden
+ * GET    /api/estadisticas[/{id}]          resumen por lote y tipo de sensor
+ * GET    /api/historial/{sid}?desde&amp;hasta&amp;limite   lecturas crudas del sensor
+ * </pre>
+ *
+ * Las solicitudes se atienden en un grupo fijo de hilos con cola acotada;
+ * cuando la cola se llena, el hilo que acepta conexiones atiende la
+ * solicitud él mismo y deja de aceptar mientras tanto. Las respuestas se
+ * escriben por partes (chunked) a medida que se generan, comprimidas con gzip
+ * si el cliente lo acepta, y la conexión se mantiene abierta entre
+ * solicitudes.
+ */
+public class ServidorApi {
+
+    public static final int HILOS_POR_DEFECTO = 4;
+    private static final int COLA_MAXIMA = 256;
+    private static final int PAGINA_ALERTAS = 1000;
+    private static final int PAGINA_HISTORIAL = 4096;
+    private static final int LECTURAS_POR_LOTE = ServidorIngesta.MAX_LECTURAS_TRAMA;
+    private static final int MAX_CUERPO_JSON = 1 << 20;
+
+    static {
+        // Los encabezados y cada parte de la respuesta salen en escrituras
+        // separadas; con Nagle activo cada solicitud espera el ACK retardado
+        // del cliente (~40 ms). Se lee al crear el primer servidor HTTP.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final GestorLotes gestorLotes;
+    private final AlertaService alertaService;
+    private final EstadisticasService estadisticasService;
+    private final IngestaService ingestaService;
+    private final int puerto;
+    private final int hilos;
+
+    private HttpServer servidor;
+    private ThreadPoolExecutor ejecutor;
+    private volatile IndiceSensores indice;
+
+    // Lote de mediciones reutilizado por cada hilo de atención
+    private final ThreadLocal<MedicionBatch> batches = ThreadLocal
+            .withInitial(() -> new MedicionBatch(LECTURAS_POR_LOTE));
+
+    /**
+     * @param puerto puerto TCP (0 elige uno libre)
+     * @param hilos  hilos que atienden solicitudes
+     */
+    public ServidorApi(GestorLotes gestorLotes, AlertaService alertaService, EstadisticasService estadisticasService,
+            IngestaService ingestaService, int puerto, int hilos) {
+        if (hilos <= 0) {
+            throw new IllegalArgumentException("La cantidad de hilos debe ser mayor a 0");
+        }
+        this.gestorLotes = gestorLotes;
+        this.alertaService = alertaService;
+        this.estadisticasService = estadisticasService;
+        this.ingestaService = ingestaService;
+        this.puerto = puerto;
+        this.hilos = hilos;
+    }
+
+    public synchronized void iniciar() throws IOException {
+        if (servidor != null) {
+            return;
+        }
+        AtomicInteger numeroHilo = new AtomicInteger();
+        ejecutor = new ThreadPoolExecutor(hilos, hilos, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(COLA_MAXIMA), r -> {
+                    Thread hilo = new Thread(r, "agrosense-api-" + numeroHilo.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        servidor = HttpServer.create(new InetSocketAddress(puerto), COLA_MAXIMA);
+        servidor.setExecutor(ejecutor);
+        servidor.createContext("/api/lecturas", manejador(this::lecturas));
+        servidor.createContext("/api/lotes", manejador(this::lotes));
+        servidor.createContext("/api/alertas", manejador(this::alertas));
+        servidor.createContext("/api/estadisticas", manejador(this::estadisticas));
+        servidor.createContext("/api/historial", manejador(this::historial));
+        servidor.start();
+    }
+
+    public synchronized void detener() {
+        if (servidor == null) {
+            return;
+        }
+        servidor.stop(1);
+        ejecutor.shutdown();
+        servidor = null;
+    }
+
+    public int getPuerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    // ---- Lecturas ----
+
+    private void lecturas(HttpExchange ex) throws IOException {
+        exigirMetodo(ex, "POST");
+        String tipo = ex.getRequestHeaders().getFirst("Content-Type");
+        ResumenIngesta resumen = new ResumenIngesta();
+        MedicionBatch batch = batches.get();
+        batch.limpiar();
+        String error = null;
+        try (InputStream cuerpo = cuerpo(ex)) {
+            if (tipo != null && tipo.startsWith("application/octet-stream")) {
+                leerTramas(cuerpo, batch, resumen);
+            } else {
+                leerLineasJson(cuerpo, batch, resumen);
+            }
+            procesar(batch, resumen);
+        } catch (IllegalArgumentException e) {
+            // Los bloques anteriores al error ya se ingirieron: se informa
+            // cuántas lecturas quedaron aceptadas para que el cliente reanude
+            error = e.getMessage();
+            Metricas.API_ERRORES.incrementar();
+        } finally {
+            batch.limpiar();
+        }
+
+        try (Writer w = responder(ex, error == null ? 200 : 400)) {
+            w.write('{');
+            if (error != null) {
+                JsonPlano.escribirClave(w, "error", true);
+                JsonPlano.escribirTexto(w, error);
+                w.write(',');
+            }
+            w.write("\"recibidas\":" + resumen.recibidas + ",\"aceptadas\":" + resumen.aceptadas
+                    + ",\"desconocidas\":" + resumen.desconocidas + "}");
+        }
+    }
+
+    /**
+     * Una lectura por línea: {"sensor":"S1","valor":55.2,"fecha":1700000000000}.
+     * La fecha (epoch en milisegundos) es opcional.
+     */
+    private void leerLineasJson(InputStream cuerpo, MedicionBatch batch, ResumenIngesta resumen) throws IOException {
+        BufferedReader lector = new BufferedReader(new InputStreamReader(cuerpo, StandardCharsets.UTF_8), 1 << 16);
+        IndiceSensores indiceActual = indice();
+        Map<String, String> campos = new HashMap<>();
+        String linea;
+        int numeroLinea = 0;
+        while ((linea = lector.readLine()) != null) {
+            numeroLinea++;
+            if (linea.isBlank()) {
+                continue;
+            }
+            try {
+                JsonPlano.leerObjeto(linea, campos);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Línea " + numeroLinea + ": " + e.getMessage());
+            }
+            String fecha = campos.get("fecha");
+            agregarLectura(indiceActual, batch, resumen, indiceActual.buscarSensor(requerido(campos, "sensor")),
+                    numero(requerido(campos, "valor"), "valor"),
+                    fecha == null ? System.currentTimeMillis() : (long) numero(fecha, "fecha"));
+        }
+    }
+
+    /**
+     * Tramas en el mismo formato binario que {@link ServidorIngesta}, una tras
+     * otra hasta el final del cuerpo
+     */
+    private void leerTramas(InputStream cuerpo, MedicionBatch batch, ResumenIngesta resumen) throws IOException {
+        DataInputStream datos = new DataInputStream(new BufferedInputStream(cuerpo, 1 << 16));
+        IndiceSensores indiceActual = indice();
+        while (true) {
+            int cantidad;
+            try {
+                cantidad = datos.readInt();
+            } catch (EOFException e) {
+                return;
+            }
+            if (cantidad <= 0 || cantidad > ServidorIngesta.MAX_LECTURAS_TRAMA) {
+                throw new IllegalArgumentException("Trama con cantidad inválida: " + cantidad);
+            }
+            try {
+                for (int i = 0; i < cantidad; i++) {
+                    int sensor = datos.readInt();
+                    long epochMillis = datos.readLong();
+                    double valor = datos.readDouble();
+                    agregarLectura(indiceActual, batch, resumen, indiceActual.buscarPorNumero(sensor), valor,
+                            epochMillis);
+                }
+            } catch (EOFException e) {
+                throw new IllegalArgumentException("Trama incompleta");
+            }
+        }
+    }
+
+    private void agregarLectura(IndiceSensores indiceActual, MedicionBatch batch, ResumenIngesta resumen,
+            int posicion, double valor, long epochMillis) {
+        resumen.recibidas++;
+        if (posicion < 0) {
+            resumen.desconocidas++;
+            return;
+        }
+        Sensor sensor = indiceActual.getSensor(posicion);
+        Lote lote = indiceActual.getLote(indiceActual.getLoteDeSensor(posicion));
+        batch.agregar(sensor.getNumero(), lote.getNumero(), sensor.getTipo(), valor, epochMillis);
+        if (batch.getTamano() == LECTURAS_POR_LOTE) {
+            procesar(batch, resumen);
+        }
+    }
+
+    private void procesar(MedicionBatch batch, ResumenIngesta resumen) {
+        if (batch.getTamano() > 0) {
+            resumen.aceptadas += ingestaService.procesarLote(batch);
+            batch.limpiar();
+        }
+    }
+
+    private IndiceSensores indice() {
+        IndiceSensores actual = indice;
+        if (actual == null || !actual.estaVigente(gestorLotes)) {
+            actual = new IndiceSensores(gestorLotes);
+            indice = actual;
+        }
+        return actual;
+    }
+
+    private static class ResumenIngesta {
+        long recibidas;
+        long aceptadas;
+        long desconocidas;
+    }
+
+    // ---- Lotes y sensores ----
+
+    private void lotes(HttpExchange ex) throws IOException {
+        String[] partes = segmentos(ex, "/api/lotes");
+        String metodo = ex.getRequestMethod();
+
+        if (partes.length == 0) {
+            if (metodo.equals("GET")) {
+                try (Writer w = responder(ex, 200)) {
+                    w.write('[');
+                    boolean primero = true;
+                    for (Lote lote : gestorLotes.obtenerTodos()) {
+                        if (!primero) {
+                            w.write(',');
+                        }
+                        escribirLote(w, lote, false);
+                        primero = false;
+                    }
+                    w.write(']');
+                }
+                return;
+            }
+            exigirMetodo(ex, "POST");
+            Map<String, String> campos = leerJson(ex);
+            Lote lote = crearLote(requerido(campos, "id"), campos);
+            gestorLotes.registrarLote(lote);
+            try (Writer w = responder(ex, 201)) {
+                escribirLote(w, lote, true);
+            }
+            return;
+        }
+
+        String loteId = partes[0];
+        if (partes.length == 1) {
+            switch (metodo) {
+                case "GET":
+                    Lote lote = buscarLote(loteId);
+                    try (Writer w = responder(ex, 200)) {
+                        escribirLote(w, lote, true);
+                    }
+                    return;
+                case "PUT":
+                    Lote anterior = buscarLote(loteId);
+                    Lote nuevo = crearLote(loteId, leerJson(ex));
+                    for (Sensor sensor : anterior.getSensores()) {
+                        nuevo.agregarSensor(sensor);
+                    }
+                    gestorLotes.actualizarLote(nuevo);
+                    try (Writer w = responder(ex, 200)) {
+                        escribirLote(w, nuevo, true);
+                    }
+                    return;
+                case "DELETE":
+                    Lote eliminado = buscarLote(loteId);
+                    if (!gestorLotes.eliminarLote(loteId)) {
+                        throw new ErrorHttp(404, "No existe un lote con ID: " + loteId);
+                    }
+                    for (Sensor sensor : eliminado.getSensores()) {
+                        estadisticasService.eliminarLecturas(sensor.getId());
+                    }
+                    sinContenido(ex);
+                    return;
+                default:
+                    throw new ErrorHttp(405, "Método no permitido: " + metodo);
+            }
+        }
+
+        if (!partes[1].equals("sensores") || partes.length > 3) {
+            throw new ErrorHttp(404, "Ruta no encontrada: " + ex.getRequestURI().getPath());
+        }
+        Lote lote = buscarLote(loteId);
+        if (partes.length == 3) {
+            exigirMetodo(ex, "DELETE");
+            if (!lote.eliminarSensor(partes[2])) {
+                throw new ErrorHttp(404, "El lote " + loteId + " no tiene el sensor " + partes[2]);
+            }
+            estadisticasService.eliminarLecturas(partes[2]);
+            sinContenido(ex);
+        } else if (metodo.equals("GET")) {
+            try (Writer w = responder(ex, 200)) {
+                escribirSensores(w, lote);
+            }
+        } else {
+            exigirMetodo(ex, "POST");
+            Map<String, String> campos = leerJson(ex);
+            String sensorId = requerido(campos, "id");
+            if (sensorId.isBlank()) {
+                throw new IllegalArgumentException("El ID del sensor no puede estar vacío");
+            }
+            if (indice().buscarSensor(sensorId) >= 0) {
+                throw new IllegalArgumentException("Ya existe un sensor con ID: " + sensorId);
+            }
+            String ubicacion = campos.getOrDefault("ubicacion", "");
+            Sensor sensor = TipoSensor.desdeTexto(requerido(campos, "tipo")) == TipoSensor.HUMEDAD
+                    ? new SensorHumedad(sensorId, ubicacion)
+                    : new SensorTemperatura(sensorId, ubicacion);
+            String intervalo = campos.get("intervalo");
+            if (intervalo != null) {
+                sensor.setIntervaloMuestreoMs((long) numero(intervalo, "intervalo"));
+            }
+            lote.agregarSensor(sensor);
+            try (Writer w = responder(ex, 201)) {
+                escribirSensor(w, sensor);
+            }
+        }
+    }
+
+    private static Lote crearLote(String id, Map<String, String> campos) {
+        Lote lote = new Lote(id, requerido(campos, "nombre"), campos.getOrDefault("cultivo", ""),
+                numero(requerido(campos, "area"), "area"));
+        String fechaSiembra = campos.get("fechaSiembra");
+        if (fechaSiembra != null) {
+            try {
+                lote.setFechaSiembra(LocalDate.parse(fechaSiembra));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Fecha de siembra no válida: " + fechaSiembra);
+            }
+        }
+        if (campos.containsKey("etapa")) {
+            lote.setEtapaCrecimiento(campos.get("etapa"));
+        }
+        if (campos.containsKey("notas")) {
+            lote.setNotas(campos.get("notas"));
+        }
+        return lote;
+    }
+
+    private Lote buscarLote(String loteId) {
+        Optional<Lote> lote = gestorLotes.buscarPorId(loteId);
+        if (lote.isEmpty()) {
+            throw new ErrorHttp(404, "No existe un lote con ID: " + loteId);
+        }
+        return lote.get();
+    }
+
+    private static void escribirLote(Writer w, Lote lote, boolean conSensores) throws IOException {
+        JsonPlano.escribirClave(w.append('{'), "id", true);
+        JsonPlano.escribirTexto(w, lote.getId());
+        JsonPlano.escribirClave(w, "nombre", false);
+        JsonPlano.escribirTexto(w, lote.getNombre());
+        JsonPlano.escribirClave(w, "cultivo", false);
+        JsonPlano.escribirTexto(w, lote.getTipoCultivo());
+        JsonPlano.escribirClave(w, "area", false);
+        JsonPlano.escribirNumero(w, lote.getArea());
+        JsonPlano.escribirClave(w, "fechaSiembra", false);
+        JsonPlano.escribirTexto(w, lote.getFechaSiembra() == null ? null : lote.getFechaSiembra().toString());
+        JsonPlano.escribirClave(w, "etapa", false);
+        JsonPlano.escribirTexto(w, lote.getEtapaCrecimiento());
+        JsonPlano.escribirClave(w, "notas", false);
+        JsonPlano.escribirTexto(w, lote.getNotas());
+        if (conSensores) {
+            JsonPlano.escribirClave(w, "sensores", false);
+            escribirSensores(w, lote);
+        } else {
+            JsonPlano.escribirClave(w, "cantidadSensores", false);
+            w.write(Integer.toString(lote.getSensores().size()));
+        }
+        w.write('}');
+    }
+
+    private static void escribirSensores(Writer w, Lote lote) throws IOException {
+        w.write('[');
+        boolean primero = true;
+        for (Sensor sensor : lote.getSensores()) {
+            if (!primero) {
+                w.write(',');
+            }
+            escribirSensor(w, sensor);
+            primero = false;
+        }
+        w.write(']');
+    }
+
+    private static void escribirSensor(Writer w, Sensor sensor) throws IOException {
+        JsonPlano.escribirClave(w.append('{'), "id", true);
+        JsonPlano.escribirTexto(w, sensor.getId());
+        JsonPlano.escribirClave(w, "numero", false);
+        w.write(Integer.toString(sensor.getNumero()));
+        JsonPlano.escribirClave(w, "tipo", false);
+        JsonPlano.escribirTexto(w, sensor.getTipo().name());
+        JsonPlano.escribirClave(w, "ubicacion", false);
+        JsonPlano.escribirTexto(w, sensor.getUbicacion());
+        JsonPlano.escribirClave(w, "intervalo", false);
+        w.write(Long.toString(sensor.getIntervaloMuestreoMs()));
+        w.write('}');
+    }
+
+    // ---- Alertas ----
+
+    private void alertas(HttpExchange ex) throws IOException {
+        exigirMetodo(ex, "GET");
+        Map<String, String> parametros = parametros(ex);
+        String nivel = parametros.get("nivel");
+        AlmacenAlertas.Filtro filtro = new AlmacenAlertas.Filtro(
+                nivel == null ? null : nivel(nivel), parametros.get("lote"),
+                fecha(parametros.get("desde"), false), fecha(parametros.get("hasta"), true));
+        int limite = parametros.containsKey("limite") ? (int) numero(parametros.get("limite"), "limite")
+                : Integer.MAX_VALUE;
+        if (limite < 0) {
+            throw new IllegalArgumentException("El límite no puede ser negativo");
+        }
+        boolean descendente = !"asc".equalsIgnoreCase(parametros.get("orden"));
+
+        AlmacenAlertas almacen = alertaService.getAlmacen();
+        AlmacenAlertas.Resultado resultado = almacen.consultar(filtro, AlmacenAlertas.Orden.FECHA, descendente);
+        int total = Math.min(resultado.getTamano(), limite);
+
+        // Se copian y escriben por páginas para no bloquear el almacén
+        // mientras el cliente lee la respuesta
+        try (Writer w = responder(ex, 200)) {
+            w.write('[');
+            boolean primero = true;
+            for (int desde = 0; desde < total; desde += PAGINA_ALERTAS) {
+                for (Alerta alerta : almacen.obtener(resultado, desde, Math.min(PAGINA_ALERTAS, total - desde))) {
+                    if (!primero) {
+                        w.write(',');
+                    }
+                    escribirAlerta(w, alerta);
+                    primero = false;
+                }
+            }
+            w.write(']');
+        }
+    }
+
+    private static void escribirAlerta(Writer w, Alerta alerta) throws IOException {
+        JsonPlano.escribirClave(w.append('{'), "fecha", true);
+        JsonPlano.escribirTexto(w, alerta.getFechaHora().toString());
+        JsonPlano.escribirClave(w, "nivel", false);
+        JsonPlano.escribirTexto(w, alerta.getNivel().name());
+        JsonPlano.escribirClave(w, "lote", false);
+        JsonPlano.escribirTexto(w, alerta.getLoteId());
+        JsonPlano.escribirClave(w, "mensaje", false);
+        JsonPlano.escribirTexto(w, alerta.getMensaje());
+        w.write('}');
+    }
+
+    private static Alerta.Nivel nivel(String texto) {
+        try {
+            return Alerta.Nivel.valueOf(texto.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Nivel de alerta no válido: " + texto);
+        }
+    }
+
+    /**
+     * Fecha y hora ISO (2024-05-01T08:00) o solo fecha; una fecha sola como
+     * límite final incluye todo ese día
+     */
+    private static LocalDateTime fecha(String texto, boolean limiteFinal) {
+        if (texto == null) {
+            return null;
+        }
+        try {
+            if (texto.length() <= 10) {
+                LocalDate dia = LocalDate.parse(texto);
+                return limiteFinal ? dia.plusDays(1).atStartOfDay().minusNanos(1) : dia.atStartOfDay();
+            }
+            return LocalDateTime.parse(texto);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha no válida: " + texto);
+        }
+    }
+
+    // ---- Estadísticas ----
+
+    private void estadisticas(HttpExchange ex) throws IOException {
+        exigirMetodo(ex, "GET");
+        String[] partes = segmentos(ex, "/api/estadisticas");
+        if (partes.length > 1) {
+            throw new ErrorHttp(404, "Ruta no encontrada: " + ex.getRequestURI().getPath());
+        }
+        if (partes.length == 1) {
+            Lote lote = buscarLote(partes[0]);
+            try (Writer w = responder(ex, 200)) {
+                escribirEstadisticas(w, lote);
+            }
+            return;
+        }
+        try (Writer w = responder(ex, 200)) {
+            w.write('[');
+            boolean primero = true;
+            for (Lote lote : gestorLotes.obtenerTodos()) {
+                if (!primero) {
+                    w.write(',');
+                }
+                escribirEstadisticas(w, lote);
+                primero = false;
+            }
+            w.write(']');
+        }
+    }
+
+    private void escribirEstadisticas(Writer w, Lote lote) throws IOException {
+        JsonPlano.escribirClave(w.append('{'), "lote", true);
+        JsonPlano.escribirTexto(w, lote.getId());
+        JsonPlano.escribirClave(w, "nombre", false);
+        JsonPlano.escribirTexto(w, lote.getNombre());
+        for (TipoSensor tipo : TipoSensor.values()) {
+            String id = lote.getId();
+            ResultadoTendencia tendencia = estadisticasService.calcularTendencia(id, tipo);
+            JsonPlano.escribirClave(w, tipo.name().toLowerCase(), false);
+            JsonPlano.escribirClave(w.append('{'), "promedio", true);
+            JsonPlano.escribirNumero(w, estadisticasService.calcularPromedioTotal(id, tipo));
+            JsonPlano.escribirClave(w, "minimo", false);
+            JsonPlano.escribirNumero(w, estadisticasService.obtenerMinimo(id, tipo));
+            JsonPlano.escribirClave(w, "maximo", false);
+            JsonPlano.escribirNumero(w, estadisticasService.obtenerMaximo(id, tipo));
+            JsonPlano.escribirClave(w, "mediaExponencial", false);
+            JsonPlano.escribirNumero(w, tendencia.getMediaExponencial());
+            JsonPlano.escribirClave(w, "pendientePorHora", false);
+            JsonPlano.escribirNumero(w, tendencia.getPendientePorHora());
+            JsonPlano.escribirClave(w, "confianza", false);
+            JsonPlano.escribirNumero(w, tendencia.getConfianza());
+            JsonPlano.escribirClave(w, "tendencia", false);
+            JsonPlano.escribirTexto(w, estadisticasService.obtenerTendencia(id, tipo));
+            w.write('}');
+        }
+        w.write('}');
+    }
+
+    // ---- Histórico crudo ----
+
+    private void historial(HttpExchange ex) throws IOException {
+        exigirMetodo(ex, "GET");
+        String[] partes = segmentos(ex, "/api/historial");
+        if (partes.length != 1) {
+            throw new ErrorHttp(404, "Ruta no encontrada: " + ex.getRequestURI().getPath());
+        }
+        if (estadisticasService.getHistorial() == null) {
+            throw new ErrorHttp(404, "El histórico crudo no está habilitado");
+        }
+        Map<String, String> parametros = parametros(ex);
+        LocalDateTime desde = fecha(parametros.get("desde"), false);
+        LocalDateTime hasta = fecha(parametros.get("hasta"), true);
+        long desdeMillis = desde == null ? Long.MIN_VALUE : epochMillis(desde);
+        long hastaMillis = hasta == null ? Long.MAX_VALUE : epochMillis(hasta) + 1;
+        long limite = parametros.containsKey("limite") ? (long) numero(parametros.get("limite"), "limite")
+                : Long.MAX_VALUE;
+        if (limite < 0) {
+            throw new IllegalArgumentException("El límite no puede ser negativo");
+        }
+
+        // Por páginas: cada una retoma desde el último instante leído y salta
+        // las lecturas de ese instante que ya se escribieron
+        long[] tiempos = new long[PAGINA_HISTORIAL];
+        double[] valores = new double[PAGINA_HISTORIAL];
+        try (Writer w = responder(ex, 200)) {
+            w.write('[');
+            long escritas = 0;
+            int repetidas = 0;
+            while (escritas < limite) {
+                int leidas = estadisticasService.consultarLecturas(partes[0], desdeMillis, hastaMillis, tiempos,
+                        valores);
+                if (leidas <= repetidas) {
+                    break;
+                }
+                for (int i = repetidas; i < leidas && escritas < limite; i++) {
+                    if (escritas > 0) {
+                        w.write(',');
+                    }
+                    JsonPlano.escribirClave(w.append('{'), "epochMillis", true);
+                    w.write(Long.toString(tiempos[i]));
+                    JsonPlano.escribirClave(w, "valor", false);
+                    JsonPlano.escribirNumero(w, valores[i]);
+                    w.write('}');
+                    escritas++;
+                }
+                if (leidas < PAGINA_HISTORIAL) {
+                    break;
+                }
+                desdeMillis = tiempos[leidas - 1];
+                repetidas = 0;
+                for (int i = leidas - 1; i >= 0 && tiempos[i] == desdeMillis; i--) {
+                    repetidas++;
+                }
+            }
+            w.write(']');
+        }
+    }
+
+    private static long epochMillis(LocalDateTime fecha) {
+        return fecha.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // ---- Infraestructura HTTP ----
+
+    private interface Atencion {
+        void atender(HttpExchange ex) throws IOException;
+    }
+
+    /**
+     * Error con un código de estado distinto de 400 (los datos inválidos se
+     * informan con IllegalArgumentException)
+     */
+    private static class ErrorHttp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int estado;
+
+        ErrorHttp(int estado, String mensaje) {
+            super(mensaje);
+            this.estado = estado;
+        }
+    }
+
+    private HttpHandler manejador(Atencion atencion) {
+        return ex -> {
+            long inicio = System.nanoTime();
+            try {
+                atencion.atender(ex);
+            } catch (ErrorHttp e) {
+                responderError(ex, e.estado, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                responderError(ex, 400, e.getMessage());
+            } catch (IOException e) {
+                // El cliente cerró la conexión o envió un cuerpo ilegible
+                Metricas.API_ERRORES.incrementar();
+            } catch (RuntimeException e) {
+                System.err.println("Error atendiendo " + ex.getRequestMethod() + " " + ex.getRequestURI() + ": " + e);
+                responderError(ex, 500, "Error interno");
+            } finally {
+                ex.close();
+                Metricas.API_SOLICITUD.registrarDesde(inicio);
+            }
+        };
+    }
+
+    private static void responderError(HttpExchange ex, int estado, String mensaje) {
+        Metricas.API_ERRORES.incrementar();
+        if (ex.getResponseCode() != -1) {
+            return; // la respuesta ya empezó; solo queda cerrar la conexión
+        }
+        try (Writer w = responder(ex, estado)) {
+            JsonPlano.escribirClave(w.append('{'), "error", true);
+            JsonPlano.escribirTexto(w, mensaje);
+            w.write('}');
+        } catch (IOException e) {
+            // El cliente ya no está
+        }
+    }
+
+    /**
+     * Envía los encabezados y devuelve un escritor para el cuerpo, que se
+     * transmite por partes; cerrar el escritor termina la respuesta
+     */
+    private static Writer responder(HttpExchange ex, int estado) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        String aceptadas = ex.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = aceptadas != null && aceptadas.contains("gzip");
+        if (gzip) {
+            ex.getResponseHeaders().set("Content-Encoding", "gzip");
+            ex.getResponseHeaders().set("Vary", "Accept-Encoding");
+        }
+        ex.sendResponseHeaders(estado, 0);
+        OutputStream salida = ex.getResponseBody();
+        if (gzip) {
+            salida = new GZIPOutputStream(salida, 1 << 13);
+        }
+        return new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), 1 << 14);
+    }
+
+    private static void sinContenido(HttpExchange ex) throws IOException {
+        ex.sendResponseHeaders(204, -1);
+    }
+
+    private static void exigirMetodo(HttpExchange ex, String metodo) {
+        if (!ex.getRequestMethod().equals(metodo)) {
+            throw new ErrorHttp(405, "Método no permitido: " + ex.getRequestMethod());
+        }
+    }
+
+    private static InputStream cuerpo(HttpExchange ex) throws IOException {
+        String codificacion = ex.getRequestHeaders().getFirst("Content-Encoding");
+        InputStream cuerpo = ex.getRequestBody();
+        return codificacion != null && codificacion.contains("gzip") ? new GZIPInputStream(cuerpo, 1 << 13) : cuerpo;
+    }
+
+    private static Map<String, String> leerJson(HttpExchange ex) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream cuerpo = cuerpo(ex)) {
+            byte[] buffer = new byte[8192];
+            int leidos;
+            while ((leidos = cuerpo.read(buffer)) > 0) {
+                bytes.write(buffer, 0, leidos);
+                if (bytes.size() > MAX_CUERPO_JSON) {
+                    throw new ErrorHttp(413, "El cuerpo supera " + MAX_CUERPO_JSON + " bytes");
+                }
+            }
+        }
+        return JsonPlano.leerObjeto(bytes.toString(StandardCharsets.UTF_8), new HashMap<>());
+    }
+
+    /**
+     * Segmentos de la ruta después del prefijo del contexto, ya decodificados
+     */
+    private static String[] segmentos(HttpExchange ex, String prefijo) {
+        String resto = ex.getRequestURI().getPath().substring(prefijo.length());
+        if (!resto.isEmpty() && resto.charAt(0) != '/') {
+            throw new ErrorHttp(404, "Ruta no encontrada: " + ex.getRequestURI().getPath());
+        }
+        List<String> partes = new ArrayList<>();
+        for (String parte : resto.split("/")) {
+            if (!parte.isEmpty()) {
+                partes.add(parte);
+            }
+        }
+        return partes.toArray(new String[0]);
+    }
+
+    private static Map<String, String> parametros(HttpExchange ex) {
+        Map<String, String> parametros = new HashMap<>();
+        String consulta = ex.getRequestURI().getRawQuery();
+        if (consulta == null || consulta.isEmpty()) {
+            return parametros;
+        }
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual > 0) {
+                parametros.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                        URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parametros;
+    }
+
+    private static String requerido(Map<String, String> campos, String clave) {
+        String valor = campos.get(clave);
+        if (valor == null) {
+            throw new IllegalArgumentException("Falta el campo '" + clave + "'");
+        }
+        return valor;
+    }
+
+    private static double numero(String texto, String campo) {
+        try {
+            return Double.parseDouble(texto);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El campo '" + campo + "' debe ser numérico: " + texto);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.agrosense.service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servidor de ingesta no bloqueante (java.nio) que recibe lecturas reales de
+ * sensores por TCP y UDP en tramas binarias compactas:
+ *
+ * <pre>
+ * int cantidad                      (1 a MAX_LECTURAS_TRAMA)
+ * cantidad x { int sensor, long epochMillis, double valor }   (20 bytes c/u)
+ * </pre>
+ *
+ * El número de sensor es el de {@link com.agrosense.model.TablaIds#SENSORES}
+ * (campo "numero" de los sensores en la API HTTP), que no cambia mientras el
+ * proceso corre aunque se agreguen o quiten lotes y sensores. Por TCP las
+ * tramas se envían una tras otra en la conexión; por UDP cada datagrama lleva
+ * una trama. Las tramas se leen directamente de buffers directos reutilizados,
+ * sin crear objetos por lectura, y se entregan a un {@link ConsumidorLecturas},
+ * al que se avisa el final de cada trama.
+ *
+ * Un error de E/S en una conexión cierra solo esa conexión. Si falla aceptar
+ * conexiones (por ejemplo, sin descriptores libres) se deja de aceptar durante
+ * {@value #PAUSA_ACEPTAR_MS} ms y se reintenta; los errores de UDP se informan
+ * y el canal sigue abierto.
+ */
+public class ServidorIngesta {
+
+    public static final int BYTES_CABECERA = 4;
+    public static final int BYTES_LECTURA = 20;
+    public static final int MAX_LECTURAS_TRAMA = 4096;
+    private static final int TAMANO_BUFFER = BYTES_CABECERA + MAX_LECTURAS_TRAMA * BYTES_LECTURA;
+    private static final long PAUSA_ACEPTAR_MS = 100;
+
+    private final ConsumidorLecturas consumidor;
+    private final int puertoTcp;
+    private final int puertoUdp;
+
+    private Selector selector;
+    private ServerSocketChannel servidorTcp;
+    private SelectionKey claveTcp;
+    private long reanudarAceptarNanos; // 0 si se está aceptando
+    private DatagramChannel canalUdp;
+    private Thread hilo;
+    private volatile boolean activo;
+
+    // Buffers directos reutilizados entre conexiones
+    private final ArrayDeque<ByteBuffer> poolBuffers = new ArrayDeque<>();
+    private ByteBuffer bufferUdp;
+
+    private final LongAdder lecturasRecibidas = new LongAdder();
+    private final LongAdder tramasRecibidas = new LongAdder();
+    private final LongAdder tramasInvalidas = new LongAdder();
+    private final LongAdder erroresRed = new LongAdder();
+
+    public ServidorIngesta(GestorLotes gestorLotes, ReceptorLecturas receptor, int puertoTcp, int puertoUdp) {
+        this(new EnrutadorLecturas(gestorLotes, receptor), puertoTcp, puertoUdp);
+    }
+
+    /**
+     * @param puertoTcp puerto TCP (0 elige uno libre, -1 desactiva TCP)
+     * @param puertoUdp puerto UDP (0 elige uno libre, -1 desactiva UDP)
+     */
+    public ServidorIngesta(ConsumidorLecturas consumidor, int puertoTcp, int puertoUdp) {
+        this.consumidor = consumidor;
+        this.puertoTcp = puertoTcp;
+        this.puertoUdp = puertoUdp;
+    }
+
+    public synchronized void iniciar() throws IOException {
+        if (activo) {
+            return;
+        }
+        selector = Selector.open();
+        if (puertoTcp >= 0) {
+            servidorTcp = ServerSocketChannel.open();
+            servidorTcp.bind(new InetSocketAddress(puertoTcp));
+            servidorTcp.configureBlocking(false);
+            claveTcp = servidorTcp.register(selector, SelectionKey.OP_ACCEPT);
+        }
+        if (puertoUdp >= 0) {
+            canalUdp = DatagramChannel.open();
+            canalUdp.bind(new InetSocketAddress(puertoUdp));
+            canalUdp.configureBlocking(false);
+            canalUdp.register(selector, SelectionKey.OP_READ);
+            bufferUdp = ByteBuffer.allocateDirect(TAMANO_BUFFER);
+        }
+
+        activo = true;
+        hilo = new Thread(this::bucle, "agrosense-ingesta");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    public synchronized void detener() {
+        if (!activo) {
+            return;
+        }
+        activo = false;
+        selector.wakeup();
+        try {
+            hilo.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPuertoTcp() throws IOException {
+        return ((InetSocketAddress) servidorTcp.getLocalAddress()).getPort();
+    }
+
+    public int getPuertoUdp() throws IOException {
+        return ((InetSocketAddress) canalUdp.getLocalAddress()).getPort();
+    }
+
+    private void bucle() {
+        try {
+            while (activo) {
+                selector.select(reanudarAceptarNanos == 0 ? 500 : PAUSA_ACEPTAR_MS);
+                if (reanudarAceptarNanos != 0 && System.nanoTime() - reanudarAceptarNanos >= 0) {
+                    reanudarAceptarNanos = 0;
+                    claveTcp.interestOps(SelectionKey.OP_ACCEPT);
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey clave = it.next();
+                    it.remove();
+                    if (!clave.isValid()) {
+                        continue;
+                    }
+                    if (clave == claveTcp) {
+                        try {
+                            aceptar();
+                        } catch (IOException e) {
+                            // Se pausa en lugar de reintentar en cada vuelta del selector
+                            erroresRed.increment();
+                            System.err.println("Error aceptando conexiones de ingesta: " + e.getMessage());
+                            clave.interestOps(0);
+                            reanudarAceptarNanos = System.nanoTime() + PAUSA_ACEPTAR_MS * 1_000_000L;
+                        }
+                    } else if (clave.channel() == canalUdp) {
+                        try {
+                            leerUdp();
+                        } catch (IOException e) {
+                            erroresRed.increment();
+                            System.err.println("Error leyendo UDP de ingesta: " + e.getMessage());
+                        }
+                    } else if (clave.isReadable()) {
+                        try {
+                            leerTcp(clave);
+                        } catch (IOException e) {
+                            // Solo se pierde esta conexión
+                            erroresRed.increment();
+                            cerrar(clave);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error en el servidor de ingesta: " + e.getMessage());
+        } finally {
+            cerrarTodo();
+        }
+    }
+
+    private void aceptar() throws IOException {
+        SocketChannel canal;
+        while ((canal = servidorTcp.accept()) != null) {
+            try {
+                canal.configureBlocking(false);
+                canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                canal.register(selector, SelectionKey.OP_READ, tomarBuffer());
+            } catch (IOException e) {
+                // Falló esta conexión, no el servidor
+                erroresRed.increment();
+                canal.close();
+            }
+        }
+    }
+
+    private void leerTcp(SelectionKey clave) throws IOException {
+        SocketChannel canal = (SocketChannel) clave.channel();
+        ByteBuffer buffer = (ByteBuffer) clave.attachment();
+
+        int leidos = canal.read(buffer);
+        if (leidos < 0) {
+            cerrar(clave);
+            return;
+        }
+        buffer.flip();
+        while (buffer.remaining() >= BYTES_CABECERA) {
+            int cantidad = buffer.getInt(buffer.position());
+            if (cantidad <= 0 || cantidad > MAX_LECTURAS_TRAMA) {
+                // Trama corrupta: no hay forma de resincronizar el flujo
+                tramasInvalidas.increment();
+                cerrar(clave);
+                return;
+            }
+            if (buffer.remaining() < BYTES_CABECERA + cantidad * BYTES_LECTURA) {
+                break; // trama incompleta, se espera el resto
+            }
+            buffer.position(buffer.position() + BYTES_CABECERA);
+            procesarLecturas(buffer, cantidad);
+        }
+        buffer.compact();
+    }
+
+    private void leerUdp() throws IOException {
+        while (true) {
+            bufferUdp.clear();
+            if (canalUdp.receive(bufferUdp) == null) {
+                return;
+            }
+            bufferUdp.flip();
+            if (bufferUdp.remaining() < BYTES_CABECERA) {
+                tramasInvalidas.increment();
+                continue;
+            }
+            int cantidad = bufferUdp.getInt();
+            if (cantidad <= 0 || cantidad > MAX_LECTURAS_TRAMA
+                    || bufferUdp.remaining() != cantidad * BYTES_LECTURA) {
+                tramasInvalidas.increment();
+                continue;
+            }
+            procesarLecturas(bufferUdp, cantidad);
+        }
+    }
+
+    private void procesarLecturas(ByteBuffer buffer, int cantidad) {
+        for (int i = 0; i < cantidad; i++) {
+            int sensor = buffer.getInt();
+            long epochMillis = buffer.getLong();
+            double valor = buffer.getDouble();
+            consumidor.aceptar(sensor, epochMillis, valor);
+        }
+        consumidor.finTrama();
+        tramasRecibidas.increment();
+        lecturasRecibidas.add(cantidad);
+    }
+
+    private ByteBuffer tomarBuffer() {
+        ByteBuffer buffer = poolBuffers.pollFirst();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(TAMANO_BUFFER);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private void cerrar(SelectionKey clave) {
+        clave.cancel();
+        Object adjunto = clave.attachment();
+        if (adjunto instanceof ByteBuffer) {
+            poolBuffers.addFirst((ByteBuffer) adjunto);
+            clave.attach(null);
+        }
+        try {
+            clave.channel().close();
+        } catch (IOException e) {
+            // ya estaba cerrado
+        }
+    }
+
+    private void cerrarTodo() {
+        for (SelectionKey clave : selector.keys()) {
+            cerrar(clave);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // ignorado al cerrar
+        }
+    }
+
+    public long getLecturasRecibidas() {
+        return lecturasRecibidas.sum();
+    }
+
+    public long getTramasRecibidas() {
+        return tramasRecibidas.sum();
+    }
+
+    public long getTramasInvalidas() {
+        return tramasInvalidas.sum();
+    }
+
+    public long getErroresRed() {
+        return erroresRed.sum();
+    }
+}
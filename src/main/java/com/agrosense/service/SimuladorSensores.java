@@ -0,0 +1,314 @@
+package com.agrosense.service;
+
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulador determinista de sensores con comportamiento realista:
+ * <ul>
+ * <li>Temperatura con ciclo diario (mínimo al amanecer, máximo a media
+ * tarde)</li>
+ * <li>Humedad del suelo que baja por evaporación (más rápido de día) y sube
+ * gradualmente con cada riego al llegar a un umbral</li>
+ * <li>Fallas inyectadas: valor congelado, picos aislados y lecturas
+ * perdidas</li>
+ * </ul>
+ * Cada sensor tiene su propio generador {@link SplittableRandom} sembrado a
+ * partir de una semilla, así que la misma semilla y los mismos instantes
+ * producen siempre las mismas lecturas. El estado se guarda en arreglos
+ * primitivos, por bloques de {@value #TAMANO_BLOQUE} sensores que no se mueven
+ * al crecer, para simular millones de sensores: se pueden agregar sensores
+ * mientras otros hilos leen, y sensores distintos se leen en paralelo sin
+ * bloqueos. Un mismo sensor no debe leerse desde dos hilos a la vez.
+ *
+ * La hora del día de los ciclos se calcula con un desfase fijo respecto de
+ * UTC (por defecto ninguno), no con la zona del sistema, para que las series
+ * no dependan de la máquina.
+ */
+public class SimuladorSensores {
+
+    private static final byte FALLA_NINGUNA = 0;
+    private static final byte FALLA_CONGELADO = 1;
+    private static final byte FALLA_PICO = 2;
+    private static final byte FALLA_PERDIDA = 3;
+
+    private static final int BITS_BLOQUE = 10;
+    private static final int TAMANO_BLOQUE = 1 << BITS_BLOQUE;
+    private static final int MASCARA_BLOQUE = TAMANO_BLOQUE - 1;
+
+    // % que sube la humedad por hora mientras se riega (riego por goteo, sin saltos bruscos)
+    private static final double RIEGO_POR_HORA = 20.0;
+
+    private final double probabilidadFalla;
+    private final long desfaseZonaMillis;
+
+    // Se reemplaza (nunca se modifica) al agregar un bloque
+    private volatile Bloque[] bloques;
+    private volatile int cantidad;
+
+    /**
+     * Estado de {@value #TAMANO_BLOQUE} sensores contiguos
+     */
+    private static final class Bloque {
+        final byte[] tipo = new byte[TAMANO_BLOQUE];
+        final SplittableRandom[] aleatorio = new SplittableRandom[TAMANO_BLOQUE];
+        final long[] ultimoTiempo = new long[TAMANO_BLOQUE];
+
+        // Temperatura
+        final double[] temperaturaBase = new double[TAMANO_BLOQUE];
+        final double[] amplitud = new double[TAMANO_BLOQUE];
+
+        // Humedad
+        final double[] humedad = new double[TAMANO_BLOQUE];
+        final double[] tasaSecado = new double[TAMANO_BLOQUE]; // % por hora
+        final double[] umbralRiego = new double[TAMANO_BLOQUE];
+        final double[] objetivoRiego = new double[TAMANO_BLOQUE];
+        final boolean[] regando = new boolean[TAMANO_BLOQUE];
+
+        // Fallas
+        final byte[] falla = new byte[TAMANO_BLOQUE];
+        final int[] fallaRestante = new int[TAMANO_BLOQUE];
+        final double[] valorFalla = new double[TAMANO_BLOQUE];
+    }
+
+    /**
+     * Sin desfase: la hora del día es la de UTC
+     *
+     * @param capacidad         cantidad de sensores esperada (crece si hace falta)
+     * @param probabilidadFalla probabilidad de que una lectura inicie una falla
+     */
+    public SimuladorSensores(int capacidad, double probabilidadFalla) {
+        this(capacidad, probabilidadFalla, ZoneOffset.UTC);
+    }
+
+    /**
+     * @param zona desfase respecto de UTC con el que se calcula la hora del día
+     */
+    public SimuladorSensores(int capacidad, double probabilidadFalla, ZoneOffset zona) {
+        this.probabilidadFalla = probabilidadFalla;
+        this.desfaseZonaMillis = zona.getTotalSeconds() * 1000L;
+        this.bloques = new Bloque[0];
+        int bloquesEsperados = (Math.max(1, capacidad) + TAMANO_BLOQUE - 1) >>> BITS_BLOQUE;
+        reservarBloques(bloquesEsperados);
+    }
+
+    /**
+     * Agrega un sensor del tipo dado (códigos de {@link IndiceSensores})
+     *
+     * @return número del sensor dentro del simulador
+     */
+    public synchronized int agregarSensor(byte tipoSensor, long semilla) {
+        int s = cantidad;
+        if ((s >>> BITS_BLOQUE) == bloques.length) {
+            reservarBloques(bloques.length * 2);
+        }
+        Bloque b = bloques[s >>> BITS_BLOQUE];
+        int i = s & MASCARA_BLOQUE;
+        SplittableRandom r = new SplittableRandom(semilla);
+        b.tipo[i] = tipoSensor;
+        b.aleatorio[i] = r;
+        b.temperaturaBase[i] = 18 + 8 * r.nextDouble();
+        b.amplitud[i] = 4 + 5 * r.nextDouble();
+        b.humedad[i] = 50 + 30 * r.nextDouble();
+        b.tasaSecado[i] = 0.8 + 1.7 * r.nextDouble();
+        b.umbralRiego[i] = 35 + 10 * r.nextDouble();
+        b.objetivoRiego[i] = 70 + 15 * r.nextDouble();
+        b.ultimoTiempo[i] = Long.MIN_VALUE;
+        b.falla[i] = FALLA_NINGUNA;
+        cantidad = s + 1;
+        return s;
+    }
+
+    // Los bloques existentes se conservan; solo se copia el directorio
+    private void reservarBloques(int total) {
+        Bloque[] actuales = bloques;
+        if (total <= actuales.length) {
+            return;
+        }
+        Bloque[] nuevos = Arrays.copyOf(actuales, total);
+        for (int k = actuales.length; k < total; k++) {
+            nuevos[k] = new Bloque();
+        }
+        bloques = nuevos;
+    }
+
+    /**
+     * Agrega {@code n} sensores alternando humedad y temperatura, con semillas
+     * derivadas de la semilla base
+     */
+    public void agregarSensores(int n, long semillaBase) {
+        SplittableRandom semillas = new SplittableRandom(semillaBase);
+        for (int i = 0; i < n; i++) {
+            agregarSensor((i & 1) == 0 ? IndiceSensores.TIPO_HUMEDAD : IndiceSensores.TIPO_TEMPERATURA,
+                    semillas.nextLong());
+        }
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    /**
+     * Genera la lectura del sensor en el instante dado y avanza su estado
+     */
+    public double leer(int s, long epochMillis) {
+        Bloque b = bloques[s >>> BITS_BLOQUE];
+        int i = s & MASCARA_BLOQUE;
+        SplittableRandom r = b.aleatorio[i];
+        double valor = b.tipo[i] == IndiceSensores.TIPO_HUMEDAD ? simularHumedad(b, i, epochMillis, r)
+                : simularTemperatura(b, i, epochMillis, r);
+        b.ultimoTiempo[i] = epochMillis;
+        return aplicarFalla(b, i, valor, r);
+    }
+
+    private double horaDelDia(long epochMillis) {
+        long delDia = Math.floorMod(epochMillis + desfaseZonaMillis, 86_400_000L);
+        return delDia / 3_600_000.0;
+    }
+
+    private double simularTemperatura(Bloque b, int i, long epochMillis, SplittableRandom r) {
+        // Mínimo cerca de las 6:00 y máximo cerca de las 15:00
+        double ciclo = Math.sin(2 * Math.PI * (horaDelDia(epochMillis) - 9) / 24);
+        return b.temperaturaBase[i] + b.amplitud[i] * ciclo + 0.3 * r.nextGaussian();
+    }
+
+    private double simularHumedad(Bloque b, int i, long epochMillis, SplittableRandom r) {
+        double[] humedad = b.humedad;
+        if (b.ultimoTiempo[i] != Long.MIN_VALUE) {
+            double horas = Math.max(0, epochMillis - b.ultimoTiempo[i]) / 3_600_000.0;
+            if (b.regando[i]) {
+                humedad[i] += RIEGO_POR_HORA * horas;
+                if (humedad[i] >= b.objetivoRiego[i]) {
+                    humedad[i] = b.objetivoRiego[i];
+                    b.regando[i] = false;
+                }
+            } else {
+                // Se seca más rápido en las horas de sol
+                double sol = Math.max(0, Math.sin(2 * Math.PI * (horaDelDia(epochMillis) - 6) / 24));
+                humedad[i] -= b.tasaSecado[i] * (0.4 + 1.2 * sol) * horas;
+                if (humedad[i] <= b.umbralRiego[i]) {
+                    b.regando[i] = true;
+                }
+            }
+        }
+        return Math.max(0, Math.min(100, humedad[i] + 0.3 * r.nextGaussian()));
+    }
+
+    private double aplicarFalla(Bloque b, int i, double valor, SplittableRandom r) {
+        if (b.falla[i] == FALLA_NINGUNA) {
+            if (probabilidadFalla <= 0 || r.nextDouble() >= probabilidadFalla) {
+                return valor;
+            }
+            double elegido = r.nextDouble();
+            if (elegido < 0.4) {
+                b.falla[i] = FALLA_CONGELADO;
+                b.fallaRestante[i] = 30 + r.nextInt(170);
+                b.valorFalla[i] = valor;
+            } else if (elegido < 0.8) {
+                b.falla[i] = FALLA_PICO;
+                b.fallaRestante[i] = 1;
+                b.valorFalla[i] = b.tipo[i] == IndiceSensores.TIPO_HUMEDAD ? 100 * r.nextDouble()
+                        : valor + (r.nextBoolean() ? 25 : -25);
+            } else {
+                b.falla[i] = FALLA_PERDIDA;
+                b.fallaRestante[i] = 1 + r.nextInt(5);
+            }
+        }
+
+        double resultado = b.falla[i] == FALLA_PERDIDA ? Double.NaN : b.valorFalla[i];
+        if (--b.fallaRestante[i] <= 0) {
+            b.falla[i] = FALLA_NINGUNA;
+        }
+        return resultado;
+    }
+
+    /**
+     * Genera una lectura por sensor del rango [desde, hasta) en el instante
+     * dado
+     */
+    public void generarCiclo(int desde, int hasta, long epochMillis, ConsumidorLecturas destino) {
+        for (int s = desde; s < hasta; s++) {
+            destino.aceptar(s, epochMillis, leer(s, epochMillis));
+        }
+    }
+
+    /**
+     * Genera carga a ritmo fijo: cada sensor produce una lectura por periodo de
+     * tiempo simulado. Los sensores se reparten en bloques contiguos entre los
+     * hilos. El tiempo simulado avanza {@code aceleracion} veces más rápido que
+     * el real (0 = lo más rápido posible), así que las lecturas son las mismas
+     * sin importar la velocidad de la máquina.
+     *
+     * @return cantidad de lecturas generadas
+     */
+    public long ejecutarCarga(ConsumidorLecturas destino, int hilos, long inicioSimuladoMillis, long periodoMs,
+            long duracionSimuladaMs, double aceleracion) throws InterruptedException {
+        LongAdder generadas = new LongAdder();
+        long ciclos = duracionSimuladaMs / periodoMs;
+        long inicioReal = System.nanoTime();
+        Thread[] trabajadores = new Thread[hilos];
+
+        for (int h = 0; h < hilos; h++) {
+            int desde = (int) ((long) cantidad * h / hilos);
+            int hasta = (int) ((long) cantidad * (h + 1) / hilos);
+            trabajadores[h] = new Thread(() -> {
+                for (long c = 0; c < ciclos && !Thread.currentThread().isInterrupted(); c++) {
+                    long simulado = c * periodoMs;
+                    if (aceleracion > 0) {
+                        long objetivo = inicioReal + (long) (TimeUnit.MILLISECONDS.toNanos(simulado) / aceleracion);
+                        long espera = objetivo - System.nanoTime();
+                        if (espera > 0) {
+                            LockSupport.parkNanos(espera);
+                        }
+                    }
+                    generarCiclo(desde, hasta, inicioSimuladoMillis + simulado, destino);
+                    generadas.add(hasta - desde);
+                }
+            }, "simulador-" + h);
+            trabajadores[h].start();
+        }
+        for (Thread t : trabajadores) {
+            t.join();
+        }
+        return generadas.sum();
+    }
+
+    /**
+     * Genera carga de prueba con millones de sensores simulados y muestra el
+     * ritmo alcanzado.
+     *
+     * <pre>
+     * Uso: SimuladorSensores [sensores] [hilos] [minutosSimulados] [semilla]
+     * </pre>
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int sensores = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int hilos = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long minutos = args.length > 2 ? Long.parseLong(args[2]) : 10;
+        long semilla = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        SimuladorSensores simulador = new SimuladorSensores(sensores, 1e-4);
+        simulador.agregarSensores(sensores, semilla);
+
+        // Suma de control para comprobar la reproducibilidad entre ejecuciones
+        double[] sumas = new double[sensores];
+        long inicio = System.nanoTime();
+        long total = simulador.ejecutarCarga((s, ts, v) -> {
+            if (!Double.isNaN(v)) {
+                sumas[s] += v;
+            }
+        }, hilos, 1_700_000_000_000L, 60_000, minutos * 60_000, 0);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        double control = 0;
+        for (double suma : sumas) {
+            control += suma;
+        }
+        System.out.printf("%,d lecturas de %,d sensores en %.2f s (%,.0f lecturas/s), control=%.6f%n", total,
+                sensores, segundos, total / segundos, control);
+    }
+}
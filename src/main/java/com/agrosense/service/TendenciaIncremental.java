@@ -0,0 +1,184 @@
+package com.agrosense.service;
+
+import com.agrosense.model.ResultadoTendencia;
+
+/**
+ * Tendencia de una serie calculada de forma incremental: media móvil
+ * exponencial y regresión lineal por mínimos cuadrados sobre una ventana de
+ * tiempo. Cada medición actualiza las sumas en O(1) (las que salen de la
+ * ventana se restan una sola vez). No es segura para hilos; la serie que la
+ * contiene se encarga de sincronizar.
+ *
+ * Para acotar la memoria sin acortar la ventana, la ventana se divide en
+ * unas {@value #CAPACIDAD_MAXIMA} cubetas de tiempo y las mediciones de una
+ * misma cubeta se guardan como un punto con su suma y su cantidad (con 6 h son
+ * cubetas de ~5 s). La regresión pondera cada cubeta por su cantidad, así que
+ * la pendiente no cambia con la frecuencia de muestreo; solo se pierde la
+ * dispersión dentro de cada cubeta al calcular la confianza.
+ */
+class TendenciaIncremental {
+
+    private static final double MILLIS_POR_HORA = 3_600_000.0;
+    private static final int CAPACIDAD_MAXIMA = 4096;
+
+    private final long ventanaMillis;
+    private final long anchoCubetaMillis;
+    private final double constanteSuavizadoMillis;
+
+    // Una cubeta por punto, en orden de llegada: instante de la primera
+    // medición, suma de valores y cantidad; crecen bajo demanda
+    private long[] tiempos = new long[16];
+    private double[] valores = new double[16];
+    private int[] cantidades = new int[16];
+    private int cabeza;
+    private int tamano;
+    private int muestras;
+
+    // Sumas de la regresión, con el tiempo en horas relativo a "origen"
+    private long origen;
+    private double sumaT;
+    private double sumaV;
+    private double sumaTT;
+    private double sumaTV;
+    private double sumaVV;
+
+    private double mediaExponencial = Double.NaN;
+    private long ultimoTiempo;
+
+    TendenciaIncremental(long ventanaMillis, long constanteSuavizadoMillis) {
+        this.ventanaMillis = ventanaMillis;
+        // Una ventana alineada cualquiera toca a lo sumo cubetas + 1 cubetas
+        long cubetas = CAPACIDAD_MAXIMA - 2;
+        this.anchoCubetaMillis = Math.max(1, (ventanaMillis + cubetas - 1) / cubetas);
+        this.constanteSuavizadoMillis = constanteSuavizadoMillis;
+    }
+
+    void agregar(long epochMillis, double valor) {
+        // Media móvil exponencial con peso según el tiempo transcurrido
+        if (Double.isNaN(mediaExponencial)) {
+            mediaExponencial = valor;
+        } else {
+            long dt = Math.max(0, epochMillis - ultimoTiempo);
+            double alfa = 1 - Math.exp(-dt / constanteSuavizadoMillis);
+            mediaExponencial += alfa * (valor - mediaExponencial);
+        }
+        ultimoTiempo = Math.max(ultimoTiempo, epochMillis);
+
+        // Sacar lo que quedó fuera de la ventana; el tope solo se alcanza con
+        // mediciones fuera de orden, que abren cubetas nuevas
+        while (tamano > 0 && (tiempos[cabeza] < ultimoTiempo - ventanaMillis || tamano == CAPACIDAD_MAXIMA)) {
+            quitar(tiempos[cabeza], valores[cabeza], cantidades[cabeza]);
+            muestras -= cantidades[cabeza];
+            cabeza = (cabeza + 1) % tiempos.length;
+            tamano--;
+        }
+
+        // Misma cubeta que el último punto: se acumula en él
+        if (tamano > 0) {
+            int ultima = (cabeza + tamano - 1) % tiempos.length;
+            if (Math.floorDiv(epochMillis, anchoCubetaMillis) == Math.floorDiv(tiempos[ultima], anchoCubetaMillis)) {
+                quitar(tiempos[ultima], valores[ultima], cantidades[ultima]);
+                valores[ultima] += valor;
+                cantidades[ultima]++;
+                muestras++;
+                sumar(tiempos[ultima], valores[ultima], cantidades[ultima]);
+                return;
+            }
+        }
+
+        if (tamano == tiempos.length) {
+            crecer();
+        }
+
+        if (tamano == 0) {
+            origen = epochMillis;
+            sumaT = sumaV = sumaTT = sumaTV = sumaVV = 0;
+        } else if (epochMillis - origen > 4 * ventanaMillis) {
+            reubicarOrigen();
+        }
+
+        int pos = (cabeza + tamano) % tiempos.length;
+        tiempos[pos] = epochMillis;
+        valores[pos] = valor;
+        cantidades[pos] = 1;
+        tamano++;
+        muestras++;
+        sumar(epochMillis, valor, 1);
+    }
+
+    // Una cubeta cuenta como "cantidad" puntos en su instante con el promedio
+    // de sus valores
+    private void sumar(long epochMillis, double suma, int cantidad) {
+        double t = (epochMillis - origen) / MILLIS_POR_HORA;
+        sumaT += cantidad * t;
+        sumaV += suma;
+        sumaTT += cantidad * t * t;
+        sumaTV += t * suma;
+        sumaVV += suma * suma / cantidad;
+    }
+
+    private void quitar(long epochMillis, double suma, int cantidad) {
+        double t = (epochMillis - origen) / MILLIS_POR_HORA;
+        sumaT -= cantidad * t;
+        sumaV -= suma;
+        sumaTT -= cantidad * t * t;
+        sumaTV -= t * suma;
+        sumaVV -= suma * suma / cantidad;
+    }
+
+    // Mantiene los tiempos relativos pequeños para no perder precisión
+    private void reubicarOrigen() {
+        origen = tiempos[cabeza];
+        sumaT = sumaV = sumaTT = sumaTV = sumaVV = 0;
+        for (int i = 0; i < tamano; i++) {
+            int p = (cabeza + i) % tiempos.length;
+            sumar(tiempos[p], valores[p], cantidades[p]);
+        }
+    }
+
+    private void crecer() {
+        int capacidad = Math.min(tiempos.length * 2, CAPACIDAD_MAXIMA);
+        long[] nTiempos = new long[capacidad];
+        double[] nValores = new double[capacidad];
+        int[] nCantidades = new int[capacidad];
+        for (int i = 0; i < tamano; i++) {
+            int p = (cabeza + i) % tiempos.length;
+            nTiempos[i] = tiempos[p];
+            nValores[i] = valores[p];
+            nCantidades[i] = cantidades[p];
+        }
+        tiempos = nTiempos;
+        valores = nValores;
+        cantidades = nCantidades;
+        cabeza = 0;
+    }
+
+    ResultadoTendencia calcular() {
+        int n = muestras;
+        if (tamano < 2) {
+            double ultimo = tamano == 1 ? valores[cabeza] / cantidades[cabeza] : Double.NaN;
+            return new ResultadoTendencia(0, 0, mediaExponencial, ultimo, n);
+        }
+
+        double varT = n * sumaTT - sumaT * sumaT;
+        double varV = n * sumaVV - sumaV * sumaV;
+        double cov = n * sumaTV - sumaT * sumaV;
+
+        double pendiente = varT > 1e-12 ? cov / varT : 0;
+        double intercepto = (sumaV - pendiente * sumaT) / n;
+        double tUltimo = (ultimoTiempo - origen) / MILLIS_POR_HORA;
+
+        // Confianza: coeficiente de determinación ajustado por cantidad de puntos
+        double r2;
+        if (varT <= 1e-12) {
+            r2 = 0;
+        } else if (varV <= 1e-12) {
+            r2 = 1; // serie constante: la recta horizontal la explica por completo
+        } else {
+            r2 = Math.min(1, (cov * cov) / (varT * varV));
+        }
+        double confianza = r2 * Math.min(1.0, n / 10.0);
+
+        return new ResultadoTendencia(pendiente, confianza, mediaExponencial, intercepto + pendiente * tUltimo, n);
+    }
+}
@@ -2,22 +2,89 @@ package com.agrosense.service;
 
 import com.agrosense.model.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.regex.*;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.Predicate;
 
 public class ToonPersistenceService {
 
     private static final String DATA_DIR = "data";
-    private static final String DATA_FILE = DATA_DIR + "/agrosense_data.toon";
+    private static final String PREFIJO_MEDICIONES = "agrosense_mediciones";
+
+    /** Tamaño a partir del cual el archivo de mediciones se rota */
+    public static final long BYTES_POR_SEGMENTO = 8L << 20;
+    /** Lo que conserva el nivel por minuto de {@link SerieMultiResolucion} */
+    public static final long RETENCION_MEDICIONES_MILLIS = 7 * SerieMultiResolucion.DIA;
+
+    private final Path directorio;
+    private final Path archivoDatos;
+    private final Path archivoMediciones;
+    private final long bytesPorSegmento;
+    private volatile long retencionMedicionesMillis = RETENCION_MEDICIONES_MILLIS;
+
+    // Estado del archivo de mediciones actual; -1 y MIN_VALUE = sin conocer
+    private long bytesActual = -1;
+    private long ultimaMedicionActual = Long.MIN_VALUE;
+
+    public ToonPersistenceService() {
+        this(Paths.get(DATA_DIR));
+    }
+
+    /**
+     * Guarda los archivos en otro directorio (pruebas y benchmarks)
+     */
+    public ToonPersistenceService(Path directorio) {
+        this(directorio, BYTES_POR_SEGMENTO);
+    }
+
+    ToonPersistenceService(Path directorio, long bytesPorSegmento) {
+        if (bytesPorSegmento <= 0) {
+            throw new IllegalArgumentException("El tamaño de segmento debe ser positivo");
+        }
+        this.directorio = directorio;
+        this.archivoDatos = directorio.resolve("agrosense_data.toon");
+        this.archivoMediciones = directorio.resolve(PREFIJO_MEDICIONES + ".toon");
+        this.bytesPorSegmento = bytesPorSegmento;
+    }
+
+    /**
+     * Cuánto tiempo se conservan los segmentos rotados de mediciones, contado
+     * desde su lectura más reciente
+     */
+    public void setRetencionMediciones(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("La retención debe ser positiva");
+        }
+        this.retencionMedicionesMillis = millis;
+    }
+
+    public long getRetencionMediciones() {
+        return retencionMedicionesMillis;
+    }
 
     public void exportarDatos(GestorLotes gestorLotes, AlertaService alertaService) throws IOException {
+        exportarDatos(gestorLotes, alertaService, loteId -> true);
+    }
+
+    /**
+     * Guarda solo los lotes cuyo ID acepta el filtro, y las alertas de esos
+     * lotes (las que no tienen lote se guardan siempre)
+     */
+    public void exportarDatos(GestorLotes gestorLotes, AlertaService alertaService, Predicate<String> incluirLote)
+            throws IOException {
+        long inicio = System.nanoTime();
         StringBuilder sb = new StringBuilder();
 
         // Export Lotes
         for (Lote lote : gestorLotes.obtenerTodos()) {
+            if (!incluirLote.test(lote.getId())) {
+                continue;
+            }
             sb.append("LOTE {\n");
             sb.append("  ID: ").append(lote.getId()).append("\n");
             sb.append("  NOMBRE: \"").append(lote.getNombre()).append("\"\n");
@@ -42,6 +109,7 @@ public class ToonPersistenceService {
                     sb.append("      ID: ").append(sensor.getId()).append("\n");
                     sb.append("      TIPO: ").append(sensor.getTipo()).append("\n");
                     sb.append("      UBICACION: \"").append(sensor.getUbicacion()).append("\"\n");
+                    sb.append("      INTERVALO: ").append(sensor.getIntervaloMuestreoMs()).append("\n");
                     sb.append("    }\n");
                 }
                 sb.append("  }\n");
@@ -51,6 +119,9 @@ public class ToonPersistenceService {
 
         // Export Alertas
         for (Alerta alerta : alertaService.getHistorialAlertas()) {
+            if (alerta.getLoteId() != null && !incluirLote.test(alerta.getLoteId())) {
+                continue;
+            }
             sb.append("ALERTA {\n");
             sb.append("  NIVEL: ").append(alerta.getNivel()).append("\n");
             sb.append("  MENSAJE: \"").append(alerta.getMensaje()).append("\"\n");
@@ -59,100 +130,347 @@ public class ToonPersistenceService {
             sb.append("}\n");
         }
 
-        Files.createDirectories(Paths.get(DATA_DIR));
-        Files.writeString(Paths.get(DATA_FILE), sb.toString());
+        byte[] contenido = sb.toString().getBytes(StandardCharsets.UTF_8);
+        Files.createDirectories(directorio);
+        Files.write(archivoDatos, contenido);
+        Metricas.PERSISTENCIA_BYTES.agregar(contenido.length);
+        Metricas.PERSISTENCIA_GUARDADO.registrarDesde(inicio);
     }
 
     public AgroSenseData importarDatos() throws IOException {
-        if (!Files.exists(Paths.get(DATA_FILE))) {
+        return importarDatos(null);
+    }
+
+    /**
+     * Lee el archivo de datos en una sola pasada por líneas, siguiendo el
+     * anidamiento de los bloques (LOTE > SENSORES > SENSOR). Cada tanto informa
+     * la fracción leída (0 a 1) al consumidor, si no es nulo; se invoca en el
+     * hilo que hace la carga.
+     */
+    public AgroSenseData importarDatos(DoubleConsumer progreso) throws IOException {
+        if (!Files.exists(archivoDatos)) {
             throw new FileNotFoundException("No se encontró el archivo TOON");
         }
 
-        String content = Files.readString(Paths.get(DATA_FILE));
+        long inicio = System.nanoTime();
+        String content = Files.readString(archivoDatos);
         AgroSenseData data = new AgroSenseData();
         data.lotes = new ArrayList<>();
         data.alertas = new ArrayList<>();
 
-        // Parse Lotes
-        Pattern lotePattern = Pattern.compile("LOTE \\{(.*?)\\}", Pattern.DOTALL);
-        Matcher loteMatcher = lotePattern.matcher(content);
+        // Campos del bloque abierto en cada nivel y sensores del lote en curso
+        Deque<String> bloques = new ArrayDeque<>();
+        Deque<Map<String, String>> campos = new ArrayDeque<>();
+        List<Sensor> sensoresLote = new ArrayList<>();
+        int largo = content.length();
+        int siguienteAviso = 0;
+        int pos = 0;
 
-        while (loteMatcher.find()) {
-            String loteBlock = loteMatcher.group(1);
-            String id = extractValue(loteBlock, "ID");
-            String nombre = extractValue(loteBlock, "NOMBRE");
-            String cultivo = extractValue(loteBlock, "CULTIVO");
-            double area = Double.parseDouble(extractValue(loteBlock, "AREA"));
+        while (pos < largo) {
+            int finLinea = content.indexOf('\n', pos);
+            if (finLinea < 0) {
+                finLinea = largo;
+            }
+            String linea = content.substring(pos, finLinea).trim();
+            pos = finLinea + 1;
 
-            Lote lote = new Lote(id, nombre, cultivo, area);
+            if (linea.endsWith("{")) {
+                bloques.push(linea.substring(0, linea.length() - 1).trim());
+                campos.push(new HashMap<>());
+            } else if (linea.equals("}")) {
+                if (bloques.isEmpty()) {
+                    throw new IOException("Llave de cierre sin bloque abierto en la posición " + pos);
+                }
+                cerrarBloque(bloques.pop(), campos.pop(), sensoresLote, data);
+            } else if (!linea.isEmpty() && !campos.isEmpty()) {
+                int dosPuntos = linea.indexOf(':');
+                if (dosPuntos > 0) {
+                    campos.peek().put(linea.substring(0, dosPuntos).trim(),
+                            valorSinComillas(linea.substring(dosPuntos + 1)));
+                }
+            }
 
-            // Parsear nuevos campos agrícolas
-            String fechaSiembraStr = extractValue(loteBlock, "FECHA_SIEMBRA");
-            if (!fechaSiembraStr.isEmpty()) {
-                lote.setFechaSiembra(LocalDate.parse(fechaSiembraStr));
+            if (progreso != null && pos >= siguienteAviso) {
+                progreso.accept(Math.min(1.0, (double) pos / largo));
+                siguienteAviso = pos + Math.max(1 << 16, largo / 100);
             }
+        }
+        if (progreso != null) {
+            progreso.accept(1.0);
+        }
+        Metricas.PERSISTENCIA_IMPORTACION.registrarDesde(inicio);
+        return data;
+    }
 
-            String etapa = extractValue(loteBlock, "ETAPA");
-            if (!etapa.isEmpty()) {
-                lote.setEtapaCrecimiento(etapa);
+    private void cerrarBloque(String bloque, Map<String, String> campos, List<Sensor> sensoresLote,
+            AgroSenseData data) {
+        switch (bloque) {
+            case "SENSOR": {
+                Sensor sensor;
+                if (TipoSensor.desdeTexto(campo(campos, "TIPO")) == TipoSensor.HUMEDAD) {
+                    sensor = new SensorHumedad(campo(campos, "ID"), campo(campos, "UBICACION"));
+                } else {
+                    sensor = new SensorTemperatura(campo(campos, "ID"), campo(campos, "UBICACION"));
+                }
+                String intervalo = campo(campos, "INTERVALO");
+                if (!intervalo.isEmpty()) {
+                    sensor.setIntervaloMuestreoMs(Long.parseLong(intervalo));
+                }
+                sensoresLote.add(sensor);
+                break;
             }
+            case "LOTE": {
+                Lote lote = new Lote(campo(campos, "ID"), campo(campos, "NOMBRE"), campo(campos, "CULTIVO"),
+                        Double.parseDouble(campo(campos, "AREA")));
 
-            String notas = extractValue(loteBlock, "NOTAS");
-            if (!notas.isEmpty()) {
-                lote.setNotas(notas);
+                // Campos agrícolas opcionales
+                String fechaSiembra = campo(campos, "FECHA_SIEMBRA");
+                if (!fechaSiembra.isEmpty()) {
+                    lote.setFechaSiembra(LocalDate.parse(fechaSiembra));
+                }
+                String etapa = campo(campos, "ETAPA");
+                if (!etapa.isEmpty()) {
+                    lote.setEtapaCrecimiento(etapa);
+                }
+                String notas = campo(campos, "NOTAS");
+                if (!notas.isEmpty()) {
+                    lote.setNotas(notas);
+                }
+                for (Sensor sensor : sensoresLote) {
+                    lote.agregarSensor(sensor);
+                }
+                sensoresLote.clear();
+                data.lotes.add(lote);
+                break;
             }
+            case "ALERTA":
+                data.alertas.add(new Alerta(campo(campos, "MENSAJE"), Alerta.Nivel.valueOf(campo(campos, "NIVEL")),
+                        campo(campos, "LOTE"), LocalDateTime.parse(campo(campos, "FECHA"))));
+                break;
+            default:
+                // SENSORES solo agrupa; bloques desconocidos se ignoran
+                break;
+        }
+    }
 
-            // Parse Sensors within Lote
-            Pattern sensorPattern = Pattern.compile("SENSOR \\{(.*?)\\}", Pattern.DOTALL);
-            Matcher sensorMatcher = sensorPattern.matcher(loteBlock);
+    private static String campo(Map<String, String> campos, String clave) {
+        return campos.getOrDefault(clave, "");
+    }
 
-            while (sensorMatcher.find()) {
-                String sensorBlock = sensorMatcher.group(1);
-                String sId = extractValue(sensorBlock, "ID");
-                String sTipo = extractValue(sensorBlock, "TIPO");
-                String sUbicacion = extractValue(sensorBlock, "UBICACION");
+    // Sin espacios y sin comillas opcionales al inicio y al final
+    private static String valorSinComillas(String valor) {
+        String v = valor.trim();
+        if (v.startsWith("\"")) {
+            v = v.substring(1);
+        }
+        if (v.endsWith("\"")) {
+            v = v.substring(0, v.length() - 1);
+        }
+        return v.trim();
+    }
 
-                if ("HUMEDAD".equals(sTipo)) {
-                    lote.agregarSensor(new SensorHumedad(sId, sUbicacion));
-                } else {
-                    lote.agregarSensor(new SensorTemperatura(sId, sUbicacion));
-                }
+    /**
+     * Agrega un lote de mediciones al final del archivo de mediciones en un
+     * solo bloque por columnas (una línea por campo). Cuando el archivo pasa
+     * de {@link #BYTES_POR_SEGMENTO} se rota a un segmento con el nombre de su
+     * lectura más reciente, y se borran los segmentos fuera de la retención.
+     */
+    public synchronized void guardarMediciones(MedicionBatch batch) throws IOException {
+        int n = batch.getTamano();
+        if (n == 0) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        StringBuilder sb = new StringBuilder(n * 48);
+        sb.append("MEDICIONES {\n");
+        sb.append("  CANTIDAD: ").append(n).append("\n");
+        sb.append("  FECHA: ");
+        long ultima = ultimaMedicionActual;
+        for (int i = 0; i < n; i++) {
+            long tiempo = batch.getTiempo(i);
+            sb.append(i == 0 ? "" : ",").append(tiempo);
+            ultima = Math.max(ultima, tiempo);
+        }
+        sb.append("\n  SENSOR: ");
+        for (int i = 0; i < n; i++) {
+            sb.append(i == 0 ? "" : ",").append(TablaIds.SENSORES.texto(batch.getSensor(i)));
+        }
+        sb.append("\n  LOTE: ");
+        for (int i = 0; i < n; i++) {
+            sb.append(i == 0 ? "" : ",").append(TablaIds.LOTES.texto(batch.getLote(i)));
+        }
+        sb.append("\n  TIPO: ");
+        for (int i = 0; i < n; i++) {
+            sb.append(i == 0 ? "" : ",").append(batch.getTipo(i).name());
+        }
+        sb.append("\n  VALOR: ");
+        for (int i = 0; i < n; i++) {
+            sb.append(i == 0 ? "" : ",").append(batch.getValor(i));
+        }
+        sb.append("\n}\n");
+
+        byte[] contenido = sb.toString().getBytes(StandardCharsets.UTF_8);
+        Files.createDirectories(directorio);
+        if (bytesActual < 0) {
+            bytesActual = Files.exists(archivoMediciones) ? Files.size(archivoMediciones) : 0;
+        }
+        Files.write(archivoMediciones, contenido, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        bytesActual += contenido.length;
+        ultimaMedicionActual = ultima;
+        if (bytesActual >= bytesPorSegmento) {
+            rotarMediciones();
+        }
+        Metricas.PERSISTENCIA_BYTES.agregar(contenido.length);
+        Metricas.PERSISTENCIA_MEDICIONES.registrarDesde(inicio);
+    }
+
+    // El segmento se nombra con su lectura más reciente: si no se conoce (el
+    // archivo viene de otra ejecución y no se cargó), se usa su fecha de
+    // modificación, que no es anterior a ninguna de sus lecturas
+    private void rotarMediciones() throws IOException {
+        long ultima = ultimaMedicionActual != Long.MIN_VALUE ? ultimaMedicionActual
+                : Files.getLastModifiedTime(archivoMediciones).toMillis();
+        // Un nombre ya usado se corre un milisegundo: sigue sin ser anterior a sus lecturas
+        while (Files.exists(segmentoMediciones(ultima))) {
+            ultima++;
+        }
+        Path segmento = segmentoMediciones(ultima);
+        Files.move(archivoMediciones, segmento);
+        bytesActual = 0;
+        ultimaMedicionActual = Long.MIN_VALUE;
+        borrarSegmentosVencidos(System.currentTimeMillis() - retencionMedicionesMillis);
+    }
+
+    private void borrarSegmentosVencidos(long desde) throws IOException {
+        for (Map.Entry<Long, Path> segmento : segmentosMediciones().entrySet()) {
+            if (segmento.getKey() < desde) {
+                Files.deleteIfExists(segmento.getValue());
             }
-            data.lotes.add(lote);
         }
+    }
 
-        // Parse Alertas
-        Pattern alertaPattern = Pattern.compile("ALERTA \\{(.*?)\\}", Pattern.DOTALL);
-        Matcher alertaMatcher = alertaPattern.matcher(content);
+    private Path segmentoMediciones(long ultimaMillis) {
+        return directorio.resolve(PREFIJO_MEDICIONES + "." + ultimaMillis + ".toon");
+    }
 
-        while (alertaMatcher.find()) {
-            String alertaBlock = alertaMatcher.group(1);
-            String nivelStr = extractValue(alertaBlock, "NIVEL");
-            String mensaje = extractValue(alertaBlock, "MENSAJE");
-            String fechaStr = extractValue(alertaBlock, "FECHA");
-            String loteId = extractValue(alertaBlock, "LOTE");
+    /**
+     * Segmentos rotados (sin el archivo actual) ordenados por su lectura más
+     * reciente
+     */
+    private NavigableMap<Long, Path> segmentosMediciones() throws IOException {
+        TreeMap<Long, Path> segmentos = new TreeMap<>();
+        if (!Files.isDirectory(directorio)) {
+            return segmentos;
+        }
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, PREFIJO_MEDICIONES + ".*.toon")) {
+            for (Path archivo : archivos) {
+                String nombre = archivo.getFileName().toString();
+                try {
+                    segmentos.put(Long.parseLong(nombre.substring(PREFIJO_MEDICIONES.length() + 1,
+                            nombre.length() - ".toon".length())), archivo);
+                } catch (NumberFormatException e) {
+                    // No es un segmento rotado
+                }
+            }
+        }
+        return segmentos;
+    }
 
-            Alerta.Nivel nivel = Alerta.Nivel.valueOf(nivelStr);
-            LocalDateTime fecha = LocalDateTime.parse(fechaStr);
+    /**
+     * Carga todas las mediciones guardadas con {@link #guardarMediciones} en
+     * el lote indicado
+     *
+     * @return cantidad de mediciones cargadas
+     */
+    public int cargarMediciones(MedicionBatch destino) throws IOException {
+        return (int) cargarMediciones(Long.MIN_VALUE, guardadas -> {
+            destino.reservar(guardadas.getTamano());
+            for (int i = 0; i < guardadas.getTamano(); i++) {
+                destino.agregar(guardadas.getSensor(i), guardadas.getLote(i), guardadas.getTipo(i),
+                        guardadas.getValor(i), guardadas.getTiempo(i));
+            }
+        });
+    }
 
-            data.alertas.add(new Alerta(mensaje, nivel, loteId, fecha));
-            // Note: Alerta constructor sets date to now, we might need a setter or
-            // constructor that accepts date
-            // For now, we accept the new date or modify Alerta class.
-            // Let's assume for this exercise we just load them as new alerts or modify
-            // Alerta later if needed.
+    /**
+     * Recorre los segmentos y el archivo actual en orden, bloque por bloque,
+     * sin leerlos enteros. Cada bloque se entrega al receptor con las
+     * lecturas desde {@code desdeMillis}; el lote se reutiliza, así que el
+     * receptor no debe guardarlo. Los segmentos cuya lectura más reciente es
+     * anterior se saltan sin abrirlos.
+     *
+     * @return cantidad de mediciones entregadas
+     */
+    public synchronized long cargarMediciones(long desdeMillis, Consumer<MedicionBatch> receptor)
+            throws IOException {
+        MedicionBatch bloque = new MedicionBatch();
+        long total = 0;
+        for (Map.Entry<Long, Path> segmento : segmentosMediciones().entrySet()) {
+            if (segmento.getKey() >= desdeMillis) {
+                total += cargarArchivo(segmento.getValue(), desdeMillis, bloque, receptor);
+            }
+        }
+        if (Files.exists(archivoMediciones)) {
+            total += cargarArchivo(archivoMediciones, desdeMillis, bloque, receptor);
         }
+        return total;
+    }
 
-        return data;
+    private long cargarArchivo(Path archivo, long desdeMillis, MedicionBatch bloque,
+            Consumer<MedicionBatch> receptor) throws IOException {
+        boolean actual = archivo.equals(archivoMediciones);
+        Map<String, String> campos = new HashMap<>();
+        long total = 0;
+        try (BufferedReader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                linea = linea.trim();
+                if (linea.equals("}")) {
+                    bloque.limpiar();
+                    long ultima = llenarBloque(campos, desdeMillis, bloque);
+                    if (actual) {
+                        ultimaMedicionActual = Math.max(ultimaMedicionActual, ultima);
+                    }
+                    campos.clear();
+                    if (bloque.getTamano() > 0) {
+                        receptor.accept(bloque);
+                        total += bloque.getTamano();
+                    }
+                } else {
+                    int dosPuntos = linea.indexOf(':');
+                    if (dosPuntos > 0) {
+                        campos.put(linea.substring(0, dosPuntos).trim(), linea.substring(dosPuntos + 1).trim());
+                    }
+                }
+            }
+        }
+        return total;
     }
 
-    private String extractValue(String block, String key) {
-        Pattern p = Pattern.compile(key + ":\\s*\"?(.*?)\"?\\s*(\\n|$|\\r)");
-        Matcher m = p.matcher(block);
-        if (m.find()) {
-            return m.group(1).trim();
+    /**
+     * Pasa las columnas de un bloque MEDICIONES al lote, solo las lecturas
+     * desde {@code desdeMillis}
+     *
+     * @return la lectura más reciente del bloque
+     */
+    private static long llenarBloque(Map<String, String> campos, long desdeMillis, MedicionBatch bloque) {
+        int n = Integer.parseInt(campo(campos, "CANTIDAD"));
+        String[] fechas = campo(campos, "FECHA").split(",");
+        String[] sensores = campo(campos, "SENSOR").split(",");
+        String[] lotes = campo(campos, "LOTE").split(",");
+        String[] tipos = campo(campos, "TIPO").split(",");
+        String[] valores = campo(campos, "VALOR").split(",");
+        bloque.reservar(n);
+        long ultima = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            long tiempo = Long.parseLong(fechas[i]);
+            ultima = Math.max(ultima, tiempo);
+            if (tiempo >= desdeMillis) {
+                bloque.agregar(TablaIds.SENSORES.numero(sensores[i]), TablaIds.LOTES.numero(lotes[i]),
+                        TipoSensor.desdeTexto(tipos[i]), Double.parseDouble(valores[i]), tiempo);
+            }
         }
-        return "";
+        return ultima;
     }
 
     // Data container class
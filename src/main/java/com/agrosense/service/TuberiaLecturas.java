@@ -0,0 +1,299 @@
+package com.agrosense.service;
+
+import com.agrosense.model.Sensor;
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tubería asíncrona entre los productores de lecturas (sondeo, servidor de
+ * ingesta) y sus consumidores, sobre un {@link AnilloLecturas}. Publicar una
+ * lectura no reserva memoria ni toma cerrojos. Etapas:
+ *
+ * <pre>
+ * productores -> detector de anomalías -> alertas
+ *                                      -> estadísticas
+ *                                      -> consumidores agregados (persistencia, UI...)
+ * </pre>
+ *
+ * Cada consumidor corre en su propio hilo a su propio ritmo y procesa por
+ * lotes lo que se haya acumulado. Los consumidores posteriores al detector
+ * solo ven lecturas ya evaluadas. Las lecturas publicadas mientras la tubería
+ * está detenida se descartan.
+ * <p>
+ * Control de admisión: cada etapa tiene un límite de lecturas pendientes y una
+ * {@link PoliticaSobrecarga} que aplica al superarlo, y con el anillo lleno
+ * las lecturas nuevas se rechazan en la entrada. Las lecturas en rango crítico
+ * nunca se descartan. Como el anillo no crece, la memoria se mantiene estable
+ * aunque la carga supere lo que los consumidores pueden procesar.
+ */
+public class TuberiaLecturas implements ReceptorLecturas {
+
+    public static final int TAMANO_POR_DEFECTO = 1 << 16;
+
+    public static final String ETAPA_DETECTOR = "detector";
+    public static final String ETAPA_ALERTAS = "alertas";
+    public static final String ETAPA_ESTADISTICAS = "estadisticas";
+
+    private final AnilloLecturas anillo;
+    private final IngestaService ingestaService;
+    private final AlertaService alertaService;
+    private final EstadisticasService estadisticasService;
+
+    // Etapas en orden: la primera es el detector y las demás leen tras él
+    private final Map<String, Etapa> etapas = new LinkedHashMap<>();
+    private final Map<String, ProcesadorEventos> procesadores = new LinkedHashMap<>();
+    private final List<Thread> hilos = new ArrayList<>();
+    private boolean iniciada;
+
+    private volatile boolean esperarSiLleno;
+    private final LongAdder rechazadas = new LongAdder();
+
+    public TuberiaLecturas(IngestaService ingestaService, AlertaService alertaService,
+            EstadisticasService estadisticasService) {
+        this(ingestaService, alertaService, estadisticasService, TAMANO_POR_DEFECTO, EstrategiaEspera.durmiendo());
+    }
+
+    /**
+     * @param tamano cantidad de ranuras del anillo (potencia de 2)
+     * @param espera estrategia con que esperan los consumidores
+     */
+    public TuberiaLecturas(IngestaService ingestaService, AlertaService alertaService,
+            EstadisticasService estadisticasService, int tamano, EstrategiaEspera espera) {
+        this.anillo = new AnilloLecturas(tamano, espera);
+        this.ingestaService = ingestaService;
+        this.alertaService = alertaService;
+        this.estadisticasService = estadisticasService;
+
+        // Por defecto: el detector se queda con lo más reciente, las alertas solo
+        // necesitan el último valor de cada sensor y las estadísticas toleran muestreo
+        etapas.put(ETAPA_DETECTOR, new Etapa(this::detectar, PoliticaSobrecarga.DESCARTAR_ANTIGUAS, tamano / 2));
+        etapas.put(ETAPA_ALERTAS, new Etapa(this::alertar, PoliticaSobrecarga.COALESCER, tamano / 4));
+        etapas.put(ETAPA_ESTADISTICAS, new Etapa(this::registrar, PoliticaSobrecarga.MUESTREAR, tamano / 4));
+    }
+
+    /**
+     * Agrega un consumidor que recibe todas las lecturas después del detector.
+     * Debe llamarse antes de {@link #iniciar()}.
+     */
+    public void agregarConsumidor(String nombre, ManejadorEventos manejador) {
+        agregarConsumidor(nombre, manejador, PoliticaSobrecarga.BLOQUEAR, anillo.getTamano());
+    }
+
+    /**
+     * Agrega un consumidor con su propia política ante sobrecarga
+     */
+    public synchronized void agregarConsumidor(String nombre, ManejadorEventos manejador,
+            PoliticaSobrecarga politica, int limitePendientes) {
+        verificarNoIniciada();
+        if (etapas.containsKey(nombre)) {
+            throw new IllegalArgumentException("Ya existe una etapa llamada " + nombre);
+        }
+        etapas.put(nombre, new Etapa(manejador, politica, limitePendientes));
+    }
+
+    /**
+     * Cambia la política de una etapa existente (por ejemplo
+     * {@link #ETAPA_ALERTAS}). Debe llamarse antes de {@link #iniciar()}.
+     */
+    public synchronized void configurarEtapa(String nombre, PoliticaSobrecarga politica, int limitePendientes) {
+        verificarNoIniciada();
+        Etapa etapa = etapas.get(nombre);
+        if (etapa == null) {
+            throw new IllegalArgumentException("No existe la etapa " + nombre);
+        }
+        if (limitePendientes <= 0) {
+            throw new IllegalArgumentException("El límite de pendientes debe ser mayor a 0");
+        }
+        etapa.politica = politica;
+        etapa.limitePendientes = limitePendientes;
+    }
+
+    /**
+     * Con el anillo lleno, si es true el productor espera; si es false (por
+     * defecto) la lectura se rechaza. Las lecturas críticas siempre esperan.
+     */
+    public void setEsperarSiLleno(boolean esperarSiLleno) {
+        this.esperarSiLleno = esperarSiLleno;
+    }
+
+    private void verificarNoIniciada() {
+        if (iniciada) {
+            throw new IllegalStateException("La tubería ya fue iniciada");
+        }
+    }
+
+    public synchronized void iniciar() {
+        if (iniciada) {
+            return;
+        }
+        procesadores.clear();
+        // Se empieza después de lo último publicado, por si la tubería se reinicia
+        long inicio = anillo.getCursor().get();
+        BarreraSecuencias trasDetector = null;
+        List<Secuencia> finales = new ArrayList<>();
+        for (Map.Entry<String, Etapa> entrada : etapas.entrySet()) {
+            Etapa etapa = entrada.getValue();
+            BarreraSecuencias barrera = trasDetector == null ? new BarreraSecuencias(anillo) : trasDetector;
+            ProcesadorEventos procesador = new ProcesadorEventos(entrada.getKey(), anillo, barrera,
+                    etapa.manejador, inicio, etapa.politica, etapa.limitePendientes);
+            procesadores.put(entrada.getKey(), procesador);
+            if (trasDetector == null) {
+                trasDetector = new BarreraSecuencias(anillo, procesador.getSecuencia());
+            } else {
+                finales.add(procesador.getSecuencia());
+            }
+        }
+        anillo.setConsumidores(finales.toArray(new Secuencia[0]));
+
+        for (ProcesadorEventos procesador : procesadores.values()) {
+            Thread hilo = new Thread(procesador, "agrosense-tuberia-" + procesador.getNombre());
+            hilo.setDaemon(true);
+            hilo.start();
+            hilos.add(hilo);
+        }
+        iniciada = true;
+    }
+
+    /**
+     * Detiene los consumidores después de que procesen lo ya publicado (como
+     * máximo el tiempo indicado)
+     */
+    public synchronized void detener(long esperaMaximaMs) {
+        if (!iniciada) {
+            return;
+        }
+        long limite = System.currentTimeMillis() + esperaMaximaMs;
+        while (anillo.getPendientes() > 0 && System.currentTimeMillis() < limite) {
+            Thread.yield();
+        }
+        for (ProcesadorEventos procesador : procesadores.values()) {
+            procesador.detener();
+        }
+        for (Thread hilo : hilos) {
+            try {
+                hilo.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        hilos.clear();
+        anillo.setConsumidores();
+        iniciada = false;
+    }
+
+    public void detener() {
+        detener(2000);
+    }
+
+    public synchronized boolean estaIniciada() {
+        return iniciada;
+    }
+
+    @Override
+    public void recibir(Sensor sensor, String loteId, double valor, long epochMillis) {
+        publicar(sensor.getNumero(), TablaIds.LOTES.numero(loteId), sensor.getTipo(), valor, epochMillis);
+    }
+
+    /**
+     * Publica una lectura con sensor y lote ya convertidos a números de
+     * {@link TablaIds}
+     *
+     * @return false si la lectura se rechazó porque el anillo estaba lleno
+     */
+    public boolean publicar(int sensor, int lote, TipoSensor tipo, double valor, long epochMillis) {
+        long secuencia = anillo.intentarReclamar();
+        if (secuencia < 0) {
+            if (!esperarSiLleno && !AlertaService.esCritica(tipo, valor)) {
+                rechazadas.increment();
+                return false;
+            }
+            secuencia = anillo.reclamar();
+        }
+        anillo.obtener(secuencia).asignar(sensor, lote, tipo, valor, epochMillis);
+        anillo.publicar(secuencia);
+        return true;
+    }
+
+    private void detectar(EventoLectura evento, long secuencia, boolean finDeLote) {
+        evento.setAnomalia(ingestaService.evaluar(evento.getSensorId(), evento.getTipo(), evento.getLoteId(),
+                evento.getValor(), evento.getEpochMillis()));
+        Metricas.TUBERIA_DETECTOR.registrarDesde(evento.getPublicadoNanos());
+    }
+
+    private void alertar(EventoLectura evento, long secuencia, boolean finDeLote) {
+        if (evento.esAceptada()) {
+            alertaService.verificarLectura(evento.getTipo(), evento.getValor(), evento.getLoteId());
+        }
+        Metricas.TUBERIA_ALERTAS.registrarDesde(evento.getPublicadoNanos());
+    }
+
+    private void registrar(EventoLectura evento, long secuencia, boolean finDeLote) {
+        if (evento.esAceptada()) {
+            estadisticasService.registrarMedicion(evento.getSensor(), evento.getLoteId(), evento.getTipo(),
+                    evento.getValor(), evento.getEpochMillis());
+        }
+        Metricas.TUBERIA_ESTADISTICAS.registrarDesde(evento.getPublicadoNanos());
+    }
+
+    public AnilloLecturas getAnillo() {
+        return anillo;
+    }
+
+    public long getPublicadas() {
+        return anillo.getPublicados();
+    }
+
+    public long getPendientes() {
+        return anillo.getPendientes();
+    }
+
+    /**
+     * Lecturas rechazadas en la entrada por tener el anillo lleno
+     */
+    public long getRechazadas() {
+        return rechazadas.sum();
+    }
+
+    /**
+     * Lecturas que la etapa descartó por sobrecarga
+     */
+    public synchronized long getDescartadas(String etapa) {
+        ProcesadorEventos procesador = procesadores.get(etapa);
+        return procesador == null ? 0 : procesador.getDescartadas();
+    }
+
+    public synchronized long getProcesadas(String etapa) {
+        ProcesadorEventos procesador = procesadores.get(etapa);
+        return procesador == null ? 0 : procesador.getProcesadas();
+    }
+
+    /**
+     * Eventos descartados porque un consumidor lanzó una excepción
+     */
+    public synchronized long getErrores() {
+        long total = 0;
+        for (ProcesadorEventos procesador : procesadores.values()) {
+            total += procesador.getErrores();
+        }
+        return total;
+    }
+
+    // Configuración de una etapa hasta que se inicia la tubería
+    private static class Etapa {
+        private final ManejadorEventos manejador;
+        private PoliticaSobrecarga politica;
+        private int limitePendientes;
+
+        Etapa(ManejadorEventos manejador, PoliticaSobrecarga politica, int limitePendientes) {
+            this.manejador = manejador;
+            this.politica = politica;
+            this.limitePendientes = limitePendientes;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.agrosense.ui;
+
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
+import com.agrosense.service.AlertaService;
+import com.agrosense.service.DetectorAnomalias;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import javafx.animation.AnimationTimer;
+import javafx.collections.ObservableList;
+
+/**
+ * Lleva las lecturas del monitoreo en segundo plano a las tablas de la UI.
+ * Los hilos de monitoreo llaman a {@link #publicar} y solo se guarda el último
+ * valor de cada sensor; en cada cuadro de la animación (como máximo
+ * {@code actualizacionesPorSegundo} veces por segundo) se aplican los cambios
+ * acumulados sobre las filas existentes, buscadas por número de sensor. Las
+ * filas nuevas se agregan todas juntas, sin reconstruir la lista. Si hay
+ * alertas nuevas se avisa una vez por cuadro para refrescar la tabla de
+ * alertas.
+ */
+public class ActualizadorMonitoreo extends AnimationTimer {
+
+    private static final DetectorAnomalias.TipoAnomalia[] ANOMALIAS = DetectorAnomalias.TipoAnomalia.values();
+    private static final TipoSensor[] TIPOS = TipoSensor.values();
+
+    private final ObservableList<AgroSenseFX.MedicionViewModel> filas;
+    private final AlertaService alertaService;
+    private final Function<String, String> nombreLote;
+    private final Runnable alCambiarAlertas;
+    private final long periodoNanos;
+
+    // Los productores escriben en "recibidos"; en cada cuadro se intercambia con
+    // "aplicando", que el hilo de la UI recorre sin cerrojo
+    private final Object cerrojo = new Object();
+    private Pendientes recibidos = new Pendientes();
+    private Pendientes aplicando = new Pendientes();
+
+    // Fila de cada sensor, indexada por su número en TablaIds.SENSORES
+    private AgroSenseFX.MedicionViewModel[] filaPorSensor = new AgroSenseFX.MedicionViewModel[64];
+    private final List<AgroSenseFX.MedicionViewModel> nuevas = new ArrayList<>();
+    private long versionAlertas = -1;
+    private long ultimoCuadro;
+
+    /**
+     * @param nombreLote                traduce el id de un lote al nombre que
+     *                                  se muestra; se llama en el hilo de la UI
+     * @param alCambiarAlertas          se ejecuta en el hilo de la UI cuando
+     *                                  cambió el historial de alertas
+     * @param actualizacionesPorSegundo máximo de veces por segundo que se
+     *                                  aplican cambios a las tablas
+     */
+    public ActualizadorMonitoreo(ObservableList<AgroSenseFX.MedicionViewModel> filas, AlertaService alertaService,
+            Function<String, String> nombreLote, Runnable alCambiarAlertas, int actualizacionesPorSegundo) {
+        if (actualizacionesPorSegundo <= 0) {
+            throw new IllegalArgumentException("Las actualizaciones por segundo deben ser mayores a 0");
+        }
+        this.filas = filas;
+        this.alertaService = alertaService;
+        this.nombreLote = nombreLote;
+        this.alCambiarAlertas = alCambiarAlertas;
+        this.periodoNanos = 1_000_000_000L / actualizacionesPorSegundo;
+    }
+
+    /**
+     * Registra la última lectura de un sensor. Puede llamarse desde cualquier
+     * hilo y no reserva memoria salvo para agrandar los arreglos internos.
+     *
+     * @param sensor número del sensor en {@link TablaIds#SENSORES}
+     * @param lote   número del lote en {@link TablaIds#LOTES}
+     */
+    public void publicar(int sensor, int lote, TipoSensor tipo, double valor,
+            DetectorAnomalias.TipoAnomalia anomalia) {
+        synchronized (cerrojo) {
+            recibidos.poner(sensor, lote, tipo, valor, anomalia);
+        }
+    }
+
+    /**
+     * Quita todas las filas, por ejemplo al importar otros datos. Debe
+     * llamarse en el hilo de la UI.
+     */
+    public void limpiar() {
+        synchronized (cerrojo) {
+            recibidos.limpiar();
+        }
+        Arrays.fill(filaPorSensor, null);
+        filas.clear();
+    }
+
+    @Override
+    public void handle(long ahora) {
+        if (ahora - ultimoCuadro < periodoNanos) {
+            return;
+        }
+        ultimoCuadro = ahora;
+        aplicarLecturas();
+        aplicarAlertas();
+    }
+
+    private void aplicarLecturas() {
+        synchronized (cerrojo) {
+            if (recibidos.cantidad == 0) {
+                return;
+            }
+            Pendientes p = recibidos;
+            recibidos = aplicando;
+            aplicando = p;
+        }
+
+        Pendientes p = aplicando;
+        for (int k = 0; k < p.cantidad; k++) {
+            int sensor = p.sucios[k];
+            p.marcado[sensor] = false;
+            TipoSensor tipo = TIPOS[p.tipos[sensor]];
+            double valor = p.valores[sensor];
+            String loteId = TablaIds.LOTES.texto(p.lotes[sensor]);
+            String valorTexto = formatearValor(valor, tipo.getUnidad());
+            String estado = estado(tipo, valor, ANOMALIAS[p.anomalias[sensor]]);
+
+            AgroSenseFX.MedicionViewModel fila = sensor < filaPorSensor.length ? filaPorSensor[sensor] : null;
+            if (fila == null) {
+                fila = new AgroSenseFX.MedicionViewModel(nombreLote.apply(loteId), TablaIds.SENSORES.texto(sensor),
+                        tipo.name(), valorTexto, estado);
+                fila.setLoteId(loteId);
+                if (sensor >= filaPorSensor.length) {
+                    filaPorSensor = Arrays.copyOf(filaPorSensor, Math.max(sensor + 1, filaPorSensor.length * 2));
+                }
+                filaPorSensor[sensor] = fila;
+                nuevas.add(fila);
+            } else {
+                // Las propiedades solo notifican a las celdas si el texto cambió
+                if (!loteId.equals(fila.getLoteId())) {
+                    fila.setLoteId(loteId);
+                    fila.setLote(nombreLote.apply(loteId));
+                }
+                fila.setValor(valorTexto);
+                fila.setEstado(estado);
+            }
+        }
+        p.cantidad = 0;
+
+        if (!nuevas.isEmpty()) {
+            filas.addAll(nuevas);
+            nuevas.clear();
+        }
+    }
+
+    private void aplicarAlertas() {
+        long version = alertaService.getAlmacen().getVersion();
+        if (version != versionAlertas) {
+            versionAlertas = version;
+            alCambiarAlertas.run();
+        }
+    }
+
+    // Equivale a String.format("%.1f%s", valor, unidad) pero mucho más barato,
+    // lo que importa cuando cambian miles de filas en un cuadro
+    static String formatearValor(double valor, String unidad) {
+        if (Double.isNaN(valor) || Double.isInfinite(valor) || Math.abs(valor) >= 1e15) {
+            return String.format("%.1f%s", valor, unidad);
+        }
+        long decimas = Math.round(Math.abs(valor) * 10);
+        StringBuilder sb = new StringBuilder(12);
+        if (valor < 0 && decimas != 0) {
+            sb.append('-');
+        }
+        return sb.append(decimas / 10).append('.').append(decimas % 10).append(unidad).toString();
+    }
+
+    /**
+     * Texto de la columna "Estado" para una lectura
+     */
+    public static String estado(TipoSensor tipo, double valor, DetectorAnomalias.TipoAnomalia anomalia) {
+        if (anomalia != DetectorAnomalias.TipoAnomalia.NINGUNA) {
+            return "🔧 En cuarentena";
+        }
+        if (tipo == TipoSensor.HUMEDAD) {
+            if (valor < AlertaService.HUMEDAD_CRITICA)
+                return "🔴 CRÍTICO";
+            if (valor < AlertaService.HUMEDAD_BAJA)
+                return "⚠️ Bajo";
+        } else if (tipo == TipoSensor.TEMPERATURA) {
+            if (valor > AlertaService.TEMPERATURA_CRITICA)
+                return "🔴 CRÍTICO";
+            if (valor > AlertaService.TEMPERATURA_ALTA)
+                return "⚠️ Alto";
+        }
+        return "✅ Normal";
+    }
+
+    // Último valor de cada sensor modificado desde el cuadro anterior, en
+    // arreglos indexados por número de sensor
+    private static class Pendientes {
+        private int[] lotes = new int[64];
+        private byte[] tipos = new byte[64];
+        private double[] valores = new double[64];
+        private byte[] anomalias = new byte[64];
+        private boolean[] marcado = new boolean[64];
+        private int[] sucios = new int[64];
+        private int cantidad;
+
+        void poner(int sensor, int lote, TipoSensor tipo, double valor, DetectorAnomalias.TipoAnomalia anomalia) {
+            if (sensor >= marcado.length) {
+                crecer(sensor + 1);
+            }
+            lotes[sensor] = lote;
+            tipos[sensor] = (byte) tipo.ordinal();
+            valores[sensor] = valor;
+            anomalias[sensor] = (byte) anomalia.ordinal();
+            if (!marcado[sensor]) {
+                marcado[sensor] = true;
+                if (cantidad == sucios.length) {
+                    sucios = Arrays.copyOf(sucios, cantidad * 2);
+                }
+                sucios[cantidad++] = sensor;
+            }
+        }
+
+        void limpiar() {
+            for (int k = 0; k < cantidad; k++) {
+                marcado[sucios[k]] = false;
+            }
+            cantidad = 0;
+        }
+
+        private void crecer(int minimo) {
+            int n = Math.max(minimo, marcado.length * 2);
+            lotes = Arrays.copyOf(lotes, n);
+            tipos = Arrays.copyOf(tipos, n);
+            valores = Arrays.copyOf(valores, n);
+            anomalias = Arrays.copyOf(anomalias, n);
+            marcado = Arrays.copyOf(marcado, n);
+        }
+    }
+}
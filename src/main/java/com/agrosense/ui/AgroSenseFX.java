@@ -3,11 +3,14 @@ package com.agrosense.ui;
 import com.agrosense.model.*;
 import com.agrosense.service.*;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
@@ -17,7 +20,12 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.stage.Stage;
 
+import java.io.FileNotFoundException;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 public class AgroSenseFX extends Application {
 
@@ -25,15 +33,49 @@ public class AgroSenseFX extends Application {
     private GestorLotes gestorLotes = new GestorLotes();
     private SensorService sensorService = new SensorService();
     private AlertaService alertaService = new AlertaService();
+    private EstadisticasService estadisticasService = new EstadisticasService();
+    private IngestaService ingestaService = new IngestaService(alertaService, estadisticasService);
     private RecomendacionService recomendacionService = new RecomendacionService();
     private ToonPersistenceService toonService = new ToonPersistenceService();
 
+    // Lecturas por lotes: índice de sensores y mediciones reutilizadas entre ciclos.
+    // Solo se usan desde el hilo de monitoreo.
+    private IndiceSensores indiceSensores;
+    private final MedicionBatch batchLecturas = new MedicionBatch();
+    private double[] valoresCiclo = new double[0];
+    private DetectorAnomalias.TipoAnomalia[] anomaliasCiclo = new DetectorAnomalias.TipoAnomalia[0];
+
+    // Monitoreo en segundo plano: las lecturas y el guardado corren fuera del
+    // hilo de la UI y las tablas se actualizan a ritmo limitado
+    private static final int ACTUALIZACIONES_POR_SEGUNDO = 20;
+    private static final int MAX_ALERTAS_RECOMENDACIONES = 200;
+    private final ExecutorService ejecutorMonitoreo = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "agrosense-monitoreo-fx");
+        t.setDaemon(true);
+        return t;
+    });
+    private final TuberiaLecturas tuberiaLecturas = new TuberiaLecturas(ingestaService, alertaService,
+            estadisticasService);
+    private final PlanificadorSondeo planificadorSondeo = new PlanificadorSondeo(gestorLotes, sensorService,
+            tuberiaLecturas);
+    // Estado del botón de monitoreo continuo; solo en el hilo de la UI
+    private boolean monitoreoContinuo;
+    private final ObservableList<MedicionViewModel> filasMonitoreo = FXCollections.observableArrayList();
+    private ActualizadorMonitoreo actualizador;
+    private GraficasEnVivo graficas;
+
     // UI Components
     private TableView<Lote> tableLotes;
     private TableView<MedicionViewModel> tableMonitoreo;
-    private TableView<Alerta> tableAlertas;
+    private TablaAlertasPaginada tablaAlertas;
     private TextArea txtRecomendaciones;
     private ComboBox<String> comboLotesSensor;
+    private final ProgressBar barraCarga = new ProgressBar(0);
+    private final Label lblEstado = new Label();
+
+    // Tiempo de inicio
+    private final long creacionMillis = System.currentTimeMillis();
+    private long msVentanaVisible;
 
     // Colors
     private static final String PRIMARY_COLOR = "#228B22";
@@ -46,8 +88,24 @@ public class AgroSenseFX extends Application {
 
     @Override
     public void start(Stage primaryStage) {
-        // Auto-load data
-        cargarDatosAutomaticamente();
+        // Métricas por JMX; con -Dagrosense.metricas.periodo=N también se vuelcan cada N segundos
+        RegistroMetricas.GLOBAL.registrarJmx();
+        Metricas.registrarMemoria(gestorLotes);
+        long periodoMetricas = Long.getLong("agrosense.metricas.periodo", 0);
+        if (periodoMetricas > 0) {
+            RegistroMetricas.GLOBAL.iniciarVolcado(periodoMetricas, System.out);
+        }
+
+        actualizador = new ActualizadorMonitoreo(filasMonitoreo, alertaService, this::nombreDeLote,
+                this::refrescarAlertas, ACTUALIZACIONES_POR_SEGUNDO);
+        // El monitoreo continuo agrega un consumidor a la tubería que solo guarda
+        // el último valor de cada sensor para la tabla
+        tuberiaLecturas.agregarConsumidor("ui", (evento, secuencia, finDeLote) -> {
+            if (evento.getAnomalia() != null) {
+                actualizador.publicar(evento.getSensor(), evento.getLote(), evento.getTipo(), evento.getValor(),
+                        evento.getAnomalia());
+            }
+        }, PoliticaSobrecarga.COALESCER, TuberiaLecturas.TAMANO_POR_DEFECTO / 4);
 
         BorderPane root = new BorderPane();
         root.getStylesheets().add(getClass().getResource("/styles.css").toExternalForm());
@@ -60,18 +118,49 @@ public class AgroSenseFX extends Application {
         TabPane tabPane = new TabPane();
         tabPane.setStyle("-fx-background-color: transparent;");
 
+        // Cada pestaña construye su contenido la primera vez que se selecciona
         tabPane.getTabs().addAll(
-                createTab("🌱 Gestión de Lotes", createLotesView()),
-                createTab("📡 Sensores", createSensoresView()),
-                createTab("📊 Monitoreo", createMonitoreoView()),
-                createTab("⚠️ Alertas", createAlertasView()));
+                createLazyTab("🌱 Gestión de Lotes", this::createLotesView),
+                createLazyTab("📡 Sensores", this::createSensoresView),
+                createLazyTab("📊 Monitoreo", this::createMonitoreoView),
+                createLazyTab("⚠️ Alertas", this::createAlertasView));
+
+        // Las gráficas solo se actualizan mientras su pestaña está visible. El
+        // oyente se registra después del que construye la vista.
+        Tab tabGraficas = createLazyTab("📈 Gráficas", this::createGraficasView);
+        tabGraficas.selectedProperty().addListener((obs, antes, seleccionada) -> {
+            if (seleccionada) {
+                graficas.start();
+            } else {
+                graficas.stop();
+            }
+        });
+        tabPane.getTabs().add(tabGraficas);
 
         root.setCenter(tabPane);
+        root.setBottom(createStatusBar());
 
         Scene scene = new Scene(root, 1100, 700);
         primaryStage.setTitle("AgroSense - Sistema de Monitoreo Agrícola");
         primaryStage.setScene(scene);
         primaryStage.show();
+        actualizador.start();
+
+        // La ventana ya es usable; los datos guardados se cargan en segundo plano
+        Platform.runLater(() -> msVentanaVisible = msDesdeArranque());
+        cargarDatosEnSegundoPlano();
+    }
+
+    @Override
+    public void stop() {
+        actualizador.stop();
+        if (graficas != null) {
+            graficas.stop();
+        }
+        planificadorSondeo.detener();
+        tuberiaLecturas.detener();
+        ejecutorMonitoreo.shutdown();
+        RegistroMetricas.GLOBAL.detenerVolcado();
     }
 
     private HBox createHeader() {
@@ -111,13 +200,25 @@ public class AgroSenseFX extends Application {
         return header;
     }
 
-    private Tab createTab(String title, javafx.scene.Node content) {
+    private Tab createLazyTab(String title, Supplier<Node> constructor) {
         Tab tab = new Tab(title);
-        tab.setContent(content);
         tab.setClosable(false);
+        tab.selectedProperty().addListener((obs, antes, seleccionada) -> {
+            if (seleccionada && tab.getContent() == null) {
+                tab.setContent(constructor.get());
+            }
+        });
         return tab;
     }
 
+    private HBox createStatusBar() {
+        barraCarga.setPrefWidth(200);
+        HBox barra = new HBox(10, barraCarga, lblEstado);
+        barra.setPadding(new Insets(4, 25, 4, 25));
+        barra.setAlignment(Pos.CENTER_LEFT);
+        return barra;
+    }
+
     // --- Lotes View ---
     private VBox createLotesView() {
         VBox layout = new VBox(20);
@@ -195,6 +296,7 @@ public class AgroSenseFX extends Application {
         VBox.setVgrow(tableCard, Priority.ALWAYS);
 
         layout.getChildren().addAll(formCard, tableCard);
+        actualizarTablaLotes();
         return layout;
     }
 
@@ -214,7 +316,7 @@ public class AgroSenseFX extends Application {
         comboLotesSensor.setMaxWidth(Double.MAX_VALUE);
 
         TextField txtId = new TextField();
-        ComboBox<String> comboTipo = new ComboBox<>(FXCollections.observableArrayList("HUMEDAD", "TEMPERATURA"));
+        ComboBox<TipoSensor> comboTipo = new ComboBox<>(FXCollections.observableArrayList(TipoSensor.values()));
         comboTipo.getSelectionModel().selectFirst();
         comboTipo.setMaxWidth(Double.MAX_VALUE);
 
@@ -239,7 +341,7 @@ public class AgroSenseFX extends Application {
 
             if (loteOpt.isPresent()) {
                 Lote lote = loteOpt.get();
-                Sensor sensor = comboTipo.getValue().equals("HUMEDAD")
+                Sensor sensor = comboTipo.getValue() == TipoSensor.HUMEDAD
                         ? new SensorHumedad(txtId.getText(), txtUbicacion.getText())
                         : new SensorTemperatura(txtId.getText(), txtUbicacion.getText());
 
@@ -265,6 +367,7 @@ public class AgroSenseFX extends Application {
         infoCard.getChildren().add(info);
 
         layout.getChildren().addAll(formCard, infoCard);
+        actualizarCombos();
         return layout;
     }
 
@@ -279,8 +382,42 @@ public class AgroSenseFX extends Application {
         btnSimular.setMaxWidth(Double.MAX_VALUE);
         btnSimular.setOnAction(e -> simularMonitoreo());
 
+        Button btnContinuo = createStyledButton("⏯️ Iniciar Monitoreo Continuo");
+        btnContinuo.setMaxWidth(Double.MAX_VALUE);
+        // Las lecturas manuales y el planificador no leen los mismos sensores a
+        // la vez: se arranca y se detiene en el hilo de monitoreo, después de
+        // los ciclos manuales pendientes, y Simular queda deshabilitado mientras
+        btnContinuo.setOnAction(e -> {
+            btnContinuo.setDisable(true);
+            if (monitoreoContinuo) {
+                monitoreoContinuo = false;
+                ejecutorMonitoreo.execute(() -> {
+                    planificadorSondeo.detener();
+                    tuberiaLecturas.detener();
+                    Platform.runLater(() -> {
+                        btnContinuo.setText("⏯️ Iniciar Monitoreo Continuo");
+                        btnContinuo.setDisable(false);
+                        btnSimular.setDisable(false);
+                    });
+                });
+                guardarDatosAutomaticamente();
+            } else {
+                monitoreoContinuo = true;
+                btnSimular.setDisable(true);
+                ejecutorMonitoreo.execute(() -> {
+                    tuberiaLecturas.iniciar();
+                    planificadorSondeo.iniciar();
+                    Platform.runLater(() -> {
+                        btnContinuo.setText("⏹️ Detener Monitoreo Continuo");
+                        btnContinuo.setDisable(false);
+                    });
+                });
+            }
+        });
+
         VBox tableCard = createCard("📊 Lecturas en Tiempo Real");
-        tableMonitoreo = new TableView<>();
+        // La lista es siempre la misma; las filas se actualizan en su lugar
+        tableMonitoreo = new TableView<>(filasMonitoreo);
 
         TableColumn<MedicionViewModel, String> colLote = new TableColumn<>("Lote");
         colLote.setCellValueFactory(new PropertyValueFactory<>("lote"));
@@ -303,35 +440,38 @@ public class AgroSenseFX extends Application {
         tableCard.getChildren().add(tableMonitoreo);
         VBox.setVgrow(tableCard, Priority.ALWAYS);
 
-        layout.getChildren().addAll(btnSimular, tableCard);
+        layout.getChildren().addAll(btnSimular, btnContinuo, tableCard);
         return layout;
     }
 
-    // --- Alertas View ---
-    private VBox createAlertasView() {
+    // --- Gráficas View ---
+    private VBox createGraficasView() {
         VBox layout = new VBox(20);
         layout.setPadding(new Insets(20));
 
-        VBox alertsCard = createCard("⚠️ Historial de Alertas");
-        tableAlertas = new TableView<>();
-
-        TableColumn<Alerta, String> colFecha = new TableColumn<>("Fecha");
-        colFecha.setCellValueFactory(
-                cellData -> new SimpleStringProperty(cellData.getValue().getFechaHora().toString().replace("T", " ")));
+        graficas = new GraficasEnVivo(estadisticasService);
+        actualizarCombos();
 
-        TableColumn<Alerta, String> colNivel = new TableColumn<>("Nivel");
-        colNivel.setCellValueFactory(new PropertyValueFactory<>("nivel"));
+        VBox chartCard = createCard("📈 Histórico en Vivo");
+        chartCard.getChildren().add(graficas.getVista());
+        VBox.setVgrow(graficas.getVista(), Priority.ALWAYS);
+        VBox.setVgrow(chartCard, Priority.ALWAYS);
 
-        TableColumn<Alerta, String> colLote = new TableColumn<>("Lote");
-        colLote.setCellValueFactory(new PropertyValueFactory<>("loteId"));
+        layout.getChildren().add(chartCard);
+        return layout;
+    }
 
-        TableColumn<Alerta, String> colMensaje = new TableColumn<>("Mensaje");
-        colMensaje.setCellValueFactory(new PropertyValueFactory<>("mensaje"));
+    // --- Alertas View ---
+    private VBox createAlertasView() {
+        VBox layout = new VBox(20);
+        layout.setPadding(new Insets(20));
 
-        tableAlertas.getColumns().addAll(colFecha, colNivel, colLote, colMensaje);
-        tableAlertas.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        VBox alertsCard = createCard("⚠️ Historial de Alertas");
+        // Solo la página visible vive en la tabla; filtros y orden los resuelve el almacén
+        tablaAlertas = new TablaAlertasPaginada(alertaService.getAlmacen());
+        VBox.setVgrow(tablaAlertas.getVista(), Priority.ALWAYS);
 
-        alertsCard.getChildren().add(tableAlertas);
+        alertsCard.getChildren().add(tablaAlertas.getVista());
         VBox.setVgrow(alertsCard, Priority.ALWAYS);
 
         VBox recomCard = createCard("💡 Recomendaciones Inteligentes");
@@ -340,11 +480,12 @@ public class AgroSenseFX extends Application {
         txtRecomendaciones.setWrapText(true);
 
         Button btnRefresh = createStyledButton("🔄 Actualizar");
-        btnRefresh.setOnAction(e -> actualizarAlertas());
+        btnRefresh.setOnAction(e -> actualizarRecomendaciones());
 
         recomCard.getChildren().addAll(txtRecomendaciones, btnRefresh);
 
         layout.getChildren().addAll(alertsCard, recomCard);
+        actualizarRecomendaciones();
         return layout;
     }
 
@@ -386,7 +527,11 @@ public class AgroSenseFX extends Application {
     }
 
     // --- Logic ---
+    // Las vistas aún no construidas se llenan al crearse
     private void actualizarTablaLotes() {
+        if (tableLotes == null) {
+            return;
+        }
         tableLotes.setItems(FXCollections.observableArrayList(gestorLotes.obtenerTodos()));
     }
 
@@ -395,46 +540,97 @@ public class AgroSenseFX extends Application {
         for (Lote lote : gestorLotes.obtenerTodos()) {
             items.add(lote.getId() + " - " + lote.getNombre());
         }
-        comboLotesSensor.setItems(items);
+        if (comboLotesSensor != null) {
+            comboLotesSensor.setItems(items);
+        }
+        if (graficas != null) {
+            graficas.setLotes(items);
+        }
+    }
+
+    private String nombreDeLote(String loteId) {
+        return gestorLotes.buscarPorId(loteId).map(Lote::getNombre).orElse(loteId);
     }
 
     private void simularMonitoreo() {
-        ObservableList<MedicionViewModel> data = FXCollections.observableArrayList();
+        ejecutorMonitoreo.execute(() -> {
+            // Un clic encolado antes de iniciar el monitoreo continuo ya no lee
+            if (!planificadorSondeo.estaActivo()) {
+                leerCiclo();
+            }
+        });
+    }
 
-        for (Lote lote : gestorLotes.obtenerTodos()) {
-            for (Sensor sensor : lote.getSensores()) {
-                double valor = sensorService.leerSensor(sensor);
-                Medicion medicion = new Medicion(valor, sensor.getId(), sensor.getTipo());
-                alertaService.verificarMedicion(medicion, lote.getId());
-
-                String estado = "✅ Normal";
-                if (sensor.getTipo().equals("HUMEDAD")) {
-                    if (valor < 30)
-                        estado = "🔴 CRÍTICO";
-                    else if (valor < 50)
-                        estado = "⚠️ Bajo";
-                } else if (sensor.getTipo().equals("TEMPERATURA")) {
-                    if (valor > 35)
-                        estado = "🔴 CRÍTICO";
-                    else if (valor > 30)
-                        estado = "⚠️ Alto";
-                }
+    // Corre en el hilo de monitoreo: la UI solo recibe los cambios por sensor
+    private void leerCiclo() {
+        indiceSensores = IndiceSensores.actualizar(indiceSensores, gestorLotes);
+        batchLecturas.limpiar();
+        sensorService.leerTodos(indiceSensores, batchLecturas);
+
+        // procesarLote compacta el lote: los valores leídos se copian antes
+        // para publicar cada sensor con su resultado
+        int leidas = batchLecturas.getTamano();
+        if (valoresCiclo.length < leidas) {
+            valoresCiclo = new double[leidas];
+            anomaliasCiclo = new DetectorAnomalias.TipoAnomalia[leidas];
+        }
+        System.arraycopy(batchLecturas.getValores(), 0, valoresCiclo, 0, leidas);
+        ingestaService.procesarLote(batchLecturas, anomaliasCiclo);
+
+        // leerTodos deja una lectura por sensor en el orden del índice
+        for (int i = 0; i < leidas; i++) {
+            Sensor sensor = indiceSensores.getSensor(i);
+            Lote lote = indiceSensores.getLote(indiceSensores.getLoteDeSensor(i));
+            actualizador.publicar(sensor.getNumero(), lote.getNumero(), sensor.getTipo(), valoresCiclo[i],
+                    anomaliasCiclo[i]);
+        }
+        if (leidas > 0) {
+            guardarMediciones();
+            guardarEnDisco();
+        }
+    }
 
-                String valorStr = String.format("%.1f%s", valor, sensor.getTipo().equals("HUMEDAD") ? "%" : "°C");
-                data.add(new MedicionViewModel(lote.getNombre(), sensor.getId(), sensor.getTipo(), valorStr, estado));
-            }
+    // Las mediciones guardadas en ejecuciones anteriores vuelven a las
+    // estadísticas y gráficas; ya pasaron el detector al guardarse. Se
+    // registran bloque por bloque, solo las que caen en la retención
+    private void cargarMediciones() {
+        try {
+            long desde = System.currentTimeMillis() - toonService.getRetencionMediciones();
+            long cantidad = toonService.cargarMediciones(desde, estadisticasService::registrarLote);
+            System.out.printf("%,d mediciones cargadas desde TOON%n", cantidad);
+        } catch (Exception e) {
+            System.err.println("Error al cargar mediciones: " + e.getMessage());
         }
-        tableMonitoreo.setItems(data);
-        actualizarAlertas();
-        if (!data.isEmpty()) {
-            guardarDatosAutomaticamente();
+    }
+
+    // Agrega las lecturas aceptadas del ciclo al archivo de mediciones
+    private void guardarMediciones() {
+        try {
+            toonService.guardarMediciones(batchLecturas);
+        } catch (Exception e) {
+            System.err.println("Error al guardar mediciones: " + e.getMessage());
         }
     }
 
     private void actualizarAlertas() {
-        List<Alerta> alertas = alertaService.getHistorialAlertas();
-        tableAlertas.setItems(FXCollections.observableArrayList(alertas));
+        // Las filas de monitoreo eran de los lotes anteriores
+        actualizador.limpiar();
+        refrescarAlertas();
+    }
 
+    private void refrescarAlertas() {
+        if (tablaAlertas != null) {
+            tablaAlertas.refrescar();
+        }
+        actualizarRecomendaciones();
+    }
+
+    private void actualizarRecomendaciones() {
+        if (txtRecomendaciones == null) {
+            return;
+        }
+        // Con historiales muy grandes solo las alertas recientes generan recomendaciones
+        List<Alerta> alertas = alertaService.getAlmacen().ultimas(MAX_ALERTAS_RECOMENDACIONES);
         List<Recomendacion> recomendaciones = recomendacionService.generarRecomendaciones(alertas);
         StringBuilder sb = new StringBuilder();
         if (recomendaciones.isEmpty()) {
@@ -451,51 +647,71 @@ public class AgroSenseFX extends Application {
     }
 
     private void exportarDatos() {
-        try {
-            toonService.exportarDatos(gestorLotes, alertaService);
-            showAlert("Éxito", "Datos exportados correctamente en formato TOON", Alert.AlertType.INFORMATION);
-        } catch (Exception e) {
-            showAlert("Error", "Error al exportar: " + e.getMessage(), Alert.AlertType.ERROR);
-        }
+        exportarEnSegundoPlano("Datos exportados correctamente en formato TOON", "Error al exportar: ");
     }
 
     private void importarDatos() {
-        try {
-            var data = toonService.importarDatos();
-            gestorLotes.obtenerTodos().clear();
-            alertaService.getHistorialAlertas().clear();
-
-            for (Lote lote : data.lotes)
-                gestorLotes.registrarLote(lote);
-            for (Alerta alerta : data.alertas)
-                alertaService.getHistorialAlertas().add(alerta);
-
-            actualizarTablaLotes();
-            actualizarCombos();
-            actualizarAlertas();
-            showAlert("Éxito", "Datos importados correctamente desde TOON", Alert.AlertType.INFORMATION);
-        } catch (Exception e) {
-            showAlert("Error", "Error al importar: " + e.getMessage(), Alert.AlertType.ERROR);
-        }
+        importarEnSegundoPlano("Datos importados correctamente desde TOON", "Error al importar: ");
     }
 
-    private void cargarDatosAutomaticamente() {
-        try {
-            var data = toonService.importarDatos();
-            for (Lote lote : data.lotes)
-                gestorLotes.registrarLote(lote);
-            for (Alerta alerta : data.alertas)
-                alertaService.getHistorialAlertas().add(alerta);
-            actualizarTablaLotes();
-            actualizarCombos();
-            actualizarAlertas();
-            System.out.println("Datos cargados automáticamente desde TOON");
-        } catch (Exception e) {
-            System.out.println("Iniciando con datos vacíos (TOON no encontrado o error)");
-        }
+    /**
+     * Lee el archivo TOON en el hilo de monitoreo, que también hace los
+     * guardados, así ningún guardado puede adelantarse a la carga. La barra de
+     * estado muestra el avance y las tablas se llenan al terminar.
+     */
+    private void cargarDatosEnSegundoPlano() {
+        barraCarga.setProgress(0);
+        lblEstado.setText("Cargando datos...");
+        ejecutorMonitoreo.execute(() -> {
+            String resultado;
+            try {
+                var data = toonService
+                        .importarDatos(fraccion -> Platform.runLater(() -> barraCarga.setProgress(fraccion)));
+                for (Lote lote : data.lotes) {
+                    try {
+                        gestorLotes.registrarLote(lote);
+                    } catch (IllegalArgumentException e) {
+                        // Registrado en la UI mientras se cargaba
+                        System.err.println("Lote omitido al cargar: " + e.getMessage());
+                    }
+                }
+                alertaService.getHistorialAlertas().addAll(data.alertas);
+                resultado = String.format("%,d lotes y %,d alertas cargados", data.lotes.size(), data.alertas.size());
+                System.out.println("Datos cargados automáticamente desde TOON");
+                cargarMediciones();
+            } catch (FileNotFoundException e) {
+                resultado = "Sin datos guardados";
+                System.out.println("Iniciando con datos vacíos (TOON no encontrado)");
+            } catch (Exception e) {
+                resultado = "Error al cargar datos: " + e.getMessage();
+                System.out.println("Iniciando con datos vacíos (error al leer TOON: " + e.getMessage() + ")");
+            }
+            String mensaje = resultado;
+            Platform.runLater(() -> {
+                actualizarTablaLotes();
+                actualizarCombos();
+                actualizarAlertas();
+                long msInteractivo = msDesdeArranque();
+                barraCarga.setVisible(false);
+                lblEstado.setText(String.format("%s · ventana en %,d ms, lista en %,d ms", mensaje, msVentanaVisible,
+                        msInteractivo));
+                System.out.printf("Tiempo de inicio: ventana visible en %d ms, interactiva con datos en %d ms%n",
+                        msVentanaVisible, msInteractivo);
+            });
+        });
+    }
+
+    // Milisegundos desde el arranque de la JVM (o desde que se creó la aplicación)
+    private long msDesdeArranque() {
+        long inicio = ProcessHandle.current().info().startInstant().map(Instant::toEpochMilli).orElse(creacionMillis);
+        return System.currentTimeMillis() - inicio;
     }
 
     private void guardarDatosAutomaticamente() {
+        ejecutorMonitoreo.execute(this::guardarEnDisco);
+    }
+
+    private void guardarEnDisco() {
         try {
             toonService.exportarDatos(gestorLotes, alertaService);
             System.out.println("Datos guardados automáticamente en TOON");
@@ -505,36 +721,59 @@ public class AgroSenseFX extends Application {
     }
 
     private void exportarDatosToon() {
-        try {
-            toonService.exportarDatos(gestorLotes, alertaService);
-            showAlert("Éxito", "Datos exportados en formato TOON", Alert.AlertType.INFORMATION);
-        } catch (Exception e) {
-            showAlert("Error", "Error al exportar TOON: " + e.getMessage(), Alert.AlertType.ERROR);
-        }
+        exportarEnSegundoPlano("Datos exportados en formato TOON", "Error al exportar TOON: ");
     }
 
     private void importarDatosToon() {
-        try {
-            var data = toonService.importarDatos();
-            gestorLotes.obtenerTodos().clear();
-            alertaService.getHistorialAlertas().clear();
-
-            for (Lote lote : data.lotes)
-                gestorLotes.registrarLote(lote);
-            for (Alerta alerta : data.alertas)
-                alertaService.getHistorialAlertas().add(alerta);
-
-            actualizarTablaLotes();
-            actualizarCombos();
-            actualizarAlertas();
-            showAlert("Éxito", "Datos importados desde TOON", Alert.AlertType.INFORMATION);
-        } catch (Exception e) {
-            showAlert("Error", "Error al importar TOON: " + e.getMessage(), Alert.AlertType.ERROR);
-        }
+        importarEnSegundoPlano("Datos importados desde TOON", "Error al importar TOON: ");
+    }
+
+    /**
+     * Escribe el archivo en el hilo de monitoreo, en orden con los guardados
+     * automáticos, y avisa el resultado en el hilo de la interfaz
+     */
+    private void exportarEnSegundoPlano(String exito, String error) {
+        ejecutorMonitoreo.execute(() -> {
+            try {
+                toonService.exportarDatos(gestorLotes, alertaService);
+                Platform.runLater(() -> showAlert("Éxito", exito, Alert.AlertType.INFORMATION));
+            } catch (Exception e) {
+                Platform.runLater(() -> showAlert("Error", error + e.getMessage(), Alert.AlertType.ERROR));
+            }
+        });
+    }
+
+    /**
+     * Lee el archivo y reemplaza lotes y alertas en el hilo de monitoreo, así
+     * ningún ciclo ni guardado corre a mitad del reemplazo; las tablas se
+     * actualizan al terminar
+     */
+    private void importarEnSegundoPlano(String exito, String error) {
+        ejecutorMonitoreo.execute(() -> {
+            try {
+                var data = toonService.importarDatos();
+                gestorLotes.limpiar();
+                alertaService.getHistorialAlertas().clear();
+
+                for (Lote lote : data.lotes)
+                    gestorLotes.registrarLote(lote);
+                alertaService.getHistorialAlertas().addAll(data.alertas);
+
+                Platform.runLater(() -> {
+                    actualizarTablaLotes();
+                    actualizarCombos();
+                    actualizarAlertas();
+                    showAlert("Éxito", exito, Alert.AlertType.INFORMATION);
+                });
+            } catch (Exception e) {
+                Platform.runLater(() -> showAlert("Error", error + e.getMessage(), Alert.AlertType.ERROR));
+            }
+        });
     }
 
     // ViewModel for Monitoring Table
     public static class MedicionViewModel {
+        private String loteId;
         private final SimpleStringProperty lote;
         private final SimpleStringProperty sensorId;
         private final SimpleStringProperty tipo;
@@ -568,5 +807,47 @@ public class AgroSenseFX extends Application {
         public String getEstado() {
             return estado.get();
         }
+
+        public String getLoteId() {
+            return loteId;
+        }
+
+        public void setLoteId(String loteId) {
+            this.loteId = loteId;
+        }
+
+        public void setLote(String lote) {
+            this.lote.set(lote);
+        }
+
+        public void setValor(String valor) {
+            this.valor.set(valor);
+        }
+
+        public void setEstado(String estado) {
+            this.estado.set(estado);
+        }
+
+        // PropertyValueFactory usa estos métodos para que las celdas se
+        // actualicen cuando cambia el valor
+        public StringProperty loteProperty() {
+            return lote;
+        }
+
+        public StringProperty sensorIdProperty() {
+            return sensorId;
+        }
+
+        public StringProperty tipoProperty() {
+            return tipo;
+        }
+
+        public StringProperty valorProperty() {
+            return valor;
+        }
+
+        public StringProperty estadoProperty() {
+            return estado;
+        }
     }
 }
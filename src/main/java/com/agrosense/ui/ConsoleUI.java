@@ -3,6 +3,7 @@ package com.agrosense.ui;
 import com.agrosense.model.*;
 import com.agrosense.service.*;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 
@@ -10,14 +11,27 @@ public class ConsoleUI {
     private GestorLotes gestorLotes;
     private SensorService sensorService;
     private AlertaService alertaService;
+    private EstadisticasService estadisticasService;
+    private IngestaService ingestaService;
     private RecomendacionService recomendacionService;
+    private TuberiaLecturas tuberiaLecturas;
+    private PlanificadorSondeo planificadorSondeo;
     private Scanner scanner;
 
+    // Lecturas por lotes: índice de sensores y mediciones reutilizadas entre ciclos
+    private IndiceSensores indiceSensores;
+    private final MedicionBatch batchLecturas = new MedicionBatch();
+
     public ConsoleUI() {
         this.gestorLotes = new GestorLotes();
         this.sensorService = new SensorService();
         this.alertaService = new AlertaService();
+        this.estadisticasService = new EstadisticasService();
+        this.ingestaService = new IngestaService(alertaService, estadisticasService);
         this.recomendacionService = new RecomendacionService();
+        // El monitoreo continuo publica en la tubería y los consumidores procesan en segundo plano
+        this.tuberiaLecturas = new TuberiaLecturas(ingestaService, alertaService, estadisticasService);
+        this.planificadorSondeo = new PlanificadorSondeo(gestorLotes, sensorService, tuberiaLecturas);
         this.scanner = new Scanner(System.in);
     }
 
@@ -31,7 +45,9 @@ public class ConsoleUI {
                 opcion = -1;
             }
             procesarOpcion(opcion);
-        } while (opcion != 6);
+        } while (opcion != 7);
+        planificadorSondeo.detener();
+        tuberiaLecturas.detener();
     }
 
     private void mostrarMenu() {
@@ -41,7 +57,8 @@ public class ConsoleUI {
         System.out.println("3. Simular Monitoreo (Leer Sensores)");
         System.out.println("4. Ver Alertas");
         System.out.println("5. Ver Recomendaciones");
-        System.out.println("6. Salir");
+        System.out.println("6. Iniciar/Detener Monitoreo Continuo");
+        System.out.println("7. Salir");
         System.out.print("Seleccione una opción: ");
     }
 
@@ -63,6 +80,9 @@ public class ConsoleUI {
                 verRecomendaciones();
                 break;
             case 6:
+                alternarMonitoreoContinuo();
+                break;
+            case 7:
                 System.out.println("Saliendo del sistema...");
                 break;
             default:
@@ -97,19 +117,18 @@ public class ConsoleUI {
             System.out.print("ID del Sensor: ");
             String sensorId = scanner.nextLine();
             System.out.print("Tipo (HUMEDAD/TEMPERATURA): ");
-            String tipo = scanner.nextLine().toUpperCase();
-            System.out.print("Ubicación en el lote: ");
-            String ubicacion = scanner.nextLine();
-
-            Sensor sensor = null;
-            if (tipo.equals("HUMEDAD")) {
-                sensor = new SensorHumedad(sensorId, ubicacion);
-            } else if (tipo.equals("TEMPERATURA")) {
-                sensor = new SensorTemperatura(sensorId, ubicacion);
-            } else {
+            TipoSensor tipo;
+            try {
+                tipo = TipoSensor.desdeTexto(scanner.nextLine());
+            } catch (IllegalArgumentException e) {
                 System.out.println("Tipo de sensor no válido.");
                 return;
             }
+            System.out.print("Ubicación en el lote: ");
+            String ubicacion = scanner.nextLine();
+
+            Sensor sensor = tipo == TipoSensor.HUMEDAD ? new SensorHumedad(sensorId, ubicacion)
+                    : new SensorTemperatura(sensorId, ubicacion);
 
             lote.agregarSensor(sensor);
             System.out.println("Sensor agregado al lote " + lote.getNombre());
@@ -126,26 +145,50 @@ public class ConsoleUI {
             return;
         }
 
-        for (Lote lote : lotes) {
+        indiceSensores = IndiceSensores.actualizar(indiceSensores, gestorLotes);
+        batchLecturas.limpiar();
+        sensorService.leerTodos(indiceSensores, batchLecturas);
+
+        // procesarLote compacta el lote: los valores leídos se copian antes
+        // para mostrarlos junto al resultado de cada sensor
+        int leidas = batchLecturas.getTamano();
+        double[] valores = Arrays.copyOf(batchLecturas.getValores(), leidas);
+        DetectorAnomalias.TipoAnomalia[] anomalias = new DetectorAnomalias.TipoAnomalia[leidas];
+        ingestaService.procesarLote(batchLecturas, anomalias);
+
+        for (int l = 0; l < indiceSensores.getCantidadLotes(); l++) {
+            Lote lote = indiceSensores.getLote(l);
             System.out.println("Monitoreando Lote: " + lote.getNombre());
-            for (Sensor sensor : lote.getSensores()) {
-                // Usamos el servicio para leer (que usa su propia lógica o la del sensor)
-                double valor = sensorService.leerSensor(sensor);
-                Medicion medicion = new Medicion(valor, sensor.getId(), sensor.getTipo());
+            for (int i = indiceSensores.getInicioLote(l); i < indiceSensores.getFinLote(l); i++) {
+                // leerTodos deja una lectura por sensor en el orden del índice
+                Sensor sensor = indiceSensores.getSensor(i);
+                double valor = valores[i];
+                var anomalia = anomalias[i];
 
                 System.out.println(" -> Sensor " + sensor.getTipo() + " (" + sensor.getId() + "): "
-                        + String.format("%.2f", valor));
-
-                // Verificar alertas
-                alertaService.verificarMedicion(medicion, lote.getId());
+                        + String.format("%.2f", valor)
+                        + (anomalia == DetectorAnomalias.TipoAnomalia.NINGUNA ? "" : " [en cuarentena: " + anomalia + "]"));
             }
         }
         System.out.println("Monitoreo finalizado.");
     }
 
+    private void alternarMonitoreoContinuo() {
+        if (planificadorSondeo.estaActivo()) {
+            planificadorSondeo.detener();
+            tuberiaLecturas.detener();
+            System.out.println("Monitoreo continuo detenido. Lecturas realizadas: " + planificadorSondeo.getLecturas()
+                    + ", vencidas: " + planificadorSondeo.getLecturasVencidas());
+        } else {
+            tuberiaLecturas.iniciar();
+            planificadorSondeo.iniciar();
+            System.out.println("Monitoreo continuo iniciado en segundo plano.");
+        }
+    }
+
     private void verAlertas() {
         System.out.println("\n--- Historial de Alertas ---");
-        List<Alerta> alertas = alertaService.getHistorialAlertas();
+        List<Alerta> alertas = alertaService.obtenerCopiaHistorial();
         if (alertas.isEmpty()) {
             System.out.println("No hay alertas registradas.");
         } else {
@@ -157,7 +200,7 @@ public class ConsoleUI {
 
     private void verRecomendaciones() {
         System.out.println("\n--- Recomendaciones ---");
-        List<Alerta> alertas = alertaService.getHistorialAlertas();
+        List<Alerta> alertas = alertaService.obtenerCopiaHistorial();
         List<Recomendacion> recomendaciones = recomendacionService.generarRecomendaciones(alertas);
 
         if (recomendaciones.isEmpty()) {
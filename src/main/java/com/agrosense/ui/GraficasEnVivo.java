@@ -0,0 +1,236 @@
+package com.agrosense.ui;
+
+import com.agrosense.model.ResumenIntervalo;
+import com.agrosense.model.TipoSensor;
+import com.agrosense.service.EstadisticasService;
+import com.agrosense.service.SerieMultiResolucion;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import javafx.animation.AnimationTimer;
+import javafx.collections.ObservableList;
+import javafx.geometry.Pos;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.util.StringConverter;
+
+/**
+ * Gráficas en vivo del histórico de un lote, una por tipo de sensor. Al
+ * elegir lote o rango se carga el histórico ya reducido a unos pocos puntos
+ * por píxel ({@link EstadisticasService#consultarHistoricoReducido}); después,
+ * en cada cuadro solo se consulta la cola desde el último intervalo dibujado:
+ * el intervalo en curso se actualiza en su lugar, los nuevos se agregan al
+ * final y los que salen de la ventana se quitan del principio. El trabajo por
+ * cuadro no depende del largo del rango ni del ritmo de ingesta.
+ */
+public class GraficasEnVivo extends AnimationTimer {
+
+    private static final int ACTUALIZACIONES_POR_SEGUNDO = 10;
+    private static final int PUNTOS_POR_DEFECTO = 800;
+
+    private static final long[] RANGOS = { 15 * SerieMultiResolucion.MINUTO, SerieMultiResolucion.HORA,
+            24 * SerieMultiResolucion.HORA, 7 * SerieMultiResolucion.DIA, 30 * SerieMultiResolucion.DIA };
+    private static final String[] NOMBRES_RANGOS = { "15 minutos", "1 hora", "24 horas", "7 días", "30 días" };
+
+    private static final DateTimeFormatter FORMATO_HORA = DateTimeFormatter.ofPattern("HH:mm")
+            .withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter FORMATO_DIA = DateTimeFormatter.ofPattern("dd/MM HH:mm")
+            .withZone(ZoneId.systemDefault());
+
+    private final EstadisticasService estadisticas;
+    private final ComboBox<String> comboLote = new ComboBox<>();
+    private final ComboBox<String> comboRango = new ComboBox<>();
+    private final List<Grafica> graficas = new ArrayList<>();
+    private final VBox vista = new VBox(10);
+
+    private String loteId;
+    private long rango = RANGOS[1];
+    private long ultimoCuadro;
+
+    public GraficasEnVivo(EstadisticasService estadisticas) {
+        this.estadisticas = estadisticas;
+
+        comboLote.setPromptText("Seleccionar Lote");
+        comboLote.setOnAction(e -> {
+            String seleccion = comboLote.getValue();
+            loteId = seleccion == null ? null : seleccion.split(" - ")[0];
+            recargar();
+        });
+        comboRango.getItems().addAll(NOMBRES_RANGOS);
+        comboRango.getSelectionModel().select(1);
+        comboRango.setOnAction(e -> {
+            rango = RANGOS[comboRango.getSelectionModel().getSelectedIndex()];
+            recargar();
+        });
+        Button btnRecargar = new Button("🔄");
+        btnRecargar.setOnAction(e -> recargar());
+
+        HBox controles = new HBox(10, new Label("Lote:"), comboLote, new Label("Rango:"), comboRango, btnRecargar);
+        controles.setAlignment(Pos.CENTER_LEFT);
+        vista.getChildren().add(controles);
+
+        for (TipoSensor tipo : TipoSensor.values()) {
+            Grafica grafica = new Grafica(tipo);
+            graficas.add(grafica);
+            vista.getChildren().add(grafica.chart);
+            VBox.setVgrow(grafica.chart, Priority.ALWAYS);
+        }
+    }
+
+    public VBox getVista() {
+        return vista;
+    }
+
+    /**
+     * Actualiza la lista de lotes ("id - nombre") conservando la selección
+     */
+    public void setLotes(List<String> lotes) {
+        String seleccion = comboLote.getValue();
+        comboLote.getItems().setAll(lotes);
+        if (seleccion != null && lotes.contains(seleccion)) {
+            comboLote.setValue(seleccion);
+        }
+    }
+
+    @Override
+    public void handle(long ahora) {
+        if (ahora - ultimoCuadro < 1_000_000_000L / ACTUALIZACIONES_POR_SEGUNDO || loteId == null) {
+            return;
+        }
+        ultimoCuadro = ahora;
+        long reloj = System.currentTimeMillis();
+        for (Grafica grafica : graficas) {
+            grafica.actualizarCola(reloj);
+        }
+    }
+
+    private void recargar() {
+        long reloj = System.currentTimeMillis();
+        for (Grafica grafica : graficas) {
+            grafica.recargar(reloj);
+        }
+    }
+
+    private class Grafica {
+        private final TipoSensor tipo;
+        private final NumberAxis ejeX = new NumberAxis();
+        private final NumberAxis ejeY = new NumberAxis();
+        private final LineChart<Number, Number> chart = new LineChart<>(ejeX, ejeY);
+        private final XYChart.Series<Number, Number> serie = new XYChart.Series<>();
+
+        // Resolución de los puntos que se agregan en vivo y comienzo del último
+        // de ellos, que puede seguir recibiendo mediciones
+        private long resolucion = SerieMultiResolucion.MINUTO;
+        private long inicioPendiente;
+
+        Grafica(TipoSensor tipo) {
+            this.tipo = tipo;
+            chart.setTitle(tipo.name() + " (" + tipo.getUnidad() + ")");
+            chart.setAnimated(false);
+            chart.setCreateSymbols(false);
+            chart.setLegendVisible(false);
+            chart.getData().add(serie);
+            ejeX.setAutoRanging(false);
+            ejeX.setForceZeroInRange(false);
+            ejeY.setForceZeroInRange(false);
+            ejeX.setTickLabelFormatter(new StringConverter<Number>() {
+                @Override
+                public String toString(Number valor) {
+                    Instant instante = Instant.ofEpochMilli(valor.longValue());
+                    return rango <= 24 * SerieMultiResolucion.HORA ? FORMATO_HORA.format(instante)
+                            : FORMATO_DIA.format(instante);
+                }
+
+                @Override
+                public Number fromString(String texto) {
+                    return texto == null || texto.isBlank() ? null : Long.parseLong(texto.trim());
+                }
+            });
+        }
+
+        void recargar(long reloj) {
+            if (loteId == null) {
+                serie.getData().clear();
+                return;
+            }
+            int puntos = chart.getWidth() > 0 ? (int) chart.getWidth() : PUNTOS_POR_DEFECTO;
+            long desde = reloj - rango;
+            List<ResumenIntervalo> historico = estadisticas.consultarHistoricoReducido(loteId, tipo, desde,
+                    reloj + 1, puntos);
+            List<XYChart.Data<Number, Number>> datos = new ArrayList<>(historico.size());
+            for (ResumenIntervalo intervalo : historico) {
+                datos.add(new XYChart.Data<>(intervalo.getInicioMillis(), intervalo.getPromedio()));
+            }
+            serie.getData().setAll(datos);
+
+            // La cola en vivo usa intervalos de un píxel, alineados a múltiplos
+            // de la resolución, y reemplaza los puntos reducidos que caen en el último
+            resolucion = Math.max(SerieMultiResolucion.MINUTO, rango / puntos);
+            long ultimo = historico.isEmpty() ? desde : historico.get(historico.size() - 1).getInicioMillis();
+            inicioPendiente = Math.floorDiv(ultimo, resolucion) * resolucion;
+            actualizarCola(reloj);
+        }
+
+        void actualizarCola(long reloj) {
+            ObservableList<XYChart.Data<Number, Number>> datos = serie.getData();
+            List<ResumenIntervalo> cola = estadisticas.consultarHistorico(loteId, tipo, inicioPendiente,
+                    reloj + resolucion, resolucion);
+
+            // Primer punto dibujado que pertenece a la cola
+            int k = datos.size();
+            while (k > 0 && datos.get(k - 1).getXValue().longValue() >= inicioPendiente) {
+                k--;
+            }
+            List<XYChart.Data<Number, Number>> nuevos = null;
+            for (ResumenIntervalo intervalo : cola) {
+                if (k < datos.size()) {
+                    XYChart.Data<Number, Number> punto = datos.get(k++);
+                    // Las propiedades comparan por referencia: se asigna solo si
+                    // el valor cambió para no redibujar la gráfica de más
+                    if (punto.getXValue().longValue() != intervalo.getInicioMillis()) {
+                        punto.setXValue(intervalo.getInicioMillis());
+                    }
+                    if (punto.getYValue().doubleValue() != intervalo.getPromedio()) {
+                        punto.setYValue(intervalo.getPromedio());
+                    }
+                } else {
+                    if (nuevos == null) {
+                        nuevos = new ArrayList<>();
+                    }
+                    nuevos.add(new XYChart.Data<>(intervalo.getInicioMillis(), intervalo.getPromedio()));
+                }
+            }
+            if (k < datos.size() && !cola.isEmpty()) {
+                datos.remove(k, datos.size());
+            }
+            if (nuevos != null) {
+                datos.addAll(nuevos);
+            }
+            if (!cola.isEmpty()) {
+                inicioPendiente = cola.get(cola.size() - 1).getInicioMillis();
+            }
+
+            // Ventana deslizante: se quitan juntos los puntos que salieron del rango
+            long desde = reloj - rango;
+            int viejos = 0;
+            while (viejos < datos.size() && datos.get(viejos).getXValue().longValue() < desde) {
+                viejos++;
+            }
+            if (viejos > 0) {
+                datos.remove(0, viejos);
+            }
+            ejeX.setLowerBound(desde);
+            ejeX.setUpperBound(reloj);
+            ejeX.setTickUnit(rango / 6.0);
+        }
+    }
+}
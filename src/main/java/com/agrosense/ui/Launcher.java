@@ -1,7 +1,14 @@
 package com.agrosense.ui;
 
+import java.util.Arrays;
+
 public class Launcher {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        // En modo servidor no se carga ninguna clase de JavaFX
+        if (Arrays.asList(args).contains("--headless")) {
+            MonitorSinInterfaz.main(args);
+            return;
+        }
         AgroSenseFX.main(args);
     }
 }
@@ -0,0 +1,672 @@
+package com.agrosense.ui;
+
+import com.agrosense.model.*;
+import com.agrosense.service.*;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modo servidor sin interfaz ni JavaFX. Carga el estado guardado, lee todos
+ * los sensores a ritmo fijo por lotes de mediciones y, en lugar de una línea
+ * por lectura, cada cierto tiempo escribe un resumen con rendimiento, latencia
+ * de los ciclos y las alertas nuevas.
+ *
+ * <pre>
+ * Uso: Launcher --headless [--periodo-ms N] [--resumen-s N] [--duracion-s N]
+ *                          [--log archivo] [--sensores N] [--metricas-s N]
+ *                          [--http-puerto N] [--ingesta-puerto N] [--particiones N]
+ *                          [--replicar-puerto N] [--seguir host:puerto]
+ *                          [--historial-mb N] [--historial-archivo ruta]
+ *                          [--historial-horas N]
+ * </pre>
+ *
+ * <ul>
+ * <li>{@code --periodo-ms}: cada cuánto se leen todos los sensores (1000)</li>
+ * <li>{@code --resumen-s}: cada cuánto se escribe un resumen (10)</li>
+ * <li>{@code --duracion-s}: segundos hasta terminar; 0 corre hasta recibir
+ * SIGTERM o Ctrl+C (0)</li>
+ * <li>{@code --log}: archivo donde se agrega la salida (salida estándar)</li>
+ * <li>{@code --sensores}: agrega N sensores sintéticos en lotes de 100
+ * ("SIM-*"), para pruebas de carga; esos lotes no se guardan al salir (0)</li>
+ * <li>{@code --metricas-s}: cada cuánto se vuelcan todas las métricas de
+ * {@link RegistroMetricas}; 0 no las vuelca (60). También se publican por JMX.</li>
+ * <li>{@code --http-puerto}: puerto de la API HTTP local ({@link ServidorApi});
+ * -1 no la inicia (-1)</li>
+ * <li>{@code --ingesta-puerto}: recibe lecturas de sensores reales en tramas
+ * binarias por TCP y UDP en este puerto ({@link ServidorIngesta}); -1 no lo
+ * inicia (-1)</li>
+ * <li>{@code --particiones}: reparte los lotes entre N hilos con
+ * {@link ProcesadorParticionado}, cada uno con sus propias alertas y
+ * estadísticas; 0 procesa todo en el hilo del monitoreo (0). La ingesta por
+ * red también pasa por las particiones. No se combina con la API HTTP ni con
+ * la replicación, que leen y envían los servicios compartidos.</li>
+ * <li>{@code --replicar-puerto}: envía los cambios de lotes, alertas y lecturas
+ * a las réplicas que se conecten a este puerto ({@link ReplicadorLider}); -1
+ * no replica (-1)</li>
+ * <li>{@code --seguir}: arranca como réplica en espera del líder indicado
+ * ({@link ReplicaSeguidor}), sin cargar el estado guardado ni leer sensores. Si
+ * la conexión se corta intenta reconectarse; solo si pasan 3 s sin tramas del
+ * líder toma el control con el estado replicado: empieza a leer los sensores
+ * y, si se indicaron, inicia la API y la replicación con la época siguiente.</li>
+ * <li>{@code --historial-mb}: conserva las lecturas crudas de cada sensor en
+ * un {@link HistorialFueraDelHeap} de hasta N MB (mínimo 64); 0 solo guarda
+ * los agregados (0). Sin archivo usa memoria directa y la JVM necesita
+ * {@code -XX:MaxDirectMemorySize} de al menos ese tamaño. Con
+ * {@code --particiones} cada partición tiene su propio histórico con una
+ * parte de la capacidad (al menos 64 MB cada uno), así cada hilo escribe en
+ * el suyo sin competir con los demás.</li>
+ * <li>{@code --historial-archivo}: guarda el histórico crudo en este archivo
+ * mapeado en memoria en lugar de memoria directa; se vacía al iniciar. Con
+ * particiones se usa un archivo por partición ("ruta.0", "ruta.1", ...).</li>
+ * <li>{@code --historial-horas}: cada minuto libera las lecturas crudas con
+ * más de N horas; 0 las conserva hasta llenar la capacidad (24)</li>
+ * </ul>
+ *
+ * La salida pasa por un único buffer que se vacía con cada resumen y al
+ * terminar. Al detenerse se guarda el estado en TOON.
+ */
+public class MonitorSinInterfaz {
+
+    private static final int TAMANO_BUFFER_LOG = 1 << 16;
+    private static final int SENSORES_POR_LOTE_SINTETICO = 100;
+    private static final String PREFIJO_SINTETICO = "SIM-";
+    private static final int MAX_ALERTAS_POR_RESUMEN = 20;
+    private static final long PERIODO_RETENCION_S = 60;
+    private static final DateTimeFormatter FORMATO_HORA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final long periodoMs;
+    private final long resumenSegundos;
+    private final long duracionSegundos;
+    private final String archivoLog;
+    private final int sensoresSinteticos;
+    private final long metricasSegundos;
+    private final int httpPuerto;
+    private final int ingestaPuerto;
+    private final int particiones;
+    private final int replicarPuerto;
+    private final String liderHost;
+    private final int liderPuerto;
+    private final long historialMb;
+    private final String historialArchivo;
+    private final long historialHoras;
+
+    private final GestorLotes gestorLotes = new GestorLotes();
+    private final SensorService sensorService = new SensorService();
+    private final AlertaService alertaService = new AlertaService();
+    private final EstadisticasService estadisticasService = new EstadisticasService();
+    private final IngestaService ingestaService = new IngestaService(alertaService, estadisticasService);
+    private final ToonPersistenceService toonService = new ToonPersistenceService();
+
+    private final MedicionBatch batch = new MedicionBatch();
+    private IndiceSensores indice;
+    private ScheduledExecutorService planificador;
+    private ServidorApi servidorApi;
+    private ServidorIngesta servidorIngesta;
+    private ProcesadorParticionado procesador;
+    private ReplicadorLider replicador;
+    private ReplicaSeguidor replica;
+    private ScheduledFuture<?> estadoReplica;
+    // Todos los históricos crudos: el del servicio compartido o uno por partición
+    private HistorialFueraDelHeap[] historiales = new HistorialFueraDelHeap[0];
+    private PrintStream log;
+    private final CountDownLatch terminado = new CountDownLatch(1);
+    private boolean detenido;
+
+    // Datos de la ventana del resumen actual; solo los toca el hilo del planificador
+    private long inicioCicloEsperado;
+    private long ciclos;
+    private long lecturas;
+    private long aceptadas;
+    private long[] duracionesNanos = new long[64];
+    private long retrasoMaximoNanos;
+    private long inicioVentanaNanos;
+    private int alertasInformadas;
+    private long totalLecturas;
+
+    public MonitorSinInterfaz(long periodoMs, long resumenSegundos, long duracionSegundos, String archivoLog,
+            int sensoresSinteticos, long metricasSegundos, int httpPuerto, int ingestaPuerto, int particiones,
+            int replicarPuerto, String lider, long historialMb, String historialArchivo, long historialHoras) {
+        if (periodoMs <= 0 || resumenSegundos <= 0 || duracionSegundos < 0 || sensoresSinteticos < 0
+                || metricasSegundos < 0) {
+            throw new IllegalArgumentException("Los periodos deben ser mayores a 0 y la duración no negativa");
+        }
+        if (httpPuerto < -1 || httpPuerto > 65535) {
+            throw new IllegalArgumentException("Puerto HTTP no válido: " + httpPuerto);
+        }
+        if (ingestaPuerto < -1 || ingestaPuerto > 65535) {
+            throw new IllegalArgumentException("Puerto de ingesta no válido: " + ingestaPuerto);
+        }
+        if (particiones < 0) {
+            throw new IllegalArgumentException("La cantidad de particiones no puede ser negativa");
+        }
+        if (particiones > 0 && httpPuerto >= 0) {
+            throw new IllegalArgumentException("--http-puerto no se puede combinar con --particiones");
+        }
+        if (replicarPuerto < -1 || replicarPuerto > 65535) {
+            throw new IllegalArgumentException("Puerto de replicación no válido: " + replicarPuerto);
+        }
+        if (particiones > 0 && (replicarPuerto >= 0 || lider != null)) {
+            throw new IllegalArgumentException("La replicación no se puede combinar con --particiones");
+        }
+        if (historialMb < 0 || (historialMb == 0 && historialArchivo != null)) {
+            throw new IllegalArgumentException("--historial-archivo requiere --historial-mb mayor a 0");
+        }
+        if (historialMb > 0 && historialMb < HistorialFueraDelHeap.CAPACIDAD_MINIMA_MB) {
+            throw new IllegalArgumentException("--historial-mb debe ser al menos "
+                    + HistorialFueraDelHeap.CAPACIDAD_MINIMA_MB);
+        }
+        if (historialHoras < 0) {
+            throw new IllegalArgumentException("--historial-horas no puede ser negativo");
+        }
+        if (lider != null) {
+            int separador = lider.lastIndexOf(':');
+            if (separador <= 0) {
+                throw new IllegalArgumentException("--seguir espera host:puerto: " + lider);
+            }
+            this.liderHost = lider.substring(0, separador);
+            try {
+                this.liderPuerto = Integer.parseInt(lider.substring(separador + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Puerto no numérico en --seguir: " + lider);
+            }
+        } else {
+            this.liderHost = null;
+            this.liderPuerto = -1;
+        }
+        this.periodoMs = periodoMs;
+        this.resumenSegundos = resumenSegundos;
+        this.duracionSegundos = duracionSegundos;
+        this.archivoLog = archivoLog;
+        this.sensoresSinteticos = sensoresSinteticos;
+        this.metricasSegundos = metricasSegundos;
+        this.httpPuerto = httpPuerto;
+        this.ingestaPuerto = ingestaPuerto;
+        this.particiones = particiones;
+        this.replicarPuerto = replicarPuerto;
+        this.historialMb = historialMb;
+        this.historialArchivo = historialArchivo;
+        this.historialHoras = historialHoras;
+    }
+
+    public static void main(String[] args) throws Exception {
+        MonitorSinInterfaz monitor;
+        try {
+            monitor = desdeArgumentos(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Uso: Launcher --headless [--periodo-ms N] [--resumen-s N] [--duracion-s N]"
+                    + " [--log archivo] [--sensores N] [--metricas-s N] [--http-puerto N] [--ingesta-puerto N]"
+                    + " [--particiones N]"
+                    + " [--replicar-puerto N] [--seguir host:puerto] [--historial-mb N]"
+                    + " [--historial-archivo ruta] [--historial-horas N]");
+            System.exit(2);
+            return;
+        }
+        monitor.ejecutar();
+    }
+
+    static MonitorSinInterfaz desdeArgumentos(String[] args) {
+        long periodoMs = 1000;
+        long resumenSegundos = 10;
+        long duracionSegundos = 0;
+        String archivoLog = null;
+        int sensores = 0;
+        long metricasSegundos = 60;
+        int httpPuerto = -1;
+        int ingestaPuerto = -1;
+        int particiones = 0;
+        int replicarPuerto = -1;
+        String lider = null;
+        long historialMb = 0;
+        String historialArchivo = null;
+        long historialHoras = 24;
+        for (int i = 0; i < args.length; i++) {
+            String opcion = args[i];
+            if (opcion.equals("--headless")) {
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Falta el valor de " + opcion);
+            }
+            String valor = args[++i];
+            try {
+                switch (opcion) {
+                    case "--periodo-ms":
+                        periodoMs = Long.parseLong(valor);
+                        break;
+                    case "--resumen-s":
+                        resumenSegundos = Long.parseLong(valor);
+                        break;
+                    case "--duracion-s":
+                        duracionSegundos = Long.parseLong(valor);
+                        break;
+                    case "--log":
+                        archivoLog = valor;
+                        break;
+                    case "--metricas-s":
+                        metricasSegundos = Long.parseLong(valor);
+                        break;
+                    case "--http-puerto":
+                        httpPuerto = Integer.parseInt(valor);
+                        break;
+                    case "--ingesta-puerto":
+                        ingestaPuerto = Integer.parseInt(valor);
+                        break;
+                    case "--particiones":
+                        particiones = Integer.parseInt(valor);
+                        break;
+                    case "--replicar-puerto":
+                        replicarPuerto = Integer.parseInt(valor);
+                        break;
+                    case "--seguir":
+                        lider = valor;
+                        break;
+                    case "--historial-mb":
+                        historialMb = Long.parseLong(valor);
+                        break;
+                    case "--historial-archivo":
+                        historialArchivo = valor;
+                        break;
+                    case "--historial-horas":
+                        historialHoras = Long.parseLong(valor);
+                        break;
+                    case "--sensores":
+                        sensores = Integer.parseInt(valor);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Opción desconocida: " + opcion);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valor no numérico para " + opcion + ": " + valor);
+            }
+        }
+        return new MonitorSinInterfaz(periodoMs, resumenSegundos, duracionSegundos, archivoLog, sensores,
+                metricasSegundos, httpPuerto, ingestaPuerto, particiones, replicarPuerto, lider, historialMb,
+                historialArchivo, historialHoras);
+    }
+
+    /**
+     * Corre hasta cumplir la duración o hasta que se detenga la JVM
+     */
+    public void ejecutar() throws IOException, InterruptedException {
+        OutputStream destino = archivoLog == null ? new FileOutputStream(FileDescriptor.out)
+                : new FileOutputStream(archivoLog, true);
+        log = new PrintStream(new BufferedOutputStream(destino, TAMANO_BUFFER_LOG), false, StandardCharsets.UTF_8);
+        // Cualquier println de los servicios también pasa por el buffer
+        System.setOut(log);
+        alertaService.setMostrarEnConsola(false);
+        RegistroMetricas.GLOBAL.registrarJmx();
+        Metricas.registrarMemoria(gestorLotes);
+        // Con particiones cada una crea el suyo al iniciar el monitoreo
+        if (historialMb > 0 && particiones == 0) {
+            HistorialFueraDelHeap historial = crearHistorial(historialMb, historialArchivo);
+            // Una réplica también lo llena con las lecturas que recibe
+            estadisticasService.setHistorial(historial);
+            historiales = new HistorialFueraDelHeap[] { historial };
+            Metricas.registrarHistorial(historiales);
+            log.printf("[%s] Histórico crudo fuera del heap: hasta %,d MB en %s%n", ahora(), historialMb,
+                    historialArchivo == null ? "memoria directa" : historialArchivo);
+        }
+
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "agrosense-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        if (liderHost != null) {
+            replica = new ReplicaSeguidor(gestorLotes, alertaService, estadisticasService, liderHost, liderPuerto);
+            replica.setAlPerderLider(() -> planificador.execute(this::promover));
+            replica.iniciar();
+            log.printf("[%s] Réplica en espera de %s:%d%n", ahora(), liderHost, liderPuerto);
+            log.flush();
+            estadoReplica = planificador.scheduleAtFixedRate(this::estadoReplica, resumenSegundos, resumenSegundos,
+                    TimeUnit.SECONDS);
+        } else {
+            cargarEstado();
+            iniciarMonitoreo();
+        }
+        if (historialMb > 0 && historialHoras > 0) {
+            // En el mismo hilo que promover(), que puede cambiar los históricos
+            planificador.scheduleAtFixedRate(this::recortarHistorial, PERIODO_RETENCION_S, PERIODO_RETENCION_S,
+                    TimeUnit.SECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::detener, "agrosense-apagado"));
+
+        if (duracionSegundos > 0) {
+            if (!terminado.await(duracionSegundos, TimeUnit.SECONDS)) {
+                detener();
+            }
+        } else {
+            terminado.await();
+        }
+    }
+
+    /**
+     * Empieza a leer los sensores; en una réplica, al ser promovida
+     */
+    private void iniciarMonitoreo() throws IOException {
+        indice = new IndiceSensores(gestorLotes);
+        log.printf("[%s] AgroSense sin interfaz: %d lotes, %d sensores, lectura cada %d ms, resumen cada %d s%n",
+                ahora(), indice.getCantidadLotes(), indice.getCantidadSensores(), periodoMs, resumenSegundos);
+        if (particiones > 0) {
+            procesador = new ProcesadorParticionado(particiones);
+            procesador.setMostrarAlertasEnConsola(false);
+            procesador.iniciar();
+            if (historialMb > 0) {
+                long mb = Math.max(HistorialFueraDelHeap.CAPACIDAD_MINIMA_MB, historialMb / particiones);
+                HistorialFueraDelHeap[] porParticion = new HistorialFueraDelHeap[particiones];
+                for (int p = 0; p < particiones; p++) {
+                    porParticion[p] = crearHistorial(mb, historialArchivo == null ? null : historialArchivo + "." + p);
+                }
+                procesador.consultarTodas(p -> {
+                    p.getEstadisticasService().setHistorial(porParticion[p.getNumero()]);
+                    return null;
+                });
+                historiales = porParticion;
+                Metricas.registrarHistorial(historiales);
+                log.printf("[%s] Histórico crudo fuera del heap: %d de hasta %,d MB en %s%n", ahora(), particiones,
+                        mb, historialArchivo == null ? "memoria directa" : historialArchivo + ".*");
+            }
+            log.printf("[%s] Procesamiento en %d particiones%n", ahora(), particiones);
+        }
+        if (httpPuerto >= 0) {
+            servidorApi = new ServidorApi(gestorLotes, alertaService, estadisticasService, ingestaService, httpPuerto,
+                    ServidorApi.HILOS_POR_DEFECTO);
+            servidorApi.iniciar();
+            log.printf("[%s] API HTTP en el puerto %d%n", ahora(), servidorApi.getPuerto());
+        }
+        if (ingestaPuerto >= 0) {
+            // Con particiones las lecturas de cada trama van juntas a sus particiones
+            servidorIngesta = procesador != null
+                    ? new ServidorIngesta(new IngestaParticionada(gestorLotes, procesador), ingestaPuerto,
+                            ingestaPuerto)
+                    : new ServidorIngesta(gestorLotes, ingestaService, ingestaPuerto, ingestaPuerto);
+            servidorIngesta.iniciar();
+            log.printf("[%s] Ingesta de sensores en TCP %d y UDP %d%n", ahora(), servidorIngesta.getPuertoTcp(),
+                    servidorIngesta.getPuertoUdp());
+        }
+        if (replicarPuerto >= 0) {
+            // Una réplica promovida lidera con la época siguiente, así sus
+            // seguidores rechazan al líder anterior si vuelve
+            long epoca = replica == null ? 1 : replica.getEpocaLider() + 1;
+            replicador = new ReplicadorLider(gestorLotes, alertaService, replicarPuerto,
+                    ReplicadorLider.PERIODO_CAPTURA_MS, epoca);
+            replicador.iniciar();
+            log.printf("[%s] Replicación en el puerto %d (época %d)%n", ahora(), replicador.getPuerto(), epoca);
+        }
+        log.flush();
+
+        // Con particiones solo se cuentan las alertas nuevas; las cargadas
+        // quedan en el servicio compartido
+        alertasInformadas = procesador != null ? 0 : alertaService.getAlmacen().size();
+        inicioVentanaNanos = System.nanoTime();
+        inicioCicloEsperado = inicioVentanaNanos;
+        // Un solo hilo: los ciclos y los resúmenes nunca se ejecutan a la vez
+        planificador.scheduleAtFixedRate(this::ciclo, 0, periodoMs, TimeUnit.MILLISECONDS);
+        planificador.scheduleAtFixedRate(this::resumen, resumenSegundos, resumenSegundos, TimeUnit.SECONDS);
+        if (metricasSegundos > 0) {
+            planificador.scheduleAtFixedRate(this::volcarMetricas, metricasSegundos, metricasSegundos,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    private static HistorialFueraDelHeap crearHistorial(long mb, String archivo) throws IOException {
+        long capacidad = mb << 20;
+        return archivo == null ? new HistorialFueraDelHeap(capacidad)
+                : new HistorialFueraDelHeap(Path.of(archivo), capacidad);
+    }
+
+    /**
+     * Libera de cada histórico crudo las lecturas más viejas que la retención
+     */
+    private void recortarHistorial() {
+        long antesDe = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(historialHoras);
+        long liberadas = 0;
+        for (HistorialFueraDelHeap historial : historiales) {
+            liberadas += historial.recortar(antesDe);
+        }
+        if (liberadas > 0) {
+            log.printf("[%s] Histórico crudo: %,d lecturas de más de %d h liberadas%n", ahora(), liberadas,
+                    historialHoras);
+        }
+    }
+
+    private void estadoReplica() {
+        log.printf("[%s] réplica época=%d secuencia=%d tramas=%,d retraso=%d ms reconexiones=%d"
+                + " | lotes=%d alertas=%d%n", ahora(), replica.getEpocaLider(), replica.getSecuenciaAplicada(),
+                replica.getTramasAplicadas(), replica.getRetrasoMillis(), replica.getReconexiones(),
+                gestorLotes.obtenerTodos().size(), alertaService.getAlmacen().size());
+        log.flush();
+    }
+
+    /**
+     * La réplica perdió al líder: sigue con el estado replicado hasta la
+     * última trama aplicada
+     */
+    private synchronized void promover() {
+        if (detenido) {
+            return;
+        }
+        estadoReplica.cancel(false);
+        log.printf("[%s] Líder perdido; última trama %d capturada hace %d ms. Tomando el control%n", ahora(),
+                replica.getSecuenciaAplicada(), replica.getAntiguedadMillis());
+        try {
+            iniciarMonitoreo();
+        } catch (IOException e) {
+            log.printf("[%s] Error al tomar el control: %s%n", ahora(), e.getMessage());
+            log.flush();
+        }
+    }
+
+    private void cargarEstado() {
+        try {
+            var data = toonService.importarDatos();
+            for (Lote lote : data.lotes) {
+                gestorLotes.registrarLote(lote);
+            }
+            alertaService.getHistorialAlertas().addAll(data.alertas);
+            log.printf("[%s] Estado cargado: %d lotes, %d alertas%n", ahora(), data.lotes.size(),
+                    data.alertas.size());
+        } catch (IOException | RuntimeException e) {
+            log.printf("[%s] Sin estado guardado (%s)%n", ahora(), e.getMessage());
+        }
+        if (gestorLotes.obtenerTodos().isEmpty() && sensoresSinteticos == 0) {
+            new DatosDemoService().cargarDatosDemo(gestorLotes, alertaService);
+        }
+        for (int s = 0; s < sensoresSinteticos; s++) {
+            int numeroLote = s / SENSORES_POR_LOTE_SINTETICO;
+            String loteId = PREFIJO_SINTETICO + numeroLote;
+            Lote lote = gestorLotes.buscarPorId(loteId).orElse(null);
+            if (lote == null) {
+                lote = new Lote(loteId, "Lote sintético " + numeroLote, "Prueba", 1.0);
+                gestorLotes.registrarLote(lote);
+            }
+            String sensorId = PREFIJO_SINTETICO + s;
+            // Pueden venir del estado guardado en una ejecución anterior
+            if (lote.getSensores().stream().anyMatch(sensor -> sensor.getId().equals(sensorId))) {
+                continue;
+            }
+            lote.agregarSensor(s % 2 == 0 ? new SensorHumedad(sensorId, loteId) : new SensorTemperatura(sensorId,
+                    loteId));
+        }
+    }
+
+    private void ciclo() {
+        long inicio = System.nanoTime();
+        retrasoMaximoNanos = Math.max(retrasoMaximoNanos, inicio - inicioCicloEsperado);
+        inicioCicloEsperado += periodoMs * 1_000_000L;
+        try {
+            indice = IndiceSensores.actualizar(indice, gestorLotes);
+            batch.limpiar();
+            sensorService.leerTodos(indice, batch);
+            lecturas += batch.getTamano();
+            aceptadas += procesador != null ? procesador.procesarLote(batch) : ingestaService.procesarLote(batch);
+            if (replicador != null) {
+                replicador.registrarLecturas(batch);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error en el ciclo de monitoreo: " + e.getMessage());
+        }
+        if (ciclos == duracionesNanos.length) {
+            duracionesNanos = Arrays.copyOf(duracionesNanos, duracionesNanos.length * 2);
+        }
+        duracionesNanos[(int) ciclos++] = System.nanoTime() - inicio;
+    }
+
+    private void resumen() {
+        long fin = System.nanoTime();
+        double segundos = (fin - inicioVentanaNanos) / 1e9;
+        long[] duraciones = Arrays.copyOf(duracionesNanos, (int) ciclos);
+        Arrays.sort(duraciones);
+        Runtime rt = Runtime.getRuntime();
+        long heapMb = (rt.totalMemory() - rt.freeMemory()) >> 20;
+
+        // Alertas nuevas en bloque, con un tope para no inundar el log
+        int totalAlertas;
+        List<Alerta> ultimas;
+        if (procesador != null) {
+            totalAlertas = procesador.contarAlertas();
+            ultimas = procesador.consultarAlertas(AlmacenAlertas.Filtro.TODAS,
+                    Math.min(MAX_ALERTAS_POR_RESUMEN, Math.max(0, totalAlertas - alertasInformadas)));
+            Collections.reverse(ultimas);
+        } else {
+            AlmacenAlertas almacen = alertaService.getAlmacen();
+            totalAlertas = almacen.size();
+            ultimas = almacen.ultimas(Math.min(MAX_ALERTAS_POR_RESUMEN, Math.max(0, totalAlertas - alertasInformadas)));
+        }
+        int nuevas = Math.max(0, totalAlertas - alertasInformadas);
+        totalLecturas += lecturas;
+
+        StringBuilder sb = new StringBuilder(256);
+        sb.append('[').append(ahora()).append("] ciclos=").append(ciclos)
+                .append(String.format(" lecturas=%,d (%,.0f/s) aceptadas=%,d cuarentena=%,d alertas=+%d", lecturas,
+                        lecturas / segundos, aceptadas, lecturas - aceptadas, nuevas))
+                .append(String.format(" | ciclo p50=%.2f ms p99=%.2f ms max=%.2f ms retraso max=%.2f ms",
+                        percentil(duraciones, 0.50), percentil(duraciones, 0.99), percentil(duraciones, 1.0),
+                        retrasoMaximoNanos / 1e6))
+                .append(replicador == null ? "" : String.format(" | réplicas=%d sin confirmar=%d",
+                        replicador.getCantidadSeguidores(), replicador.getTramasSinConfirmar()))
+                .append(servidorIngesta == null ? "" : String.format(" | red=%,d lecturas (%,d tramas inválidas)",
+                        servidorIngesta.getLecturasRecibidas(), servidorIngesta.getTramasInvalidas()))
+                .append(historiales.length == 0 ? "" : resumenHistorial())
+                .append(" | heap=").append(heapMb).append(" MB total=").append(String.format("%,d", totalLecturas))
+                .append('\n');
+
+        if (nuevas > ultimas.size()) {
+            sb.append("  ... ").append(nuevas - ultimas.size()).append(" alertas anteriores omitidas\n");
+        }
+        for (Alerta alerta : ultimas) {
+            sb.append("  ").append(alerta).append('\n');
+        }
+        log.print(sb);
+        log.flush();
+
+        alertasInformadas = totalAlertas;
+        ciclos = 0;
+        lecturas = 0;
+        aceptadas = 0;
+        retrasoMaximoNanos = 0;
+        inicioVentanaNanos = fin;
+    }
+
+    private String resumenHistorial() {
+        long bytes = 0;
+        long guardadas = 0;
+        for (HistorialFueraDelHeap historial : historiales) {
+            bytes += historial.getBytesEnUso();
+            guardadas += historial.getTotalLecturas();
+        }
+        return String.format(" | historial=%,d MB (%,d lecturas)", bytes >> 20, guardadas);
+    }
+
+    private static double percentil(long[] ordenados, double p) {
+        if (ordenados.length == 0) {
+            return 0;
+        }
+        int i = (int) Math.ceil(p * ordenados.length) - 1;
+        return ordenados[Math.max(0, Math.min(i, ordenados.length - 1))] / 1e6;
+    }
+
+    private void volcarMetricas() {
+        log.print(RegistroMetricas.GLOBAL.volcar());
+        log.flush();
+    }
+
+    /**
+     * Detiene la API y el monitoreo, escribe el último resumen, envía los
+     * últimos cambios a las réplicas y guarda el estado
+     */
+    public synchronized void detener() {
+        if (detenido || planificador == null) {
+            return;
+        }
+        detenido = true;
+        if (replica != null) {
+            replica.detener();
+        }
+        if (servidorApi != null) {
+            servidorApi.detener();
+        }
+        if (servidorIngesta != null) {
+            servidorIngesta.detener();
+        }
+        planificador.shutdown();
+        try {
+            planificador.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Resumen de la ventana incompleta, si hubo ciclos desde el último
+        if (ciclos > 0) {
+            resumen();
+        }
+        if (procesador != null) {
+            alertaService.getHistorialAlertas().addAll(procesador.reunirAlertas());
+            procesador.detener();
+        }
+        if (replicador != null) {
+            replicador.detener();
+        }
+        try {
+            // Los lotes sintéticos de --sensores no forman parte del estado real
+            toonService.exportarDatos(gestorLotes, alertaService, loteId -> !loteId.startsWith(PREFIJO_SINTETICO));
+            log.printf("[%s] Estado guardado. Detenido.%n", ahora());
+        } catch (IOException e) {
+            log.printf("[%s] Error al guardar el estado: %s%n", ahora(), e.getMessage());
+        }
+        // Después del guardado, para incluir su duración
+        if (metricasSegundos > 0) {
+            volcarMetricas();
+        }
+        for (HistorialFueraDelHeap historial : historiales) {
+            try {
+                historial.close();
+            } catch (IOException e) {
+                log.printf("[%s] Error al cerrar el histórico: %s%n", ahora(), e.getMessage());
+            }
+        }
+        log.flush();
+        terminado.countDown();
+    }
+
+    private static String ahora() {
+        return FORMATO_HORA.format(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,212 @@
+package com.agrosense.ui;
+
+import com.agrosense.model.Alerta;
+import com.agrosense.service.AlmacenAlertas;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.DatePicker;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+
+/**
+ * Tabla de alertas paginada sobre {@link AlmacenAlertas}. La tabla solo
+ * contiene la página visible; filtros y orden se resuelven en el almacén con
+ * sus índices, de modo que el costo de mostrar, ordenar o filtrar no depende
+ * de cuántas alertas haya en el historial. Las celdas usan textos ya
+ * formateados (fecha cacheada en la alerta, nombre del nivel).
+ */
+public class TablaAlertasPaginada {
+
+    public static final int FILAS_POR_PAGINA = 200;
+    private static final String TODOS = "Todos";
+
+    private final AlmacenAlertas almacen;
+    private final ObservableList<Alerta> pagina = FXCollections.observableArrayList();
+    private final TableView<Alerta> tabla = new TableView<>(pagina);
+    private final TableColumn<Alerta, String> colFecha = new TableColumn<>("Fecha");
+    private final TableColumn<Alerta, Alerta.Nivel> colNivel = new TableColumn<>("Nivel");
+    private final TableColumn<Alerta, String> colLote = new TableColumn<>("Lote");
+    private final Label lblPagina = new Label();
+    private final Label lblTotal = new Label();
+    private final VBox vista = new VBox(10);
+
+    private AlmacenAlertas.Filtro filtro = AlmacenAlertas.Filtro.TODAS;
+    private AlmacenAlertas.Orden orden = AlmacenAlertas.Orden.FECHA;
+    private boolean descendente = true; // lo más reciente primero
+    private AlmacenAlertas.Resultado resultado;
+    private long versionConsultada = -1;
+    private int paginaActual;
+
+    public TablaAlertasPaginada(AlmacenAlertas almacen) {
+        this.almacen = almacen;
+        crearTabla();
+        vista.getChildren().addAll(crearFiltros(), tabla, crearNavegacion());
+        VBox.setVgrow(tabla, Priority.ALWAYS);
+        recargar();
+    }
+
+    public VBox getVista() {
+        return vista;
+    }
+
+    public TableView<Alerta> getTabla() {
+        return tabla;
+    }
+
+    /**
+     * Vuelve a consultar si el historial cambió, manteniendo la página actual.
+     * Debe llamarse en el hilo de la UI.
+     */
+    public void refrescar() {
+        if (almacen.getVersion() != versionConsultada) {
+            recargar();
+        }
+    }
+
+    private void crearTabla() {
+        colFecha.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().getFechaTexto()));
+        colNivel.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getNivel()));
+        colLote.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().getLoteId()));
+        TableColumn<Alerta, String> colMensaje = new TableColumn<>("Mensaje");
+        colMensaje.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().getMensaje()));
+        colMensaje.setSortable(false);
+
+        tabla.getColumns().add(colFecha);
+        tabla.getColumns().add(colNivel);
+        tabla.getColumns().add(colLote);
+        tabla.getColumns().add(colMensaje);
+        tabla.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+
+        colFecha.setSortType(TableColumn.SortType.DESCENDING);
+        tabla.getSortOrder().add(colFecha);
+        // La tabla no ordena la página: el clic en una columna se traduce en una
+        // consulta ordenada al almacén
+        tabla.setSortPolicy(t -> {
+            actualizarOrden();
+            return true;
+        });
+    }
+
+    private HBox crearFiltros() {
+        ComboBox<String> comboNivel = new ComboBox<>();
+        comboNivel.getItems().add(TODOS);
+        for (Alerta.Nivel nivel : Alerta.Nivel.values()) {
+            comboNivel.getItems().add(nivel.name());
+        }
+        comboNivel.getSelectionModel().selectFirst();
+
+        TextField txtLote = new TextField();
+        txtLote.setPromptText("Lote");
+        txtLote.setPrefColumnCount(8);
+        DatePicker desde = new DatePicker();
+        desde.setPromptText("Desde");
+        DatePicker hasta = new DatePicker();
+        hasta.setPromptText("Hasta");
+
+        Button btnFiltrar = new Button("🔍 Filtrar");
+        btnFiltrar.setOnAction(e -> {
+            String nivel = comboNivel.getValue();
+            String lote = txtLote.getText().trim();
+            LocalDate dDesde = desde.getValue();
+            LocalDate dHasta = hasta.getValue();
+            if (dDesde != null && dHasta != null && dHasta.isBefore(dDesde)) {
+                lblTotal.setText("La fecha final es anterior a la inicial");
+                return;
+            }
+            filtro = new AlmacenAlertas.Filtro(
+                    nivel == null || nivel.equals(TODOS) ? null : Alerta.Nivel.valueOf(nivel),
+                    lote.isEmpty() ? null : lote,
+                    dDesde == null ? null : dDesde.atStartOfDay(),
+                    // "Hasta" incluye el día elegido completo
+                    dHasta == null ? null : dHasta.plusDays(1).atStartOfDay());
+            paginaActual = 0;
+            recargar();
+        });
+
+        Button btnLimpiar = new Button("Limpiar");
+        btnLimpiar.setOnAction(e -> {
+            comboNivel.getSelectionModel().selectFirst();
+            txtLote.clear();
+            desde.setValue(null);
+            hasta.setValue(null);
+            filtro = AlmacenAlertas.Filtro.TODAS;
+            paginaActual = 0;
+            recargar();
+        });
+
+        HBox filtros = new HBox(8, new Label("Nivel:"), comboNivel, txtLote, desde, hasta, btnFiltrar, btnLimpiar);
+        filtros.setAlignment(Pos.CENTER_LEFT);
+        return filtros;
+    }
+
+    private HBox crearNavegacion() {
+        Button primera = new Button("⏮");
+        primera.setOnAction(e -> irA(0));
+        Button anterior = new Button("◀");
+        anterior.setOnAction(e -> irA(paginaActual - 1));
+        Button siguiente = new Button("▶");
+        siguiente.setOnAction(e -> irA(paginaActual + 1));
+        Button ultima = new Button("⏭");
+        ultima.setOnAction(e -> irA(Integer.MAX_VALUE));
+
+        HBox navegacion = new HBox(8, primera, anterior, lblPagina, siguiente, ultima, lblTotal);
+        navegacion.setAlignment(Pos.CENTER_LEFT);
+        navegacion.setPadding(new Insets(0, 0, 0, 4));
+        return navegacion;
+    }
+
+    private void actualizarOrden() {
+        AlmacenAlertas.Orden nuevoOrden = AlmacenAlertas.Orden.FECHA;
+        boolean nuevoDescendente = true;
+        if (!tabla.getSortOrder().isEmpty()) {
+            TableColumn<Alerta, ?> columna = tabla.getSortOrder().get(0);
+            nuevoDescendente = columna.getSortType() == TableColumn.SortType.DESCENDING;
+            if (columna == colNivel) {
+                nuevoOrden = AlmacenAlertas.Orden.NIVEL;
+            } else if (columna == colLote) {
+                nuevoOrden = AlmacenAlertas.Orden.LOTE;
+            }
+        }
+        // La política también se invoca al reemplazar la página; solo se
+        // consulta de nuevo si el orden cambió
+        if (nuevoOrden != orden || nuevoDescendente != descendente) {
+            orden = nuevoOrden;
+            descendente = nuevoDescendente;
+            paginaActual = 0;
+            recargar();
+        }
+    }
+
+    private void irA(int numero) {
+        paginaActual = numero;
+        mostrarPagina();
+    }
+
+    private void recargar() {
+        versionConsultada = almacen.getVersion();
+        resultado = almacen.consultar(filtro, orden, descendente);
+        mostrarPagina();
+    }
+
+    private void mostrarPagina() {
+        int total = resultado.getTamano();
+        int paginas = Math.max(1, (total + FILAS_POR_PAGINA - 1) / FILAS_POR_PAGINA);
+        paginaActual = Math.max(0, Math.min(paginaActual, paginas - 1));
+        pagina.setAll(almacen.obtener(resultado, paginaActual * FILAS_POR_PAGINA, FILAS_POR_PAGINA));
+        lblPagina.setText(String.format("Página %,d de %,d", paginaActual + 1, paginas));
+        lblTotal.setText(String.format("%,d alertas", total));
+    }
+}
@@ -0,0 +1,223 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.agrosense.model.Alerta;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compara {@link AlmacenAlertas#consultar} con un filtrado y ordenamiento por
+ * fuerza bruta sobre la misma lista, para todas las combinaciones de filtro y
+ * orden.
+ */
+class AlmacenAlertasTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 1, 8, 0);
+    // Ids propios: TablaIds.LOTES es global a la JVM
+    private static final String[] LOTES = { "TEST-AA-B", "TEST-AA-A", "TEST-AA-C", null };
+    private static final String LOTE_INEXISTENTE = "TEST-AA-NINGUNO";
+
+    @Test
+    void alertasEnOrdenDeFecha() {
+        Random azar = new Random(1);
+        AlmacenAlertas almacen = new AlmacenAlertas();
+        List<Alerta> todas = new ArrayList<>();
+        int minuto = 0;
+        for (int i = 0; i < 400; i++) {
+            // Avanza de 0 a 1 minuto: hay fechas repetidas
+            minuto += azar.nextInt(2);
+            agregar(almacen, todas, alerta(azar, BASE.plusMinutes(minuto)));
+        }
+        verificarTodas(almacen, todas);
+    }
+
+    @Test
+    void alertasFueraDeOrden() {
+        Random azar = new Random(2);
+        AlmacenAlertas almacen = new AlmacenAlertas();
+        List<Alerta> todas = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            agregar(almacen, todas, alerta(azar, BASE.plusMinutes(azar.nextInt(120))));
+        }
+        verificarTodas(almacen, todas);
+    }
+
+    @Test
+    void permutacionesAlAgregarDeAUna() {
+        // Verifica después de cada alerta: primero en orden, luego una atrasada
+        // y después alertas posteriores a todas (se agregan al final de la permutación)
+        Random azar = new Random(3);
+        AlmacenAlertas almacen = new AlmacenAlertas();
+        List<Alerta> todas = new ArrayList<>();
+        int[] minutos = { 10, 20, 20, 30, 5, 40, 40, 50, 15, 60, 60, 70 };
+        for (int minuto : minutos) {
+            agregar(almacen, todas, alerta(azar, BASE.plusMinutes(minuto)));
+            verificarTodas(almacen, todas);
+        }
+    }
+
+    @Test
+    void losResultadosCompartidosNoCambianAlAgregar() {
+        Random azar = new Random(4);
+        AlmacenAlertas almacen = new AlmacenAlertas();
+        List<Alerta> todas = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            agregar(almacen, todas, alerta(azar, BASE.plusMinutes(i)));
+        }
+        // Tramos de los índices por nivel y por lote, y todas sin arreglo
+        AlmacenAlertas.Filtro porNivel = new AlmacenAlertas.Filtro(Alerta.Nivel.WARNING, null, null, null);
+        AlmacenAlertas.Filtro porLote = new AlmacenAlertas.Filtro(null, LOTES[0], null, null);
+        AlmacenAlertas.Resultado nivel = almacen.consultar(porNivel, AlmacenAlertas.Orden.FECHA, false);
+        AlmacenAlertas.Resultado lote = almacen.consultar(porLote, AlmacenAlertas.Orden.FECHA, true);
+        AlmacenAlertas.Resultado todasAntes = almacen.consultar(AlmacenAlertas.Filtro.TODAS,
+                AlmacenAlertas.Orden.FECHA, false);
+        List<Integer> nivelAntes = posiciones(nivel);
+        List<Integer> loteAntes = posiciones(lote);
+        List<Integer> todasPosiciones = posiciones(todasAntes);
+
+        // Suficientes para que los índices crezcan
+        for (int i = 100; i < 1000; i++) {
+            agregar(almacen, todas, alerta(azar, BASE.plusMinutes(i)));
+        }
+        assertEquals(nivelAntes, posiciones(nivel));
+        assertEquals(loteAntes, posiciones(lote));
+        assertEquals(todasPosiciones, posiciones(todasAntes));
+        verificarTodas(almacen, todas);
+
+        // La permutación por fecha también se comparte entre consultas
+        agregar(almacen, todas, alerta(azar, BASE.minusDays(1)));
+        AlmacenAlertas.Resultado desordenadas = almacen.consultar(AlmacenAlertas.Filtro.TODAS,
+                AlmacenAlertas.Orden.FECHA, false);
+        List<Integer> desordenadasAntes = posiciones(desordenadas);
+        agregar(almacen, todas, alerta(azar, BASE.plusDays(30)));
+        assertEquals(desordenadasAntes, posiciones(desordenadas));
+        agregar(almacen, todas, alerta(azar, BASE.minusDays(2)));
+        assertEquals(desordenadasAntes, posiciones(desordenadas));
+        verificarTodas(almacen, todas);
+    }
+
+    @Test
+    void vaciarCambiaLaGeneracionYNoTocaResultadosAnteriores() {
+        Random azar = new Random(5);
+        AlmacenAlertas almacen = new AlmacenAlertas();
+        List<Alerta> todas = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            agregar(almacen, todas, alerta(azar, BASE.plusMinutes(i)));
+        }
+        AlmacenAlertas.Resultado anterior = almacen.consultar(
+                new AlmacenAlertas.Filtro(Alerta.Nivel.CRITICAL, null, null, null), AlmacenAlertas.Orden.FECHA,
+                false);
+        List<Integer> posicionesAnteriores = posiciones(anterior);
+        int generacion = almacen.getGeneracion();
+        long version = almacen.getVersion();
+
+        almacen.clear();
+        todas.clear();
+        assertEquals(generacion + 1, almacen.getGeneracion());
+        assertEquals(0, almacen.size());
+        assertEquals(0, almacen.consultar(AlmacenAlertas.Filtro.TODAS, AlmacenAlertas.Orden.FECHA, false)
+                .getTamano());
+
+        for (int i = 0; i < 300; i++) {
+            agregar(almacen, todas, alerta(azar, BASE.plusMinutes(azar.nextInt(500))));
+        }
+        assertEquals(posicionesAnteriores, posiciones(anterior));
+        assertEquals(version + 1 + 300, almacen.getVersion());
+        verificarTodas(almacen, todas);
+    }
+
+    private static void agregar(AlmacenAlertas almacen, List<Alerta> todas, Alerta alerta) {
+        almacen.add(alerta);
+        todas.add(alerta);
+    }
+
+    private static Alerta alerta(Random azar, LocalDateTime fecha) {
+        Alerta.Nivel nivel = Alerta.Nivel.values()[azar.nextInt(Alerta.Nivel.values().length)];
+        String lote = LOTES[azar.nextInt(LOTES.length)];
+        return new Alerta("alerta " + fecha, nivel, lote, fecha);
+    }
+
+    /**
+     * Todas las combinaciones de nivel, lote, rango de fechas, orden y sentido
+     */
+    private static void verificarTodas(AlmacenAlertas almacen, List<Alerta> todas) {
+        List<Alerta.Nivel> niveles = new ArrayList<>();
+        niveles.add(null);
+        Collections.addAll(niveles, Alerta.Nivel.values());
+        List<String> lotes = new ArrayList<>();
+        lotes.add(null);
+        for (String lote : LOTES) {
+            if (lote != null) {
+                lotes.add(lote);
+            }
+        }
+        lotes.add(LOTE_INEXISTENTE);
+        LocalDateTime[][] rangos = { { null, null }, { BASE.plusMinutes(30), null }, { null, BASE.plusMinutes(60) },
+                { BASE.plusMinutes(20), BASE.plusMinutes(90) }, { BASE.plusMinutes(40), BASE.plusMinutes(40) },
+                { BASE.minusDays(10), BASE.plusDays(60) } };
+
+        for (Alerta.Nivel nivel : niveles) {
+            for (String lote : lotes) {
+                for (LocalDateTime[] rango : rangos) {
+                    AlmacenAlertas.Filtro filtro = new AlmacenAlertas.Filtro(nivel, lote, rango[0], rango[1]);
+                    for (AlmacenAlertas.Orden orden : AlmacenAlertas.Orden.values()) {
+                        for (boolean descendente : new boolean[] { false, true }) {
+                            AlmacenAlertas.Resultado resultado = almacen.consultar(filtro, orden, descendente);
+                            String caso = "nivel=" + nivel + " lote=" + lote + " desde=" + rango[0] + " hasta="
+                                    + rango[1] + " orden=" + orden + " descendente=" + descendente;
+                            List<Integer> esperadas = esperado(todas, filtro, orden, descendente);
+                            assertEquals(esperadas, posiciones(resultado), caso);
+                            List<Alerta> pagina = almacen.obtener(resultado, 1, 5);
+                            for (int i = 0; i < pagina.size(); i++) {
+                                assertSame(todas.get(esperadas.get(1 + i)), pagina.get(i), caso);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Filtrado lineal y ordenamientos estables de la biblioteca estándar
+    private static List<Integer> esperado(List<Alerta> todas, AlmacenAlertas.Filtro filtro,
+            AlmacenAlertas.Orden orden, boolean descendente) {
+        List<Integer> resultado = new ArrayList<>();
+        for (int i = 0; i < todas.size(); i++) {
+            Alerta alerta = todas.get(i);
+            if ((filtro.getNivel() == null || alerta.getNivel() == filtro.getNivel())
+                    && (filtro.getLoteId() == null || filtro.getLoteId().equals(alerta.getLoteId()))
+                    && (filtro.getDesde() == null || !alerta.getFechaHora().isBefore(filtro.getDesde()))
+                    && (filtro.getHasta() == null || alerta.getFechaHora().isBefore(filtro.getHasta()))) {
+                resultado.add(i);
+            }
+        }
+        resultado.sort(Comparator.comparing(i -> todas.get(i).getFechaHora()));
+        if (orden == AlmacenAlertas.Orden.NIVEL) {
+            resultado.sort(Comparator.comparing(i -> todas.get(i).getNivel().ordinal()));
+        } else if (orden == AlmacenAlertas.Orden.LOTE) {
+            resultado.sort(Comparator.comparing(i -> {
+                String lote = todas.get(i).getLoteId();
+                return lote == null ? "" : lote;
+            }));
+        }
+        if (descendente) {
+            Collections.reverse(resultado);
+        }
+        return resultado;
+    }
+
+    private static List<Integer> posiciones(AlmacenAlertas.Resultado resultado) {
+        List<Integer> posiciones = new ArrayList<>(resultado.getTamano());
+        for (int i = 0; i < resultado.getTamano(); i++) {
+            posiciones.add(resultado.posicion(i));
+        }
+        return posiciones;
+    }
+}
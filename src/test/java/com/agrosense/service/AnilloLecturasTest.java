@@ -0,0 +1,125 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class AnilloLecturasTest {
+
+    @Test
+    void rechazaTamanosQueNoSonPotenciaDeDos() {
+        assertThrows(IllegalArgumentException.class, () -> new AnilloLecturas(0, EstrategiaEspera.ocupada()));
+        assertThrows(IllegalArgumentException.class, () -> new AnilloLecturas(12, EstrategiaEspera.ocupada()));
+        assertEquals(16, new AnilloLecturas(16, EstrategiaEspera.ocupada()).getTamano());
+    }
+
+    @Test
+    void daVueltasReutilizandoLasRanuras() {
+        AnilloLecturas anillo = new AnilloLecturas(8, EstrategiaEspera.ocupada());
+        Secuencia consumidor = new Secuencia(-1);
+        anillo.setConsumidores(consumidor);
+
+        for (int vuelta = 0; vuelta < 5; vuelta++) {
+            for (int i = 0; i < 8; i++) {
+                long esperada = vuelta * 8L + i;
+                assertEquals(esperada, anillo.intentarReclamar());
+                assertFalse(anillo.estaPublicada(esperada));
+                anillo.obtener(esperada).asignar(1, 1, TipoSensor.HUMEDAD, esperada, esperada);
+                anillo.publicar(esperada);
+                assertTrue(anillo.estaPublicada(esperada));
+            }
+            // Lleno: el consumidor va una vuelta atrás
+            assertEquals(-1, anillo.intentarReclamar());
+            assertEquals(8, anillo.getPendientes());
+
+            long base = vuelta * 8L;
+            assertSame(anillo.obtener(base), anillo.obtener(base + 8));
+            for (long s = base; s < base + 8; s++) {
+                assertEquals(s, anillo.obtener(s).getEpochMillis());
+            }
+            consumidor.set(base + 7);
+            assertEquals(0, anillo.getPendientes());
+        }
+        assertEquals(40, anillo.getPublicados());
+    }
+
+    @Test
+    void ultimaPublicadaSeDetieneEnElPrimerHueco() {
+        AnilloLecturas anillo = new AnilloLecturas(8, EstrategiaEspera.ocupada());
+        anillo.setConsumidores(new Secuencia(-1));
+        long a = anillo.intentarReclamar();
+        long b = anillo.intentarReclamar();
+        long c = anillo.intentarReclamar();
+        // Productores que publican fuera del orden en que reclamaron
+        anillo.publicar(c);
+        anillo.publicar(a);
+        assertEquals(a, anillo.ultimaPublicada(a, c));
+        anillo.publicar(b);
+        assertEquals(c, anillo.ultimaPublicada(a, c));
+    }
+
+    @Test
+    void variosProductoresEntreganTodoEnOrdenPorProductor() throws InterruptedException {
+        int productores = 4;
+        int porProductor = 20_000;
+        AlertaService alertas = new AlertaService();
+        alertas.setMostrarEnConsola(false);
+        EstadisticasService estadisticas = new EstadisticasService();
+        TuberiaLecturas tuberia = new TuberiaLecturas(new IngestaService(alertas, estadisticas), alertas,
+                estadisticas, 64, EstrategiaEspera.cediendo());
+        tuberia.setEsperarSiLleno(true);
+
+        int[] sensores = new int[productores];
+        for (int p = 0; p < productores; p++) {
+            sensores[p] = TablaIds.SENSORES.numero("TEST-AN-S" + p);
+        }
+        int lote = TablaIds.LOTES.numero("TEST-AN-L");
+        // Solo el hilo del consumidor escribe estas listas
+        List<List<Long>> recibidas = new ArrayList<>();
+        for (int p = 0; p < productores; p++) {
+            recibidas.add(new ArrayList<>());
+        }
+        tuberia.agregarConsumidor("prueba", (evento, secuencia, finDeLote) -> {
+            for (int p = 0; p < productores; p++) {
+                if (evento.getSensor() == sensores[p]) {
+                    recibidas.get(p).add(evento.getEpochMillis());
+                }
+            }
+        });
+        tuberia.iniciar();
+
+        List<Thread> hilos = new ArrayList<>();
+        for (int p = 0; p < productores; p++) {
+            int sensor = sensores[p];
+            Thread hilo = new Thread(() -> {
+                for (int i = 0; i < porProductor; i++) {
+                    assertTrue(tuberia.publicar(sensor, lote, TipoSensor.HUMEDAD, 60, i));
+                }
+            });
+            hilo.start();
+            hilos.add(hilo);
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        tuberia.detener(10_000);
+
+        assertEquals((long) productores * porProductor, tuberia.getPublicadas());
+        assertEquals((long) productores * porProductor, tuberia.getProcesadas("prueba"));
+        for (int p = 0; p < productores; p++) {
+            List<Long> valores = recibidas.get(p);
+            assertEquals(porProductor, valores.size());
+            for (int i = 0; i < porProductor; i++) {
+                assertEquals(i, valores.get(i));
+            }
+        }
+    }
+}
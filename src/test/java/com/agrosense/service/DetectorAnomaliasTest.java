@@ -0,0 +1,143 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.agrosense.model.TipoSensor;
+import com.agrosense.service.DetectorAnomalias.TipoAnomalia;
+import org.junit.jupiter.api.Test;
+
+class DetectorAnomaliasTest {
+
+    private static final long MINUTO = 60_000L;
+    private static final long BASE = 1_700_000_000_000L;
+    private static final int REPETICIONES = 20;
+    // Alrededor de 50 con mediana 50 y MAD por debajo del mínimo (0.5)
+    private static final double[] ESTABLES = { 50.0, 50.2, 49.8, 50.1, 49.9, 50.0, 50.2, 49.8, 50.1, 49.9 };
+
+    private final DetectorAnomalias detector = new DetectorAnomalias();
+    private long minuto;
+
+    @Test
+    void valoresNoFinitosSonAtipicos() {
+        assertEquals(TipoAnomalia.VALOR_ATIPICO, humedad("s", Double.NaN));
+        assertEquals(TipoAnomalia.VALOR_ATIPICO, humedad("s", Double.POSITIVE_INFINITY));
+        assertTrue(detector.estaEnCuarentena("s"));
+        assertFalse(detector.estaEnCuarentena("otro"));
+    }
+
+    @Test
+    void elValorSeCongelaEnLaVigesimaRepeticion() {
+        humedad("s", 55);
+        for (int i = 1; i < REPETICIONES; i++) {
+            assertEquals(TipoAnomalia.NINGUNA, humedad("s", 55), "repetición " + i);
+        }
+        assertEquals(TipoAnomalia.VALOR_CONGELADO, humedad("s", 55));
+        assertEquals(TipoAnomalia.VALOR_CONGELADO, humedad("s", 55));
+        // Un valor distinto corta la racha
+        assertEquals(TipoAnomalia.NINGUNA, humedad("s", 55.1));
+    }
+
+    @Test
+    void cambioBruscoSegunLaTasaPorMinutoDelTipo() {
+        // Humedad: 10 % por minuto desde la última aceptada
+        assertEquals(TipoAnomalia.NINGUNA, detector.evaluar("h", TipoSensor.HUMEDAD, 50, BASE));
+        assertEquals(TipoAnomalia.NINGUNA, detector.evaluar("h", TipoSensor.HUMEDAD, 60, BASE + MINUTO));
+        assertEquals(TipoAnomalia.CAMBIO_BRUSCO,
+                detector.evaluar("h", TipoSensor.HUMEDAD, 70.5, BASE + 2 * MINUTO));
+        // Menos de un minuto cuenta como uno
+        assertEquals(TipoAnomalia.NINGUNA, detector.evaluar("h", TipoSensor.HUMEDAD, 69, BASE + 2 * MINUTO));
+        // Tras una rechazada, el tiempo se cuenta desde la última aceptada
+        assertEquals(TipoAnomalia.NINGUNA, detector.evaluar("h", TipoSensor.HUMEDAD, 85, BASE + 4 * MINUTO));
+
+        // Temperatura: 5 °C por minuto
+        assertEquals(TipoAnomalia.NINGUNA, detector.evaluar("t", TipoSensor.TEMPERATURA, 20, BASE));
+        assertEquals(TipoAnomalia.CAMBIO_BRUSCO,
+                detector.evaluar("t", TipoSensor.TEMPERATURA, 25.5, BASE + MINUTO));
+        assertEquals(TipoAnomalia.NINGUNA, detector.evaluar("t", TipoSensor.TEMPERATURA, 25, BASE + MINUTO));
+    }
+
+    @Test
+    void umbralDelPuntajeZ() {
+        for (double valor : ESTABLES) {
+            assertEquals(TipoAnomalia.NINGUNA, humedad("s", valor));
+        }
+        // Con MAD mínima 0.5 el umbral z = 6 corresponde a 6 * 1.4826 * 0.5 = 4.45
+        assertEquals(TipoAnomalia.NINGUNA, humedad("s", 54.4));
+        assertFalse(detector.estaEnCuarentena("s"));
+        assertEquals(TipoAnomalia.VALOR_ATIPICO, humedad("s", 54.5));
+        assertTrue(detector.estaEnCuarentena("s"));
+        assertEquals(TipoAnomalia.VALOR_ATIPICO, humedad("s", 45.5));
+    }
+
+    @Test
+    void sinSuficientesLecturasNoSeAplicaElPuntajeZ() {
+        for (int i = 0; i < 7; i++) {
+            humedad("s", ESTABLES[i]);
+        }
+        // Siete lecturas aceptadas: todavía no hay referencia
+        assertEquals(TipoAnomalia.NINGUNA, humedad("s", 58));
+    }
+
+    @Test
+    void saleDeCuarentenaTrasQuinceLecturasNormalesSeguidas() {
+        for (double valor : ESTABLES) {
+            humedad("s", valor);
+        }
+        assertEquals(TipoAnomalia.VALOR_ATIPICO, humedad("s", 58));
+        for (int i = 0; i < DetectorAnomalias.TAMANO_VENTANA - 1; i++) {
+            assertEquals(TipoAnomalia.NINGUNA, humedad("s", ESTABLES[i % ESTABLES.length]));
+            assertTrue(detector.estaEnCuarentena("s"), "normal " + (i + 1));
+        }
+        // Una anómala en medio reinicia la cuenta
+        assertEquals(TipoAnomalia.VALOR_ATIPICO, humedad("s", 58));
+        for (int i = 0; i < DetectorAnomalias.TAMANO_VENTANA - 1; i++) {
+            humedad("s", ESTABLES[i % ESTABLES.length]);
+        }
+        assertTrue(detector.estaEnCuarentena("s"));
+        humedad("s", 50);
+        assertFalse(detector.estaEnCuarentena("s"));
+    }
+
+    @Test
+    void unNivelNuevoQuePersisteSeAprendeDeNuevo() {
+        for (double valor : ESTABLES) {
+            humedad("s", valor);
+        }
+        // Salto a 70 que se mantiene: atípico mientras la referencia sea la anterior
+        for (int i = 0; i < DetectorAnomalias.TAMANO_VENTANA; i++) {
+            TipoAnomalia resultado = humedad("s", 70 + ESTABLES[i % ESTABLES.length] - 50);
+            assertTrue(resultado != TipoAnomalia.NINGUNA, "lectura " + i);
+        }
+        // Tras quince rechazadas seguidas la referencia se reinicia
+        assertEquals(TipoAnomalia.NINGUNA, humedad("s", 70));
+        for (int i = 0; i < 8; i++) {
+            assertEquals(TipoAnomalia.NINGUNA, humedad("s", 70 + ESTABLES[i] - 50));
+        }
+        // La referencia ahora es el nivel nuevo
+        assertEquals(TipoAnomalia.VALOR_ATIPICO, humedad("s", 75));
+    }
+
+    @Test
+    void olvidarYLimpiarBorranElEstado() {
+        for (double valor : ESTABLES) {
+            humedad("a", valor);
+            humedad("b", valor);
+        }
+        humedad("a", 58);
+        humedad("b", 58);
+        detector.olvidarSensor("a");
+        assertFalse(detector.estaEnCuarentena("a"));
+        assertTrue(detector.estaEnCuarentena("b"));
+        // Sin referencia, cualquier valor finito se acepta
+        assertEquals(TipoAnomalia.NINGUNA, humedad("a", 80));
+        detector.limpiar();
+        assertFalse(detector.estaEnCuarentena("b"));
+    }
+
+    // Una lectura de humedad por minuto
+    private TipoAnomalia humedad(String sensor, double valor) {
+        return detector.evaluar(sensor, TipoSensor.HUMEDAD, valor, BASE + minuto++ * MINUTO);
+    }
+}
@@ -0,0 +1,76 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.agrosense.model.Lote;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class GestorLotesTest {
+
+    private final GestorLotes gestor = new GestorLotes();
+
+    @Test
+    void conservaElOrdenYRechazaDuplicados() {
+        for (int i = 0; i < 5; i++) {
+            gestor.registrarLote(lote(i));
+        }
+        assertThrows(IllegalArgumentException.class, () -> gestor.registrarLote(lote(2)));
+        assertEquals(List.of("TEST-GL-0", "TEST-GL-1", "TEST-GL-2", "TEST-GL-3", "TEST-GL-4"), ids());
+
+        // Actualizar reemplaza el lote y lo pasa al final
+        Lote nuevo = new Lote("TEST-GL-1", "Renombrado", "Café", 3);
+        gestor.actualizarLote(nuevo);
+        assertSame(nuevo, gestor.buscarPorId("TEST-GL-1").get());
+        assertEquals(List.of("TEST-GL-0", "TEST-GL-2", "TEST-GL-3", "TEST-GL-4", "TEST-GL-1"), ids());
+        assertThrows(IllegalArgumentException.class, () -> gestor.actualizarLote(lote(9)));
+
+        assertTrue(gestor.eliminarLote("TEST-GL-3"));
+        assertFalse(gestor.eliminarLote("TEST-GL-3"));
+        assertFalse(gestor.eliminarLote(null));
+        assertTrue(gestor.buscarPorId("TEST-GL-3").isEmpty());
+        assertTrue(gestor.buscarPorId(null).isEmpty());
+        assertEquals(List.of("TEST-GL-0", "TEST-GL-2", "TEST-GL-4", "TEST-GL-1"), ids());
+
+        gestor.limpiar();
+        assertTrue(gestor.obtenerTodos().isEmpty());
+        assertTrue(gestor.buscarPorId("TEST-GL-0").isEmpty());
+    }
+
+    @Test
+    void laListaDeTodosEsUnaCopiaInmutable() {
+        gestor.registrarLote(lote(0));
+        List<Lote> antes = gestor.obtenerTodos();
+        // Sin cambios se devuelve la misma copia
+        assertSame(antes, gestor.obtenerTodos());
+        assertThrows(UnsupportedOperationException.class, () -> antes.add(lote(1)));
+
+        gestor.registrarLote(lote(1));
+        assertEquals(1, antes.size());
+        assertEquals(2, gestor.obtenerTodos().size());
+    }
+
+    @Test
+    void registrarMuchosLotesSeguidos() {
+        int cantidad = 100_000;
+        for (int i = 0; i < cantidad; i++) {
+            gestor.registrarLote(lote(i));
+        }
+        List<Lote> todos = gestor.obtenerTodos();
+        assertEquals(cantidad, todos.size());
+        assertEquals("TEST-GL-" + (cantidad - 1), todos.get(cantidad - 1).getId());
+        assertSame(todos.get(4321), gestor.buscarPorId("TEST-GL-4321").get());
+    }
+
+    private List<String> ids() {
+        return gestor.obtenerTodos().stream().map(Lote::getId).toList();
+    }
+
+    private static Lote lote(int i) {
+        return new Lote("TEST-GL-" + i, "Lote " + i, "Maíz", 1);
+    }
+}
@@ -0,0 +1,87 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Cubetas log-lineales de {@link HistogramaLatencia}: cada valor cae en una
+ * cubeta cuyo límite superior lo cubre con menos de 1/32 de error.
+ */
+class HistogramaLatenciaTest {
+
+    @Test
+    void valoresPequenosSonExactos() {
+        for (int v = 0; v < 64; v++) {
+            assertEquals(v, HistogramaLatencia.indice(v));
+            assertEquals(v, HistogramaLatencia.limiteSuperior(v));
+        }
+    }
+
+    @Test
+    void cadaCubetaEsUnTramoContiguo() {
+        // El límite superior de una cubeta y el valor siguiente caen en
+        // cubetas consecutivas: no hay huecos ni solapamientos
+        for (int i = 0; i < HistogramaLatencia.CUBETAS; i++) {
+            long limite = HistogramaLatencia.limiteSuperior(i);
+            assertEquals(i, HistogramaLatencia.indice(limite), "cubeta " + i);
+            if (i < HistogramaLatencia.CUBETAS - 1) {
+                assertEquals(i + 1, HistogramaLatencia.indice(limite + 1), "cubeta " + i);
+            }
+        }
+        assertEquals(Long.MAX_VALUE, HistogramaLatencia.limiteSuperior(HistogramaLatencia.CUBETAS - 1));
+        assertEquals(HistogramaLatencia.CUBETAS - 1, HistogramaLatencia.indice(Long.MAX_VALUE));
+    }
+
+    @Test
+    void elErrorRelativoEsMenorAUnTreintaidosavo() {
+        Random azar = new Random(7);
+        for (int bit = 0; bit < 63; bit++) {
+            long potencia = 1L << bit;
+            verificar(potencia - 1);
+            verificar(potencia);
+            verificar(potencia + 1);
+        }
+        for (int i = 0; i < 1_000_000; i++) {
+            // Valores no negativos, como los que recibe registrar()
+            verificar(azar.nextLong() >>> (1 + azar.nextInt(63)));
+        }
+        for (long v = 0; v < 100_000; v++) {
+            verificar(v);
+        }
+    }
+
+    private static void verificar(long valor) {
+        int indice = HistogramaLatencia.indice(valor);
+        assertTrue(indice >= 0 && indice < HistogramaLatencia.CUBETAS, "índice de " + valor);
+        long superior = HistogramaLatencia.limiteSuperior(indice);
+        long inferior = indice == 0 ? 0 : HistogramaLatencia.limiteSuperior(indice - 1) + 1;
+        assertTrue(inferior <= valor && valor <= superior, valor + " fuera de [" + inferior + ", " + superior + "]");
+        assertTrue((double) (superior - inferior) <= inferior / 32.0, "cubeta de " + valor + " demasiado ancha");
+    }
+
+    @Test
+    void percentilesDeUnaInstantanea() {
+        HistogramaLatencia histograma = new HistogramaLatencia("prueba");
+        for (long v = 1; v <= 1000; v++) {
+            histograma.registrar(v * 1000);
+        }
+        HistogramaLatencia.Instantanea antes = histograma.instantanea();
+        assertEquals(1000, antes.getCantidad());
+        assertEquals(1_000_000, antes.getMaximo());
+        assertEquals(500_500.0, antes.getPromedio(), 1e-9);
+        long p50 = antes.percentil(50);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 33 / 32, "p50=" + p50);
+        assertEquals(1_000_000, antes.percentil(100));
+
+        histograma.registrar(-5);
+        histograma.registrar(7);
+        HistogramaLatencia.Instantanea intervalo = histograma.instantanea().menos(antes);
+        assertEquals(2, intervalo.getCantidad());
+        assertEquals(7, intervalo.getMaximo());
+        assertEquals(0, intervalo.percentil(50));
+        assertEquals(7, intervalo.percentil(99));
+    }
+}
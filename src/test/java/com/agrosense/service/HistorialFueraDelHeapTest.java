@@ -0,0 +1,184 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.TipoSensor;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistorialFueraDelHeapTest {
+
+    private static final int POR_BLOQUE = HistorialFueraDelHeap.LECTURAS_POR_BLOQUE;
+    private static final long BLOQUE = HistorialFueraDelHeap.BYTES_BLOQUE;
+    private static final long CAPACIDAD = HistorialFueraDelHeap.BYTES_SEGMENTO;
+
+    @Test
+    void rechazaCapacidadesMenoresAUnSegmento() {
+        assertThrows(IllegalArgumentException.class, () -> new HistorialFueraDelHeap(CAPACIDAD - 1));
+    }
+
+    @Test
+    void leeRangosQueAbarcanVariosBloques() throws IOException {
+        try (HistorialFueraDelHeap historial = new HistorialFueraDelHeap(CAPACIDAD)) {
+            int lecturas = POR_BLOQUE * 3 + 10;
+            for (int i = 0; i < lecturas; i++) {
+                historial.registrar(7, i * 10L, i * 0.5);
+                historial.registrar(3, i * 10L, -i);
+            }
+            assertEquals(lecturas, historial.getLecturas(7));
+            assertEquals(2L * lecturas, historial.getTotalLecturas());
+            assertEquals(0, historial.getLecturas(5));
+            assertEquals(0, historial.getLecturas(1000));
+
+            long[] tiempos = new long[lecturas];
+            double[] valores = new double[lecturas];
+            // [2000, 5000): lecturas 200..499, en tres bloques distintos
+            assertEquals(300, historial.leer(7, 2000, 5000, tiempos, valores));
+            for (int i = 0; i < 300; i++) {
+                assertEquals((200 + i) * 10L, tiempos[i]);
+                assertEquals((200 + i) * 0.5, valores[i]);
+            }
+            // Los arreglos limitan cuántas se copian
+            assertEquals(4, historial.leer(3, 0, Long.MAX_VALUE, new long[4], new double[10]));
+            assertEquals(0, historial.leer(99, 0, Long.MAX_VALUE, tiempos, valores));
+            assertEquals(8 * BLOQUE, historial.getBytesEnUso());
+            assertEquals(CAPACIDAD, historial.getBytesReservados());
+        }
+    }
+
+    @Test
+    void registrarLoteEquivaleARegistrarUnaPorUna() throws IOException {
+        try (HistorialFueraDelHeap historial = new HistorialFueraDelHeap(CAPACIDAD)) {
+            MedicionBatch batch = new MedicionBatch();
+            for (int i = 0; i < 600; i++) {
+                batch.agregar(i % 3, 1, TipoSensor.HUMEDAD, i, i);
+            }
+            historial.registrarLote(batch);
+            for (int sensor = 0; sensor < 3; sensor++) {
+                long[] tiempos = new long[300];
+                double[] valores = new double[300];
+                assertEquals(200, historial.leer(sensor, 0, Long.MAX_VALUE, tiempos, valores));
+                for (int i = 0; i < 200; i++) {
+                    assertEquals(sensor + 3L * i, tiempos[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void recortarLiberaBloquesCompletosYConservaElUltimo() throws IOException {
+        try (HistorialFueraDelHeap historial = new HistorialFueraDelHeap(CAPACIDAD)) {
+            // Cuatro bloques llenos y uno con 5 lecturas; tiempos = índice
+            int lecturas = POR_BLOQUE * 4 + 5;
+            for (int i = 0; i < lecturas; i++) {
+                historial.registrar(1, i, i);
+            }
+            assertEquals(5 * BLOQUE, historial.getBytesEnUso());
+
+            // Corta en medio del tercer bloque: solo se liberan los dos primeros
+            assertEquals(2L * POR_BLOQUE, historial.recortar(POR_BLOQUE * 2 + 10));
+            assertEquals(lecturas - 2L * POR_BLOQUE, historial.getLecturas(1));
+            assertEquals(3 * BLOQUE, historial.getBytesEnUso());
+            long[] tiempos = new long[1];
+            assertEquals(1, historial.leer(1, 0, Long.MAX_VALUE, tiempos, new double[1]));
+            assertEquals(POR_BLOQUE * 2L, tiempos[0]);
+
+            // Aunque el corte sea posterior a todo, el último bloque queda
+            assertEquals(2L * POR_BLOQUE, historial.recortar(Long.MAX_VALUE));
+            assertEquals(5, historial.getLecturas(1));
+            assertEquals(5, historial.getTotalLecturas());
+            assertEquals(BLOQUE, historial.getBytesEnUso());
+            assertEquals(0, historial.recortar(Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void losBloquesLiberadosSeReutilizan() throws IOException {
+        try (HistorialFueraDelHeap historial = new HistorialFueraDelHeap(CAPACIDAD)) {
+            for (int i = 0; i < POR_BLOQUE * 10; i++) {
+                historial.registrar(1, i, i);
+            }
+            historial.eliminarSensor(1);
+            assertEquals(0, historial.getLecturas(1));
+            assertEquals(0, historial.getBytesEnUso());
+
+            // El otro sensor usa los diez bloques libres antes que los sin usar
+            for (int i = 0; i < POR_BLOQUE * 10; i++) {
+                historial.registrar(2, i, i);
+            }
+            assertEquals(10 * BLOQUE, historial.getBytesEnUso());
+            assertEquals(CAPACIDAD, historial.getBytesReservados());
+            long[] tiempos = new long[POR_BLOQUE * 10];
+            double[] valores = new double[POR_BLOQUE * 10];
+            assertEquals(POR_BLOQUE * 10, historial.leer(2, 0, Long.MAX_VALUE, tiempos, valores));
+            for (int i = 0; i < tiempos.length; i++) {
+                assertEquals(i, tiempos[i]);
+            }
+            assertEquals(0, historial.leer(1, 0, Long.MAX_VALUE, tiempos, valores));
+        }
+    }
+
+    @Test
+    void sinCapacidadElSensorReutilizaSuBloqueMasViejo() throws IOException {
+        try (HistorialFueraDelHeap historial = new HistorialFueraDelHeap(CAPACIDAD)) {
+            long capacidadLecturas = (long) HistorialFueraDelHeap.BLOQUES_POR_SEGMENTO * POR_BLOQUE;
+            for (long i = 0; i < capacidadLecturas; i++) {
+                historial.registrar(0, i, i);
+            }
+            assertEquals(0, historial.getLecturasDescartadas());
+            assertEquals(CAPACIDAD, historial.getBytesEnUso());
+
+            historial.registrar(0, capacidadLecturas, 0);
+            assertEquals(POR_BLOQUE, historial.getLecturasDescartadas());
+            assertEquals(capacidadLecturas - POR_BLOQUE + 1, historial.getLecturas(0));
+            long[] tiempos = new long[1];
+            historial.leer(0, 0, Long.MAX_VALUE, tiempos, new double[1]);
+            assertEquals(POR_BLOQUE, tiempos[0]);
+
+            // Un sensor sin bloques no tiene nada que ceder
+            historial.registrar(1, 0, 0);
+            assertEquals(0, historial.getLecturas(1));
+            assertEquals(POR_BLOQUE + 1, historial.getLecturasDescartadas());
+        }
+    }
+
+    @Test
+    void despuesDeCerrarSeIgnoranLasLecturas() throws IOException {
+        HistorialFueraDelHeap historial = new HistorialFueraDelHeap(CAPACIDAD);
+        historial.registrar(1, 0, 1);
+        historial.close();
+        historial.registrar(1, 1, 2);
+        historial.registrar(2, 1, 2);
+        MedicionBatch batch = new MedicionBatch();
+        batch.agregar(3, 1, TipoSensor.HUMEDAD, 50, 1);
+        historial.registrarLote(batch);
+        assertEquals(0, historial.getTotalLecturas());
+        assertEquals(0, historial.getLecturas(2));
+        assertEquals(0, historial.leer(1, 0, Long.MAX_VALUE, new long[4], new double[4]));
+        assertEquals(0, historial.getBytesReservados());
+        historial.eliminarSensor(1);
+        assertEquals(0, historial.recortar(Long.MAX_VALUE));
+        historial.close();
+    }
+
+    @Test
+    void enArchivoMapeado(@TempDir Path directorio) throws IOException {
+        Path ruta = directorio.resolve("historial.bin");
+        try (HistorialFueraDelHeap historial = new HistorialFueraDelHeap(ruta, 2 * CAPACIDAD)) {
+            for (int i = 0; i < POR_BLOQUE * 2; i++) {
+                historial.registrar(4, i, i * 2.0);
+            }
+            long[] tiempos = new long[POR_BLOQUE * 2];
+            double[] valores = new double[POR_BLOQUE * 2];
+            assertEquals(POR_BLOQUE * 2, historial.leer(4, 0, Long.MAX_VALUE, tiempos, valores));
+            assertEquals((POR_BLOQUE * 2 - 1) * 2.0, valores[POR_BLOQUE * 2 - 1]);
+            assertTrue(ruta.toFile().length() >= CAPACIDAD);
+            assertEquals(CAPACIDAD, historial.getBytesReservados());
+        }
+    }
+}
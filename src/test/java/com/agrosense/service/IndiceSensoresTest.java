@@ -0,0 +1,114 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.agrosense.model.Lote;
+import com.agrosense.model.Sensor;
+import com.agrosense.model.SensorHumedad;
+import com.agrosense.model.SensorTemperatura;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class IndiceSensoresTest {
+
+    @Test
+    void agrupaLosSensoresPorLote() {
+        GestorLotes gestor = new GestorLotes();
+        Lote a = new Lote("TEST-IS-A", "A", "Maíz", 1);
+        Lote b = new Lote("TEST-IS-B", "B", "Café", 1);
+        Sensor h = new SensorHumedad("TEST-IS-H1", "norte");
+        Sensor t = new SensorTemperatura("TEST-IS-T1", "sur");
+        Sensor h2 = new SensorHumedad("TEST-IS-H2", "este");
+        a.agregarSensor(h);
+        a.agregarSensor(t);
+        b.agregarSensor(h2);
+        gestor.registrarLote(a);
+        gestor.registrarLote(b);
+
+        IndiceSensores indice = new IndiceSensores(gestor);
+        assertEquals(3, indice.getCantidadSensores());
+        assertEquals(2, indice.getCantidadLotes());
+        assertEquals(0, indice.getInicioLote(0));
+        assertEquals(2, indice.getFinLote(0));
+        assertEquals(3, indice.getFinLote(1));
+        assertEquals(1, indice.buscarSensor("TEST-IS-T1"));
+        assertEquals(IndiceSensores.TIPO_TEMPERATURA, indice.getTipo(1));
+        assertEquals(2, indice.buscarPorNumero(h2.getNumero()));
+        assertEquals(1, indice.getLoteDeSensor(2));
+        assertEquals(-1, indice.buscarSensor("TEST-IS-NINGUNO"));
+        assertTrue(indice.estaVigente(gestor));
+
+        b.eliminarSensor("TEST-IS-H2");
+        assertFalse(indice.estaVigente(gestor));
+        IndiceSensores nuevo = IndiceSensores.actualizar(indice, gestor);
+        assertEquals(2, nuevo.getCantidadSensores());
+        assertSame(nuevo, IndiceSensores.actualizar(nuevo, gestor));
+    }
+
+    @Test
+    void seConstruyeMientrasCambianLosSensores() throws InterruptedException {
+        GestorLotes gestor = new GestorLotes();
+        Lote[] lotes = new Lote[4];
+        for (int i = 0; i < lotes.length; i++) {
+            lotes[i] = new Lote("TEST-IS-C" + i, "C" + i, "Papa", 1);
+            gestor.registrarLote(lotes[i]);
+        }
+        Sensor[] sensores = new Sensor[32];
+        for (int i = 0; i < sensores.length; i++) {
+            sensores[i] = i % 2 == 0 ? new SensorHumedad("TEST-IS-S" + i, "x")
+                    : new SensorTemperatura("TEST-IS-S" + i, "x");
+        }
+
+        // Un hilo agrega y quita sensores sin parar mientras se construyen índices
+        AtomicBoolean seguir = new AtomicBoolean(true);
+        Thread cambios = new Thread(() -> {
+            int i = 0;
+            while (seguir.get()) {
+                Lote lote = lotes[i % lotes.length];
+                Sensor sensor = sensores[i % sensores.length];
+                if (i / sensores.length % 2 == 0) {
+                    lote.agregarSensor(sensor);
+                } else {
+                    lote.eliminarSensor(sensor.getId());
+                }
+                i++;
+            }
+        });
+        cambios.start();
+        try {
+            for (int n = 0; n < 20_000; n++) {
+                verificarConsistente(new IndiceSensores(gestor));
+            }
+        } finally {
+            seguir.set(false);
+            cambios.join();
+        }
+
+        // Sin cambios en curso el índice refleja exactamente los lotes
+        IndiceSensores indice = new IndiceSensores(gestor);
+        assertTrue(indice.estaVigente(gestor));
+        for (int i = 0; i < lotes.length; i++) {
+            assertEquals(lotes[i].getSensores().size(), indice.getFinLote(i) - indice.getInicioLote(i));
+        }
+    }
+
+    private static void verificarConsistente(IndiceSensores indice) {
+        assertEquals(indice.getCantidadSensores(), indice.getFinLote(indice.getCantidadLotes() - 1));
+        for (int l = 0; l < indice.getCantidadLotes(); l++) {
+            assertTrue(indice.getInicioLote(l) <= indice.getFinLote(l));
+            for (int p = indice.getInicioLote(l); p < indice.getFinLote(l); p++) {
+                Sensor sensor = indice.getSensor(p);
+                assertNotNull(sensor);
+                assertEquals(l, indice.getLoteDeSensor(p));
+                assertEquals(IndiceSensores.codificarTipo(sensor.getTipo()), indice.getTipo(p));
+                int primera = indice.buscarSensor(sensor.getId());
+                assertTrue(primera >= 0 && primera <= p);
+                assertEquals(primera, indice.buscarPorNumero(sensor.getNumero()));
+            }
+        }
+    }
+}
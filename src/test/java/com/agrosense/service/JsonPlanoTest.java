@@ -0,0 +1,111 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class JsonPlanoTest {
+
+    @Test
+    void escribeTextosConEscapes() throws IOException {
+        assertEquals("\"hola\"", texto("hola"));
+        assertEquals("null", texto(null));
+        assertEquals("\"\"", texto(""));
+        assertEquals("\"a\\\"b\\\\c\\nd\\re\\tf\\u0001g\"", texto("a\"b\\c\nd\re\tf\u0001g"));
+        assertEquals("\"ñandú °C\"", texto("ñandú °C"));
+    }
+
+    @Test
+    void escribeNumeros() throws IOException {
+        assertEquals("42", numero(42));
+        assertEquals("-3", numero(-3.0));
+        assertEquals("0.5", numero(0.5));
+        assertEquals("1.0E15", numero(1e15));
+        assertEquals("null", numero(Double.NaN));
+        assertEquals("null", numero(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    void escribeClaves() throws IOException {
+        StringWriter w = new StringWriter();
+        w.write('{');
+        JsonPlano.escribirClave(w, "a", true);
+        JsonPlano.escribirNumero(w, 1);
+        JsonPlano.escribirClave(w, "b", false);
+        JsonPlano.escribirTexto(w, "x");
+        w.write('}');
+        assertEquals("{\"a\":1,\"b\":\"x\"}", w.toString());
+    }
+
+    @Test
+    void leeObjetosPlanos() {
+        Map<String, String> campos = leer(" { \"id\" : \"L1\", \"area\":12.5,\"activo\":true,\n\"notas\":null } ");
+        assertEquals(Map.of("id", "L1", "area", "12.5", "activo", "true"), campos);
+        assertTrue(leer("{}").isEmpty());
+        assertTrue(leer("  {  }  ").isEmpty());
+        // La cadena "null" no es un null
+        assertEquals(Map.of("notas", "null"), leer("{\"notas\":\"null\"}"));
+    }
+
+    @Test
+    void leeEscapes() {
+        Map<String, String> campos = leer("{\"t\":\"a\\\"b\\\\c\\/d\\n\\r\\t\\b\\f\\u00f1\\u0041\"}");
+        assertEquals("a\"b\\c/d\n\r\t\b\fñA", campos.get("t"));
+    }
+
+    @Test
+    void loEscritoSeLeeIgual() throws IOException {
+        String[] textos = { "simple", "con \"comillas\"", "barra \\ invertida", "líneas\nvarias\r\n", "\u0000\u001f",
+                "unicode ✓ 🌱", "" };
+        for (String original : textos) {
+            StringWriter w = new StringWriter();
+            w.write('{');
+            JsonPlano.escribirClave(w, "v", true);
+            JsonPlano.escribirTexto(w, original);
+            w.write('}');
+            assertEquals(original, leer(w.toString()).get("v"), w.toString());
+        }
+    }
+
+    @Test
+    void vaciaElDestinoAntesDeLeer() {
+        Map<String, String> destino = new HashMap<>();
+        destino.put("viejo", "1");
+        JsonPlano.leerObjeto("{\"nuevo\":2}", destino);
+        assertFalse(destino.containsKey("viejo"));
+        assertEquals("2", destino.get("nuevo"));
+    }
+
+    @Test
+    void rechazaJsonInvalido() {
+        String[] invalidos = { "", "[]", "{", "{\"a\":1", "{\"a\":1,}", "{\"a\" 1}", "{a:1}", "{\"a\":}",
+                "{\"a\":{\"b\":1}}", "{\"a\":[1]}", "{\"a\":\"sin cerrar}", "{\"a\":1} extra", "{\"a\":\"\\u12\"}",
+                "{\"a\":\"\\uzzzz\"}", "{\"a\":\"\\" };
+        for (String json : invalidos) {
+            assertThrows(IllegalArgumentException.class, () -> leer(json), json);
+        }
+    }
+
+    private static String texto(String valor) throws IOException {
+        StringWriter w = new StringWriter();
+        JsonPlano.escribirTexto(w, valor);
+        return w.toString();
+    }
+
+    private static String numero(double valor) throws IOException {
+        StringWriter w = new StringWriter();
+        JsonPlano.escribirNumero(w, valor);
+        return w.toString();
+    }
+
+    private static Map<String, String> leer(String json) {
+        return JsonPlano.leerObjeto(json, new HashMap<>());
+    }
+}
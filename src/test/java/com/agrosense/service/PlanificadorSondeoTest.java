@@ -0,0 +1,46 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.agrosense.model.Lote;
+import com.agrosense.model.SensorHumedad;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.Test;
+
+class PlanificadorSondeoTest {
+
+    private static final int SENSORES = 4;
+
+    @Test
+    void losVencimientosDeLecturasTerminadasSalenDeLaCola() throws InterruptedException {
+        GestorLotes gestor = new GestorLotes();
+        Lote lote = new Lote("TEST-PS-LOTE", "Sondeo", "Maíz", 1);
+        for (int i = 0; i < SENSORES; i++) {
+            SensorHumedad sensor = new SensorHumedad("TEST-PS-H" + i, "fila " + i);
+            sensor.setIntervaloMuestreoMs(5);
+            lote.agregarSensor(sensor);
+        }
+        gestor.registrarLote(lote);
+
+        LongAdder recibidas = new LongAdder();
+        // Vencimiento largo: si no se cancelaran se acumularían cientos en la cola
+        PlanificadorSondeo planificador = new PlanificadorSondeo(gestor, new SensorService(7),
+                (sensor, loteId, valor, millis) -> recibidas.increment(), 60_000, false);
+        planificador.iniciar();
+        try {
+            long limite = System.currentTimeMillis() + 10_000;
+            while (recibidas.sum() < 200 && System.currentTimeMillis() < limite) {
+                Thread.sleep(10);
+            }
+            assertTrue(recibidas.sum() >= 200, "lecturas recibidas: " + recibidas.sum());
+            // Las periódicas, la revisión y a lo sumo un vencimiento por sensor
+            int enCola = planificador.getTareasEnCola();
+            assertTrue(enCola <= 2 * SENSORES + 1, "tareas en cola: " + enCola);
+            assertEquals(0, planificador.getLecturasVencidas());
+        } finally {
+            planificador.detener();
+        }
+        assertEquals(0, planificador.getTareasEnCola());
+    }
+}
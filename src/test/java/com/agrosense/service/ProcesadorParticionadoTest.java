@@ -0,0 +1,171 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.agrosense.model.Alerta;
+import com.agrosense.model.Lote;
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.SensorHumedad;
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ProcesadorParticionadoTest {
+
+    private static final int LOTES = 24;
+    private static final long BASE = 1_700_000_000_000L;
+
+    @Test
+    void rechazaCeroParticiones() {
+        assertThrows(IllegalArgumentException.class, () -> new ProcesadorParticionado(0));
+    }
+
+    @Test
+    void cadaLoteSeProcesaSoloEnSuParticion() {
+        ProcesadorParticionado procesador = new ProcesadorParticionado(4);
+        procesador.setMostrarAlertasEnConsola(false);
+        procesador.iniciar();
+        try {
+            // Más lecturas que bloques por partición: el envío tiene que esperar
+            MedicionBatch batch = lecturas(2000, 60);
+            assertEquals(batch.getTamano(), procesador.procesarLote(batch));
+            procesador.enviar(lecturas(2000, 60));
+            procesador.esperar();
+            assertEquals(2L * batch.getTamano(), procesador.getTotalMediciones());
+            assertEquals(procesador.getTotalMediciones(), procesador.getLecturasAceptadas());
+
+            long[] esperadasPorParticion = new long[procesador.getCantidadParticiones()];
+            for (int l = 0; l < LOTES; l++) {
+                String loteId = lote(l);
+                int duena = procesador.particionDe(loteId);
+                assertTrue(duena >= 0 && duena < procesador.getCantidadParticiones());
+                assertEquals(duena, procesador.particionDe(TablaIds.LOTES.numero(loteId)));
+                esperadasPorParticion[duena] += 2 * 2000L;
+                List<Double> minimos = procesador.consultarTodas(
+                        p -> p.getEstadisticasService().obtenerMinimo(loteId, TipoSensor.HUMEDAD));
+                for (int p = 0; p < minimos.size(); p++) {
+                    assertEquals(p == duena ? 60.0 : Double.NaN, minimos.get(p), loteId + " en " + p);
+                }
+                double promedio = procesador.calcularPromedioTotal(loteId, TipoSensor.HUMEDAD);
+                assertEquals(60.6, promedio, 1e-9);
+            }
+            List<Long> totales = procesador.consultarTodas(p -> p.getEstadisticasService().getTotalMediciones());
+            for (int p = 0; p < totales.size(); p++) {
+                assertEquals(esperadasPorParticion[p], totales.get(p));
+            }
+            List<Integer> numeros = procesador.consultarTodas(ProcesadorParticionado.Particion::getNumero);
+            assertEquals(List.of(0, 1, 2, 3), numeros);
+        } finally {
+            procesador.detener();
+        }
+    }
+
+    @Test
+    void laMezclaDeAlertasIgualaAOrdenarlasTodas() {
+        ProcesadorParticionado procesador = new ProcesadorParticionado(3);
+        procesador.setMostrarAlertasEnConsola(false);
+        procesador.iniciar();
+        try {
+            // Humedad crítica: cada lectura aceptada genera una alerta
+            for (int vuelta = 0; vuelta < 5; vuelta++) {
+                procesador.procesarLote(lecturas(20, 25));
+            }
+            List<Alerta> todas = procesador.reunirAlertas();
+            assertEquals(procesador.contarAlertas(), todas.size());
+            assertTrue(todas.size() >= LOTES * 20);
+            for (int i = 1; i < todas.size(); i++) {
+                assertTrue(!todas.get(i).getFechaHora().isBefore(todas.get(i - 1).getFechaHora()));
+            }
+
+            List<LocalDateTime> esperadas = new ArrayList<>();
+            for (Alerta alerta : todas) {
+                esperadas.add(alerta.getFechaHora());
+            }
+            esperadas.sort(Comparator.reverseOrder());
+            for (int limite : new int[] { 1, 7, 100, todas.size(), todas.size() + 10 }) {
+                List<Alerta> mezcla = procesador.consultarAlertas(AlmacenAlertas.Filtro.TODAS, limite);
+                List<LocalDateTime> fechas = new ArrayList<>();
+                for (Alerta alerta : mezcla) {
+                    fechas.add(alerta.getFechaHora());
+                }
+                assertEquals(esperadas.subList(0, Math.min(limite, esperadas.size())), fechas, "límite " + limite);
+            }
+
+            String loteId = lote(5);
+            AlmacenAlertas.Filtro delLote = new AlmacenAlertas.Filtro(null, loteId, null, null);
+            List<Alerta> delLoteMezcla = procesador.consultarAlertas(delLote, Integer.MAX_VALUE);
+            assertEquals(todas.stream().filter(a -> loteId.equals(a.getLoteId())).count(), delLoteMezcla.size());
+        } finally {
+            procesador.detener();
+        }
+    }
+
+    @Test
+    void laIngestaPorRedLlegaALaParticionDuena() {
+        GestorLotes gestor = new GestorLotes();
+        for (int l = 0; l < 4; l++) {
+            Lote lote = new Lote("TEST-PP-RED" + l, "Red " + l, "Maíz", 1);
+            lote.agregarSensor(new SensorHumedad("TEST-PP-RED-S" + l, "centro"));
+            gestor.registrarLote(lote);
+        }
+        ProcesadorParticionado procesador = new ProcesadorParticionado(3);
+        procesador.setMostrarAlertasEnConsola(false);
+        procesador.iniciar();
+        try {
+            IngestaParticionada ingesta = new IngestaParticionada(gestor, procesador);
+            // Dos tramas: nada se envía hasta que termina cada una
+            for (int trama = 0; trama < 2; trama++) {
+                for (int i = 0; i < 10; i++) {
+                    for (int l = 0; l < 4; l++) {
+                        long millis = BASE + (trama * 10 + i) * 60_000L;
+                        ingesta.aceptar(TablaIds.SENSORES.numero("TEST-PP-RED-S" + l), millis, 60 + l);
+                    }
+                }
+                ingesta.aceptar(TablaIds.SENSORES.numero("TEST-PP-RED-DESCONOCIDO"), BASE, 60);
+                procesador.esperar();
+                assertEquals(trama * 40L, procesador.getTotalMediciones());
+                ingesta.finTrama();
+            }
+            procesador.esperar();
+            assertEquals(80, procesador.getTotalMediciones());
+            assertEquals(2, ingesta.getSensoresDesconocidos());
+            for (int l = 0; l < 4; l++) {
+                String loteId = "TEST-PP-RED" + l;
+                int duena = procesador.particionDe(loteId);
+                List<Double> minimos = procesador.consultarTodas(
+                        p -> p.getEstadisticasService().obtenerMinimo(loteId, TipoSensor.HUMEDAD));
+                for (int p = 0; p < minimos.size(); p++) {
+                    assertEquals(p == duena ? 60.0 + l : Double.NaN, minimos.get(p), loteId + " en " + p);
+                }
+            }
+        } finally {
+            procesador.detener();
+        }
+    }
+
+    private static String lote(int i) {
+        return "TEST-PP-L" + i;
+    }
+
+    /**
+     * Lecturas de humedad de un sensor por lote, una por minuto, con
+     * variaciones pequeñas para que el detector las acepte
+     */
+    private static MedicionBatch lecturas(int porLote, double base) {
+        MedicionBatch batch = new MedicionBatch(porLote * LOTES);
+        for (int i = 0; i < porLote; i++) {
+            for (int l = 0; l < LOTES; l++) {
+                int sensor = TablaIds.SENSORES.numero("TEST-PP-S" + l + "-" + base);
+                batch.agregar(sensor, TablaIds.LOTES.numero(lote(l)), TipoSensor.HUMEDAD, base + (i % 5) * 0.3,
+                        BASE + i * 60_000L);
+            }
+        }
+        return batch;
+    }
+}
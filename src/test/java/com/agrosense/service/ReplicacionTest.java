@@ -0,0 +1,166 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.agrosense.model.Alerta;
+import com.agrosense.model.Lote;
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.SensorHumedad;
+import com.agrosense.model.SensorTemperatura;
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Replicación entre un {@link ReplicadorLider} y una {@link ReplicaSeguidor}
+ * en localhost: instantánea inicial, cambios posteriores y el pedido de
+ * resincronización a un seguidor que no lee.
+ */
+class ReplicacionTest {
+
+    private final GestorLotes lotesLider = new GestorLotes();
+    private final AlertaService alertasLider = silenciosa();
+
+    @Test
+    void elSeguidorRecibeLaInstantaneaYLuegoLosCambios() throws Exception {
+        Lote norte = new Lote("TEST-RP-NORTE", "Norte", "Maíz", 3);
+        norte.agregarSensor(new SensorHumedad("TEST-RP-H1", "centro"));
+        lotesLider.registrarLote(norte);
+        lotesLider.registrarLote(new Lote("TEST-RP-SUR", "Sur", "Café", 2));
+        alertasLider.getHistorialAlertas().add(new Alerta("previa", Alerta.Nivel.WARNING, "TEST-RP-NORTE"));
+
+        ReplicadorLider lider = new ReplicadorLider(lotesLider, alertasLider, 0, 10, 3);
+        lider.iniciar();
+        GestorLotes lotesReplica = new GestorLotes();
+        AlertaService alertasReplica = silenciosa();
+        EstadisticasService estadisticasReplica = new EstadisticasService();
+        HistorialFueraDelHeap crudoReplica = new HistorialFueraDelHeap(HistorialFueraDelHeap.BYTES_SEGMENTO);
+        estadisticasReplica.setHistorial(crudoReplica);
+        // Restos de una conexión anterior: la instantánea los descarta
+        estadisticasReplica.registrarMedicion(TablaIds.SENSORES.numero("TEST-RP-H1"), "TEST-RP-NORTE",
+                TipoSensor.HUMEDAD, 5, 1_600_000_000_000L);
+        ReplicaSeguidor replica = new ReplicaSeguidor(lotesReplica, alertasReplica, estadisticasReplica,
+                "localhost", lider.getPuerto());
+        try {
+            replica.iniciar();
+            esperar(() -> lotesReplica.obtenerTodos().size() == 2 && alertasReplica.getAlmacen().size() == 1);
+            assertEquals(3, replica.getEpocaLider());
+            assertEquals(1, lotesReplica.buscarPorId("TEST-RP-NORTE").get().getSensores().size());
+            assertEquals("previa", alertasReplica.getHistorialAlertas().get(0).getMensaje());
+
+            // Cambios después de la instantánea
+            norte.agregarSensor(new SensorTemperatura("TEST-RP-T1", "borde"));
+            lotesLider.eliminarLote("TEST-RP-SUR");
+            lotesLider.registrarLote(new Lote("TEST-RP-ESTE", "Este", "Papa", 1));
+            alertasLider.getHistorialAlertas().add(new Alerta("nueva", Alerta.Nivel.CRITICAL, "TEST-RP-ESTE"));
+            MedicionBatch lecturas = new MedicionBatch();
+            for (int i = 0; i < 10; i++) {
+                lecturas.agregar(TablaIds.SENSORES.numero("TEST-RP-H1"), TablaIds.LOTES.numero("TEST-RP-NORTE"),
+                        TipoSensor.HUMEDAD, 50 + i, 1_700_000_000_000L + i * 60_000L);
+            }
+            lider.registrarLecturas(lecturas);
+
+            esperar(() -> lotesReplica.buscarPorId("TEST-RP-ESTE").isPresent()
+                    && lotesReplica.buscarPorId("TEST-RP-SUR").isEmpty()
+                    && alertasReplica.getAlmacen().size() == 2
+                    && estadisticasReplica.getTotalMediciones() == 10);
+            assertEquals(2, lotesReplica.buscarPorId("TEST-RP-NORTE").get().getSensores().size());
+            assertEquals("nueva", alertasReplica.getHistorialAlertas().get(1).getMensaje());
+            assertEquals(50.0, estadisticasReplica.obtenerMinimo("TEST-RP-NORTE", TipoSensor.HUMEDAD));
+            assertEquals(59.0, estadisticasReplica.obtenerMaximo("TEST-RP-NORTE", TipoSensor.HUMEDAD));
+            assertEquals(10, crudoReplica.getTotalLecturas());
+
+            // Vaciar las alertas en el líder también se replica
+            alertasLider.getAlmacen().clear();
+            esperar(() -> alertasReplica.getAlmacen().size() == 0);
+            esperar(() -> lider.getTramasSinConfirmar() == 0);
+            assertTrue(replica.getSecuenciaAplicada() > 0);
+            assertEquals(0, replica.getReconexiones());
+        } finally {
+            replica.detener();
+            lider.detener();
+            crudoReplica.close();
+        }
+    }
+
+    @Test
+    void unSeguidorQueNoLeeRecibeUnPedidoDeResincronizacion() throws Exception {
+        lotesLider.registrarLote(new Lote("TEST-RP-LENTO", "Lento", "Maíz", 1));
+        ReplicadorLider lider = new ReplicadorLider(lotesLider, alertasLider, 0, 1, 5);
+        lider.iniciar();
+        try (Socket lento = new Socket()) {
+            // Buffer chico: la cola del líder se llena antes
+            lento.setReceiveBufferSize(1 << 12);
+            lento.connect(new InetSocketAddress("localhost", lider.getPuerto()));
+            esperar(() -> lider.getCantidadSeguidores() == 1);
+
+            // Más tramas que las que caben en la cola y en los buffers del socket
+            MedicionBatch lecturas = new MedicionBatch();
+            for (int i = 0; i < 400; i++) {
+                lecturas.agregar(TablaIds.SENSORES.numero("TEST-RP-L1"), TablaIds.LOTES.numero("TEST-RP-LENTO"),
+                        TipoSensor.HUMEDAD, 60, i);
+            }
+            long limite = System.currentTimeMillis() + 30_000;
+            while (lider.getSecuencia() < 3000 && System.currentTimeMillis() < limite) {
+                lider.registrarLecturas(lecturas);
+                Thread.sleep(1);
+            }
+
+            // Instantánea, tramas en orden y, al final, el pedido antes del cierre
+            DataInputStream entrada = new DataInputStream(new BufferedInputStream(lento.getInputStream()));
+            int tramas = 0;
+            long secuenciaAnterior = -1;
+            byte primerRegistro = -1;
+            byte ultimoRegistro = -1;
+            while (true) {
+                int bytes;
+                try {
+                    bytes = entrada.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                long secuencia = entrada.readLong();
+                assertEquals(5, entrada.readLong());
+                entrada.readLong();
+                int registros = entrada.readInt();
+                byte[] cuerpo = new byte[bytes];
+                entrada.readFully(cuerpo);
+                if (tramas == 0) {
+                    primerRegistro = cuerpo[0];
+                } else {
+                    assertTrue(secuencia >= secuenciaAnterior, "secuencia " + secuencia);
+                }
+                ultimoRegistro = registros > 0 ? cuerpo[0] : -1;
+                secuenciaAnterior = secuencia;
+                tramas++;
+            }
+            assertEquals(FormatoReplicacion.INSTANTANEA, primerRegistro);
+            assertEquals(FormatoReplicacion.RESINCRONIZAR, ultimoRegistro);
+            assertTrue(tramas < lider.getSecuencia(), "se descartaron tramas encoladas");
+        } finally {
+            lider.detener();
+        }
+    }
+
+    private static AlertaService silenciosa() {
+        AlertaService alertas = new AlertaService();
+        alertas.setMostrarEnConsola(false);
+        return alertas;
+    }
+
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (!condicion.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < limite, "tiempo de espera agotado");
+            Thread.sleep(5);
+        }
+    }
+}
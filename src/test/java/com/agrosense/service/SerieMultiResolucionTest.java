@@ -0,0 +1,155 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.agrosense.model.ResumenIntervalo;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compara las consultas de {@link SerieMultiResolucion} con agrupar las
+ * lecturas crudas: intervalo del nivel elegido y grupos alineados a
+ * {@code desde}.
+ */
+class SerieMultiResolucionTest {
+
+    private static final long MINUTO = SerieMultiResolucion.MINUTO;
+    private static final long HORA = SerieMultiResolucion.HORA;
+    private static final long DIA = SerieMultiResolucion.DIA;
+    // Medianoche UTC
+    private static final long BASE = 1_700_006_400_000L;
+
+    @Test
+    void losGruposSeAlineanADesde() {
+        SerieMultiResolucion serie = new SerieMultiResolucion();
+        for (int m = 0; m < 180; m++) {
+            serie.agregar(BASE + m * MINUTO + 1000, m);
+        }
+        // Desde no alineado al minuto: el minuto que lo contiene cuenta en el primer grupo
+        long desde = BASE + 10 * MINUTO + 30_000;
+        List<ResumenIntervalo> grupos = serie.consultar(desde, BASE + 70 * MINUTO, 15 * MINUTO);
+        assertEquals(4, grupos.size());
+        for (int k = 0; k < grupos.size(); k++) {
+            assertEquals(desde + k * 15 * MINUTO, grupos.get(k).getInicioMillis());
+            assertEquals(15 * MINUTO, grupos.get(k).getDuracionMillis());
+        }
+        // Minutos 10..25 en el primero (el 10 empieza antes de desde)
+        assertEquals(16, grupos.get(0).getConteo());
+        assertEquals(10, grupos.get(0).getMinimo());
+        assertEquals(25, grupos.get(0).getMaximo());
+        assertEquals(17.5, grupos.get(0).getPromedio(), 1e-9);
+        assertEquals(15, grupos.get(1).getConteo());
+        assertEquals(26, grupos.get(1).getMinimo());
+        // El último termina en hasta: minutos 56..69
+        assertEquals(14, grupos.get(3).getConteo());
+        assertEquals(69, grupos.get(3).getMaximo());
+
+        // Una resolución menor a un minuto usa el nivel por minuto sin combinar
+        assertEquals(MINUTO, serie.anchoParaResolucion(1000));
+        assertEquals(HORA, serie.anchoParaResolucion(3 * HORA));
+        assertEquals(DIA, serie.anchoParaResolucion(30 * DIA));
+        List<ResumenIntervalo> porMinuto = serie.consultar(BASE, BASE + 5 * MINUTO, 1);
+        assertEquals(5, porMinuto.size());
+        assertEquals(MINUTO, porMinuto.get(0).getDuracionMillis());
+        assertEquals(0, serie.consultar(BASE + 10, BASE + 10, HORA).size());
+    }
+
+    @Test
+    void coincideConAgruparLasLecturasCrudas() {
+        Random azar = new Random(11);
+        SerieMultiResolucion serie = new SerieMultiResolucion();
+        List<long[]> crudas = new ArrayList<>();
+        long t = BASE - 2 * HORA;
+        // Cinco días con huecos y algunas lecturas atrasadas
+        while (t < BASE + 5 * DIA) {
+            t += 1 + azar.nextInt(10 * (int) MINUTO);
+            if (azar.nextInt(500) == 0) {
+                t += 6 * HORA;
+            }
+            long instante = azar.nextInt(20) == 0 ? t - azar.nextInt(3 * (int) HORA) : t;
+            long valor = azar.nextInt(1000);
+            serie.agregar(instante, valor);
+            crudas.add(new long[] { instante, valor });
+        }
+
+        long[] resoluciones = { MINUTO, 5 * MINUTO, 7 * MINUTO, HORA, 90 * MINUTO, 6 * HORA, DIA, 2 * DIA };
+        for (int caso = 0; caso < 300; caso++) {
+            long desde = BASE - 3 * HORA + (long) (azar.nextDouble() * 6 * DIA);
+            long hasta = desde + 1 + (long) (azar.nextDouble() * 3 * DIA);
+            long resolucion = resoluciones[azar.nextInt(resoluciones.length)];
+            String mensaje = "desde=" + desde + " hasta=" + hasta + " resolución=" + resolucion;
+            verificar(serie.consultar(desde, hasta, resolucion),
+                    esperado(crudas, desde, hasta, serie.anchoParaResolucion(resolucion), resolucion), mensaje);
+        }
+    }
+
+    @Test
+    void sinElInicioEnElNivelFinoUsaUnoMasGrueso() {
+        SerieMultiResolucion serie = new SerieMultiResolucion();
+        List<long[]> crudas = new ArrayList<>();
+        // Nueve días por minuto: el nivel por minuto solo conserva siete
+        for (long m = 0; m < 9 * 24 * 60; m++) {
+            serie.agregar(BASE + m * MINUTO, m % 100);
+            crudas.add(new long[] { BASE + m * MINUTO, m % 100 });
+        }
+        List<ResumenIntervalo> grupos = serie.consultar(BASE, BASE + DIA, MINUTO);
+        assertEquals(24, grupos.size());
+        assertEquals(HORA, grupos.get(0).getDuracionMillis());
+        verificar(grupos, esperado(crudas, BASE, BASE + DIA, HORA, HORA), "nivel por hora");
+
+        // Lo reciente sigue disponible por minuto
+        long desde = BASE + 8 * DIA;
+        verificar(serie.consultar(desde, desde + HORA, MINUTO), esperado(crudas, desde, desde + HORA, MINUTO, MINUTO),
+                "nivel por minuto");
+
+        serie.limpiar();
+        assertEquals(0, serie.consultar(BASE, BASE + 10 * DIA, DIA).size());
+    }
+
+    /**
+     * Cada lectura cae en el intervalo de ancho {@code ancho} que la contiene;
+     * el intervalo va al grupo de {@code desde + k * grupo} en que empieza, o
+     * al primero si empieza antes de desde
+     */
+    private static List<ResumenIntervalo> esperado(List<long[]> crudas, long desde, long hasta, long ancho,
+            long resolucion) {
+        long grupo = Math.max(ancho, resolucion);
+        long primerIntervalo = Math.floorDiv(desde, ancho) * ancho;
+        TreeMap<Long, double[]> grupos = new TreeMap<>();
+        for (long[] lectura : crudas) {
+            long intervalo = Math.floorDiv(lectura[0], ancho) * ancho;
+            if (intervalo < primerIntervalo || intervalo >= hasta) {
+                continue;
+            }
+            long g = desde + Math.max(0, Math.floorDiv(intervalo - desde, grupo)) * grupo;
+            double[] acumulado = grupos.computeIfAbsent(g,
+                    k -> new double[] { Double.MAX_VALUE, -Double.MAX_VALUE, 0, 0 });
+            acumulado[0] = Math.min(acumulado[0], lectura[1]);
+            acumulado[1] = Math.max(acumulado[1], lectura[1]);
+            acumulado[2] += lectura[1];
+            acumulado[3]++;
+        }
+        List<ResumenIntervalo> resultado = new ArrayList<>();
+        grupos.forEach((g, a) -> resultado.add(new ResumenIntervalo(g, grupo, a[0], a[1], a[2] / a[3], (long) a[3])));
+        return resultado;
+    }
+
+    private static void verificar(List<ResumenIntervalo> obtenidos, List<ResumenIntervalo> esperados,
+            String mensaje) {
+        assertEquals(esperados.size(), obtenidos.size(), mensaje);
+        for (int i = 0; i < esperados.size(); i++) {
+            ResumenIntervalo e = esperados.get(i);
+            ResumenIntervalo o = obtenidos.get(i);
+            String caso = mensaje + " grupo " + i;
+            assertEquals(e.getInicioMillis(), o.getInicioMillis(), caso);
+            assertEquals(e.getDuracionMillis(), o.getDuracionMillis(), caso);
+            assertEquals(e.getConteo(), o.getConteo(), caso);
+            assertEquals(e.getMinimo(), o.getMinimo(), caso);
+            assertEquals(e.getMaximo(), o.getMaximo(), caso);
+            assertEquals(e.getPromedio(), o.getPromedio(), 1e-9, caso);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.agrosense.model.ResultadoTendencia;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TendenciaIncrementalTest {
+
+    private static final long MINUTO = 60_000L;
+    private static final long HORA = 60 * MINUTO;
+    private static final long BASE = 1_700_000_000_000L;
+
+    @Test
+    void conMenosDeDosPuntosNoHayPendiente() {
+        TendenciaIncremental tendencia = new TendenciaIncremental(6 * HORA, 30 * MINUTO);
+        ResultadoTendencia vacia = tendencia.calcular();
+        assertEquals(0, vacia.getMuestras());
+        assertTrue(Double.isNaN(vacia.getValorEstimado()));
+
+        tendencia.agregar(BASE, 42);
+        ResultadoTendencia una = tendencia.calcular();
+        assertEquals(0, una.getPendientePorHora());
+        assertEquals(42, una.getValorEstimado());
+        assertEquals(42, una.getMediaExponencial());
+    }
+
+    @Test
+    void unaRectaDaSuPendienteExacta() {
+        TendenciaIncremental tendencia = new TendenciaIncremental(6 * HORA, 30 * MINUTO);
+        for (int m = 0; m <= 300; m++) {
+            tendencia.agregar(BASE + m * MINUTO, 10 + 2.0 * m / 60);
+        }
+        ResultadoTendencia resultado = tendencia.calcular();
+        assertEquals(2.0, resultado.getPendientePorHora(), 1e-9);
+        assertEquals(20.0, resultado.getValorEstimado(), 1e-9);
+        assertEquals(1.0, resultado.getConfianza(), 1e-9);
+        assertEquals(301, resultado.getMuestras());
+    }
+
+    @Test
+    void coincideConLaRegresionSobreLaVentana() {
+        Random azar = new Random(3);
+        long ventana = 6 * HORA;
+        TendenciaIncremental tendencia = new TendenciaIncremental(ventana, 30 * MINUTO);
+        List<Long> tiempos = new ArrayList<>();
+        List<Double> valores = new ArrayList<>();
+        // Una lectura por minuto durante 20 h: cada una queda en su propia cubeta
+        // y la pendiente cambia a mitad de camino
+        for (int m = 0; m < 20 * 60; m++) {
+            long t = BASE + m * MINUTO;
+            double valor = (m < 10 * 60 ? 0.05 * m : 30 - 0.02 * (m - 600)) + azar.nextGaussian();
+            tendencia.agregar(t, valor);
+            tiempos.add(t);
+            valores.add(valor);
+
+            if (m % 97 == 0 || m == 20 * 60 - 1) {
+                double[] esperado = regresion(tiempos, valores, t - ventana);
+                ResultadoTendencia resultado = tendencia.calcular();
+                assertEquals((long) esperado[2], resultado.getMuestras(), "minuto " + m);
+                assertEquals(esperado[0], resultado.getPendientePorHora(), 1e-6, "minuto " + m);
+                assertEquals(esperado[1], resultado.getValorEstimado(), 1e-6, "minuto " + m);
+            }
+        }
+        // Tras la ventana solo pesa el tramo descendente
+        assertEquals(-1.2, tendencia.calcular().getPendientePorHora(), 0.2);
+    }
+
+    @Test
+    void laPendienteNoDependeDeLaFrecuenciaDeMuestreo() {
+        TendenciaIncremental tendencia = new TendenciaIncremental(6 * HORA, 30 * MINUTO);
+        // Primera mitad: una lectura por segundo; segunda: una cada 10 minutos
+        for (long s = 0; s < 3 * 3600; s++) {
+            tendencia.agregar(BASE + s * 1000, 50 - 3.0 * s / 3600);
+        }
+        for (long m = 180; m <= 360; m += 10) {
+            tendencia.agregar(BASE + m * MINUTO, 50 - 3.0 * m / 60);
+        }
+        assertEquals(-3.0, tendencia.calcular().getPendientePorHora(), 0.01);
+    }
+
+    @Test
+    void laMediaExponencialPesaSegunElTiempo() {
+        long constante = 30 * MINUTO;
+        TendenciaIncremental tendencia = new TendenciaIncremental(6 * HORA, constante);
+        tendencia.agregar(BASE, 10);
+        tendencia.agregar(BASE + constante, 20);
+        assertEquals(20 - 10 * Math.exp(-1), tendencia.calcular().getMediaExponencial(), 1e-9);
+
+        // Una lectura atrasada no cuenta como tiempo transcurrido
+        double antes = tendencia.calcular().getMediaExponencial();
+        tendencia.agregar(BASE, 100);
+        assertEquals(antes, tendencia.calcular().getMediaExponencial(), 1e-9);
+    }
+
+    /**
+     * Mínimos cuadrados sobre las lecturas con t >= desde
+     *
+     * @return pendiente por hora, valor estimado en la última lectura y cantidad
+     */
+    private static double[] regresion(List<Long> tiempos, List<Double> valores, long desde) {
+        double n = 0, st = 0, sv = 0, stt = 0, stv = 0;
+        long ultimo = tiempos.get(tiempos.size() - 1);
+        for (int i = 0; i < tiempos.size(); i++) {
+            long t = tiempos.get(i);
+            if (t < desde) {
+                continue;
+            }
+            double h = (t - ultimo) / (double) HORA;
+            double v = valores.get(i);
+            n++;
+            st += h;
+            sv += v;
+            stt += h * h;
+            stv += h * v;
+        }
+        double pendiente = n < 2 ? 0 : (n * stv - st * sv) / (n * stt - st * st);
+        double intercepto = (sv - pendiente * st) / n;
+        return new double[] { pendiente, intercepto, n };
+    }
+}
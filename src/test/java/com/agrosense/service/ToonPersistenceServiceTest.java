@@ -0,0 +1,108 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.agrosense.model.MedicionBatch;
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Archivo de mediciones: rotación por tamaño, retención de segmentos y carga
+ * por bloques.
+ */
+class ToonPersistenceServiceTest {
+
+    private static final long DIA = SerieMultiResolucion.DIA;
+    private static final int SENSOR = TablaIds.SENSORES.numero("TEST-TP-S1");
+    private static final int LOTE = TablaIds.LOTES.numero("TEST-TP-L1");
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void guardarYCargarConservaLasMediciones() throws IOException {
+        ToonPersistenceService servicio = new ToonPersistenceService(directorio);
+        long ahora = System.currentTimeMillis();
+        servicio.guardarMediciones(batch(ahora, 0, 3));
+        servicio.guardarMediciones(batch(ahora + 10, 3, 2));
+
+        MedicionBatch cargadas = new MedicionBatch();
+        assertEquals(5, servicio.cargarMediciones(cargadas));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(ahora + (i < 3 ? i : 10 + i - 3), cargadas.getTiempo(i));
+            assertEquals(i, cargadas.getValor(i));
+            assertEquals(SENSOR, cargadas.getSensor(i));
+            assertEquals(LOTE, cargadas.getLote(i));
+            assertEquals(TipoSensor.HUMEDAD, cargadas.getTipo(i));
+        }
+    }
+
+    @Test
+    void rotaPorTamanoYBorraLosSegmentosVencidos() throws IOException {
+        // Cada bloque supera el tamaño: se rota después de cada guardado
+        ToonPersistenceService servicio = new ToonPersistenceService(directorio, 1);
+        long ahora = System.currentTimeMillis();
+        servicio.guardarMediciones(batch(ahora - 10 * DIA, 0, 4));
+        servicio.guardarMediciones(batch(ahora - 2 * DIA, 4, 4));
+        // Vencido por la retención de 7 días: se borró al rotar el segundo
+        assertEquals(List.of("agrosense_mediciones." + (ahora - 2 * DIA + 3) + ".toon"), archivos());
+
+        // Un segmento más, con el mismo instante, y lecturas en el archivo actual
+        servicio.guardarMediciones(batch(ahora - 2 * DIA, 8, 4));
+        assertEquals(2, archivos().size());
+        servicio = new ToonPersistenceService(directorio);
+        servicio.guardarMediciones(batch(ahora, 12, 4));
+        assertEquals(3, archivos().size());
+
+        List<Double> valores = new ArrayList<>();
+        List<Integer> bloques = new ArrayList<>();
+        long cargadas = servicio.cargarMediciones(ahora - 2 * DIA + 2, bloque -> {
+            bloques.add(bloque.getTamano());
+            for (int i = 0; i < bloque.getTamano(); i++) {
+                valores.add(bloque.getValor(i));
+            }
+        });
+        // De los segmentos solo entran las lecturas desde el corte, en orden
+        assertEquals(8, cargadas);
+        assertEquals(List.of(2, 2, 4), bloques);
+        assertEquals(List.of(6.0, 7.0, 10.0, 11.0, 12.0, 13.0, 14.0, 15.0), valores);
+    }
+
+    @Test
+    void laRetencionAcotaLosSegmentosQueSeConservan() throws IOException {
+        ToonPersistenceService servicio = new ToonPersistenceService(directorio, 1);
+        servicio.setRetencionMediciones(DIA);
+        long ahora = System.currentTimeMillis();
+        for (int dia = 5; dia >= 0; dia--) {
+            servicio.guardarMediciones(batch(ahora - dia * DIA - 1000, dia, 1));
+        }
+        // Solo los del último día (el más reciente de cada uno)
+        assertEquals(1, archivos().size());
+        MedicionBatch cargadas = new MedicionBatch();
+        assertEquals(1, servicio.cargarMediciones(cargadas));
+        assertTrue(cargadas.getTiempo(0) > ahora - DIA);
+    }
+
+    private MedicionBatch batch(long desde, int primerValor, int cantidad) {
+        MedicionBatch batch = new MedicionBatch();
+        for (int i = 0; i < cantidad; i++) {
+            batch.agregar(SENSOR, LOTE, TipoSensor.HUMEDAD, primerValor + i, desde + i);
+        }
+        return batch;
+    }
+
+    private List<String> archivos() throws IOException {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return archivos.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.agrosense.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.agrosense.model.TablaIds;
+import com.agrosense.model.TipoSensor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Control de admisión y políticas de sobrecarga de {@link TuberiaLecturas}.
+ * Un consumidor se bloquea en su primer evento para acumular pendientes de
+ * forma determinista.
+ */
+class TuberiaLecturasTest {
+
+    private static final int LOTE = TablaIds.LOTES.numero("TEST-TL-L");
+    private static final int[] SENSORES = { TablaIds.SENSORES.numero("TEST-TL-S0"),
+            TablaIds.SENSORES.numero("TEST-TL-S1"), TablaIds.SENSORES.numero("TEST-TL-S2"),
+            TablaIds.SENSORES.numero("TEST-TL-S3") };
+
+    private final CountDownLatch enPrimerEvento = new CountDownLatch(1);
+    private final CountDownLatch liberar = new CountDownLatch(1);
+    // Solo el hilo del consumidor escribe la lista
+    private final List<Long> recibidas = new ArrayList<>();
+
+    @Test
+    void conElAnilloLlenoRechazaYLasCriticasEsperan() throws InterruptedException {
+        TuberiaLecturas tuberia = crear(8, PoliticaSobrecarga.BLOQUEAR, 8);
+        assertTrue(tuberia.publicar(SENSORES[0], LOTE, TipoSensor.HUMEDAD, 60, 0));
+        assertTrue(enPrimerEvento.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 8; i++) {
+            assertTrue(tuberia.publicar(SENSORES[0], LOTE, TipoSensor.HUMEDAD, 60, i));
+        }
+        // Anillo lleno: la lectura normal se rechaza sin esperar
+        assertFalse(tuberia.publicar(SENSORES[0], LOTE, TipoSensor.HUMEDAD, 60, 8));
+        assertFalse(tuberia.publicar(SENSORES[0], LOTE, TipoSensor.TEMPERATURA, 25, 9));
+        assertEquals(2, tuberia.getRechazadas());
+
+        // La crítica espera a que haya lugar
+        AtomicBoolean aceptada = new AtomicBoolean();
+        Thread critica = new Thread(
+                () -> aceptada.set(tuberia.publicar(SENSORES[1], LOTE, TipoSensor.HUMEDAD, 10, 10)));
+        critica.start();
+        critica.join(200);
+        assertTrue(critica.isAlive());
+
+        liberar.countDown();
+        critica.join(5000);
+        assertFalse(critica.isAlive());
+        assertTrue(aceptada.get());
+        tuberia.detener(5000);
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 10L), recibidas);
+        assertEquals(2, tuberia.getRechazadas());
+    }
+
+    @Test
+    void esperarSiLlenoNoRechaza() throws InterruptedException {
+        TuberiaLecturas tuberia = crear(8, PoliticaSobrecarga.BLOQUEAR, 8);
+        tuberia.setEsperarSiLleno(true);
+        Thread productor = new Thread(() -> {
+            for (int i = 0; i < 20; i++) {
+                tuberia.publicar(SENSORES[0], LOTE, TipoSensor.HUMEDAD, 60, i);
+            }
+        });
+        productor.start();
+        assertTrue(enPrimerEvento.await(5, TimeUnit.SECONDS));
+        productor.join(200);
+        assertTrue(productor.isAlive());
+        liberar.countDown();
+        productor.join(5000);
+        tuberia.detener(5000);
+        assertEquals(20, recibidas.size());
+        assertEquals(0, tuberia.getRechazadas());
+    }
+
+    @Test
+    void descartarAntiguasConservaLasMasRecientes() throws InterruptedException {
+        TuberiaLecturas tuberia = acumular(PoliticaSobrecarga.DESCARTAR_ANTIGUAS, 10);
+        // Lote pendiente 1..40: quedan 31..40 y la crítica (21)
+        List<Long> esperadas = new ArrayList<>(List.of(0L, 21L));
+        for (long i = 31; i <= 40; i++) {
+            esperadas.add(i);
+        }
+        assertEquals(esperadas, recibidas);
+        assertEquals(29, tuberia.getDescartadas("prueba"));
+    }
+
+    @Test
+    void muestrearConservaUnaDeCadaK() throws InterruptedException {
+        TuberiaLecturas tuberia = acumular(PoliticaSobrecarga.MUESTREAR, 10);
+        // 40 pendientes con límite 10: paso 4 contando desde la última
+        List<Long> esperadas = new ArrayList<>(List.of(0L));
+        for (long i = 4; i <= 40; i += 4) {
+            esperadas.add(i);
+        }
+        esperadas.add(6, 21L);
+        assertEquals(esperadas, recibidas);
+        assertEquals(40 - 11, tuberia.getDescartadas("prueba"));
+    }
+
+    @Test
+    void coalescerConservaLaUltimaDeCadaSensor() throws InterruptedException {
+        TuberiaLecturas tuberia = acumular(PoliticaSobrecarga.COALESCER, 10);
+        // Sensor de la lectura i: i % 4; las últimas son 37..40, más la crítica
+        assertEquals(List.of(0L, 21L, 37L, 38L, 39L, 40L), recibidas);
+        assertEquals(35, tuberia.getDescartadas("prueba"));
+    }
+
+    @Test
+    void sinSobrecargaNoDescarta() throws InterruptedException {
+        TuberiaLecturas tuberia = acumular(PoliticaSobrecarga.COALESCER, 64);
+        assertEquals(41, recibidas.size());
+        assertEquals(0, tuberia.getDescartadas("prueba"));
+    }
+
+    private TuberiaLecturas crear(int tamano, PoliticaSobrecarga politica, int limite) {
+        AlertaService alertas = new AlertaService();
+        alertas.setMostrarEnConsola(false);
+        EstadisticasService estadisticas = new EstadisticasService();
+        TuberiaLecturas tuberia = new TuberiaLecturas(new IngestaService(alertas, estadisticas), alertas,
+                estadisticas, tamano, EstrategiaEspera.cediendo());
+        tuberia.agregarConsumidor("prueba", (evento, secuencia, finDeLote) -> {
+            if (secuencia == 0) {
+                enPrimerEvento.countDown();
+                try {
+                    liberar.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            recibidas.add(evento.getEpochMillis());
+        }, politica, limite);
+        tuberia.iniciar();
+        return tuberia;
+    }
+
+    /**
+     * Publica la lectura 0, y mientras el consumidor la retiene, las lecturas
+     * 1..40 de cuatro sensores (la 21 en rango crítico). Lo libera cuando
+     * el detector ya las dejó pasar, para que le lleguen en un solo lote.
+     */
+    private TuberiaLecturas acumular(PoliticaSobrecarga politica, int limite) throws InterruptedException {
+        TuberiaLecturas tuberia = crear(64, politica, limite);
+        assertTrue(tuberia.publicar(SENSORES[0], LOTE, TipoSensor.HUMEDAD, 60, 0));
+        assertTrue(enPrimerEvento.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 40; i++) {
+            double valor = i == 21 ? 10 : 60;
+            assertTrue(tuberia.publicar(SENSORES[i % 4], LOTE, TipoSensor.HUMEDAD, valor, i));
+        }
+        long plazo = System.currentTimeMillis() + 5000;
+        while (tuberia.getProcesadas(TuberiaLecturas.ETAPA_DETECTOR)
+                + tuberia.getDescartadas(TuberiaLecturas.ETAPA_DETECTOR) < 41) {
+            assertTrue(System.currentTimeMillis() < plazo);
+            Thread.sleep(1);
+        }
+        liberar.countDown();
+        tuberia.detener(5000);
+        assertEquals(41, tuberia.getProcesadas("prueba") + tuberia.getDescartadas("prueba"));
+        return tuberia;
+    }
+}